@@ -0,0 +1,69 @@
+package Benchmark;
+
+import User.SentimentScore;
+import User.TweetAnalyzer;
+import User.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each TweetAnalyzer method over synthetic data sets from a thousand to ten million tweets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class AnalyzerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public long tweets;
+
+    @Param({"1000"})
+    public int users;
+
+    private TweetAnalyzer analyzer;
+    private List<User> userList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        userList = WorkloadGenerator.userList(generator.users(users));
+        generator.feeds(userList, tweets);
+        analyzer = new TweetAnalyzer();
+    }
+
+    @Benchmark
+    public int getTotalPositiveWords() {
+        return analyzer.getTotalPositiveWords(userList);
+    }
+
+    @Benchmark
+    public int getTotalWords() {
+        return analyzer.getTotalWords(userList);
+    }
+
+    @Benchmark
+    public double calculatePositivePercentage() {
+        return analyzer.calculatePositivePercentage(userList);
+    }
+
+    @Benchmark
+    public SentimentScore scoreParallel() {
+        return analyzer.scoreParallel(userList);
+    }
+}
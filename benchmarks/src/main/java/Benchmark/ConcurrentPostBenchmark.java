@@ -0,0 +1,108 @@
+package Benchmark;
+
+import User.ObserverDispatcher;
+import User.User;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress-tests posting from several threads at once into one shared model.
+ * Each thread posts as randomly chosen users, so posts fan out into shared follower timelines.
+ * Comparing the throughput of the 1, 2, 4 and all-core variants shows how posting scales with cores,
+ * and every iteration checks that no tweet was lost or duplicated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ConcurrentPostBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FOLLOWS_PER_USER = 20;
+
+    private WorkloadGenerator generator;
+    private User[] users;
+    private LongAdder posted;
+    private long tweetsBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new WorkloadGenerator(42);
+        UserRegistry registry = generator.users(USERS);
+        generator.follows(registry, FOLLOWS_PER_USER);
+        users = registry.getUsers().toArray(new User[0]);
+        for (User user : users) {
+            user.setDispatcher(ObserverDispatcher.DIRECT);
+        }
+        posted = new LongAdder();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        tweetsBefore = countTweets();
+        posted.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkIteration() {
+        long stored = countTweets() - tweetsBefore;
+        if (stored != posted.sum()) {
+            throw new IllegalStateException("Posted " + posted.sum() + " tweets but feeds hold " + stored);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void postTweet1Thread() {
+        post();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void postTweet2Threads() {
+        post();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void postTweet4Threads() {
+        post();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void postTweetMaxThreads() {
+        post();
+    }
+
+    private void post() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        users[random.nextInt(users.length)].postTweet(generator.message(random.nextInt(Integer.MAX_VALUE)));
+        posted.increment();
+    }
+
+    private long countTweets() {
+        long count = 0;
+        for (User user : users) {
+            count += user.getTweetCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,78 @@
+package Benchmark;
+
+import User.FeedPage;
+import User.TimelineEngine;
+import User.Tweet;
+import User.User;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures publishing a tweet by an author with a very large number of followers, pushed to every
+ * follower or skipped above the fan-out threshold, and reading a follower's first timeline page, where
+ * that author's tweets are merged in at read time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx6g")
+public class FanoutBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000000"})
+    public int followers;
+
+    @Param({"push", "hybrid"})
+    public String mode;
+
+    private WorkloadGenerator generator;
+    private TimelineEngine engine;
+    private User author;
+    private User follower;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new WorkloadGenerator(42);
+        UserRegistry registry = generator.users(followers);
+        List<User> users = WorkloadGenerator.userList(registry);
+        author = registry.createUser("author");
+        for (User user : users) {
+            user.follow(author);
+        }
+        follower = users.get(0);
+        // The shared engine merges the author's tweets at read time, as they are above its threshold
+        for (int i = 0; i < 1000; i++) {
+            author.postTweet(generator.message());
+        }
+        int threshold = "push".equals(mode) ? Integer.MAX_VALUE : TimelineEngine.DEFAULT_FANOUT_THRESHOLD;
+        engine = new TimelineEngine(TimelineEngine.DEFAULT_CAPACITY, threshold);
+    }
+
+    @Benchmark
+    public void publish() {
+        engine.publish(author, new Tweet(author.getUserID(), generator.message()));
+    }
+
+    @Benchmark
+    public FeedPage readFirstPage() {
+        // Drop the cached page, so every read merges
+        TimelineEngine.getInstance().invalidate(follower);
+        return follower.getTimelinePage(FeedPage.FIRST_PAGE, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package Benchmark;
+
+import User.User;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a follow followed by an unfollow between random users of a graph with existing edges.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FollowBenchmark {
+
+    @Param({"1000", "100000"})
+    public int users;
+
+    @Param({"10", "100"})
+    public int followsPerUser;
+
+    private List<User> userList;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        UserRegistry registry = generator.users(users);
+        generator.follows(registry, followsPerUser);
+        userList = WorkloadGenerator.userList(registry);
+    }
+
+    @Benchmark
+    public boolean followAndUnfollow() {
+        User follower = userList.get(Math.floorMod(next++, users));
+        User followee = userList.get(Math.floorMod(next * 31, users));
+        follower.follow(followee);
+        return follower.unfollow(followee);
+    }
+}
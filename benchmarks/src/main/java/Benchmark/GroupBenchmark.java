@@ -0,0 +1,57 @@
+package Benchmark;
+
+import User.UserGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures UserGroup.addSubGroup into a deep hierarchy of populated groups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    @Param({"10"})
+    public int membersPerGroup;
+
+    private WorkloadGenerator generator;
+    private UserGroup root;
+    private UserGroup incoming;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        generator = new WorkloadGenerator(42);
+        root = generator.groupChain(depth, membersPerGroup);
+    }
+
+    @Setup(Level.Invocation)
+    public void newGroup() {
+        incoming = generator.group("incoming" + next++, membersPerGroup);
+    }
+
+    @Benchmark
+    public UserGroup addSubGroup() {
+        root.addSubGroup(incoming);
+        return root;
+    }
+}
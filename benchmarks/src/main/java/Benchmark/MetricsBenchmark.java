@@ -0,0 +1,58 @@
+package Benchmark;
+
+import User.Counter;
+import User.Histogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of recording a metric, which must stay well under 50ns per event, from one
+ * thread and from every core at once against the same histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private final Histogram histogram = new Histogram("benchmark.latency", "ns");
+    private final Counter counter = new Counter("benchmark.events");
+
+    @Benchmark
+    public void recordHistogram() {
+        histogram.record(ThreadLocalRandom.current().nextInt(1_000_000));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void recordHistogramAllCores() {
+        histogram.record(ThreadLocalRandom.current().nextInt(1_000_000));
+    }
+
+    @Benchmark
+    public void recordSince() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public long readP99() {
+        return histogram.getP99();
+    }
+}
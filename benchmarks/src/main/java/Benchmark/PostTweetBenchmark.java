@@ -0,0 +1,68 @@
+package Benchmark;
+
+import User.AsyncObserverDispatcher;
+import User.ObserverDispatcher;
+import User.User;
+import User.UserObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures User.postTweet with a varying number of observers, dispatched directly or asynchronously.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostTweetBenchmark {
+
+    @Param({"0", "1", "16", "256"})
+    public int observers;
+
+    @Param({"direct", "async"})
+    public String dispatcher;
+
+    private WorkloadGenerator generator;
+    private User user;
+
+    @Setup(Level.Iteration)
+    public void setUp(Blackhole blackhole) {
+        generator = new WorkloadGenerator(42);
+        user = new User("poster");
+        user.setDispatcher("direct".equals(dispatcher) ? ObserverDispatcher.DIRECT : AsyncObserverDispatcher.getInstance());
+        for (int i = 0; i < observers; i++) {
+            user.addObserver(new UserObserver() {
+                @Override
+                public void update(String tweet) {
+                    blackhole.consume(tweet);
+                }
+
+                @Override
+                public void update(List<String> tweets) {
+                    blackhole.consume(tweets);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void postTweet() {
+        user.postTweet(generator.message());
+    }
+}
@@ -0,0 +1,61 @@
+package Benchmark;
+
+import User.User;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures UserRegistry lookups, duplicate checks and inserts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    private UserRegistry registry;
+    private String[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new WorkloadGenerator(42).users(users);
+        ids = new String[users];
+        for (int i = 0; i < users; i++) {
+            ids[i] = WorkloadGenerator.userID(i);
+        }
+    }
+
+    @Benchmark
+    public User getUser() {
+        return registry.getUser(ids[Math.floorMod(next++, users)]);
+    }
+
+    @Benchmark
+    public boolean duplicateCheck() {
+        return registry.containsUser(ids[Math.floorMod(next++, users)]);
+    }
+
+    @Benchmark
+    public User createUser() {
+        return registry.createUser("new" + next++);
+    }
+}
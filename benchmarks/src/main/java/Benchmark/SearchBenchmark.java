@@ -0,0 +1,79 @@
+package Benchmark;
+
+import User.FeedPage;
+import User.ModelEvents;
+import User.SearchIndex;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SearchIndex queries for the first page of results over synthetic feeds of up to ten
+ * million tweets, with the index built as the tweets are posted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx6g"})
+public class SearchBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"100000", "1000000", "10000000"})
+    public long tweets;
+
+    private SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        UserRegistry registry = generator.users(1000);
+        index = new SearchIndex(registry);
+        ModelEvents.addListener(index);
+        generator.feeds(WorkloadGenerator.userList(registry), tweets);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ModelEvents.removeListener(index);
+    }
+
+    @Benchmark
+    public FeedPage term() {
+        return index.search("coffee", PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FeedPage threeTerms() {
+        return index.search("coffee lunch terrible", PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FeedPage phrase() {
+        return index.search("\"good day\"", PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FeedPage prefix() {
+        return index.search("te*", PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FeedPage author() {
+        return index.search("from:" + WorkloadGenerator.userID(7) + " java", PAGE_SIZE);
+    }
+}
@@ -0,0 +1,85 @@
+package Benchmark;
+
+import User.ModelSnapshot;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a snapshot of a generated model, and opening it again into a fresh registry.
+ * Opening leaves users to be materialized on first lookup, so readAll also materializes every user.
+ * The model's tweets stay in the shared TweetStore, so every read restores the same tweet IDs again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"10000"})
+    public int users;
+
+    @Param({"10"})
+    public int followsPerUser;
+
+    @Param({"1000000"})
+    public long tweets;
+
+    private UserRegistry registry;
+    private Path directory;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        registry = generator.users(users);
+        generator.follows(registry, followsPerUser);
+        generator.feeds(WorkloadGenerator.userList(registry), tweets);
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        snapshot = directory.resolve("model.snap");
+        ModelSnapshot.write(registry, 0, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("written.snap"));
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        ModelSnapshot.write(registry, 0, directory.resolve("written.snap"));
+    }
+
+    @Benchmark
+    public UserRegistry read() throws IOException {
+        UserRegistry restored = new UserRegistry();
+        ModelSnapshot.read(snapshot, restored);
+        return restored;
+    }
+
+    @Benchmark
+    public int readAll() throws IOException {
+        UserRegistry restored = new UserRegistry();
+        ModelSnapshot.read(snapshot, restored);
+        return restored.getUsers().size();
+    }
+}
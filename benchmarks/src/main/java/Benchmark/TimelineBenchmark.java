@@ -0,0 +1,71 @@
+package Benchmark;
+
+import User.FeedPage;
+import User.User;
+import User.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading timeline pages of random users: the first page, which the pushed timeline covers
+ * and the cache usually holds, and a page past the pushed timeline, which is merged from the feeds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"10", "100", "1000"})
+    public int followsPerUser;
+
+    @Param({"1000000"})
+    public long tweets;
+
+    private List<User> userList;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        UserRegistry registry = generator.users(users);
+        generator.follows(registry, followsPerUser);
+        userList = WorkloadGenerator.userList(registry);
+        generator.feeds(userList, tweets);
+    }
+
+    @Benchmark
+    public FeedPage firstPage() {
+        return userList.get(Math.floorMod(next++ * 31, users)).getTimelinePage(FeedPage.FIRST_PAGE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FeedPage deepPage() {
+        User user = userList.get(Math.floorMod(next++ * 31, users));
+        FeedPage page = user.getTimelinePage(FeedPage.FIRST_PAGE, PAGE_SIZE);
+        // Four pages of the pushed timeline reach its capacity, so the fifth is pulled from the feeds
+        for (int i = 0; i < 4 && page.hasMore(); i++) {
+            page = user.getTimelinePage(page.getNextCursor(), PAGE_SIZE);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,170 @@
+package Benchmark;
+
+import User.User;
+import User.UserGroup;
+import User.UserRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The WorkloadGenerator class builds reproducible synthetic data sets for the benchmarks.
+ * The same seed always produces the same users, follow edges, group hierarchy and tweets.
+ */
+public class WorkloadGenerator {
+    private static final String[] VOCABULARY = {
+            "the", "a", "day", "coffee", "java", "swing", "tree", "group", "follow", "tweet",
+            "today", "with", "about", "really", "just", "code", "build", "test", "lunch", "meeting",
+            "good", "great", "excellent", "bad", "terrible", "awful", "Goodness", "GREAT!"
+    };
+    // Tweets are drawn from a fixed pool so large data sets do not need one String per tweet
+    private static final int MESSAGE_POOL_SIZE = 4096;
+
+    private final Random random;
+    private final String[] messages;
+
+    /**
+     * Constructor for the WorkloadGenerator class.
+     *
+     * @param seed The random seed.
+     */
+    public WorkloadGenerator(long seed) {
+        this.random = new Random(seed);
+        this.messages = new String[MESSAGE_POOL_SIZE];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = randomMessage(3 + random.nextInt(18));
+        }
+    }
+
+    /**
+     * Creates a registry holding the given number of users, named user0, user1, ...
+     *
+     * @param userCount The number of users.
+     * @return The populated registry.
+     */
+    public UserRegistry users(int userCount) {
+        UserRegistry registry = new UserRegistry();
+        for (int i = 0; i < userCount; i++) {
+            registry.createUser(userID(i));
+        }
+        return registry;
+    }
+
+    /**
+     * Adds random follow edges so each user follows about followsPerUser others.
+     *
+     * @param registry       The registry holding users created by {@link #users(int)}.
+     * @param followsPerUser The number of users each user follows.
+     */
+    public void follows(UserRegistry registry, int followsPerUser) {
+        int userCount = registry.getUserCount();
+        for (int i = 0; i < userCount; i++) {
+            User follower = registry.getUser(userID(i));
+            for (int j = 0; j < followsPerUser; j++) {
+                follower.follow(registry.getUser(userID(random.nextInt(userCount))));
+            }
+        }
+    }
+
+    /**
+     * Spreads the given number of tweets over the users' news feeds.
+     * The users have no followers or observers yet, so posting only appends to their own feeds.
+     *
+     * @param users      The users to receive tweets.
+     * @param tweetCount The total number of tweets.
+     */
+    public void feeds(List<User> users, long tweetCount) {
+        for (long i = 0; i < tweetCount; i++) {
+            users.get(random.nextInt(users.size())).postTweet(message());
+        }
+    }
+
+    /**
+     * Creates a chain of nested groups, each holding membersPerGroup fresh users.
+     *
+     * @param depth           The number of nested groups.
+     * @param membersPerGroup The number of users in each group.
+     * @return The outermost group.
+     */
+    public UserGroup groupChain(int depth, int membersPerGroup) {
+        UserGroup root = group("group0", membersPerGroup);
+        UserGroup current = root;
+        for (int i = 1; i < depth; i++) {
+            UserGroup child = group("group" + i, membersPerGroup);
+            current.addSubGroup(child);
+            current = child;
+        }
+        return root;
+    }
+
+    /**
+     * Creates a group holding the given number of fresh users.
+     *
+     * @param groupID     The group ID.
+     * @param memberCount The number of users in the group.
+     * @return The new group.
+     */
+    public UserGroup group(String groupID, int memberCount) {
+        UserGroup group = new UserGroup(groupID);
+        for (int i = 0; i < memberCount; i++) {
+            group.addUserToGroup(new User(groupID + "-user" + i));
+        }
+        return group;
+    }
+
+    /**
+     * Gets a random tweet message from the pool.
+     *
+     * @return A tweet message.
+     */
+    public String message() {
+        return messages[random.nextInt(messages.length)];
+    }
+
+    /**
+     * Gets a tweet message from the pool without using the generator's random state,
+     * so it can be called from several threads at once.
+     *
+     * @param index Any non-negative number; it is reduced modulo the pool size.
+     * @return The message.
+     */
+    public String message(int index) {
+        return messages[index % messages.length];
+    }
+
+    /**
+     * Gets a list of users from a registry in ID order.
+     *
+     * @param registry The registry holding users created by {@link #users(int)}.
+     * @return The users.
+     */
+    public static List<User> userList(UserRegistry registry) {
+        List<User> users = new ArrayList<>(registry.getUserCount());
+        for (int i = 0; i < registry.getUserCount(); i++) {
+            users.add(registry.getUser(userID(i)));
+        }
+        return users;
+    }
+
+    /**
+     * Gets the ID of the i-th generated user.
+     *
+     * @param i The user index.
+     * @return The user ID.
+     */
+    public static String userID(int i) {
+        return "user" + i;
+    }
+
+    private String randomMessage(int wordCount) {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                message.append(' ');
+            }
+            message.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return message.toString();
+    }
+}
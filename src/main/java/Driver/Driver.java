@@ -1,10 +1,23 @@
 package Driver;
 
 import User.AdminControlPanel;
+import User.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class Driver {
     public static void main(String[] args) {
         AdminControlPanel adminPanel = new AdminControlPanel();
+        Metrics.getInstance().registerMBeans();
+        // Restore the saved model and keep recording changes in the data directory
+        String dataDirectory = args.length > 0 ? args[0] : "data";
+        try {
+            adminPanel.enablePersistence(Paths.get(dataDirectory));
+            Runtime.getRuntime().addShutdownHook(new Thread(adminPanel::closePersistence));
+        } catch (IOException e) {
+            System.out.println("Could not open the data directory, changes will not be saved: " + e.getMessage());
+        }
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 adminPanel.createGUI();
@@ -12,4 +25,3 @@ public class Driver {
         });
     }
 }
-
@@ -0,0 +1,105 @@
+package Driver;
+
+import User.ApiServer;
+import User.EventLog;
+import User.FeedArchive;
+import User.FeedRetention;
+import User.GroupStatistics;
+import User.Metrics;
+import User.ModelEvents;
+import User.RetentionPolicy;
+import User.SearchIndex;
+import User.Statistics;
+import User.TrendTracker;
+import User.TweetAnalyzer;
+import User.UserRegistry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs MiniTwitter without the Swing interface, serving the model over the local HTTP API.
+ * Usage: HeadlessDriver [port] [data directory] [tweets kept per user] [tweets kept in total] [days kept]
+ * Tweets beyond the retention limits are moved to the feed archive in the data directory; a limit
+ * left out or given as 0 is unlimited.
+ */
+public class HeadlessDriver {
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : ApiServer.DEFAULT_PORT;
+        String dataDirectory = args.length > 1 ? args[1] : "data";
+        RetentionPolicy policy = new RetentionPolicy(limitArgument(args, 2), limitArgument(args, 3),
+                args.length > 4 && Long.parseLong(args[4]) > 0
+                        ? TimeUnit.DAYS.toMillis(Long.parseLong(args[4])) : RetentionPolicy.UNLIMITED);
+
+        UserRegistry registry = new UserRegistry();
+        TweetAnalyzer tweetAnalyzer = new TweetAnalyzer();
+        Statistics statistics = new Statistics(tweetAnalyzer);
+        ModelEvents.addListener(statistics);
+        GroupStatistics groupStatistics = new GroupStatistics(tweetAnalyzer);
+        ModelEvents.addListener(groupStatistics);
+        TrendTracker trendTracker = new TrendTracker(tweetAnalyzer);
+        ModelEvents.addListener(trendTracker);
+        SearchIndex searchIndex = new SearchIndex(registry);
+        ModelEvents.addListener(searchIndex);
+        Metrics.getInstance().registerMBeans();
+
+        // Restore the saved model and keep recording changes in the data directory
+        EventLog eventLog = null;
+        FeedArchive feedArchive = null;
+        FeedRetention feedRetention = null;
+        try {
+            Path directory = Paths.get(dataDirectory);
+            // The archive goes first, so tweets it already holds are not restored into memory
+            feedArchive = FeedArchive.open(directory.resolve("archive"));
+            feedRetention = new FeedRetention(policy, feedArchive);
+            eventLog = EventLog.open(directory, registry);
+            ModelEvents.addListener(eventLog);
+            ModelEvents.addListener(feedRetention);
+            feedRetention.start();
+        } catch (IOException e) {
+            System.out.println("Could not open the data directory, changes will not be saved: " + e.getMessage());
+        }
+
+        ApiServer server = new ApiServer(registry, statistics, tweetAnalyzer, searchIndex, groupStatistics,
+                trendTracker);
+        try {
+            port = server.start(port);
+        } catch (IOException e) {
+            System.out.println("Could not start the API server on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("MiniTwitter API listening on http://localhost:" + port);
+
+        EventLog log = eventLog;
+        FeedArchive archive = feedArchive;
+        FeedRetention retention = feedRetention;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            if (retention != null) {
+                retention.close();
+            }
+            if (log != null) {
+                ModelEvents.removeListener(log);
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    System.out.println("Could not flush the event log: " + e.getMessage());
+                }
+            }
+            if (archive != null) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    System.out.println("Could not close the feed archive: " + e.getMessage());
+                }
+            }
+        }));
+    }
+
+    private static long limitArgument(String[] args, int index) {
+        long limit = args.length > index ? Long.parseLong(args[index]) : 0;
+        return limit > 0 ? limit : RetentionPolicy.UNLIMITED;
+    }
+}
@@ -1,12 +1,15 @@
 package User;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
 import java.awt.*;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The AdminControlPanel class represents the graphical user interface for the admin control panel
@@ -15,20 +18,38 @@ import java.util.List;
  */
 public class AdminControlPanel extends JFrame {
 
+    private static final int SEARCH_RESULTS = 100;
+    private static final int GROUP_STATS_REFRESH_MILLIS = 1000;
+
     private static TreeView treeView;
-    private List<User> userList;
-    private List<UserGroup> groupList;
+    private UserRegistry registry;
     private TweetAnalyzer tweetAnalyzer;
+    private Statistics statistics;
+    private GroupStatistics groupStatistics;
+    private TrendTracker trendTracker;
+    private SearchIndex searchIndex;
+    private EventLog eventLog;
+    private FeedArchive feedArchive;
+    private FeedRetention feedRetention;
+    private final ExecutorService importExecutor = ThreadPools.newVirtualThreadExecutor("import");
 
     /**
      * Constructor for AdminControlPanel.
-     * Initializes the tree view, user list, group list, and tweet analyzer.
+     * Initializes the user registry, tree view, tweet analyzer, running statistics, per-group totals,
+     * trends and search index.
      */
     public AdminControlPanel() {
-        treeView = new TreeView();
-        userList = new ArrayList<>();
-        groupList = new ArrayList<>();
+        registry = new UserRegistry();
+        treeView = new TreeView(registry);
         tweetAnalyzer = new TweetAnalyzer();
+        statistics = new Statistics(tweetAnalyzer);
+        ModelEvents.addListener(statistics);
+        groupStatistics = new GroupStatistics(tweetAnalyzer);
+        ModelEvents.addListener(groupStatistics);
+        trendTracker = new TrendTracker(tweetAnalyzer);
+        ModelEvents.addListener(trendTracker);
+        searchIndex = new SearchIndex(registry);
+        ModelEvents.addListener(searchIndex);
     }
 
     /**
@@ -47,7 +68,7 @@ public class AdminControlPanel extends JFrame {
         JPanel lowerPanel = new JPanel();
         lowerPanel.setLayout(new BoxLayout(lowerPanel, BoxLayout.X_AXIS));
 
-        JPanel topPanel = new JPanel(new GridLayout(2, 2, 0, 0));
+        JPanel topPanel = new JPanel(new GridLayout(3, 2, 0, 0));
         JTextField t1 = placeholderText("User ID");
         JButton Add_User = new JButton("Add User");
         topPanel.add(t1);
@@ -56,6 +77,10 @@ public class AdminControlPanel extends JFrame {
         JButton Add_Group = new JButton("Add Group");
         topPanel.add(t2);
         topPanel.add(Add_Group);
+        JTextField t3 = placeholderText("Search Tweets");
+        JButton searchButton = new JButton("Search");
+        topPanel.add(t3);
+        topPanel.add(searchButton);
 
         JPanel middleColumn = new JPanel();
         middleColumn.setLayout(new BoxLayout(middleColumn, BoxLayout.Y_AXIS));
@@ -68,15 +93,23 @@ public class AdminControlPanel extends JFrame {
         centerPanel.add(middleColumn, BorderLayout.CENTER);
 
         // Initializing buttons
-        JPanel bottomPanel = new JPanel(new GridLayout(2, 2, 0, 0));
+        JPanel bottomPanel = new JPanel(new GridLayout(4, 2, 0, 0));
         JButton userTotalButton = new JButton("Show User Total");
         JButton messageTotalButton = new JButton("Show Messages Total");
         JButton groupTotalButton = new JButton("Show Group Total");
         JButton positivePercentageButton = new JButton("Show Positive Percentage");
+        JButton analyzeButton = new JButton("Analyze All Tweets");
+        JButton importButton = new JButton("Import Data");
+        JButton metricsButton = new JButton("Show Metrics");
+        JButton trendsButton = new JButton("Show Trends");
         bottomPanel.add(userTotalButton);
         bottomPanel.add(messageTotalButton);
         bottomPanel.add(groupTotalButton);
         bottomPanel.add(positivePercentageButton);
+        bottomPanel.add(analyzeButton);
+        bottomPanel.add(importButton);
+        bottomPanel.add(metricsButton);
+        bottomPanel.add(trendsButton);
         lowerPanel.add(bottomPanel);
         centerPanel.add(lowerPanel, BorderLayout.SOUTH);
 
@@ -85,10 +118,17 @@ public class AdminControlPanel extends JFrame {
         messageTotalButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, messageTotalButton.getPreferredSize().height));
         groupTotalButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, groupTotalButton.getPreferredSize().height));
         positivePercentageButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, positivePercentageButton.getPreferredSize().height));
+        analyzeButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, analyzeButton.getPreferredSize().height));
+        importButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, importButton.getPreferredSize().height));
+        metricsButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, metricsButton.getPreferredSize().height));
+        trendsButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, trendsButton.getPreferredSize().height));
 
         JPanel leftPanel = new JPanel(new BorderLayout());
         leftPanel.add(treeView, BorderLayout.CENTER);
         treeView.setPreferredSize(new Dimension(300, 400));
+        JLabel groupStatsLabel = new JLabel(" ");
+        groupStatsLabel.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        leftPanel.add(groupStatsLabel, BorderLayout.SOUTH);
 
         adminPanel.add(centerPanel, BorderLayout.CENTER);
         adminPanel.add(leftPanel, BorderLayout.WEST);
@@ -97,10 +137,7 @@ public class AdminControlPanel extends JFrame {
         // Action listeners for buttons
         Add_User.addActionListener(e -> {
             String userID = t1.getText();
-            boolean userExists = userList.stream().anyMatch(user -> user.getUserID().equals(userID));
-            if (!userExists) {
-                User newUser = new User(userID);
-                userList.add(newUser);
+            if (registry.createUser(userID) != null) {
                 treeView.addUserToTree(userID);
             } else {
                 System.out.println("User already exists!");
@@ -109,63 +146,239 @@ public class AdminControlPanel extends JFrame {
 
         Add_Group.addActionListener(e -> {
             String groupID = t2.getText();
-            boolean groupExists = groupList.stream().anyMatch(group -> group.getGroupID().equals(groupID));
-            if (!groupExists) {
-                UserGroup newGroup = new UserGroup(groupID);
-                groupList.add(newGroup);
+            if (registry.createGroup(groupID) != null) {
                 treeView.addUserGroupToTree(groupID);
             } else {
                 System.out.println("Group already exists!");
             }
         });
 
+        searchButton.addActionListener(e -> showSearchResults(frame, t3.getText()));
+
         openUserViewButton.addActionListener(e -> {
-            DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) treeView.getTree().getLastSelectedPathComponent();
-            if (selectedNode != null) {
-                Object selectedObject = selectedNode.getUserObject();
-                if (selectedObject instanceof User) {
-                    User selectedUser = (User) selectedObject;
-                    UserView userView = new UserView();
-                    userView.createAndShowUserView(selectedUser);
-                }
+            Object selectedObject = treeView.getSelectedObject();
+            if (selectedObject instanceof User) {
+                User selectedUser = (User) selectedObject;
+                UserView userView = new UserView(registry);
+                userView.createAndShowUserView(selectedUser);
             }
         });
 
         userTotalButton.addActionListener(e -> {
-            int totalUsers = getTotalUsers();
+            long totalUsers = getTotalUsers();
             JOptionPane.showMessageDialog(frame, "Total Users: " + totalUsers);
         });
 
         messageTotalButton.addActionListener(e -> {
-            int totalMessages = getTotalTweets();
+            long totalMessages = getTotalTweets();
             JOptionPane.showMessageDialog(frame, "Total Messages: " + totalMessages);
         });
 
         groupTotalButton.addActionListener(e -> {
-            int groupTotal = getTotalGroups();
+            long groupTotal = getTotalGroups();
             JOptionPane.showMessageDialog(frame, "Group Total: " + groupTotal);
         });
 
         positivePercentageButton.addActionListener(e -> {
-            int totalPositiveWords = tweetAnalyzer.getTotalPositiveWords(userList);
-            int totalWords = tweetAnalyzer.getTotalWords(userList);
-            double positivePercentage = tweetAnalyzer.calculatePositivePercentage(userList);
+            double positivePercentage = statistics.getPositivePercentage();
             JOptionPane.showMessageDialog(frame, "Positive Percentage: " + positivePercentage + "%");
         });
 
+        // Full rescan of every feed, run in parallel off the EDT
+        analyzeButton.addActionListener(e -> {
+            analyzeButton.setEnabled(false);
+            tweetAnalyzer.scoreAsync(registry.getUsers()).whenComplete((score, error) ->
+                    SwingUtilities.invokeLater(() -> {
+                        analyzeButton.setEnabled(true);
+                        if (error != null) {
+                            JOptionPane.showMessageDialog(frame, "Analysis failed: " + error.getMessage());
+                        } else {
+                            JOptionPane.showMessageDialog(frame, "Words: " + score.getWords()
+                                    + "\nPositive: " + score.getPositiveHits()
+                                    + "\nNegative: " + score.getNegativeHits()
+                                    + "\nPositive Percentage: " + score.getPositivePercentage() + "%");
+                        }
+                    }));
+        });
+
+        // Bulk import of a CSV or NDJSON file, run off the EDT; the tree is rebuilt once at the end
+        importButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            importButton.setEnabled(false);
+            importFile(chooser.getSelectedFile().toPath()).whenComplete((result, error) ->
+                    SwingUtilities.invokeLater(() -> {
+                        importButton.setEnabled(true);
+                        if (error != null) {
+                            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                            if (cause instanceof UncheckedIOException) {
+                                cause = cause.getCause();
+                            }
+                            JOptionPane.showMessageDialog(frame, "Import failed: " + cause.getMessage());
+                            return;
+                        }
+                        StringBuilder message = new StringBuilder(result.toString());
+                        for (String problem : result.getErrors()) {
+                            message.append('\n').append(problem);
+                        }
+                        JOptionPane.showMessageDialog(frame, message.toString());
+                    }));
+        });
+
+        metricsButton.addActionListener(e -> new MetricsView().createAndShowMetricsView());
+
+        trendsButton.addActionListener(e -> new TrendsView(trendTracker).createAndShowTrendsView());
+
+        // Show the totals of the selected group's subtree, kept current while it stays selected
+        treeView.getTree().addTreeSelectionListener(e -> showGroupStats(groupStatsLabel));
+        new Timer(GROUP_STATS_REFRESH_MILLIS, e -> showGroupStats(groupStatsLabel)).start();
+        showGroupStats(groupStatsLabel);
+
+        // Measure how long the event thread takes to respond while the GUI is up
+        EdtMonitor.start();
+
         frame.pack();
         frame.setSize(900, 600);
         frame.setVisible(true);
     }
 
+    /**
+     * Runs a search and shows the newest matching tweets in a dialog.
+     *
+     * @param frame The window that owns the dialog.
+     * @param query The search query.
+     */
+    private void showSearchResults(JFrame frame, String query) {
+        long start = System.nanoTime();
+        FeedPage page;
+        try {
+            page = searchIndex.search(query, SEARCH_RESULTS);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid search: " + e.getMessage());
+            return;
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        DefaultListModel<String> results = new DefaultListModel<>();
+        for (Tweet tweet : page.getTweets()) {
+            results.addElement(tweet.getAuthorID() + ": " + tweet.getMessage());
+        }
+        JList<String> resultList = new JList<>(results);
+        JScrollPane scrollPane = new JScrollPane(resultList);
+        scrollPane.setPreferredSize(new Dimension(500, 300));
+        String title = page.size() + (page.hasMore() ? "+" : "") + " results in " + String.format("%.2f", millis) + " ms";
+        JOptionPane.showMessageDialog(frame, scrollPane, title, JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /**
+     * Shows the totals of the group selected in the tree, or of the selected user's group.
+     *
+     * @param label The label to show the totals in.
+     */
+    private void showGroupStats(JLabel label) {
+        Object selectedObject = treeView.getSelectedObject();
+        UserGroup group = null;
+        if (selectedObject instanceof UserGroup) {
+            group = (UserGroup) selectedObject;
+        } else if (selectedObject instanceof User) {
+            group = GroupMembership.getInstance().getGroup((User) selectedObject);
+        }
+        if (group == null) {
+            label.setText(" ");
+            return;
+        }
+        label.setText(group.getGroupID() + ": " + groupStatistics.getUserCount(group) + " users, "
+                + groupStatistics.getTweetCount(group) + " tweets, "
+                + String.format("%.1f", groupStatistics.getPositivePercentage(group)) + "% positive");
+    }
+
+    /**
+     * Loads the model saved in a directory and records every later change there.
+     * Must be called before the GUI is created or any users are added.
+     *
+     * @param directory The directory holding the event log and snapshots.
+     * @throws IOException If the saved model cannot be read or the log cannot be opened.
+     */
+    public void enablePersistence(Path directory) throws IOException {
+        enablePersistence(directory, RetentionPolicy.UNBOUNDED);
+    }
+
+    /**
+     * Loads the model saved in a directory, records every later change there, and moves tweets beyond
+     * a retention policy to the feed archive in the directory's archive folder.
+     * Must be called before the GUI is created or any users are added.
+     *
+     * @param directory The directory holding the event log, snapshots and feed archive.
+     * @param policy    The limits on the tweets kept in memory.
+     * @throws IOException If the saved model cannot be read or the log cannot be opened.
+     */
+    public void enablePersistence(Path directory, RetentionPolicy policy) throws IOException {
+        // The archive goes first, so tweets it already holds are not restored into memory
+        feedArchive = FeedArchive.open(directory.resolve("archive"));
+        feedRetention = new FeedRetention(policy, feedArchive);
+        eventLog = EventLog.open(directory, registry);
+        ModelEvents.addListener(eventLog);
+        ModelEvents.addListener(feedRetention);
+        feedRetention.start();
+        treeView.refresh();
+    }
+
+    /**
+     * Flushes and closes the event log and feed archive, if persistence is enabled.
+     */
+    public void closePersistence() {
+        if (eventLog == null) {
+            return;
+        }
+        ModelEvents.removeListener(feedRetention);
+        feedRetention.close();
+        ModelEvents.removeListener(eventLog);
+        try {
+            eventLog.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the event log: " + e.getMessage());
+        }
+        try {
+            feedArchive.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the feed archive: " + e.getMessage());
+        }
+        eventLog = null;
+        feedRetention = null;
+        feedArchive = null;
+    }
+
+    /**
+     * Imports users, groups, follows and tweets from a CSV or NDJSON file on a background thread.
+     * The tree view is refreshed once, on the event dispatch thread, after the import has finished.
+     *
+     * @param file The file to be imported; its extension selects the format.
+     * @return A future completed with the import result.
+     */
+    public CompletableFuture<ImportResult> importFile(Path file) {
+        BulkImporter importer = new BulkImporter(registry, eventLog);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return importer.importFile(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                SwingUtilities.invokeLater(treeView::refresh);
+            }
+        }, importExecutor);
+    }
+
     /**
      * Adds a new user to the user list and updates the tree view.
      *
      * @param userID The ID of the new user.
      */
     public void addUser(String userID) {
-        User newUser = new User(userID);
-        userList.add(newUser);
+        if (registry.createUser(userID) == null) {
+            System.out.println("User already exists!");
+            return;
+        }
         // Updating the Tree View
         TreeView treeView = getTreeView();
         treeView.addUserToTree(userID);
@@ -177,8 +390,9 @@ public class AdminControlPanel extends JFrame {
      * @param groupID The ID of the new group.
      */
     public void addUserGroup(String groupID) {
-        UserGroup newGroup = new UserGroup(groupID);
-        groupList.add(newGroup); // Add the new user to the userList
+        if (registry.createGroup(groupID) == null) {
+            System.out.println("Group already exists!");
+        }
     }
 
     /**
@@ -186,9 +400,8 @@ public class AdminControlPanel extends JFrame {
      *
      * @return The total number of users.
      */
-    public int getTotalUsers() {
-        // Get the total count of users in the system
-        return userList.size();
+    public long getTotalUsers() {
+        return statistics.getTotalUsers();
     }
 
     /**
@@ -196,9 +409,8 @@ public class AdminControlPanel extends JFrame {
      *
      * @return The total number of groups.
      */
-    public int getTotalGroups() {
-        // Get the total count of groups in the system
-        return groupList.size();
+    public long getTotalGroups() {
+        return statistics.getTotalGroups();
     }
 
     /**
@@ -206,12 +418,53 @@ public class AdminControlPanel extends JFrame {
      *
      * @return The total number of tweets.
      */
-    public int getTotalTweets() {
-        int totalTweets = 0;
-        for (User user : userList) {
-            totalTweets += user.getNewsFeed().size();
-        }
-        return totalTweets;
+    public long getTotalTweets() {
+        return statistics.getTotalTweets();
+    }
+
+    /**
+     * Gets the registry that owns every user and group shown in this panel.
+     *
+     * @return The UserRegistry instance.
+     */
+    public UserRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Gets the running statistics shown by the admin buttons.
+     *
+     * @return The Statistics instance.
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Gets the running totals of every group's subtree.
+     *
+     * @return The GroupStatistics instance.
+     */
+    public GroupStatistics getGroupStatistics() {
+        return groupStatistics;
+    }
+
+    /**
+     * Gets the live trends over the last minute, five minutes and hour.
+     *
+     * @return The TrendTracker instance.
+     */
+    public TrendTracker getTrendTracker() {
+        return trendTracker;
+    }
+
+    /**
+     * Gets the full-text index of every tweet posted in this panel's model.
+     *
+     * @return The SearchIndex instance.
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
     }
 
     /**
@@ -0,0 +1,457 @@
+package User;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The ApiServer class exposes the MiniTwitter operations over a local HTTP/JSON API, so the model can
+ * run without the Swing interface. It is built on the JDK's HttpServer and handles each request on its
+ * own virtual thread, so slow clients never hold up others.
+ *
+ * <pre>
+ * POST /users                  {"id": "alice", "group": "Students"}   create a user (group defaults to Root)
+ * POST /groups                 {"id": "Students", "parent": "Root"}   create a group (parent defaults to Root)
+ * POST /users/{id}/follow      {"followee": "bob"}                    follow another user
+ * POST /users/{id}/tweets      {"message": "Hello"}                   post a tweet
+ * GET  /users/{id}/timeline?limit=20&amp;cursor=...                        read a page of the timeline, newest first
+ * GET  /stats                                                          read the running statistics
+ * GET  /stats/analysis                                                 rescan every tweet with the TweetAnalyzer
+ * GET  /groups/{id}/stats                                              read the totals of a group and its subgroups
+ * GET  /trends?window=5m&amp;limit=10                                     read the top terms and sentiment of a window (1m, 5m, 1h)
+ * GET  /search?q=coffee&amp;limit=20&amp;cursor=...                          search tweets, newest first (see SearchIndex)
+ * GET  /metrics                                                        read the latency histograms and counters
+ * </pre>
+ */
+public class ApiServer implements Closeable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_TIMELINE_LIMIT = 20;
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final UserRegistry registry;
+    private final Statistics statistics;
+    private final TweetAnalyzer tweetAnalyzer;
+    private final SearchIndex searchIndex;
+    private final GroupStatistics groupStatistics;
+    private final TrendTracker trendTracker;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructor for the ApiServer class.
+     *
+     * @param registry        The registry holding the model served by the API.
+     * @param statistics      The running statistics reported by /stats.
+     * @param tweetAnalyzer   The analyzer used by /stats/analysis.
+     * @param searchIndex     The index used by /search.
+     * @param groupStatistics The per-group totals reported by /groups/{id}/stats.
+     * @param trendTracker    The live trends reported by /trends.
+     */
+    public ApiServer(UserRegistry registry, Statistics statistics, TweetAnalyzer tweetAnalyzer, SearchIndex searchIndex,
+                     GroupStatistics groupStatistics, TrendTracker trendTracker) {
+        this.registry = registry;
+        this.statistics = statistics;
+        this.tweetAnalyzer = tweetAnalyzer;
+        this.searchIndex = searchIndex;
+        this.groupStatistics = groupStatistics;
+        this.trendTracker = trendTracker;
+    }
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port The port to listen on, or 0 to pick a free port.
+     * @return The port the server is listening on.
+     * @throws IOException If the port cannot be bound.
+     */
+    public int start(int port) throws IOException {
+        // The JDK server writes headers and body separately; without TCP_NODELAY every keep-alive
+        // response waits for the client's delayed ACK (about 40ms). Must be set before the first server.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = ThreadPools.newVirtualThreadExecutor("api");
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for requests in progress to finish.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * Routes a request to the matching operation and writes its JSON response.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status;
+            String body;
+            try {
+                String response = route(exchange);
+                status = "POST".equals(exchange.getRequestMethod()) ? 201 : 200;
+                body = response;
+            } catch (ApiException e) {
+                status = e.status;
+                body = "{\"error\":" + Json.quote(e.getMessage()) + "}";
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = "{\"error\":" + Json.quote(e.getMessage()) + "}";
+            } catch (RuntimeException e) {
+                System.out.println("API request " + exchange.getRequestURI() + " failed: " + e);
+                status = 500;
+                body = "{\"error\":\"Internal error\"}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = segments(exchange.getRequestURI().getRawPath());
+
+        if (path.length == 1 && path[0].equals("users")) {
+            requireMethod(method, "POST");
+            return createUser(readBody(exchange));
+        }
+        if (path.length == 1 && path[0].equals("groups")) {
+            requireMethod(method, "POST");
+            return createGroup(readBody(exchange));
+        }
+        if (path.length == 3 && path[0].equals("users")) {
+            User user = findUser(path[1]);
+            switch (path[2]) {
+                case "follow":
+                    requireMethod(method, "POST");
+                    return follow(user, readBody(exchange));
+                case "tweets":
+                    requireMethod(method, "POST");
+                    return postTweet(user, readBody(exchange));
+                case "timeline":
+                    requireMethod(method, "GET");
+                    return timeline(user, exchange.getRequestURI().getRawQuery());
+                default:
+                    break;
+            }
+        }
+        if (path.length == 3 && path[0].equals("groups") && path[2].equals("stats")) {
+            requireMethod(method, "GET");
+            return groupStats(findGroup(path[1]));
+        }
+        if (path.length >= 1 && path.length <= 2 && path[0].equals("stats")) {
+            requireMethod(method, "GET");
+            if (path.length == 1) {
+                return stats();
+            }
+            if (path[1].equals("analysis")) {
+                return analysis();
+            }
+        }
+        if (path.length == 1 && path[0].equals("trends")) {
+            requireMethod(method, "GET");
+            return trends(exchange.getRequestURI().getRawQuery());
+        }
+        if (path.length == 1 && path[0].equals("search")) {
+            requireMethod(method, "GET");
+            return search(exchange.getRequestURI().getRawQuery());
+        }
+        if (path.length == 1 && path[0].equals("metrics")) {
+            requireMethod(method, "GET");
+            return metrics();
+        }
+        throw new ApiException(404, "No such resource: " + exchange.getRequestURI().getPath());
+    }
+
+    private String createUser(Map<String, String> request) {
+        String userID = requireField(request, "id");
+        UserGroup group = findGroup(request.getOrDefault("group", UserRegistry.ROOT_GROUP_ID));
+        User user = registry.createUser(userID);
+        if (user == null) {
+            throw new ApiException(409, "User " + userID + " already exists");
+        }
+        group.addUserToGroup(user);
+        return "{\"id\":" + Json.quote(userID) + ",\"group\":" + Json.quote(group.getGroupID()) + "}";
+    }
+
+    private String createGroup(Map<String, String> request) {
+        String groupID = requireField(request, "id");
+        UserGroup parent = findGroup(request.getOrDefault("parent", UserRegistry.ROOT_GROUP_ID));
+        UserGroup group = registry.createGroup(groupID);
+        if (group == null) {
+            throw new ApiException(409, "Group " + groupID + " already exists");
+        }
+        parent.addSubGroup(group);
+        return "{\"id\":" + Json.quote(groupID) + ",\"parent\":" + Json.quote(parent.getGroupID()) + "}";
+    }
+
+    private String follow(User user, Map<String, String> request) {
+        User followee = findUser(requireField(request, "followee"));
+        if (followee == user) {
+            throw new ApiException(400, "A user cannot follow themselves");
+        }
+        boolean followed = user.follow(followee);
+        return "{\"follower\":" + Json.quote(user.getUserID()) + ",\"followee\":" + Json.quote(followee.getUserID())
+                + ",\"followed\":" + followed + "}";
+    }
+
+    private String postTweet(User user, Map<String, String> request) {
+        String message = requireField(request, "message");
+        Tweet tweet = user.postTweet(message);
+        return "{\"id\":" + tweet.getTweetID() + ",\"timestamp\":" + tweet.getTimestamp() + "}";
+    }
+
+    private String timeline(User user, String query) {
+        FeedPage page = user.getTimelinePage(cursorParameter(query), limitParameter(query));
+        return writePage("user", user.getUserID(), page);
+    }
+
+    private String trends(String query) {
+        String label = queryParameter(query, "window");
+        TrendTracker.Window window = TrendTracker.Window.fromLabel(label == null ? "5m" : label);
+        SentimentScore score = trendTracker.getSentiment(window);
+        StringBuilder out = new StringBuilder("{\"window\":").append(Json.quote(window.getLabel()))
+                .append(",\"tweets\":").append(trendTracker.getTweetCount(window))
+                .append(",\"words\":").append(score.getWords())
+                .append(",\"positiveHits\":").append(score.getPositiveHits())
+                .append(",\"negativeHits\":").append(score.getNegativeHits())
+                .append(",\"positivePercentage\":").append(score.getPositivePercentage())
+                .append(",\"terms\":[");
+        List<TrendTracker.Trend> trends = trendTracker.getTrends(window, limitParameter(query));
+        for (int i = 0; i < trends.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"term\":").append(Json.quote(trends.get(i).getTerm()))
+                    .append(",\"count\":").append(trends.get(i).getCount())
+                    .append('}');
+        }
+        return out.append("]}").toString();
+    }
+
+    private String search(String query) {
+        String text = queryParameter(query, "q");
+        if (text == null || text.isBlank()) {
+            throw new ApiException(400, "Missing parameter: q");
+        }
+        FeedPage page = searchIndex.search(text, cursorParameter(query), limitParameter(query));
+        return writePage("query", text, page);
+    }
+
+    /**
+     * Writes a page of tweets as {"key": value, "nextCursor": ..., "tweets": [...]}.
+     */
+    private static String writePage(String key, String value, FeedPage page) {
+        List<Tweet> tweets = page.getTweets();
+        StringBuilder out = new StringBuilder(64 + tweets.size() * 96);
+        out.append("{").append(Json.quote(key)).append(':').append(Json.quote(value));
+        if (page.hasMore()) {
+            out.append(",\"nextCursor\":").append(page.getNextCursor());
+        }
+        out.append(",\"tweets\":[");
+        for (int i = 0; i < tweets.size(); i++) {
+            Tweet tweet = tweets.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"id\":").append(tweet.getTweetID())
+                    .append(",\"author\":").append(Json.quote(tweet.getAuthorID()))
+                    .append(",\"message\":").append(Json.quote(tweet.getMessage()))
+                    .append(",\"timestamp\":").append(tweet.getTimestamp())
+                    .append('}');
+        }
+        return out.append("]}").toString();
+    }
+
+    private String stats() {
+        return "{\"users\":" + statistics.getTotalUsers()
+                + ",\"groups\":" + statistics.getTotalGroups()
+                + ",\"tweets\":" + statistics.getTotalTweets()
+                + ",\"words\":" + statistics.getTotalWords()
+                + ",\"positiveHits\":" + statistics.getTotalPositiveHits()
+                + ",\"negativeHits\":" + statistics.getTotalNegativeHits()
+                + ",\"positivePercentage\":" + statistics.getPositivePercentage() + "}";
+    }
+
+    private String groupStats(UserGroup group) {
+        return "{\"id\":" + Json.quote(group.getGroupID())
+                + ",\"users\":" + groupStatistics.getUserCount(group)
+                + ",\"tweets\":" + groupStatistics.getTweetCount(group)
+                + ",\"words\":" + groupStatistics.getWordCount(group)
+                + ",\"positiveHits\":" + groupStatistics.getPositiveHits(group)
+                + ",\"negativeHits\":" + groupStatistics.getNegativeHits(group)
+                + ",\"positivePercentage\":" + groupStatistics.getPositivePercentage(group) + "}";
+    }
+
+    private String analysis() {
+        SentimentScore score = tweetAnalyzer.scoreParallel(registry.getUsers());
+        return "{\"words\":" + score.getWords()
+                + ",\"positiveHits\":" + score.getPositiveHits()
+                + ",\"negativeHits\":" + score.getNegativeHits()
+                + ",\"positivePercentage\":" + score.getPositivePercentage() + "}";
+    }
+
+    private String metrics() {
+        Metrics metrics = Metrics.getInstance();
+        StringBuilder out = new StringBuilder(1024);
+        out.append("{\"histograms\":{");
+        List<Histogram> histograms = metrics.getHistograms();
+        for (int i = 0; i < histograms.size(); i++) {
+            Histogram histogram = histograms.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(Json.quote(histogram.getName()))
+                    .append(":{\"unit\":").append(Json.quote(histogram.getUnit()))
+                    .append(",\"count\":").append(histogram.getCount())
+                    .append(",\"mean\":").append(histogram.getMean())
+                    .append(",\"p50\":").append(histogram.getP50())
+                    .append(",\"p99\":").append(histogram.getP99())
+                    .append(",\"p999\":").append(histogram.getP999())
+                    .append(",\"max\":").append(histogram.getMax())
+                    .append('}');
+        }
+        out.append("},\"counters\":{");
+        List<Counter> counters = metrics.getCounters();
+        for (int i = 0; i < counters.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(Json.quote(counters.get(i).getName())).append(':').append(counters.get(i).getCount());
+        }
+        return out.append("}}").toString();
+    }
+
+    private User findUser(String userID) {
+        User user = registry.getUser(userID);
+        if (user == null) {
+            throw new ApiException(404, "User " + userID + " does not exist");
+        }
+        return user;
+    }
+
+    private UserGroup findGroup(String groupID) {
+        UserGroup group = groupID == null ? null : registry.getGroup(groupID);
+        if (group == null) {
+            throw new ApiException(404, "Group " + groupID + " does not exist");
+        }
+        return group;
+    }
+
+    private static int limitParameter(String query) {
+        String value = queryParameter(query, "limit");
+        if (value == null) {
+            return DEFAULT_TIMELINE_LIMIT;
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "limit must be a number");
+        }
+        if (limit <= 0 || limit > TimelineEngine.DEFAULT_CAPACITY) {
+            throw new ApiException(400, "limit must be between 1 and " + TimelineEngine.DEFAULT_CAPACITY);
+        }
+        return limit;
+    }
+
+    private static long cursorParameter(String query) {
+        String value = queryParameter(query, "cursor");
+        if (value == null) {
+            return FeedPage.FIRST_PAGE;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "cursor must be a number");
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String requireField(Map<String, String> request, String field) {
+        String value = request.get(field);
+        if (value == null || value.isEmpty()) {
+            throw new ApiException(400, "Missing field: " + field);
+        }
+        return value;
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!expected.equals(method)) {
+            throw new ApiException(405, "Use " + expected + " for this resource");
+        }
+    }
+
+    private static String[] segments(String rawPath) {
+        String trimmed = rawPath.replaceAll("^/+|/+$", "");
+        if (trimmed.isEmpty()) {
+            return new String[0];
+        }
+        String[] segments = trimmed.split("/+");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = URLDecoder.decode(segments[i], StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    private static String queryParameter(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An error reported to the client with an HTTP status code.
+     */
+    private static final class ApiException extends RuntimeException {
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
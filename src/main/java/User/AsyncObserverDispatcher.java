@@ -0,0 +1,257 @@
+package User;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The AsyncObserverDispatcher class delivers tweets to observers on a background executor.
+ * Each observer has its own bounded mailbox, drained by at most one task at a time, so tweets reach
+ * an observer in posting order and bursts are delivered as a single batched update call.
+ * When a mailbox is full, its overflow policy decides whether the poster blocks or a tweet is dropped.
+ * Mailboxes are keyed weakly and only hold their observer while tweets are waiting for it, so an
+ * observer registered weakly with a user can still be collected; its mailbox is dropped after that.
+ */
+public class AsyncObserverDispatcher implements ObserverDispatcher {
+
+    /**
+     * What to do when an observer's mailbox is full.
+     */
+    public enum OverflowPolicy {
+        /** Block the posting thread until the observer catches up. */
+        BLOCK,
+        /** Discard the tweet being posted. */
+        DROP_NEWEST,
+        /** Discard the oldest undelivered tweet to make room. */
+        DROP_OLDEST
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final AsyncObserverDispatcher instance = new AsyncObserverDispatcher(
+            ThreadPools.newVirtualThreadExecutor("observer-dispatch"),
+            DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, OverflowPolicy.DROP_OLDEST);
+
+    private final Executor executor;
+    private final int defaultCapacity;
+    private final int maxBatchSize;
+    private final OverflowPolicy defaultPolicy;
+    private final ConcurrentMap<ObserverKey, Mailbox> mailboxes;
+    private final ReferenceQueue<UserObserver> collected;
+    private final LongAdder dropped;
+
+    /**
+     * Constructor for the AsyncObserverDispatcher class.
+     *
+     * @param executor        The executor that runs observer updates.
+     * @param defaultCapacity The mailbox capacity for observers that are not configured explicitly.
+     * @param maxBatchSize    The maximum number of tweets passed to a single update call.
+     * @param defaultPolicy   The overflow policy for observers that are not configured explicitly.
+     */
+    public AsyncObserverDispatcher(Executor executor, int defaultCapacity, int maxBatchSize, OverflowPolicy defaultPolicy) {
+        this.executor = executor;
+        this.defaultCapacity = defaultCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.defaultPolicy = defaultPolicy;
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.collected = new ReferenceQueue<>();
+        this.dropped = new LongAdder();
+    }
+
+    /**
+     * Gets the dispatcher shared by all users by default.
+     *
+     * @return The shared AsyncObserverDispatcher instance.
+     */
+    public static AsyncObserverDispatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Sets the mailbox capacity and overflow policy for a single observer.
+     * Must be called before the observer receives its first tweet to take effect.
+     *
+     * @param observer The observer to configure.
+     * @param capacity The maximum number of undelivered tweets held for the observer.
+     * @param policy   What to do when the mailbox is full.
+     */
+    public void configure(UserObserver observer, int capacity, OverflowPolicy policy) {
+        expungeCollected();
+        mailboxes.putIfAbsent(new ObserverKey(observer, collected), new Mailbox(capacity, policy));
+    }
+
+    /**
+     * Stops tracking an observer, discarding any tweets not yet delivered to it.
+     *
+     * @param observer The observer to forget.
+     */
+    public void forget(UserObserver observer) {
+        mailboxes.remove(new ObserverKey(observer, null));
+    }
+
+    /**
+     * Queues a tweet for an observer and schedules delivery if none is pending.
+     *
+     * @param observer The observer to be notified.
+     * @param tweet    The new tweet message.
+     */
+    @Override
+    public void dispatch(UserObserver observer, String tweet) {
+        expungeCollected();
+        mailboxes.computeIfAbsent(new ObserverKey(observer, collected),
+                key -> new Mailbox(defaultCapacity, defaultPolicy)).offer(observer, tweet);
+    }
+
+    /**
+     * Gets the number of tweets dropped because an observer's mailbox was full.
+     *
+     * @return The total number of dropped tweets.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Drops the mailboxes of observers that have been garbage collected.
+     */
+    private void expungeCollected() {
+        Reference<? extends UserObserver> key;
+        while ((key = collected.poll()) != null) {
+            mailboxes.remove(key);
+        }
+    }
+
+    /**
+     * A weak reference to an observer, equal to any other reference to the same observer while it is
+     * alive, and only to itself once it has been collected.
+     */
+    private static final class ObserverKey extends WeakReference<UserObserver> {
+        private final int hash;
+
+        ObserverKey(UserObserver observer, ReferenceQueue<UserObserver> queue) {
+            super(observer, queue);
+            this.hash = System.identityHashCode(observer);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ObserverKey key)) {
+                return false;
+            }
+            UserObserver observer = get();
+            return observer != null && observer == key.get();
+        }
+    }
+
+    /**
+     * A bounded queue of tweets waiting to be delivered to one observer.
+     */
+    private final class Mailbox implements Runnable {
+        private final BlockingQueue<String> queue;
+        private final OverflowPolicy policy;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private UserObserver observer; // Only held while tweets are waiting, guarded by this
+        private int waiting; // Tweets offered but not yet delivered or dropped, guarded by this
+
+        Mailbox(int capacity, OverflowPolicy policy) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.policy = policy;
+        }
+
+        void offer(UserObserver target, String tweet) {
+            synchronized (this) {
+                observer = target;
+                waiting++;
+            }
+            switch (policy) {
+                case BLOCK:
+                    try {
+                        queue.put(tweet);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.increment();
+                        settle(1);
+                    }
+                    break;
+                case DROP_NEWEST:
+                    if (!queue.offer(tweet)) {
+                        dropped.increment();
+                        settle(1);
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(tweet)) {
+                        if (queue.poll() != null) {
+                            dropped.increment();
+                            settle(1);
+                        }
+                    }
+                    break;
+            }
+            schedule();
+        }
+
+        /**
+         * Counts tweets as delivered or dropped, letting go of the observer once none are waiting.
+         */
+        private synchronized void settle(int count) {
+            waiting -= count;
+            if (waiting == 0) {
+                observer = null;
+            }
+        }
+
+        private synchronized UserObserver observer() {
+            return observer;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<String> batch = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+                queue.drainTo(batch, maxBatchSize);
+                if (!batch.isEmpty()) {
+                    long start = System.nanoTime();
+                    try {
+                        observer().update(batch);
+                    } finally {
+                        settle(batch.size());
+                    }
+                    Metrics metrics = Metrics.getInstance();
+                    metrics.getObserverDispatch().recordSince(start);
+                    metrics.getObserverUpdates().increment();
+                }
+            } finally {
+                scheduled.set(false);
+                // Pick up tweets that arrived during the update, or that did not fit in this batch
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
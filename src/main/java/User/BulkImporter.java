@@ -0,0 +1,491 @@
+package User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The BulkImporter class loads users, groups, follow edges and tweets from large CSV or NDJSON files.
+ * The file is read through a FileChannel in large chunks cut at line boundaries. Chunks are decoded,
+ * parsed and validated in parallel, while the importing thread applies the parsed records to the model
+ * strictly in file order, so a record may refer to anything defined on an earlier line.
+ *
+ * <p>Records are applied through the normal model operations, so listeners such as Statistics and the
+ * EventLog still see every change, but nothing is printed per record and no view is touched: callers
+ * refresh their views once when the import returns. When an EventLog is given, the whole import is run
+ * as one EventLog batch, so records are forced to disk together instead of one fsync per record.
+ *
+ * <pre>
+ * CSV (an optional header line starting with "type," is skipped; fields may be double-quoted)
+ *   user,alice[,group]             create a user in a group (defaults to Root)
+ *   group,Students[,parent]        create a group in a parent group (defaults to Root)
+ *   follow,alice,bob               alice follows bob
+ *   tweet,alice,Hello, world       alice posts a tweet; an unquoted message runs to the end of the line
+ * NDJSON (one flat object per line)
+ *   {"type":"user","id":"alice","group":"Students"}
+ *   {"type":"group","id":"Students","parent":"Root"}
+ *   {"type":"follow","follower":"alice","followee":"bob"}
+ *   {"type":"tweet","author":"alice","message":"Hello, world"}
+ * </pre>
+ */
+public class BulkImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private static final byte INVALID = 0;
+    private static final byte USER = 1;
+    private static final byte GROUP = 2;
+    private static final byte FOLLOW = 3;
+    private static final byte TWEET = 4;
+
+    /**
+     * The record formats the importer reads.
+     */
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private final UserRegistry registry;
+    private final EventLog eventLog;
+    private final int chunkSize;
+
+    /**
+     * Constructor for the BulkImporter class.
+     *
+     * @param registry  The registry to import into.
+     * @param eventLog  The event log recording the model, or null if persistence is disabled.
+     * @param chunkSize The number of bytes read from the file at a time.
+     */
+    public BulkImporter(UserRegistry registry, EventLog eventLog, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.registry = registry;
+        this.eventLog = eventLog;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Constructor for the BulkImporter class with the default chunk size.
+     *
+     * @param registry The registry to import into.
+     * @param eventLog The event log recording the model, or null if persistence is disabled.
+     */
+    public BulkImporter(UserRegistry registry, EventLog eventLog) {
+        this(registry, eventLog, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Gets the format of a file from its extension: .csv for CSV, and .ndjson, .jsonl or .json for NDJSON.
+     *
+     * @param file The file to be imported.
+     * @return The format of the file.
+     * @throws IllegalArgumentException If the extension is not recognized.
+     */
+    public static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return Format.NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported import file: " + file.getFileName());
+    }
+
+    /**
+     * Imports a file, choosing the format from its extension.
+     *
+     * @param file The file to be imported.
+     * @return The counts of applied and rejected records.
+     * @throws IOException If the file cannot be read or the event log cannot be written.
+     */
+    public ImportResult importFile(Path file) throws IOException {
+        return importFile(file, formatOf(file));
+    }
+
+    /**
+     * Imports a file in the given format.
+     *
+     * @param file   The file to be imported.
+     * @param format The format of the file.
+     * @return The counts of applied and rejected records.
+     * @throws IOException If the file cannot be read or the event log cannot be written.
+     */
+    public ImportResult importFile(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        ImportResult result = new ImportResult();
+        try {
+            if (eventLog == null) {
+                run(file, format, result);
+            } else {
+                eventLog.runBatch(() -> run(file, format, result));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Reads the file chunk by chunk, keeping a bounded number of chunks parsing ahead of the one being applied.
+     */
+    private void run(Path file, Format format, ImportResult result) {
+        int parallelism = Runtime.getRuntime().availableProcessors() + 1;
+        ArrayDeque<CompletableFuture<Chunk>> parsing = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+            boolean first = true;
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buffer) < 0;
+                buffer.flip();
+                int end = eof ? buffer.limit() : lastLineEnd(buffer);
+                if (end == 0 && !eof) {
+                    // No complete line yet; keep reading, growing the buffer for a line longer than a chunk
+                    buffer.position(buffer.limit());
+                    buffer.limit(buffer.capacity());
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2).put(buffer);
+                    }
+                    continue;
+                }
+                byte[] bytes = new byte[end];
+                buffer.get(bytes);
+                buffer.compact();
+                if (bytes.length > 0) {
+                    boolean skipHeader = first;
+                    parsing.add(CompletableFuture.supplyAsync(() -> parse(bytes, format, skipHeader)));
+                    first = false;
+                }
+                if (parsing.size() >= parallelism) {
+                    apply(join(parsing.poll()), result);
+                }
+            }
+            while (!parsing.isEmpty()) {
+                apply(join(parsing.poll()), result);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the records of a parsed chunk to the model, in file order. New users are placed in their
+     * groups at the end of the chunk, one batch per group, since group member lists are copy-on-write.
+     */
+    private void apply(Chunk chunk, ImportResult result) {
+        long firstLine = result.getLines() + 1;
+        Map<UserGroup, List<User>> joining = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.count; i++) {
+            String problem = apply(chunk.kinds[i], chunk.first[i], chunk.second[i], joining, result);
+            if (problem != null) {
+                result.reject(firstLine + chunk.lines[i], problem);
+            }
+        }
+        for (Map.Entry<UserGroup, List<User>> entry : joining.entrySet()) {
+            int added = entry.getKey().addUsersToGroup(entry.getValue());
+            if (entry.getKey() != registry.getRootGroup()) {
+                result.addMemberships(added);
+            }
+        }
+        result.addLines(chunk.lineCount);
+    }
+
+    /**
+     * Applies a single record.
+     *
+     * @return Null if the record was applied, otherwise the reason it was rejected.
+     */
+    private String apply(byte kind, String first, String second, Map<UserGroup, List<User>> joining,
+                         ImportResult result) {
+        switch (kind) {
+            case USER: {
+                UserGroup group = second == null ? registry.getRootGroup() : registry.getGroup(second);
+                if (group == null) {
+                    return "Group " + second + " does not exist";
+                }
+                User user = registry.createUser(first);
+                if (user == null) {
+                    return "User " + first + " already exists";
+                }
+                joining.computeIfAbsent(group, g -> new ArrayList<>()).add(user);
+                result.addUser();
+                return null;
+            }
+            case GROUP: {
+                UserGroup parent = second == null ? registry.getRootGroup() : registry.getGroup(second);
+                if (parent == null) {
+                    return "Group " + second + " does not exist";
+                }
+                UserGroup group = registry.createGroup(first);
+                if (group == null) {
+                    return "Group " + first + " already exists";
+                }
+                parent.addSubGroup(group);
+                result.addGroup();
+                return null;
+            }
+            case FOLLOW: {
+                User follower = registry.getUser(first);
+                User followee = registry.getUser(second);
+                if (follower == null || followee == null) {
+                    return "User " + (follower == null ? first : second) + " does not exist";
+                }
+                if (!follower.follow(followee)) {
+                    return "User " + first + " already follows " + second;
+                }
+                result.addFollow();
+                return null;
+            }
+            case TWEET: {
+                User author = registry.getUser(first);
+                if (author == null) {
+                    return "User " + first + " does not exist";
+                }
+                author.postTweet(second);
+                result.addTweet();
+                return null;
+            }
+            default:
+                return first; // The parser's reason for rejecting the line
+        }
+    }
+
+    /**
+     * Decodes and parses a chunk of complete lines. Runs on a pool thread, so it must not touch the model.
+     */
+    private static Chunk parse(byte[] bytes, Format format, boolean skipHeader) {
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        Chunk chunk = new Chunk();
+        int start = 0;
+        if (skipHeader && text.startsWith("\uFEFF")) {
+            start = 1; // Byte order mark
+        }
+        int line = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            int next = end < 0 ? text.length() : end + 1;
+            if (end < 0) {
+                end = text.length();
+            }
+            if (end > start && text.charAt(end - 1) == '\r') {
+                end--;
+            }
+            boolean header = skipHeader && line == 0 && format == Format.CSV && text.startsWith("type,", start);
+            if (end > start && !header && !isBlank(text, start, end)) {
+                try {
+                    if (format == Format.CSV) {
+                        parseCsv(text, start, end, chunk, line);
+                    } else {
+                        parseJson(text.substring(start, end), chunk, line);
+                    }
+                } catch (IllegalArgumentException e) {
+                    chunk.add(INVALID, e.getMessage(), null, line);
+                }
+            }
+            line++;
+            start = next;
+        }
+        chunk.lineCount = line;
+        return chunk;
+    }
+
+    private static void parseCsv(String text, int start, int end, Chunk chunk, int line) {
+        int[] pos = {start};
+        String type = readCsvField(text, pos, end, false);
+        switch (type) {
+            case "user":
+            case "group": {
+                String id = requireID(readCsvField(text, pos, end, false), type);
+                String parent = pos[0] <= end ? readCsvField(text, pos, end, false) : null;
+                chunk.add(type.equals("user") ? USER : GROUP, id, optionalID(parent), line);
+                break;
+            }
+            case "follow": {
+                String follower = requireID(readCsvField(text, pos, end, false), "follower");
+                String followee = requireID(readCsvField(text, pos, end, false), "followee");
+                addFollow(chunk, follower, followee, line);
+                break;
+            }
+            case "tweet": {
+                String author = requireID(readCsvField(text, pos, end, false), "author");
+                String message = readCsvField(text, pos, end, true);
+                addTweet(chunk, author, message, line);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown record type: " + type);
+        }
+        if (pos[0] <= end) {
+            throw new IllegalArgumentException("Too many fields for a " + type + " record");
+        }
+    }
+
+    /**
+     * Reads the CSV field at pos[0] and moves pos[0] past the comma that ends it, or past end if it was
+     * the last field. If rest is true and the field is not quoted, the field runs to the end of the line.
+     */
+    private static String readCsvField(String text, int[] pos, int end, boolean rest) {
+        int start = pos[0];
+        if (start > end) {
+            throw new IllegalArgumentException("Missing field");
+        }
+        if (start < end && text.charAt(start) == '"') {
+            StringBuilder field = new StringBuilder();
+            int i = start + 1;
+            while (true) {
+                if (i >= end) {
+                    throw new IllegalArgumentException("Unterminated quoted field");
+                }
+                char c = text.charAt(i++);
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < end && text.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (i < end && text.charAt(i) != ',') {
+                throw new IllegalArgumentException("Unexpected text after quoted field");
+            }
+            pos[0] = i + 1;
+            return field.toString();
+        }
+        int comma = rest ? -1 : text.indexOf(',', start);
+        if (comma < 0 || comma >= end) {
+            pos[0] = end + 1;
+            return text.substring(start, end);
+        }
+        pos[0] = comma + 1;
+        return text.substring(start, comma);
+    }
+
+    private static void parseJson(String line, Chunk chunk, int lineNumber) {
+        Map<String, String> fields = Json.parseObject(line);
+        String type = fields.get("type");
+        if (type == null) {
+            throw new IllegalArgumentException("Missing field: type");
+        }
+        switch (type) {
+            case "user":
+                chunk.add(USER, requireID(fields.get("id"), "id"), optionalID(fields.get("group")), lineNumber);
+                break;
+            case "group":
+                chunk.add(GROUP, requireID(fields.get("id"), "id"), optionalID(fields.get("parent")), lineNumber);
+                break;
+            case "follow":
+                addFollow(chunk, requireID(fields.get("follower"), "follower"),
+                        requireID(fields.get("followee"), "followee"), lineNumber);
+                break;
+            case "tweet":
+                addTweet(chunk, requireID(fields.get("author"), "author"), fields.get("message"), lineNumber);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record type: " + type);
+        }
+    }
+
+    private static void addFollow(Chunk chunk, String follower, String followee, int line) {
+        if (follower.equals(followee)) {
+            throw new IllegalArgumentException("User " + follower + " cannot follow themselves");
+        }
+        chunk.add(FOLLOW, follower, followee, line);
+    }
+
+    private static void addTweet(Chunk chunk, String author, String message, int line) {
+        if (message == null || message.isEmpty()) {
+            throw new IllegalArgumentException("Missing field: message");
+        }
+        chunk.add(TWEET, author, message, line);
+    }
+
+    private static String requireID(String id, String field) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Missing field: " + field);
+        }
+        if (!id.equals(id.trim())) {
+            throw new IllegalArgumentException("Field " + field + " has leading or trailing spaces");
+        }
+        return id;
+    }
+
+    private static String optionalID(String id) {
+        return id == null || id.isEmpty() ? null : requireID(id, "group");
+    }
+
+    private static boolean isBlank(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the end of the last complete line in the buffer, or 0 if there is none.
+     */
+    private static int lastLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The parsed records of one chunk, held in parallel arrays.
+     */
+    private static final class Chunk {
+        byte[] kinds = new byte[1024];
+        String[] first = new String[1024];
+        String[] second = new String[1024];
+        int[] lines = new int[1024]; // Line within the chunk, from 0
+        int count;
+        int lineCount;
+
+        void add(byte kind, String a, String b, int line) {
+            if (count == kinds.length) {
+                kinds = Arrays.copyOf(kinds, count * 2);
+                first = Arrays.copyOf(first, count * 2);
+                second = Arrays.copyOf(second, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+            }
+            kinds[count] = kind;
+            first[count] = a;
+            second[count] = b;
+            lines[count] = line;
+            count++;
+        }
+    }
+}
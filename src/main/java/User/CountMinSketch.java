@@ -0,0 +1,119 @@
+package User;
+
+import java.util.Arrays;
+
+/**
+ * The CountMinSketch class estimates how often each item was added using a fixed amount of memory,
+ * however many distinct items there are. Each of DEPTH rows maps an item to one counter; an estimate
+ * is the smallest of the item's counters, so it never undercounts, and overcounts by at most about
+ * e / width of the total count with high probability.
+ *
+ * <p>Items are given as 64-bit hashes from {@link #hash(String)} so callers adding one item to
+ * several sketches hash it only once. Sketches of the same width can be subtracted, which lets a
+ * sliding window drop an expired time slice from its running total. Not thread-safe.
+ */
+public class CountMinSketch {
+    public static final int DEPTH = 4;
+
+    private final int width;
+    private final int mask;
+    private final int[] counts; // DEPTH rows of width counters
+
+    /**
+     * Constructor for the CountMinSketch class.
+     *
+     * @param width The number of counters per row; must be a power of two.
+     */
+    public CountMinSketch(int width) {
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two: " + width);
+        }
+        this.width = width;
+        this.mask = width - 1;
+        this.counts = new int[DEPTH * width];
+    }
+
+    /**
+     * Hashes an item for use with add and estimate.
+     *
+     * @param item The item.
+     * @return The item's 64-bit hash.
+     */
+    public static long hash(String item) {
+        long h = item.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Adds to an item's count.
+     *
+     * @param hash  The item's hash.
+     * @param count The amount to add.
+     * @return The item's new estimated count.
+     */
+    public int add(long hash, int count) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            estimate = Math.min(estimate, counts[index] += count);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates an item's count.
+     *
+     * @param hash The item's hash.
+     * @return The estimated count, which is never less than the true count.
+     */
+    public int estimate(long hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counts[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Subtracts the counts of another sketch, which must have been filled only with items also added
+     * to this one.
+     *
+     * @param other A sketch of the same width.
+     */
+    public void subtract(CountMinSketch other) {
+        if (other.width != width) {
+            throw new IllegalArgumentException("Sketch widths differ: " + other.width + " and " + width);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= other.counts[i];
+        }
+    }
+
+    /**
+     * Resets every count to zero.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Picks an item's counter in a row. Rows are rehashed separately, since deriving them all from
+     * two hashes makes items that collide in one row likely to collide in every row at small widths.
+     */
+    private int index(long hash, int row) {
+        long h = hash + (row + 1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return row * width + ((int) (h >>> 40) & mask);
+    }
+
+    /**
+     * Gets the memory used by the counters.
+     *
+     * @return The size in bytes.
+     */
+    public long getBytes() {
+        return counts.length * 4L;
+    }
+}
@@ -0,0 +1,56 @@
+package User;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Counter class is a named event counter. It is backed by a LongAdder, so threads incrementing it
+ * concurrently do not contend on a single memory location.
+ */
+public class Counter implements CounterMXBean {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructor for the Counter class.
+     *
+     * @param name The metric name, for example "tweets.posted".
+     */
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the metric name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount The amount to be added.
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+}
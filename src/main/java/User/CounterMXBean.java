@@ -0,0 +1,19 @@
+package User;
+
+/**
+ * The CounterMXBean interface is the JMX view of a Counter.
+ */
+public interface CounterMXBean {
+
+    /**
+     * Gets the current count.
+     *
+     * @return The count.
+     */
+    long getCount();
+
+    /**
+     * Sets the count back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,56 @@
+package User;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The EdtMonitor class measures how long the Swing event dispatch thread takes to get to new work.
+ * A background thread posts a probe task to the event queue at a fixed interval and records how long
+ * it waited before running into the edt.stall histogram. A new probe is only posted once the previous
+ * one has run, so a blocked event thread is not flooded with probes.
+ */
+public final class EdtMonitor {
+    public static final long PROBE_INTERVAL_MILLIS = 100;
+    public static final long STALL_THRESHOLD_MILLIS = 100;
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean probePending = new AtomicBoolean();
+
+    private EdtMonitor() {
+    }
+
+    /**
+     * Starts probing the event dispatch thread. Calling it again does nothing.
+     */
+    public static void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "edt-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(EdtMonitor::probe, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static void probe() {
+        if (!probePending.compareAndSet(false, true)) {
+            return; // The last probe has not run yet; it will record the whole delay
+        }
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            long delay = System.nanoTime() - posted;
+            Metrics metrics = Metrics.getInstance();
+            metrics.getEdtStall().record(delay);
+            if (delay > TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD_MILLIS)) {
+                metrics.getEdtStalls().increment();
+            }
+            probePending.set(false);
+        });
+    }
+}
@@ -0,0 +1,656 @@
+package User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The EventLog class makes the domain model durable by appending every mutation to a binary log.
+ * Each record is length-prefixed and checksummed. Records are buffered and written by a committer
+ * thread, which forces the file to disk once per batch (group commit), so many concurrent mutations
+ * share a single fsync. Records are buffered while the model's locks are held, and a mutation waits
+ * for its record to reach the disk only in changeCompleted, after those locks are released, so a
+ * slow disk never holds up other users or the group hierarchy. Every snapshotInterval events, the log starts a new segment and a background
+ * thread writes a ModelSnapshot of the whole model, so startup only loads the latest snapshot and
+ * replays the tail. If a snapshot fails, the log keeps all its segments and tries again after another
+ * snapshotInterval events.
+ *
+ * Snapshots read the live model while other threads may keep changing it, so a change made during a
+ * snapshot can end up both in the snapshot and in the log after it. Replay is idempotent: users,
+ * groups, memberships and follow edges that already exist are left alone, and tweets already in the
+ * TweetStore are not restored twice.
+ */
+public class EventLog implements ModelListener, Closeable {
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 1_000_000;
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SEGMENT_MAGIC = 0x8E4C4F47; // Starts every segment
+
+    private static final byte USER_CREATED = 1;
+    private static final byte GROUP_CREATED = 2;
+    private static final byte USER_ADDED_TO_GROUP = 3;
+    private static final byte USER_REMOVED_FROM_GROUP = 4;
+    private static final byte USER_MOVED = 5;
+    private static final byte SUBGROUP_ADDED = 6;
+    private static final byte SUBGROUP_REMOVED = 7;
+    private static final byte FOLLOWED = 8;
+    private static final byte UNFOLLOWED = 9;
+    private static final byte TWEET_POSTED = 10;
+
+    private final Path directory;
+    private final UserRegistry registry;
+    private final boolean waitForSync;
+    private final long snapshotInterval;
+    private final Object lock = new Object(); // Guards the fields below
+    private final Object channelLock = new Object(); // Guards writes to the current segment
+    private final Object snapshotLock = new Object(); // Only one snapshot is written at a time
+    private final ByteArrayOutputStream pending;
+    private final ByteArrayOutputStream recordBuffer;
+    private final DataOutputStream recordOut;
+    private final Thread committer;
+    private final ExecutorService snapshotter;
+    private FileChannel channel;
+    private long nextSeq;
+    private long durableSeq;
+    private long eventsSinceSnapshot;
+    private boolean snapshotScheduled;
+    private boolean closed;
+    private IOException failure;
+    private final ThreadLocal<Boolean> inBatch = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    // The sequence number of the last record appended by each thread
+    private final ThreadLocal<long[]> appendedSeq = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Opens the event log in a directory, first rebuilding the model from the latest snapshot and log tail.
+     * The returned log must be registered with ModelEvents.addListener to start recording.
+     *
+     * @param directory        The directory holding snapshots and log segments; created if missing.
+     * @param registry         The empty registry to rebuild the model into.
+     * @param waitForSync      Whether each mutation waits until its record has been forced to disk.
+     * @param snapshotInterval The number of events between automatic snapshots.
+     * @return The opened event log.
+     * @throws IOException If the directory cannot be read or the log cannot be created.
+     */
+    public static EventLog open(Path directory, UserRegistry registry, boolean waitForSync, long snapshotInterval)
+            throws IOException {
+        Files.createDirectories(directory);
+        long lastSeq = recover(directory, registry);
+        return new EventLog(directory, registry, waitForSync, snapshotInterval, lastSeq + 1);
+    }
+
+    /**
+     * Opens the event log with durable commits and the default snapshot interval.
+     *
+     * @param directory The directory holding snapshots and log segments; created if missing.
+     * @param registry  The empty registry to rebuild the model into.
+     * @return The opened event log.
+     * @throws IOException If the directory cannot be read or the log cannot be created.
+     */
+    public static EventLog open(Path directory, UserRegistry registry) throws IOException {
+        return open(directory, registry, true, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    private EventLog(Path directory, UserRegistry registry, boolean waitForSync, long snapshotInterval, long nextSeq)
+            throws IOException {
+        this.directory = directory;
+        this.registry = registry;
+        this.waitForSync = waitForSync;
+        this.snapshotInterval = snapshotInterval;
+        this.pending = new ByteArrayOutputStream(64 * 1024);
+        this.recordBuffer = new ByteArrayOutputStream(256);
+        this.recordOut = new DataOutputStream(recordBuffer);
+        this.nextSeq = nextSeq;
+        this.durableSeq = nextSeq - 1;
+        this.channel = openSegment(nextSeq);
+        this.committer = new Thread(this::commitLoop, "event-log-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+        this.snapshotter = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "event-log-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void userCreated(User user) {
+        append(USER_CREATED, user.getUserID(), null, null);
+    }
+
+    @Override
+    public void groupCreated(UserGroup group) {
+        append(GROUP_CREATED, group.getGroupID(), null, null);
+    }
+
+    @Override
+    public void userAddedToGroup(UserGroup group, User user) {
+        append(USER_ADDED_TO_GROUP, group.getGroupID(), user.getUserID(), null);
+    }
+
+    @Override
+    public void userRemovedFromGroup(UserGroup group, User user) {
+        append(USER_REMOVED_FROM_GROUP, group.getGroupID(), user.getUserID(), null);
+    }
+
+    @Override
+    public void userMoved(User user, UserGroup from, UserGroup to) {
+        append(USER_MOVED, user.getUserID(), from.getGroupID(), to.getGroupID());
+    }
+
+    @Override
+    public void subGroupAdded(UserGroup parent, UserGroup subGroup) {
+        append(SUBGROUP_ADDED, parent.getGroupID(), subGroup.getGroupID(), null);
+    }
+
+    @Override
+    public void subGroupRemoved(UserGroup parent, UserGroup subGroup) {
+        append(SUBGROUP_REMOVED, parent.getGroupID(), subGroup.getGroupID(), null);
+    }
+
+    @Override
+    public void followed(User follower, User followee) {
+        append(FOLLOWED, follower.getUserID(), followee.getUserID(), null);
+    }
+
+    @Override
+    public void unfollowed(User follower, User followee) {
+        append(UNFOLLOWED, follower.getUserID(), followee.getUserID(), null);
+    }
+
+    @Override
+    public void tweetPosted(User author, Tweet tweet) {
+        append(TWEET_POSTED, author.getUserID(), tweet.getMessage(), tweet);
+    }
+
+    /**
+     * Waits until the records appended by this thread are on disk, unless the log does not wait for
+     * syncs or the thread is running a batch.
+     */
+    @Override
+    public void changeCompleted() {
+        if (!waitForSync || inBatch.get()) {
+            return;
+        }
+        long seq = appendedSeq.get()[0];
+        synchronized (lock) {
+            try {
+                while (durableSeq < seq && failure == null) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                checkFailure();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Starts a new log segment and writes a snapshot of the whole model on the calling thread.
+     * Other threads keep changing the model meanwhile. Older segments and snapshots are deleted
+     * once the new snapshot is on disk.
+     *
+     * @throws IOException If the snapshot or the new segment cannot be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long lastSeq;
+            synchronized (lock) {
+                checkFailure();
+                if (closed) {
+                    throw new IOException("Event log is closed");
+                }
+                lastSeq = nextSeq - 1;
+                synchronized (channelLock) {
+                    writePending(lastSeq);
+                    channel.close();
+                    channel = openSegment(nextSeq);
+                }
+                eventsSinceSnapshot = 0;
+            }
+            Path snapshot = directory.resolve(SNAPSHOT_PREFIX + lastSeq + SNAPSHOT_SUFFIX);
+            ModelSnapshot.write(registry, lastSeq, snapshot);
+            deleteOlderThan(lastSeq + 1);
+        }
+    }
+
+    /**
+     * Runs a bulk change on the current thread without waiting for each of its records to reach the disk,
+     * then waits once until all of them have. Mutations made by other threads keep waiting as usual.
+     *
+     * @param batch The changes to make.
+     * @throws IOException If the records could not be written.
+     */
+    public void runBatch(Runnable batch) throws IOException {
+        if (inBatch.get()) {
+            batch.run();
+            return;
+        }
+        inBatch.set(Boolean.TRUE);
+        try {
+            batch.run();
+        } finally {
+            inBatch.set(Boolean.FALSE);
+        }
+        synchronized (lock) {
+            long lastSeq = nextSeq - 1;
+            try {
+                while (waitForSync && durableSeq < lastSeq && failure == null && !closed) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            checkFailure();
+        }
+    }
+
+    /**
+     * Flushes all buffered records to disk and stops the committer thread.
+     *
+     * @throws IOException If the remaining records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        snapshotter.shutdown();
+        try {
+            // A snapshot already being written is finished, so its segments can be deleted
+            snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            channel.close();
+        }
+        synchronized (lock) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Buffers a record for the committer thread; changeCompleted waits until it is on disk.
+     */
+    private void append(byte type, String first, String second, Object extra) {
+        synchronized (lock) {
+            try {
+                checkFailure();
+                if (closed) {
+                    throw new IOException("Event log is closed");
+                }
+                long seq = nextSeq++;
+                recordBuffer.reset();
+                recordOut.writeLong(seq);
+                recordOut.writeByte(type);
+                writeString(recordOut, first);
+                if (second != null) {
+                    writeString(recordOut, second);
+                }
+                if (type == USER_MOVED) {
+                    writeString(recordOut, (String) extra);
+                } else if (type == TWEET_POSTED) {
+                    Tweet tweet = (Tweet) extra;
+                    recordOut.writeLong(tweet.getTweetID());
+                    recordOut.writeLong(tweet.getTimestamp());
+                }
+                writeFramed(recordBuffer, pending);
+                appendedSeq.get()[0] = seq;
+                lock.notifyAll();
+                if (++eventsSinceSnapshot >= snapshotInterval && !snapshotScheduled) {
+                    snapshotScheduled = true;
+                    snapshotter.execute(this::snapshotInBackground);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot on the snapshot thread. On failure the old snapshot and every segment since
+     * are kept, and the next attempt waits for another snapshotInterval events.
+     */
+    private void snapshotInBackground() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            synchronized (lock) {
+                if (closed) {
+                    return; // Closed first; the log is replayed in full on open instead
+                }
+            }
+            System.out.println("Could not write a snapshot, the event log is kept in full: " + e.getMessage());
+        } finally {
+            synchronized (lock) {
+                snapshotScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Writes batches of buffered records and forces them to disk until the log is closed.
+     */
+    private void commitLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSeq;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return; // Closed and fully flushed
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchSeq = nextSeq - 1;
+            }
+            try {
+                synchronized (channelLock) {
+                    writeFully(channel, batch);
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                durableSeq = Math.max(durableSeq, batchSeq);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes any buffered records directly; the caller holds both locks.
+     */
+    private void writePending(long lastSeq) throws IOException {
+        if (pending.size() > 0) {
+            writeFully(channel, pending.toByteArray());
+            pending.reset();
+        }
+        channel.force(false);
+        durableSeq = lastSeq;
+        lock.notifyAll();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Event log write failed", failure);
+        }
+    }
+
+    private FileChannel openSegment(long firstSeq) throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (segmentChannel.size() == 0) {
+            writeFully(segmentChannel, ByteBuffer.allocate(4).putInt(SEGMENT_MAGIC).array());
+        }
+        return segmentChannel;
+    }
+
+    /**
+     * Deletes segments and snapshots that are fully covered by the snapshot ending before firstSeq.
+     */
+    private void deleteOlderThan(long firstSeq) throws IOException {
+        for (Path file : list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (sequenceOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX) < firstSeq) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path file : list(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < firstSeq - 1) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Loads the latest snapshot into the registry and replays every later record.
+     *
+     * @return The sequence number of the last recovered event.
+     */
+    private static long recover(Path directory, UserRegistry registry) throws IOException {
+        long lastSeq = 0;
+        Path latestSnapshot = null;
+        for (Path file : list(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (latestSnapshot == null || sequenceOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)
+                    > sequenceOf(latestSnapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                latestSnapshot = file;
+            }
+        }
+        if (latestSnapshot != null) {
+            ModelSnapshot snapshot = ModelSnapshot.read(latestSnapshot, registry);
+            lastSeq = snapshot.getLastSeq();
+        }
+
+        List<Path> segments = list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        segments.sort((a, b) -> Long.compare(sequenceOf(a, SEGMENT_PREFIX, SEGMENT_SUFFIX),
+                sequenceOf(b, SEGMENT_PREFIX, SEGMENT_SUFFIX)));
+        for (Path segment : segments) {
+            lastSeq = replay(segment, registry, lastSeq);
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Applies the records of one segment that come after lastSeq, truncating a torn final record. A
+     * segment too short to hold SEGMENT_MAGIC was torn while it was created, and is emptied so the
+     * magic is written again when it is reopened.
+     *
+     * @return The sequence number of the last applied record.
+     */
+    private static long replay(Path segment, UserRegistry registry, long lastSeq) throws IOException {
+        byte[] data = Files.readAllBytes(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        CRC32 crc = new CRC32();
+        int validLength = 0;
+        if (data.length >= 4) {
+            if (buffer.getInt() != SEGMENT_MAGIC) {
+                throw new IOException("Not an event log segment: " + segment);
+            }
+            validLength = buffer.position();
+        }
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data, buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            validLength = buffer.position();
+
+            long seq = in.readLong();
+            if (seq > lastSeq) {
+                apply(in, registry);
+                lastSeq = seq;
+            }
+        }
+        if (validLength < data.length) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return lastSeq;
+    }
+
+    private static void apply(DataInputStream in, UserRegistry registry) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case USER_CREATED:
+                registry.createUser(readString(in));
+                break;
+            case GROUP_CREATED:
+                registry.createGroup(readString(in));
+                break;
+            case USER_ADDED_TO_GROUP: {
+                UserGroup group = registry.getGroup(readString(in));
+                User user = registry.getUser(readString(in));
+                if (group != null && user != null && !GroupMembership.getInstance().isPlaced(user)) {
+                    group.addUserToGroup(user);
+                }
+                break;
+            }
+            case USER_REMOVED_FROM_GROUP: {
+                UserGroup group = registry.getGroup(readString(in));
+                User user = registry.getUser(readString(in));
+                if (group != null && user != null) {
+                    group.removeUserFromGroup(user);
+                }
+                break;
+            }
+            case USER_MOVED: {
+                User user = registry.getUser(readString(in));
+                UserGroup from = registry.getGroup(readString(in));
+                UserGroup to = registry.getGroup(readString(in));
+                if (user != null && from != null && to != null) {
+                    from.moveUserTo(user, to);
+                }
+                break;
+            }
+            case SUBGROUP_ADDED: {
+                UserGroup parent = registry.getGroup(readString(in));
+                UserGroup subGroup = registry.getGroup(readString(in));
+                if (parent != null && subGroup != null && subGroup.getParent() == null) {
+                    parent.addSubGroup(subGroup);
+                }
+                break;
+            }
+            case SUBGROUP_REMOVED: {
+                UserGroup parent = registry.getGroup(readString(in));
+                UserGroup subGroup = registry.getGroup(readString(in));
+                if (parent != null && subGroup != null) {
+                    parent.removeSubGroup(subGroup);
+                }
+                break;
+            }
+            case FOLLOWED: {
+                User follower = registry.getUser(readString(in));
+                User followee = registry.getUser(readString(in));
+                if (follower != null) {
+                    follower.follow(followee);
+                }
+                break;
+            }
+            case UNFOLLOWED: {
+                User follower = registry.getUser(readString(in));
+                User followee = registry.getUser(readString(in));
+                if (follower != null) {
+                    follower.unfollow(followee);
+                }
+                break;
+            }
+            case TWEET_POSTED: {
+                User author = registry.getUser(readString(in));
+                String message = readString(in);
+                long tweetID = in.readLong();
+                long timestamp = in.readLong();
+                // The tweet may already have been restored from the snapshot
+                if (author != null && !TweetStore.getInstance().contains(tweetID)) {
+                    author.restoreTweet(Tweet.restored(tweetID, author.getUserID(), message, timestamp));
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown event log record type " + type);
+        }
+    }
+
+    /**
+     * Frames a record as [length][crc32][body] and appends it to the output.
+     */
+    private static void writeFramed(ByteArrayOutputStream body, ByteArrayOutputStream out) throws IOException {
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        DataOutputStream frame = new DataOutputStream(out);
+        frame.writeInt(bytes.length);
+        frame.writeInt((int) crc.getValue());
+        frame.write(bytes);
+    }
+
+    /**
+     * Writes a string as its length in UTF-8 bytes followed by the bytes, so strings of any length fit.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length in event log record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static List<Path> list(Path directory, String prefix, String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+}
@@ -0,0 +1,575 @@
+package User;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The FeedArchive class keeps tweets that retention has moved out of memory in compressed segment
+ * files on disk, where they stay readable through {@link User#getFeedPage(long, int)} and the TweetStore.
+ *
+ * <p>Each archived batch of one user's oldest tweets is written as a block: a header, the tweet IDs as
+ * delta-encoded varints, and the timestamps and messages compressed with Deflate. Blocks are appended to
+ * the current segment and forced to disk before the tweets are dropped from memory, and segments are
+ * rolled at SEGMENT_BYTES. Only a few dozen bytes per block stay on the heap: the ID range, count and
+ * file position, kept per user in ID order, so a feed page older than the retained tweets reads just the
+ * ID columns of the blocks it covers. Messages are decompressed when a tweet is read, and the most recently
+ * read blocks are cached.
+ *
+ * <p>Opening an archive reads every block's IDs to register the archived tweets with the TweetStore, so
+ * it must be opened before the EventLog replays the model; tweets already archived are then not restored
+ * into memory again. A block torn by a crash at the end of the last segment is truncated away, like a
+ * torn EventLog record. The archive is safe for concurrent use; appends are serialized, reads never block
+ * on them.
+ */
+public class FeedArchive implements Closeable {
+    public static final long SEGMENT_BYTES = 64L << 20;
+
+    private static final String SEGMENT_PREFIX = "archive-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int BLOCK_MAGIC = 0x4D544152; // "MTAR"
+    private static final int FIXED_HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int CACHED_BLOCKS = 64;
+
+    private final Path directory;
+    private final Object writeLock = new Object(); // Serializes appends and segment rolls
+    private volatile FileChannel[] channels = new FileChannel[0];
+    private long segmentSize; // Bytes in the last segment, guarded by writeLock
+    private final ConcurrentMap<String, UserBlocks> users = new ConcurrentHashMap<>();
+    private final LongAdder tweetCount = new LongAdder();
+    private final LongAdder diskBytes = new LongAdder();
+    private final Map<Long, Block> cache = new LinkedHashMap<Long, Block>(CACHED_BLOCKS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+    private boolean closed;
+
+    private FeedArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the archive in a directory, registers its tweets with the TweetStore and attaches it there,
+     * so archived tweets can be read back by ID.
+     *
+     * @param directory The directory holding the archive segments; created if missing.
+     * @return The opened archive.
+     * @throws IOException If the directory or a segment cannot be read.
+     */
+    public static FeedArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FeedArchive archive = new FeedArchive(directory);
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                segments.add(file);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(numberOf(a), numberOf(b)));
+        for (Path segment : segments) {
+            archive.load(segment);
+        }
+        TweetStore store = TweetStore.getInstance();
+        store.attachArchive(archive);
+        store.compact();
+        return archive;
+    }
+
+    /**
+     * Writes one user's tweets to the archive as a block and forces it to disk.
+     *
+     * @param userID The ID of the user who posted the tweets.
+     * @param tweets The tweets, in increasing ID order.
+     * @throws IOException If the block cannot be written.
+     */
+    void append(String userID, List<Tweet> tweets) throws IOException {
+        if (tweets.isEmpty()) {
+            return;
+        }
+        long[] tweetIDs = new long[tweets.size()];
+        ByteArrayOutputStream data = new ByteArrayOutputStream(tweets.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(data))) {
+            for (int i = 0; i < tweetIDs.length; i++) {
+                Tweet tweet = tweets.get(i);
+                tweetIDs[i] = tweet.getTweetID();
+                out.writeLong(tweet.getTimestamp());
+                out.writeUTF(tweet.getMessage());
+            }
+        }
+        byte[] ids = encodeIDs(tweetIDs);
+        byte[] dataBytes = data.toByteArray();
+        byte[] name = userID.getBytes(StandardCharsets.UTF_8);
+        int dataChecksum = checksum(dataBytes, 0, dataBytes.length);
+
+        ByteBuffer block = ByteBuffer.allocate(FIXED_HEADER_BYTES + name.length + ids.length + dataBytes.length);
+        block.putInt(BLOCK_MAGIC);
+        block.putInt(name.length);
+        block.put(name);
+        block.putInt(tweetIDs.length);
+        block.putLong(tweetIDs[0]);
+        block.putLong(tweetIDs[tweetIDs.length - 1]);
+        block.putInt(ids.length);
+        block.putInt(dataBytes.length);
+        block.putInt(checksum(ids, 0, ids.length));
+        block.putInt(dataChecksum);
+        int idStart = block.position();
+        block.put(ids);
+        block.put(dataBytes);
+        block.flip();
+
+        int segment;
+        long position;
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IOException("Feed archive is closed");
+            }
+            FileChannel[] current = channels;
+            if (current.length == 0 || (segmentSize > 0 && segmentSize + block.remaining() > SEGMENT_BYTES)) {
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = FileChannel.open(segmentFile(current.length - 1),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channels = current;
+                segmentSize = 0;
+            }
+            segment = current.length - 1;
+            position = segmentSize;
+            FileChannel channel = current[segment];
+            long offset = position;
+            while (block.hasRemaining()) {
+                offset += channel.write(block, offset);
+            }
+            channel.force(false);
+            segmentSize = offset;
+        }
+        diskBytes.add(block.limit());
+        register(userID, new BlockRef(tweetIDs[0], tweetIDs[tweetIDs.length - 1], tweetIDs.length, segment,
+                position + idStart, ids.length, dataBytes.length, dataChecksum));
+    }
+
+    /**
+     * Gets one page of a user's archived tweets, newest first.
+     *
+     * @param userID The user's ID.
+     * @param cursor FeedPage.FIRST_PAGE, or the ID of the oldest tweet already returned.
+     * @param limit  The maximum number of tweets to return.
+     * @return The page of archived tweet IDs.
+     */
+    public FeedPage getFeedPage(String userID, long cursor, int limit) {
+        UserBlocks blocks = users.get(userID);
+        if (blocks == null || limit <= 0) {
+            return new FeedPage(new long[0], blocks != null && blocks.minID() < cursor);
+        }
+        long start = System.nanoTime();
+        BlockRef[] refs = blocks.snapshot();
+        long[] collected = new long[0];
+        int count = 0;
+        int next = refs.length - 1;
+        // Blocks are in increasing ID order; walk back from the newest until the page can no longer change
+        for (; next >= 0; next--) {
+            BlockRef ref = refs[next];
+            if (ref.minID >= cursor) {
+                continue;
+            }
+            if (count >= limit && ref.maxID < collected[limit - 1]) {
+                break;
+            }
+            long[] ids = block(ref).ids;
+            if (collected.length < count + ids.length) {
+                collected = Arrays.copyOf(collected, Math.max(count + ids.length, collected.length * 2));
+            }
+            for (long id : ids) {
+                if (id < cursor) {
+                    collected[count++] = id;
+                }
+            }
+            sortNewestFirst(collected, count);
+        }
+        long[] page = new long[Math.min(limit, count)];
+        int size = 0;
+        for (int i = 0; i < count && size < page.length; i++) {
+            if (size == 0 || page[size - 1] != collected[i]) {
+                page[size++] = collected[i];
+            }
+        }
+        boolean hasMore = count > size;
+        for (int i = next; i >= 0 && !hasMore; i--) {
+            hasMore = size > 0 && refs[i].minID < page[size - 1];
+        }
+        Metrics.getInstance().getArchiveRead().recordSince(start);
+        return new FeedPage(size == page.length ? page : Arrays.copyOf(page, size), hasMore);
+    }
+
+    /**
+     * Reads an archived tweet.
+     *
+     * @param authorID The ID of the user who posted the tweet.
+     * @param tweetID  The tweet ID.
+     * @return The tweet, or null if the user has no archived tweet with that ID.
+     * @throws UncheckedIOException If the block holding the tweet cannot be read.
+     */
+    public Tweet get(String authorID, long tweetID) {
+        UserBlocks blocks = users.get(authorID);
+        if (blocks == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        for (BlockRef ref : blocks.snapshot()) {
+            if (ref.minID <= tweetID && tweetID <= ref.maxID) {
+                Block block = block(ref);
+                int index = Arrays.binarySearch(block.ids, tweetID);
+                if (index >= 0) {
+                    block.loadData(this, ref);
+                    Metrics.getInstance().getArchiveRead().recordSince(start);
+                    return new Tweet(tweetID, authorID, block.messages[index], block.timestamps[index]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of a user's tweets in the archive.
+     *
+     * @param userID The user's ID.
+     * @return The archived tweet count.
+     */
+    public long getTweetCount(String userID) {
+        UserBlocks blocks = users.get(userID);
+        return blocks == null ? 0 : blocks.tweetCount();
+    }
+
+    /**
+     * Gets the highest ID among a user's archived tweets.
+     *
+     * @param userID The user's ID.
+     * @return The highest archived tweet ID, or -1 if the user has no archived tweets.
+     */
+    public long getMaxTweetID(String userID) {
+        UserBlocks blocks = users.get(userID);
+        return blocks == null ? -1 : blocks.maxID();
+    }
+
+    /**
+     * Gets the number of tweets in the archive.
+     *
+     * @return The archived tweet count.
+     */
+    public long getTweetCount() {
+        return tweetCount.sum();
+    }
+
+    /**
+     * Gets the size of the archive on disk.
+     *
+     * @return The size of all segments in bytes.
+     */
+    public long getDiskBytes() {
+        return diskBytes.sum();
+    }
+
+    /**
+     * Closes the segment files. Tweets archived so far are already on disk.
+     *
+     * @throws IOException If a segment cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the headers and IDs of every block in a segment, truncating a torn block at its end.
+     */
+    private void load(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel[] current = Arrays.copyOf(channels, channels.length + 1);
+        current[current.length - 1] = channel;
+        channels = current;
+        int segment = current.length - 1;
+        long size = channel.size();
+        long position = 0;
+        TweetStore store = TweetStore.getInstance();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (position < size) {
+                BlockRef ref;
+                String userID;
+                byte[] ids;
+                try {
+                    if (in.readInt() != BLOCK_MAGIC) {
+                        break;
+                    }
+                    byte[] name = new byte[in.readInt()];
+                    in.readFully(name);
+                    userID = new String(name, StandardCharsets.UTF_8);
+                    int count = in.readInt();
+                    long minID = in.readLong();
+                    long maxID = in.readLong();
+                    ids = new byte[in.readInt()];
+                    int dataLength = in.readInt();
+                    int idChecksum = in.readInt();
+                    int dataChecksum = in.readInt();
+                    long idStart = position + FIXED_HEADER_BYTES + name.length;
+                    if (idStart + ids.length + dataLength > size) {
+                        break;
+                    }
+                    in.readFully(ids);
+                    in.skipNBytes(dataLength);
+                    if (checksum(ids, 0, ids.length) != idChecksum) {
+                        break;
+                    }
+                    ref = new BlockRef(minID, maxID, count, segment, idStart, ids.length, dataLength, dataChecksum);
+                } catch (EOFException e) {
+                    break;
+                }
+                for (long tweetID : decodeIDs(ids, ref.count)) {
+                    store.restoreArchived(tweetID, userID);
+                }
+                Tweet.reserveID(ref.maxID);
+                register(userID, ref);
+                position = ref.position + ref.idLength + ref.dataLength;
+            }
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        diskBytes.add(position);
+        segmentSize = position;
+    }
+
+    private void register(String userID, BlockRef ref) {
+        users.computeIfAbsent(userID, u -> new UserBlocks()).add(ref);
+        tweetCount.add(ref.count);
+    }
+
+    /**
+     * Gets a block's IDs, from the cache or the segment file.
+     */
+    private Block block(BlockRef ref) {
+        Long key = ((long) ref.segment << 40) | ref.position;
+        synchronized (cache) {
+            Block cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Block block = new Block(decodeIDs(read(ref.segment, ref.position, ref.idLength), ref.count));
+        synchronized (cache) {
+            cache.put(key, block);
+        }
+        return block;
+    }
+
+    private byte[] read(int segment, long position, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            FileChannel channel = channels[segment];
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Archive segment " + segment + " ends inside a block");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.array();
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static int numberOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Encodes increasing IDs as the first ID followed by the gaps between them, each as a varint.
+     */
+    private static byte[] encodeIDs(long[] tweetIDs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tweetIDs.length * 2 + 8);
+        long previous = 0;
+        for (long tweetID : tweetIDs) {
+            long delta = tweetID - previous;
+            while ((delta & ~0x7FL) != 0) {
+                out.write((int) (delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write((int) delta);
+            previous = tweetID;
+        }
+        return out.toByteArray();
+    }
+
+    private static long[] decodeIDs(byte[] bytes, int count) {
+        long[] tweetIDs = new long[count];
+        long previous = 0;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            tweetIDs[i] = previous;
+        }
+        return tweetIDs;
+    }
+
+    private static void sortNewestFirst(long[] ids, int count) {
+        Arrays.sort(ids, 0, count);
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            long swap = ids[i];
+            ids[i] = ids[j];
+            ids[j] = swap;
+        }
+    }
+
+    /**
+     * Where one block is stored and which of its user's tweets it holds.
+     */
+    private static final class BlockRef {
+        final long minID;
+        final long maxID;
+        final int count;
+        final int segment;
+        final long position; // Of the ID column
+        final int idLength;
+        final int dataLength;
+        final int dataChecksum;
+
+        BlockRef(long minID, long maxID, int count, int segment, long position, int idLength, int dataLength,
+                 int dataChecksum) {
+            this.minID = minID;
+            this.maxID = maxID;
+            this.count = count;
+            this.segment = segment;
+            this.position = position;
+            this.idLength = idLength;
+            this.dataLength = dataLength;
+            this.dataChecksum = dataChecksum;
+        }
+    }
+
+    /**
+     * The blocks of one user, in increasing ID order.
+     */
+    private static final class UserBlocks {
+        private volatile BlockRef[] blocks = new BlockRef[0];
+        private long tweetCount;
+
+        synchronized void add(BlockRef ref) {
+            BlockRef[] current = Arrays.copyOf(blocks, blocks.length + 1);
+            int position = current.length - 1;
+            // Retention archives the oldest tweets first, so this rarely moves anything
+            while (position > 0 && current[position - 1].maxID > ref.maxID) {
+                current[position] = current[position - 1];
+                position--;
+            }
+            current[position] = ref;
+            tweetCount += ref.count;
+            blocks = current;
+        }
+
+        BlockRef[] snapshot() {
+            return blocks;
+        }
+
+        synchronized long tweetCount() {
+            return tweetCount;
+        }
+
+        long minID() {
+            long minID = Long.MAX_VALUE;
+            for (BlockRef ref : blocks) {
+                minID = Math.min(minID, ref.minID);
+            }
+            return minID;
+        }
+
+        long maxID() {
+            BlockRef[] current = blocks;
+            return current.length == 0 ? -1 : current[current.length - 1].maxID;
+        }
+    }
+
+    /**
+     * A block read back from disk: its IDs, and its timestamps and messages once a tweet is read.
+     */
+    private static final class Block {
+        final long[] ids;
+        volatile long[] timestamps;
+        volatile String[] messages;
+
+        Block(long[] ids) {
+            this.ids = ids;
+        }
+
+        synchronized void loadData(FeedArchive archive, BlockRef ref) {
+            if (messages != null) {
+                return;
+            }
+            byte[] data = archive.read(ref.segment, ref.position + ref.idLength, ref.dataLength);
+            if (checksum(data, 0, data.length) != ref.dataChecksum) {
+                throw new UncheckedIOException(new IOException("Archive block checksum mismatch in segment "
+                        + ref.segment + " at " + ref.position));
+            }
+            long[] times = new long[ids.length];
+            String[] bodies = new String[ids.length];
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+                for (int i = 0; i < ids.length; i++) {
+                    times[i] = in.readLong();
+                    bodies[i] = in.readUTF();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            timestamps = times;
+            messages = bodies;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package User;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The FeedListModel class shows a user's timeline in a JList, newest tweet first, without loading all of it.
+ * Only the first page is read when the model is created. Older pages are read when the list asks for
+ * rows near the end of what has been loaded, and tweets posted while the list is open are added at the top.
+ * The model keeps 8-byte tweet IDs for the rows it knows about and decodes messages only for the rows
+ * being displayed, caching a bounded number of them.
+ * All methods must be called on the event dispatch thread.
+ */
+public class FeedListModel extends AbstractListModel<String> {
+    public static final int PAGE_SIZE = 50;
+
+    private static final int PREFETCH_ROWS = 20;
+    private static final int CACHED_MESSAGES = 256;
+
+    private final User user;
+    private long[] older = new long[PAGE_SIZE]; // Rows read page by page, newest first
+    private int olderCount;
+    private long[] newer = new long[8]; // Tweets posted after the model was created, oldest first
+    private int newerCount;
+    private boolean hasMore;
+    private boolean loading;
+    private final Map<Long, String> messages = new LinkedHashMap<Long, String>(CACHED_MESSAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > CACHED_MESSAGES;
+        }
+    };
+
+    /**
+     * Constructor for the FeedListModel class. Reads the first page of the user's timeline.
+     *
+     * @param user The user whose timeline is shown.
+     */
+    public FeedListModel(User user) {
+        this.user = user;
+        FeedPage page = user.getTimelinePage(FeedPage.FIRST_PAGE, PAGE_SIZE);
+        append(page);
+    }
+
+    /**
+     * Gets the number of rows currently known to the model.
+     *
+     * @return The row count.
+     */
+    @Override
+    public int getSize() {
+        return newerCount + olderCount;
+    }
+
+    /**
+     * Gets the message shown in a row, reading the next page when the row is close to the end.
+     *
+     * @param index The row, 0 being the newest tweet.
+     * @return The tweet message.
+     */
+    @Override
+    public String getElementAt(int index) {
+        if (index >= getSize() - PREFETCH_ROWS && hasMore && !loading) {
+            // The list is painting; add rows after it is done rather than during the paint
+            loading = true;
+            SwingUtilities.invokeLater(this::loadNextPage);
+        }
+        long tweetID = index < newerCount ? newer[newerCount - 1 - index] : older[index - newerCount];
+        String message = messages.get(tweetID);
+        if (message == null) {
+            message = TweetStore.getInstance().getMessage(tweetID);
+            messages.put(tweetID, message);
+        }
+        return message;
+    }
+
+    /**
+     * Adds the tweets that were posted to the timeline since the model was last updated. The timeline is
+     * read page by page down to the newest row already shown, so no tweet is missed however many were
+     * posted, even when the observer was told about fewer of them than arrived.
+     */
+    public void tweetsPosted() {
+        long newest = newerCount > 0 ? newer[newerCount - 1] : olderCount > 0 ? older[0] : Long.MIN_VALUE;
+        long[] found = new long[PAGE_SIZE]; // Newest first
+        int foundCount = 0;
+        long cursor = FeedPage.FIRST_PAGE;
+        boolean reached = false;
+        while (!reached) {
+            FeedPage page = user.getTimelinePage(cursor, PAGE_SIZE);
+            long[] tweetIDs = page.getTweetIDs();
+            for (long tweetID : tweetIDs) {
+                if (tweetID <= newest) {
+                    reached = true;
+                    break;
+                }
+                if (foundCount == found.length) {
+                    found = Arrays.copyOf(found, foundCount * 2);
+                }
+                found[foundCount++] = tweetID;
+            }
+            if (!page.hasMore() || tweetIDs.length == 0) {
+                break;
+            }
+            cursor = page.getNextCursor();
+        }
+        if (newerCount + foundCount > newer.length) {
+            newer = Arrays.copyOf(newer, Math.max(newer.length * 2, newerCount + foundCount));
+        }
+        for (int i = foundCount - 1; i >= 0; i--) {
+            newer[newerCount++] = found[i];
+        }
+        if (foundCount > 0) {
+            fireIntervalAdded(this, 0, foundCount - 1);
+        }
+    }
+
+    /**
+     * Reads the page of the timeline following the rows loaded so far.
+     */
+    private void loadNextPage() {
+        long cursor;
+        if (olderCount > 0) {
+            cursor = older[olderCount - 1];
+        } else if (newerCount > 0) {
+            cursor = newer[0];
+        } else {
+            cursor = FeedPage.FIRST_PAGE;
+        }
+        int first = getSize();
+        append(user.getTimelinePage(cursor, PAGE_SIZE));
+        loading = false;
+        if (getSize() > first) {
+            fireIntervalAdded(this, first, getSize() - 1);
+        }
+    }
+
+    private void append(FeedPage page) {
+        long[] tweetIDs = page.getTweetIDs();
+        if (olderCount + tweetIDs.length > older.length) {
+            older = Arrays.copyOf(older, Math.max(older.length * 2, olderCount + tweetIDs.length));
+        }
+        System.arraycopy(tweetIDs, 0, older, olderCount, tweetIDs.length);
+        olderCount += tweetIDs.length;
+        hasMore = page.hasMore();
+    }
+}
@@ -0,0 +1,83 @@
+package User;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The FeedPage class holds one page of a news feed or timeline, newest tweet first.
+ * Pages are addressed by cursor: the first page is read with {@link #FIRST_PAGE}, and each later page
+ * with the previous page's {@link #getNextCursor()}. A cursor is a tweet ID, so pages stay stable
+ * while new tweets are posted.
+ */
+public class FeedPage {
+    public static final long FIRST_PAGE = Long.MAX_VALUE;
+
+    private final long[] tweetIDs;
+    private final boolean hasMore;
+
+    /**
+     * Constructor for the FeedPage class.
+     *
+     * @param tweetIDs The IDs of the tweets on the page, newest first.
+     * @param hasMore  True if older tweets may follow this page.
+     */
+    public FeedPage(long[] tweetIDs, boolean hasMore) {
+        this.tweetIDs = tweetIDs;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Gets the IDs of the tweets on the page.
+     *
+     * @return The tweet IDs, newest first.
+     */
+    public long[] getTweetIDs() {
+        return tweetIDs.clone();
+    }
+
+    /**
+     * Gets the tweets on the page, read from the TweetStore as the list is accessed.
+     *
+     * @return A read-only list of the tweets, newest first.
+     */
+    public List<Tweet> getTweets() {
+        return new AbstractList<Tweet>() {
+            @Override
+            public Tweet get(int index) {
+                return TweetStore.getInstance().get(tweetIDs[index]);
+            }
+
+            @Override
+            public int size() {
+                return tweetIDs.length;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of tweets on the page.
+     *
+     * @return The page size.
+     */
+    public int size() {
+        return tweetIDs.length;
+    }
+
+    /**
+     * Checks whether older tweets may follow this page.
+     *
+     * @return True if the next cursor should be read.
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Gets the cursor of the page after this one.
+     *
+     * @return The cursor for older tweets, or FIRST_PAGE if the page is empty.
+     */
+    public long getNextCursor() {
+        return tweetIDs.length == 0 ? FIRST_PAGE : tweetIDs[tweetIDs.length - 1];
+    }
+}
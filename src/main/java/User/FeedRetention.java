@@ -0,0 +1,242 @@
+package User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The FeedRetention class keeps the tweets held in memory within a RetentionPolicy by moving the oldest
+ * ones to a FeedArchive. It is a ModelListener, so posting only notes which users went over their limit;
+ * the archiving itself is done by a sweep on a background thread every SWEEP_INTERVAL_MILLIS.
+ *
+ * <p>A sweep trims each user over the per-user limit, then, if more tweets than the global limit are in
+ * memory, archives every tweet outside the most recently posted ones, and finally archives tweets older
+ * than the age limit. Limits are enforced down to seven eighths of their value, and the age limit is
+ * checked every eighth of the age, so each archived block holds a reasonable batch of tweets rather than
+ * one tweet per post. A user's tweets are only dropped from memory after their block is on disk.
+ */
+public class FeedRetention implements ModelListener, Closeable {
+    public static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private static final int SLACK = 8; // Limits are enforced down to (SLACK - 1) / SLACK of their value
+    private static final int MAX_BLOCK_TWEETS = 4096;
+
+    private final RetentionPolicy policy;
+    private final FeedArchive archive;
+    private final LongSupplier clock;
+    private final Set<User> overLimit = ConcurrentHashMap.newKeySet();
+    private final Object sweepLock = new Object(); // Only one sweep trims feeds at a time
+    private ScheduledExecutorService sweeper;
+    private long lastAgeSweep = Long.MIN_VALUE;
+
+    /**
+     * Constructor for the FeedRetention class.
+     *
+     * @param policy  The limits to keep to.
+     * @param archive The archive to move tweets to.
+     */
+    public FeedRetention(RetentionPolicy policy, FeedArchive archive) {
+        this(policy, archive, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for the FeedRetention class with a custom clock.
+     *
+     * @param policy  The limits to keep to.
+     * @param archive The archive to move tweets to.
+     * @param clock   The source of the current time in milliseconds since the epoch.
+     */
+    public FeedRetention(RetentionPolicy policy, FeedArchive archive, LongSupplier clock) {
+        this.policy = policy;
+        this.archive = archive;
+        this.clock = clock;
+    }
+
+    /**
+     * Notes a user who went over the per-user limit, to be trimmed by the next sweep.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    @Override
+    public void tweetPosted(User author, Tweet tweet) {
+        if (author.getTweetCount() > policy.getMaxTweetsPerUser()) {
+            overLimit.add(author);
+        }
+    }
+
+    /**
+     * Starts sweeping on a background thread, first for the tweets already in memory.
+     * Does nothing if the policy sets no limits or sweeping has already started.
+     */
+    public synchronized void start() {
+        if (sweeper != null || !policy.isBounded()) {
+            return;
+        }
+        if (policy.getMaxTweetsPerUser() != RetentionPolicy.UNLIMITED) {
+            for (User user : users()) {
+                if (user.getTweetCount() > policy.getMaxTweetsPerUser()) {
+                    overLimit.add(user);
+                }
+            }
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "feed-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Could not archive tweets, they stay in memory: " + e.getMessage());
+            }
+        }, 0, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Archives every tweet that is over a limit right now.
+     *
+     * @return The number of tweets archived.
+     * @throws IOException If the archive cannot be written; tweets not yet archived stay in memory.
+     */
+    public long sweep() throws IOException {
+        synchronized (sweepLock) {
+            long archived = 0;
+            long perUser = policy.getMaxTweetsPerUser();
+            if (perUser != RetentionPolicy.UNLIMITED) {
+                long keep = lowWater(perUser);
+                for (User user : new ArrayList<>(overLimit)) {
+                    overLimit.remove(user);
+                    int count = user.getTweetCount();
+                    if (count > perUser) {
+                        archived += archiveOldest(user, (int) (count - keep));
+                    }
+                }
+            }
+            long total = policy.getMaxTotalTweets();
+            if (total != RetentionPolicy.UNLIMITED && TweetStore.getInstance().getTweetCount() > total) {
+                // Tweet IDs are dense, so keeping only IDs above the cutoff keeps at most that many tweets
+                long cutoff = Tweet.lastID() - lowWater(total) + 1;
+                for (User user : users()) {
+                    archived += archiveOldest(user, user.countTweetsBefore(cutoff));
+                }
+            }
+            long maxAge = policy.getMaxAgeMillis();
+            long now = clock.getAsLong();
+            long ageSweepInterval = Math.max(SWEEP_INTERVAL_MILLIS, maxAge / SLACK);
+            if (maxAge != RetentionPolicy.UNLIMITED
+                    && (lastAgeSweep == Long.MIN_VALUE || now - lastAgeSweep >= ageSweepInterval)) {
+                lastAgeSweep = now;
+                long cutoff = now - maxAge;
+                for (User user : users()) {
+                    archived += archiveOldest(user, countOlderThan(user, cutoff));
+                }
+            }
+            if (archived > 0) {
+                TweetStore.getInstance().compact();
+                Metrics.getInstance().getTweetsArchived().add(archived);
+            }
+            return archived;
+        }
+    }
+
+    /**
+     * Stops sweeping. Tweets archived so far stay in the archive.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdown();
+            try {
+                sweeper.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Gets the policy being kept to.
+     *
+     * @return The retention policy.
+     */
+    public RetentionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Moves a user's oldest tweets to the archive, one block at a time.
+     */
+    private long archiveOldest(User user, int count) throws IOException {
+        long archived = 0;
+        TweetStore store = TweetStore.getInstance();
+        while (count > 0) {
+            long[] tweetIDs = user.oldestTweetIDs(Math.min(count, MAX_BLOCK_TWEETS));
+            if (tweetIDs.length == 0) {
+                break;
+            }
+            List<Tweet> tweets = new ArrayList<>(tweetIDs.length);
+            for (long tweetID : tweetIDs) {
+                tweets.add(store.get(tweetID));
+            }
+            archive.append(user.getUserID(), tweets);
+            store.archive(tweetIDs);
+            user.dropArchived(tweetIDs);
+            archived += tweetIDs.length;
+            count -= tweetIDs.length;
+        }
+        return archived;
+    }
+
+    /**
+     * Counts a user's oldest tweets held in memory that were posted before a time.
+     */
+    private static int countOlderThan(User user, long cutoff) {
+        TweetStore store = TweetStore.getInstance();
+        long[] oldest = new long[0];
+        int checked = 0;
+        // Read the oldest tweets in growing batches until one is new enough
+        for (int batch = 16; ; batch *= 2) {
+            if (checked == oldest.length) {
+                long[] next = user.oldestTweetIDs(checked + batch);
+                if (next.length == oldest.length) {
+                    return checked;
+                }
+                oldest = next;
+            }
+            while (checked < oldest.length) {
+                long timestamp = store.getTimestamp(oldest[checked]);
+                if (timestamp >= cutoff) {
+                    return checked;
+                }
+                checked++;
+            }
+        }
+    }
+
+    private static long lowWater(long limit) {
+        return Math.max(1, limit - limit / SLACK);
+    }
+
+    private static List<User> users() {
+        SocialGraph graph = SocialGraph.getInstance();
+        int count = graph.getNodeCount();
+        List<User> users = new ArrayList<>(count);
+        for (int node = 0; node < count; node++) {
+            User user = graph.getUser(node);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+}
@@ -0,0 +1,166 @@
+package User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The GroupMembership class indexes which group each user belongs to and which group each group is
+ * nested in. A user can be placed in at most one group, so "is this user already placed" is a single
+ * lookup, and ancestry questions only walk up the parent chain instead of searching whole subtrees.
+ */
+public class GroupMembership {
+    private static final GroupMembership instance = new GroupMembership();
+
+    private final ConcurrentMap<User, UserGroup> userOwners;
+    private final ConcurrentMap<UserGroup, UserGroup> groupParents;
+
+    /**
+     * Constructor for the GroupMembership class.
+     */
+    public GroupMembership() {
+        this.userOwners = new ConcurrentHashMap<>();
+        this.groupParents = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the membership index shared by all groups.
+     *
+     * @return The shared GroupMembership instance.
+     */
+    public static GroupMembership getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records that a user belongs to a group.
+     *
+     * @param user  The user being placed.
+     * @param group The group the user joins.
+     * @return True if the user was placed, false if the user already belongs to a group.
+     */
+    public boolean placeUser(User user, UserGroup group) {
+        return userOwners.putIfAbsent(user, group) == null;
+    }
+
+    /**
+     * Records that a user no longer belongs to a group.
+     *
+     * @param user  The user being removed.
+     * @param group The group the user leaves.
+     * @return True if the user was in that group.
+     */
+    public boolean removeUser(User user, UserGroup group) {
+        return userOwners.remove(user, group);
+    }
+
+    /**
+     * Records that a user moved from one group to another.
+     *
+     * @param user The user being moved.
+     * @param from The group the user leaves.
+     * @param to   The group the user joins.
+     * @return True if the user was in the from group and has been moved.
+     */
+    public boolean moveUser(User user, UserGroup from, UserGroup to) {
+        return userOwners.replace(user, from, to);
+    }
+
+    /**
+     * Records that a group is nested in a parent group.
+     *
+     * @param group  The group being nested.
+     * @param parent The parent group.
+     * @return True if the group was placed, false if it already has a parent or the parent is inside it.
+     */
+    public boolean placeGroup(UserGroup group, UserGroup parent) {
+        if (group == parent || isAncestor(group, parent)) {
+            return false;
+        }
+        return groupParents.putIfAbsent(group, parent) == null;
+    }
+
+    /**
+     * Records that a group is no longer nested in its parent.
+     *
+     * @param group  The group being removed.
+     * @param parent The parent group.
+     * @return True if the group was nested in that parent.
+     */
+    public boolean removeGroup(UserGroup group, UserGroup parent) {
+        return groupParents.remove(group, parent);
+    }
+
+    /**
+     * Checks whether a user already belongs to a group.
+     *
+     * @param user The user to check.
+     * @return True if the user is placed in a group.
+     */
+    public boolean isPlaced(User user) {
+        return userOwners.containsKey(user);
+    }
+
+    /**
+     * Gets the group a user belongs to.
+     *
+     * @param user The user to look up.
+     * @return The user's group, or null if the user is not in a group.
+     */
+    public UserGroup getGroup(User user) {
+        return userOwners.get(user);
+    }
+
+    /**
+     * Gets the group a group is nested in.
+     *
+     * @param group The group to look up.
+     * @return The parent group, or null for a top-level group.
+     */
+    public UserGroup getParent(UserGroup group) {
+        return groupParents.get(group);
+    }
+
+    /**
+     * Gets the chain of groups containing a group, nearest first.
+     *
+     * @param group The group to look up.
+     * @return The ancestors of the group, from its parent up to the top-level group.
+     */
+    public List<UserGroup> getAncestors(UserGroup group) {
+        List<UserGroup> ancestors = new ArrayList<>();
+        for (UserGroup parent = groupParents.get(group); parent != null; parent = groupParents.get(parent)) {
+            ancestors.add(parent);
+        }
+        return ancestors;
+    }
+
+    /**
+     * Checks whether one group contains another, directly or through nested groups.
+     *
+     * @param ancestor   The possible ancestor.
+     * @param descendant The possible descendant.
+     * @return True if ancestor is above descendant in the hierarchy.
+     */
+    public boolean isAncestor(UserGroup ancestor, UserGroup descendant) {
+        for (UserGroup parent = groupParents.get(descendant); parent != null; parent = groupParents.get(parent)) {
+            if (parent == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a user belongs to a group or any group nested inside it.
+     *
+     * @param user  The user to check.
+     * @param group The group to check.
+     * @return True if the user is within the group's subtree.
+     */
+    public boolean isInSubtree(User user, UserGroup group) {
+        UserGroup owner = userOwners.get(user);
+        return owner != null && (owner == group || isAncestor(group, owner));
+    }
+}
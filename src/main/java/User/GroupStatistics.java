@@ -0,0 +1,417 @@
+package User;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The GroupStatistics class keeps running totals for every group's subtree: the users in the group
+ * or any group nested in it, the tweets they posted, and the words and positive and negative hits in
+ * those tweets. Totals are pushed up the ancestor chain as changes happen, so reading them takes
+ * constant time for any group, even the root of a large hierarchy.
+ *
+ * <ul>
+ * <li>A tweet is added to its author's group and every ancestor of it.</li>
+ * <li>A user joining, leaving or moving carries the totals of every tweet they posted so far, which
+ * are kept per user for that purpose.</li>
+ * <li>A subgroup being nested or removed carries its whole subtree's totals.</li>
+ * </ul>
+ *
+ * <p>Updates for a user hold the user's LockStripes stripe and the hierarchy read lock, and hierarchy
+ * events arrive under the hierarchy write lock, so every total matches a walk of the subtree once the
+ * model is quiet, even when tweets are posted while users and groups are moved.
+ *
+ * <p>The users of a model restored from a ModelSnapshot are added to their groups at once, by number,
+ * without materializing them. Their restored tweets are totalled per user by a scan on a background
+ * thread, and added to each user's group once the scan is done; a restored user moved before then
+ * takes those tweets to the group they are in by the time they are added.
+ */
+public class GroupStatistics implements ModelListener {
+    private final TweetAnalyzer tweetAnalyzer;
+    private final ConcurrentMap<UserGroup, Totals> groupTotals;
+    private final ConcurrentMap<User, UserTotals> userTotals; // Guarded by each user's stripe
+    private final List<RestoredUsers> restored = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<SentimentScore> scratch;
+
+    /**
+     * Constructor for the GroupStatistics class.
+     *
+     * @param tweetAnalyzer The analyzer used to count the words and hits of each tweet.
+     */
+    public GroupStatistics(TweetAnalyzer tweetAnalyzer) {
+        this.tweetAnalyzer = tweetAnalyzer;
+        this.groupTotals = new ConcurrentHashMap<>();
+        this.userTotals = new ConcurrentHashMap<>();
+        this.scratch = ThreadLocal.withInitial(SentimentScore::new);
+    }
+
+    /**
+     * Adds a newly posted tweet to its author's totals and to the totals of the author's group and its
+     * ancestors.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    @Override
+    public void tweetPosted(User author, Tweet tweet) {
+        SentimentScore score = scratch.get();
+        score.reset();
+        tweetAnalyzer.score(tweet.getMessage(), score);
+        synchronized (LockStripes.forUser(author)) {
+            UserTotals totals = userTotals.computeIfAbsent(author, u -> new UserTotals());
+            totals.tweets++;
+            totals.words += score.getWords();
+            totals.positiveHits += score.getPositiveHits();
+            totals.negativeHits += score.getNegativeHits();
+            UserGroup group = GroupMembership.getInstance().getGroup(author);
+            if (group == null) {
+                return;
+            }
+            Lock lock = UserGroup.hierarchyReadLock();
+            lock.lock();
+            try {
+                for (UserGroup target : chain(group)) {
+                    totals(target).addTweet(score);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a user and their tweets to a group and its ancestors.
+     *
+     * @param group The group the user joined.
+     * @param user  The user.
+     */
+    @Override
+    public void userAddedToGroup(UserGroup group, User user) {
+        moveUser(user, null, group);
+    }
+
+    /**
+     * Removes a user and their tweets from a group and its ancestors.
+     *
+     * @param group The group the user left.
+     * @param user  The user.
+     */
+    @Override
+    public void userRemovedFromGroup(UserGroup group, User user) {
+        moveUser(user, group, null);
+    }
+
+    /**
+     * Moves a user and their tweets from one group's ancestor chain to another's.
+     *
+     * @param user The user.
+     * @param from The group the user left.
+     * @param to   The group the user joined.
+     */
+    @Override
+    public void userMoved(User user, UserGroup from, UserGroup to) {
+        moveUser(user, from, to);
+    }
+
+    /**
+     * Adds a nested group's subtree totals to its new ancestors.
+     *
+     * @param parent   The parent group.
+     * @param subGroup The nested group.
+     */
+    @Override
+    public void subGroupAdded(UserGroup parent, UserGroup subGroup) {
+        Totals moved = totals(subGroup);
+        for (UserGroup target : chain(parent)) {
+            totals(target).add(moved, 1);
+        }
+    }
+
+    /**
+     * Removes a nested group's subtree totals from its former ancestors.
+     *
+     * @param parent   The former parent group.
+     * @param subGroup The removed group.
+     */
+    @Override
+    public void subGroupRemoved(UserGroup parent, UserGroup subGroup) {
+        Totals moved = totals(subGroup);
+        for (UserGroup target : chain(parent)) {
+            totals(target).add(moved, -1);
+        }
+    }
+
+    /**
+     * Adds the users of a restored model to their groups and their ancestors, and starts totalling
+     * their restored tweets.
+     *
+     * @param model The restored model.
+     */
+    @Override
+    public void modelRestored(ModelSnapshot.RestoredModel model) {
+        RestoredUsers users = new RestoredUsers(model);
+        Map<UserGroup, Long> placed = new HashMap<>();
+        for (UserGroup group : users.groups) {
+            if (group != null) {
+                placed.merge(group, 1L, Long::sum);
+            }
+        }
+        Lock lock = UserGroup.hierarchyReadLock();
+        lock.lock();
+        try {
+            for (Map.Entry<UserGroup, Long> entry : placed.entrySet()) {
+                for (UserGroup target : chain(entry.getKey())) {
+                    totals(target).users.add(entry.getValue());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        restored.add(users);
+        model.scanTweets(users);
+    }
+
+    /**
+     * Gets the number of users in a group and its subgroups.
+     *
+     * @param group The group.
+     * @return The user count.
+     */
+    public long getUserCount(UserGroup group) {
+        Totals totals = groupTotals.get(group);
+        return totals == null ? 0 : totals.users.sum();
+    }
+
+    /**
+     * Gets the number of tweets posted by users in a group and its subgroups.
+     *
+     * @param group The group.
+     * @return The tweet count.
+     */
+    public long getTweetCount(UserGroup group) {
+        Totals totals = groupTotals.get(group);
+        return totals == null ? 0 : totals.tweets.sum();
+    }
+
+    /**
+     * Gets the number of words in tweets posted by users in a group and its subgroups.
+     *
+     * @param group The group.
+     * @return The word count.
+     */
+    public long getWordCount(UserGroup group) {
+        Totals totals = groupTotals.get(group);
+        return totals == null ? 0 : totals.words.sum();
+    }
+
+    /**
+     * Gets the number of positive hits in tweets posted by users in a group and its subgroups.
+     *
+     * @param group The group.
+     * @return The positive hit count.
+     */
+    public long getPositiveHits(UserGroup group) {
+        Totals totals = groupTotals.get(group);
+        return totals == null ? 0 : totals.positiveHits.sum();
+    }
+
+    /**
+     * Gets the number of negative hits in tweets posted by users in a group and its subgroups.
+     *
+     * @param group The group.
+     * @return The negative hit count.
+     */
+    public long getNegativeHits(UserGroup group) {
+        Totals totals = groupTotals.get(group);
+        return totals == null ? 0 : totals.negativeHits.sum();
+    }
+
+    /**
+     * Gets the percentage of positive hits relative to the number of words for a group and its subgroups.
+     *
+     * @param group The group.
+     * @return The positive percentage, or 0 if nothing has been posted in the group.
+     */
+    public double getPositivePercentage(UserGroup group) {
+        long words = getWordCount(group);
+        return words == 0 ? 0.0 : (double) getPositiveHits(group) / (double) words * 100.0;
+    }
+
+    /**
+     * Moves a user's totals from one group's chain to another's; either group may be null.
+     * Called with the user's stripe held by UserGroup, except for batched adds.
+     */
+    private void moveUser(User user, UserGroup from, UserGroup to) {
+        synchronized (LockStripes.forUser(user)) {
+            UserTotals totals = userTotals.get(user);
+            UserTotals restoredTotals = moveRestored(user, to);
+            Lock lock = UserGroup.hierarchyReadLock();
+            lock.lock();
+            try {
+                if (from != null) {
+                    for (UserGroup target : chain(from)) {
+                        totals(target).addUser(totals, -1);
+                        totals(target).addTweets(restoredTotals, -1);
+                    }
+                }
+                if (to != null) {
+                    for (UserGroup target : chain(to)) {
+                        totals(target).addUser(totals, 1);
+                        totals(target).addTweets(restoredTotals, 1);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Records the new group of a restored user, and gets the totals of their restored tweets if those
+     * have been added to the groups already. The caller holds the user's stripe.
+     *
+     * @return The totals, or null if the user was not restored or their tweets are not added yet.
+     */
+    private UserTotals moveRestored(User user, UserGroup to) {
+        for (RestoredUsers users : restored) {
+            int number = users.model.getUserNumber(user);
+            if (number >= 0) {
+                users.groups[number] = to;
+                return users.added[number] ? users.restoredTotals(number) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a group followed by its ancestors, nearest first.
+     */
+    private static List<UserGroup> chain(UserGroup group) {
+        List<UserGroup> chain = GroupMembership.getInstance().getAncestors(group);
+        chain.add(0, group);
+        return chain;
+    }
+
+    private Totals totals(UserGroup group) {
+        return groupTotals.computeIfAbsent(group, g -> new Totals());
+    }
+
+    /**
+     * The running totals of one user's tweets.
+     */
+    private static final class UserTotals {
+        long tweets;
+        long words;
+        long positiveHits;
+        long negativeHits;
+    }
+
+    /**
+     * The running totals of one group's subtree.
+     */
+    private static final class Totals {
+        final LongAdder users = new LongAdder();
+        final LongAdder tweets = new LongAdder();
+        final LongAdder words = new LongAdder();
+        final LongAdder positiveHits = new LongAdder();
+        final LongAdder negativeHits = new LongAdder();
+
+        void addTweet(SentimentScore score) {
+            tweets.increment();
+            words.add(score.getWords());
+            positiveHits.add(score.getPositiveHits());
+            negativeHits.add(score.getNegativeHits());
+        }
+
+        void addUser(UserTotals user, int sign) {
+            users.add(sign);
+            addTweets(user, sign);
+        }
+
+        void addTweets(UserTotals user, int sign) {
+            if (user != null) {
+                tweets.add(sign * user.tweets);
+                words.add(sign * user.words);
+                positiveHits.add(sign * user.positiveHits);
+                negativeHits.add(sign * user.negativeHits);
+            }
+        }
+
+        void add(Totals other, int sign) {
+            users.add(sign * other.users.sum());
+            tweets.add(sign * other.tweets.sum());
+            words.add(sign * other.words.sum());
+            positiveHits.add(sign * other.positiveHits.sum());
+            negativeHits.add(sign * other.negativeHits.sum());
+        }
+    }
+
+    /**
+     * The users of a restored model, by number, with the totals of their restored tweets as the scan
+     * adds them up. Once the scan is done, each user's totals are added to the group they are in by then.
+     */
+    private final class RestoredUsers implements ModelSnapshot.RestoredModel.TweetScan {
+        final ModelSnapshot.RestoredModel model;
+        final UserGroup[] groups; // Each user's group, guarded by the user's stripe
+        final boolean[] added; // Whether each user's tweets are in the group totals, guarded likewise
+        private final long[] counts; // Tweets, words, positive and negative hits, four per user
+
+        RestoredUsers(ModelSnapshot.RestoredModel model) {
+            this.model = model;
+            int count = model.getUserCount();
+            this.groups = new UserGroup[count];
+            for (int i = 0; i < count; i++) {
+                groups[i] = model.getGroup(i);
+            }
+            this.added = new boolean[count];
+            this.counts = new long[count * 4];
+        }
+
+        @Override
+        public void tweet(int tweet) {
+            SentimentScore score = scratch.get();
+            score.reset();
+            tweetAnalyzer.score(model.getMessage(tweet), score);
+            int at = model.getAuthor(tweet) * 4;
+            counts[at]++;
+            counts[at + 1] += score.getWords();
+            counts[at + 2] += score.getPositiveHits();
+            counts[at + 3] += score.getNegativeHits();
+        }
+
+        @Override
+        public void finished() {
+            Lock lock = UserGroup.hierarchyReadLock();
+            for (int number = 0; number < added.length; number++) {
+                synchronized (LockStripes.forNode(model.getNodeID(number))) {
+                    lock.lock();
+                    try {
+                        if (groups[number] != null) {
+                            UserTotals totals = restoredTotals(number);
+                            for (UserGroup target : chain(groups[number])) {
+                                totals(target).addTweets(totals, 1);
+                            }
+                        }
+                        added[number] = true;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+
+        UserTotals restoredTotals(int number) {
+            UserTotals totals = new UserTotals();
+            totals.tweets = counts[number * 4];
+            totals.words = counts[number * 4 + 1];
+            totals.positiveHits = counts[number * 4 + 2];
+            totals.negativeHits = counts[number * 4 + 3];
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package User;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Histogram class records the distribution of non-negative values, such as latencies in
+ * nanoseconds, in a fixed number of log-linear buckets (as in HdrHistogram). Values below 32 get a
+ * bucket each; above that every power of two is split into 32 buckets, so a reported value is within
+ * about 3% of the recorded one, from a nanosecond up to centuries, in 15KB per stripe.
+ *
+ * <p>Recording is one bucket increment plus a running sum, with no locks or allocation. To keep
+ * recording threads from contending on the same cache lines, the buckets are striped by thread; reads
+ * add the stripes up. Reads taken while values are being recorded are approximate.
+ */
+public class Histogram implements HistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final int SUM = BUCKETS; // Slots after the buckets in each stripe
+    private static final int MAX = BUCKETS + 1;
+    private static final int STRIPES = stripeCount();
+
+    private final String name;
+    private final String unit;
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    /**
+     * Constructor for the Histogram class.
+     *
+     * @param name The metric name, for example "post.latency".
+     * @param unit The unit of the recorded values, for example "ns".
+     */
+    public Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 2);
+        }
+    }
+
+    /**
+     * Gets the metric name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value to be recorded.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().threadId() & (STRIPES - 1)];
+        stripe.getAndIncrement(bucketOf(value));
+        stripe.getAndAdd(SUM, value);
+        if (value > stripe.get(MAX)) {
+            stripe.accumulateAndGet(MAX, value, Math::max);
+        }
+    }
+
+    /**
+     * Records the time elapsed since a start time taken with System.nanoTime.
+     *
+     * @param startNanos The start time.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (long bucketCount : merge()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     *
+     * @return The sum.
+     */
+    public long getSum() {
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            sum += stripe.get(SUM);
+        }
+        return sum;
+    }
+
+    @Override
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    @Override
+    public long getMax() {
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            max = Math.max(max, stripe.get(MAX));
+        }
+        return max;
+    }
+
+    /**
+     * Gets the value below which a given percentage of the recorded values fall.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest value of the bucket holding the percentile, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = merge();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90() {
+        return getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < stripe.length(); i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    private long[] merge() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the bucket of a value: the value itself below SUB_BUCKETS, otherwise the power of two it falls
+     * in and the next SUB_BUCKET_BITS bits below its leading one.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static int stripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(16, Integer.highestOneBit(Math.max(1, processors * 2 - 1)));
+    }
+}
@@ -0,0 +1,69 @@
+package User;
+
+/**
+ * The HistogramMXBean interface is the JMX view of a Histogram.
+ * Percentiles are reported as the highest value of the bucket they fall in.
+ */
+public interface HistogramMXBean {
+
+    /**
+     * Gets the unit of the recorded values, for example "ns".
+     *
+     * @return The unit.
+     */
+    String getUnit();
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return The count.
+     */
+    long getCount();
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return The mean, or 0 if nothing was recorded.
+     */
+    double getMean();
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return The maximum, or 0 if nothing was recorded.
+     */
+    long getMax();
+
+    /**
+     * Gets the median.
+     *
+     * @return The 50th percentile.
+     */
+    long getP50();
+
+    /**
+     * Gets the 90th percentile.
+     *
+     * @return The 90th percentile.
+     */
+    long getP90();
+
+    /**
+     * Gets the 99th percentile.
+     *
+     * @return The 99th percentile.
+     */
+    long getP99();
+
+    /**
+     * Gets the 99.9th percentile.
+     *
+     * @return The 99.9th percentile.
+     */
+    long getP999();
+
+    /**
+     * Clears all recorded values.
+     */
+    void reset();
+}
@@ -0,0 +1,151 @@
+package User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ImportResult class reports what a BulkImporter run applied to the model and which records it
+ * rejected. Only the first MAX_ERRORS rejection messages are kept, so a badly broken file cannot
+ * exhaust memory; the rejected count is always exact.
+ */
+public class ImportResult {
+    public static final int MAX_ERRORS = 100;
+
+    private long users;
+    private long groups;
+    private long memberships;
+    private long follows;
+    private long tweets;
+    private long rejected;
+    private long lines;
+    private long elapsedMillis;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * Gets the number of users created.
+     *
+     * @return The user count.
+     */
+    public long getUsers() {
+        return users;
+    }
+
+    /**
+     * Gets the number of groups created.
+     *
+     * @return The group count.
+     */
+    public long getGroups() {
+        return groups;
+    }
+
+    /**
+     * Gets the number of users placed in a group other than the root group.
+     *
+     * @return The membership count.
+     */
+    public long getMemberships() {
+        return memberships;
+    }
+
+    /**
+     * Gets the number of follow edges created.
+     *
+     * @return The follow count.
+     */
+    public long getFollows() {
+        return follows;
+    }
+
+    /**
+     * Gets the number of tweets posted.
+     *
+     * @return The tweet count.
+     */
+    public long getTweets() {
+        return tweets;
+    }
+
+    /**
+     * Gets the number of records that were malformed or could not be applied.
+     *
+     * @return The rejected record count.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the number of lines read, including blank lines and the header.
+     *
+     * @return The line count.
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the time the import took.
+     *
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Gets the first rejection messages, each naming the line it refers to.
+     *
+     * @return An unmodifiable list of at most MAX_ERRORS messages.
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Returns a one-line summary of the import.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        return "Imported " + users + " users, " + groups + " groups, " + follows + " follows and " + tweets
+                + " tweets from " + lines + " lines in " + elapsedMillis + " ms (" + rejected + " rejected)";
+    }
+
+    void addUser() {
+        users++;
+    }
+
+    void addGroup() {
+        groups++;
+    }
+
+    void addMemberships(long count) {
+        memberships += count;
+    }
+
+    void addFollow() {
+        follows++;
+    }
+
+    void addTweet() {
+        tweets++;
+    }
+
+    void addLines(long count) {
+        lines += count;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    void reject(long line, String message) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("Line " + line + ": " + message);
+        }
+    }
+}
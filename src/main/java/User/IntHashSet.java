@@ -0,0 +1,168 @@
+package User;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The IntHashSet class is a set of non-negative ints stored in a single open-addressing int array.
+ * Unlike a HashSet of Integer it allocates nothing per element, so each element costs between
+ * 4 / MAX_LOAD and 8 / MAX_LOAD bytes depending on how recently the table grew.
+ * The class is not thread-safe.
+ */
+public class IntHashSet {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 4;
+    private static final float MAX_LOAD = 0.75f;
+
+    private int[] table;
+    private int size;
+
+    /**
+     * Constructor for the IntHashSet class.
+     */
+    public IntHashSet() {
+        table = new int[INITIAL_CAPACITY];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value The value to be added, which must not be negative.
+     * @return True if the value was added, false if it was already in the set.
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        int mask = table.length - 1;
+        int i = slot(value, mask);
+        while (table[i] != EMPTY) {
+            if (table[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        if (++size > table.length * MAX_LOAD) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value The value to be removed.
+     * @return True if the value was in the set.
+     */
+    public boolean remove(int value) {
+        int mask = table.length - 1;
+        int i = slot(value, mask);
+        while (table[i] != value) {
+            if (table[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // Shift later entries of the probe run back so lookups never need tombstones
+        int hole = i;
+        for (int j = (hole + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(table[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks whether a value is in the set.
+     *
+     * @param value The value to look for.
+     * @return True if the value is in the set.
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int mask = table.length - 1;
+        for (int i = slot(value, mask); table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of values in the set.
+     *
+     * @return The set size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls an action for every value in the set, in no particular order.
+     *
+     * @param action The action to call.
+     */
+    public void forEach(IntConsumer action) {
+        for (int value : table) {
+            if (value != EMPTY) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Copies the values of the set into a new array, in no particular order.
+     *
+     * @return The values.
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int count = 0;
+        for (int value : table) {
+            if (value != EMPTY) {
+                values[count++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the number of bytes used by the set's table.
+     *
+     * @return The table size in bytes.
+     */
+    public long getTableBytes() {
+        return (long) table.length * Integer.BYTES;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value != EMPTY) {
+                int i = slot(value, mask);
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    private static int slot(int value, int mask) {
+        int hash = value * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
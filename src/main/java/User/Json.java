@@ -0,0 +1,193 @@
+package User;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Json class reads and writes the small JSON documents used by the ApiServer.
+ * Requests are flat objects whose values are strings, numbers, booleans or null, so values are
+ * returned as their text and nested objects or arrays are rejected.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object.
+     *
+     * @param text The JSON text; blank text is treated as an empty object.
+     * @return The fields of the object, in document order, with null for JSON null.
+     * @throws IllegalArgumentException If the text is not a flat JSON object.
+     */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        int[] pos = {skipWhitespace(text, 0)};
+        if (pos[0] == text.length()) {
+            return fields;
+        }
+        expect(text, pos, '{');
+        pos[0] = skipWhitespace(text, pos[0]);
+        if (peek(text, pos[0]) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                pos[0] = skipWhitespace(text, pos[0]);
+                String key = readString(text, pos);
+                pos[0] = skipWhitespace(text, pos[0]);
+                expect(text, pos, ':');
+                pos[0] = skipWhitespace(text, pos[0]);
+                fields.put(key, readValue(text, pos));
+                pos[0] = skipWhitespace(text, pos[0]);
+                if (peek(text, pos[0]) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expect(text, pos, '}');
+                break;
+            }
+        }
+        if (skipWhitespace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after JSON object at " + pos[0]);
+        }
+        return fields;
+    }
+
+    /**
+     * Writes a string as a quoted JSON string.
+     *
+     * @param value The string, or null.
+     * @return The JSON text.
+     */
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static String readValue(String text, int[] pos) {
+        char c = peek(text, pos[0]);
+        if (c == '"') {
+            return readString(text, pos);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("Nested values are not supported at " + pos[0]);
+        }
+        int start = pos[0];
+        while (pos[0] < text.length() && ",} \t\r\n".indexOf(text.charAt(pos[0])) < 0) {
+            pos[0]++;
+        }
+        String literal = text.substring(start, pos[0]);
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+            return literal;
+        }
+        throw new IllegalArgumentException("Invalid JSON value at " + start);
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder out = new StringBuilder();
+        while (true) {
+            if (pos[0] >= text.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string");
+            }
+            char c = text.charAt(pos[0]++);
+            if (c == '"') {
+                return out.toString();
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char escape = peek(text, pos[0]++);
+            switch (escape) {
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    if (pos[0] + 4 > text.length()) {
+                        throw new IllegalArgumentException("Invalid unicode escape at " + pos[0]);
+                    }
+                    try {
+                        out.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid unicode escape at " + pos[0]);
+                    }
+                    pos[0] += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    out.append(escape);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid escape at " + (pos[0] - 1));
+            }
+        }
+    }
+
+    private static void expect(String text, int[] pos, char expected) {
+        if (peek(text, pos[0]) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static char peek(String text, int pos) {
+        if (pos >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return text.charAt(pos);
+    }
+
+    private static int skipWhitespace(String text, int pos) {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,41 @@
+package User;
+
+/**
+ * The LockStripes class hands out one of a fixed set of lock objects for each user.
+ * Changes that concern a single user, such as moving them between groups or changing who they follow,
+ * are made while holding that user's stripe, so they are applied and reported to ModelListeners in the
+ * same order. Unrelated users usually map to different stripes and do not contend.
+ */
+final class LockStripes {
+    private static final int STRIPES = 64;
+    private static final Object[] locks = new Object[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private LockStripes() {
+    }
+
+    /**
+     * Gets the lock stripe of a user.
+     *
+     * @param user The user.
+     * @return The lock object to synchronize on.
+     */
+    static Object forUser(User user) {
+        return forNode(user.getNodeID());
+    }
+
+    /**
+     * Gets the lock stripe of a user by its SocialGraph node ID, for users that are not materialized.
+     *
+     * @param node The user's node ID.
+     * @return The lock object to synchronize on.
+     */
+    static Object forNode(int node) {
+        return locks[node & (STRIPES - 1)];
+    }
+}
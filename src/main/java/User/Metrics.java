@@ -0,0 +1,237 @@
+package User;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * The Metrics class holds the histograms and counters recorded on the hot paths of the domain model.
+ * Recording a value is a few atomic increments on thread-striped arrays, well under the cost of the
+ * operations being measured, so instrumentation is always on.
+ *
+ * <pre>
+ * post.latency          ns         time for postTweet to store, fan out and notify
+ * post.fanout           followers  follower timelines a post was pushed to
+ * observer.dispatch     ns         time for one UserObserver update call
+ * analyzer.run          ns         time for a full TweetAnalyzer pass
+ * timeline.read         ns         time to read one page of a home timeline
+ * archive.read          ns         time to read a feed page or tweet from the FeedArchive
+ * edt.stall             ns         delay before the Swing event thread ran a probe task
+ * tweets.posted                    tweets posted
+ * timeline.deliveries              tweet IDs pushed into follower timelines
+ * observer.updates                 UserObserver update calls
+ * timeline.cache.hits              timeline pages served from the page cache
+ * timeline.cache.misses            timeline pages merged from timelines and feeds
+ * tweets.archived                  tweets moved from memory to the FeedArchive
+ * edt.stalls                       probes delayed by more than EdtMonitor.STALL_THRESHOLD_MILLIS
+ * </pre>
+ */
+public class Metrics {
+    public static final String JMX_DOMAIN = "MiniTwitter";
+
+    private static final Metrics instance = new Metrics();
+
+    private final Histogram postLatency = new Histogram("post.latency", "ns");
+    private final Histogram fanout = new Histogram("post.fanout", "followers");
+    private final Histogram observerDispatch = new Histogram("observer.dispatch", "ns");
+    private final Histogram analyzerRun = new Histogram("analyzer.run", "ns");
+    private final Histogram timelineRead = new Histogram("timeline.read", "ns");
+    private final Histogram archiveRead = new Histogram("archive.read", "ns");
+    private final Histogram edtStall = new Histogram("edt.stall", "ns");
+    private final Counter tweetsPosted = new Counter("tweets.posted");
+    private final Counter timelineDeliveries = new Counter("timeline.deliveries");
+    private final Counter observerUpdates = new Counter("observer.updates");
+    private final Counter timelineCacheHits = new Counter("timeline.cache.hits");
+    private final Counter timelineCacheMisses = new Counter("timeline.cache.misses");
+    private final Counter tweetsArchived = new Counter("tweets.archived");
+    private final Counter edtStalls = new Counter("edt.stalls");
+    private boolean registered;
+
+    /**
+     * Gets the metrics shared by the whole model.
+     *
+     * @return The shared Metrics instance.
+     */
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the histogram of postTweet latencies.
+     *
+     * @return The post.latency histogram.
+     */
+    public Histogram getPostLatency() {
+        return postLatency;
+    }
+
+    /**
+     * Gets the histogram of the number of follower timelines each post was pushed to.
+     *
+     * @return The post.fanout histogram.
+     */
+    public Histogram getFanout() {
+        return fanout;
+    }
+
+    /**
+     * Gets the histogram of UserObserver update call durations.
+     *
+     * @return The observer.dispatch histogram.
+     */
+    public Histogram getObserverDispatch() {
+        return observerDispatch;
+    }
+
+    /**
+     * Gets the histogram of full TweetAnalyzer pass durations.
+     *
+     * @return The analyzer.run histogram.
+     */
+    public Histogram getAnalyzerRun() {
+        return analyzerRun;
+    }
+
+    /**
+     * Gets the histogram of Swing event dispatch thread delays.
+     *
+     * @return The edt.stall histogram.
+     */
+    public Histogram getEdtStall() {
+        return edtStall;
+    }
+
+    /**
+     * Gets the counter of posted tweets.
+     *
+     * @return The tweets.posted counter.
+     */
+    public Counter getTweetsPosted() {
+        return tweetsPosted;
+    }
+
+    /**
+     * Gets the counter of tweet IDs pushed into follower timelines.
+     *
+     * @return The timeline.deliveries counter.
+     */
+    public Counter getTimelineDeliveries() {
+        return timelineDeliveries;
+    }
+
+    /**
+     * Gets the counter of UserObserver update calls.
+     *
+     * @return The observer.updates counter.
+     */
+    public Counter getObserverUpdates() {
+        return observerUpdates;
+    }
+
+    /**
+     * Gets the histogram of home timeline page read durations.
+     *
+     * @return The timeline.read histogram.
+     */
+    public Histogram getTimelineRead() {
+        return timelineRead;
+    }
+
+    /**
+     * Gets the counter of timeline pages served from the page cache.
+     *
+     * @return The timeline.cache.hits counter.
+     */
+    public Counter getTimelineCacheHits() {
+        return timelineCacheHits;
+    }
+
+    /**
+     * Gets the counter of timeline pages that had to be merged.
+     *
+     * @return The timeline.cache.misses counter.
+     */
+    public Counter getTimelineCacheMisses() {
+        return timelineCacheMisses;
+    }
+
+    /**
+     * Gets the histogram of FeedArchive read durations.
+     *
+     * @return The archive.read histogram.
+     */
+    public Histogram getArchiveRead() {
+        return archiveRead;
+    }
+
+    /**
+     * Gets the counter of tweets moved to the FeedArchive.
+     *
+     * @return The tweets.archived counter.
+     */
+    public Counter getTweetsArchived() {
+        return tweetsArchived;
+    }
+
+    /**
+     * Gets the counter of event dispatch thread stalls.
+     *
+     * @return The edt.stalls counter.
+     */
+    public Counter getEdtStalls() {
+        return edtStalls;
+    }
+
+    /**
+     * Gets every histogram, in the order they are listed in the class description.
+     *
+     * @return The histograms.
+     */
+    public List<Histogram> getHistograms() {
+        return List.of(postLatency, fanout, observerDispatch, analyzerRun, timelineRead, archiveRead, edtStall);
+    }
+
+    /**
+     * Gets every counter, in the order they are listed in the class description.
+     *
+     * @return The counters.
+     */
+    public List<Counter> getCounters() {
+        return List.of(tweetsPosted, timelineDeliveries, observerUpdates, timelineCacheHits, timelineCacheMisses,
+                tweetsArchived, edtStalls);
+    }
+
+    /**
+     * Registers every histogram and counter with the platform MBean server, under
+     * MiniTwitter:type=Histogram,name=... and MiniTwitter:type=Counter,name=...
+     * Calling it again does nothing.
+     */
+    public synchronized void registerMBeans() {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Histogram histogram : getHistograms()) {
+                register(server, histogram, "Histogram", histogram.getName());
+            }
+            for (Counter counter : getCounters()) {
+                register(server, counter, "Counter", counter.getName());
+            }
+            registered = true;
+        } catch (JMException e) {
+            System.out.println("Could not register the metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    private static void register(MBeanServer server, Object mbean, String type, String name) throws JMException {
+        try {
+            server.registerMBean(mbean, new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + name));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by an earlier instance of the application in the same JVM
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package User;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+/**
+ * The MetricsView class shows the histograms and counters of Metrics in a table that refreshes
+ * once a second while the window is open.
+ */
+public class MetricsView {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final String[] COLUMNS = {"Metric", "Unit", "Count", "Mean", "p50", "p99", "p99.9", "Max"};
+
+    /**
+     * Creates and displays the metrics window.
+     */
+    public void createAndShowMetricsView() {
+        JFrame frame = new JFrame("Metrics");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.setLocation(600, 250);
+
+        MetricsTableModel model = new MetricsTableModel();
+        JTable table = new JTable(model);
+        frame.add(new JScrollPane(table));
+
+        Timer timer = new Timer(REFRESH_MILLIS, e -> model.refresh());
+        timer.start();
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+
+        frame.pack();
+        frame.setSize(700, 260);
+        frame.setVisible(true);
+    }
+
+    /**
+     * One row per histogram followed by one row per counter, read again on every refresh.
+     */
+    private static final class MetricsTableModel extends AbstractTableModel {
+        private final List<Histogram> histograms = Metrics.getInstance().getHistograms();
+        private final List<Counter> counters = Metrics.getInstance().getCounters();
+        private Object[][] rows = new Object[0][];
+
+        MetricsTableModel() {
+            refresh();
+        }
+
+        void refresh() {
+            Object[][] next = new Object[histograms.size() + counters.size()][];
+            int row = 0;
+            for (Histogram histogram : histograms) {
+                next[row++] = new Object[]{histogram.getName(), histogram.getUnit(), histogram.getCount(),
+                        String.format("%.1f", histogram.getMean()), histogram.getP50(), histogram.getP99(),
+                        histogram.getP999(), histogram.getMax()};
+            }
+            for (Counter counter : counters) {
+                next[row++] = new Object[]{counter.getName(), "", counter.getCount(), "", "", "", "", ""};
+            }
+            rows = next;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows[row][column];
+        }
+    }
+}
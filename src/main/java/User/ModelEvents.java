@@ -0,0 +1,114 @@
+package User;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The ModelEvents class publishes domain model changes to every registered ModelListener.
+ * Listeners are called synchronously on the thread that made the change, so they should be cheap.
+ * Changes may be made from several threads, so listeners must be thread-safe. Changes to the same user,
+ * and changes to the group hierarchy, are reported in the order they were made, and a change always
+ * happens-before the events reporting it. Events are fired while the change's locks are held, so
+ * listeners must not block; once the locks are released, the changing thread fires changeCompleted,
+ * where listeners may wait.
+ *
+ * <p>By the time an event is fired the model has already changed, so every listener is called even if
+ * an earlier one throws. The first exception is rethrown once all listeners have been called, with any
+ * later ones added to it as suppressed exceptions.
+ */
+public final class ModelEvents {
+    private static final List<ModelListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ModelEvents() {
+    }
+
+    /**
+     * Registers a listener for model changes.
+     *
+     * @param listener The listener to be added.
+     */
+    public static void addListener(ModelListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener for model changes.
+     *
+     * @param listener The listener to be removed.
+     */
+    public static void removeListener(ModelListener listener) {
+        listeners.remove(listener);
+    }
+
+    static void fireUserCreated(User user) {
+        fire(listener -> listener.userCreated(user));
+    }
+
+    static void fireGroupCreated(UserGroup group) {
+        fire(listener -> listener.groupCreated(group));
+    }
+
+    static void fireUserAddedToGroup(UserGroup group, User user) {
+        fire(listener -> listener.userAddedToGroup(group, user));
+    }
+
+    static void fireUserRemovedFromGroup(UserGroup group, User user) {
+        fire(listener -> listener.userRemovedFromGroup(group, user));
+    }
+
+    static void fireUserMoved(User user, UserGroup from, UserGroup to) {
+        fire(listener -> listener.userMoved(user, from, to));
+    }
+
+    static void fireSubGroupAdded(UserGroup parent, UserGroup subGroup) {
+        fire(listener -> listener.subGroupAdded(parent, subGroup));
+    }
+
+    static void fireSubGroupRemoved(UserGroup parent, UserGroup subGroup) {
+        fire(listener -> listener.subGroupRemoved(parent, subGroup));
+    }
+
+    static void fireFollowed(User follower, User followee) {
+        fire(listener -> listener.followed(follower, followee));
+    }
+
+    static void fireUnfollowed(User follower, User followee) {
+        fire(listener -> listener.unfollowed(follower, followee));
+    }
+
+    static void fireTweetPosted(User author, Tweet tweet) {
+        fire(listener -> listener.tweetPosted(author, tweet));
+    }
+
+    static void fireChangeCompleted() {
+        fire(ModelListener::changeCompleted);
+    }
+
+    static void fireModelRestored(ModelSnapshot.RestoredModel model) {
+        fire(listener -> listener.modelRestored(model));
+    }
+
+    /**
+     * Calls every listener, even after one of them throws.
+     *
+     * @param event The call to make on each listener.
+     */
+    private static void fire(Consumer<ModelListener> event) {
+        RuntimeException failure = null;
+        for (ModelListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
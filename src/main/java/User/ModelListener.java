@@ -0,0 +1,118 @@
+package User;
+
+/**
+ * The ModelListener interface defines a contract for classes that want to observe changes to the
+ * MiniTwitter domain model as a whole, rather than the tweets of a single user.
+ * All methods do nothing by default, so listeners only override the events they care about.
+ */
+public interface ModelListener {
+
+    /**
+     * This method is called when a new user is registered.
+     *
+     * @param user The new user.
+     */
+    default void userCreated(User user) {
+    }
+
+    /**
+     * This method is called when a new user group is registered.
+     *
+     * @param group The new group.
+     */
+    default void groupCreated(UserGroup group) {
+    }
+
+    /**
+     * This method is called after a user is added to a group.
+     *
+     * @param group The group the user joined.
+     * @param user  The user.
+     */
+    default void userAddedToGroup(UserGroup group, User user) {
+    }
+
+    /**
+     * This method is called after a user is removed from a group.
+     *
+     * @param group The group the user left.
+     * @param user  The user.
+     */
+    default void userRemovedFromGroup(UserGroup group, User user) {
+    }
+
+    /**
+     * This method is called after a user moves from one group to another.
+     *
+     * @param user The user.
+     * @param from The group the user left.
+     * @param to   The group the user joined.
+     */
+    default void userMoved(User user, UserGroup from, UserGroup to) {
+    }
+
+    /**
+     * This method is called after a group is nested in another group.
+     *
+     * @param parent   The parent group.
+     * @param subGroup The nested group.
+     */
+    default void subGroupAdded(UserGroup parent, UserGroup subGroup) {
+    }
+
+    /**
+     * This method is called after a nested group is removed from its parent.
+     *
+     * @param parent   The former parent group.
+     * @param subGroup The removed group.
+     */
+    default void subGroupRemoved(UserGroup parent, UserGroup subGroup) {
+    }
+
+    /**
+     * This method is called after a user starts following another user.
+     *
+     * @param follower The user who started following.
+     * @param followee The user being followed.
+     */
+    default void followed(User follower, User followee) {
+    }
+
+    /**
+     * This method is called after a user stops following another user.
+     *
+     * @param follower The user who stopped following.
+     * @param followee The user no longer followed.
+     */
+    default void unfollowed(User follower, User followee) {
+    }
+
+    /**
+     * This method is called after a user posts a tweet.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    default void tweetPosted(User author, Tweet tweet) {
+    }
+
+    /**
+     * This method is called on the thread that made a change once it has released the locks held while
+     * the events for the change were fired. Listeners that need to wait, for example until a record
+     * is on disk, wait here rather than in the event, so other threads are not held up meanwhile.
+     */
+    default void changeCompleted() {
+    }
+
+    /**
+     * This method is called once a ModelSnapshot has been read, in place of the events for every user,
+     * membership, follow edge and tweet it restored, so that none of them has to be materialized.
+     * Restored groups are still reported with groupCreated and subGroupAdded. Listeners that need the
+     * restored tweets register a scan with the model, which runs on a background thread once every
+     * listener has been told. Nothing can look up a restored user until this method has returned.
+     *
+     * @param model The restored model.
+     */
+    default void modelRestored(ModelSnapshot.RestoredModel model) {
+    }
+}
@@ -0,0 +1,1374 @@
+package User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32C;
+
+/**
+ * The ModelSnapshot class writes and reads a compact image of the whole domain model.
+ *
+ * <p>The format is columnar: after a short header, the file is a series of sections, each holding one
+ * kind of value, followed by a table giving the position and CRC32C checksum of every section.
+ * User and group IDs are string tables and are referred to by index everywhere else. The group
+ * hierarchy, group membership and follow edges are adjacency lists in compressed sparse row form: an
+ * array of offsets, then the targets, and each user's feed is stored the same way as a list of tweet IDs.
+ * Tweets are columns of IDs, authors, timestamps and references into a body arena, where identical
+ * bodies are stored once, in increasing ID order. The file is written front to back in one pass,
+ * to a temporary file first, so a crash while writing never leaves a partial snapshot behind.
+ *
+ * <p>Reading maps the file into memory and checks it, but does not parse it. Users are materialized
+ * lazily: the registry finds a user ID in the mapped string table on first lookup, and only then creates
+ * the User and copies in its feed. The SocialGraph builds a user's follow sets from the mapped adjacency
+ * lists when the user is first used, a group looks up its members when its member list is first used,
+ * and the TweetStore copies a page of tweet metadata from the mapped columns when the page is first
+ * used. Tweet bodies are never copied or decoded: the TweetStore reads them from the mapped body arena,
+ * and Tweet objects are only created when a tweet is read. Timelines are not rebuilt either; the
+ * TimelineEngine pulls restored tweets from the feeds when they are read. ModelListeners are not told
+ * about each restored user, membership, follow edge and tweet either: they are given the whole restored
+ * model at once through modelRestored, and catch up with its tweets on a background thread. Writing a
+ * snapshot of a restored model copies the users that were never materialized, and the tweets whose
+ * metadata was never used, straight from the mapped file, so periodic snapshots keep the model lazy.
+ */
+public class ModelSnapshot {
+    private static final int MAGIC = 0x4D54534E; // "MTSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int TABLE_ENTRY_SIZE = 24;
+    private static final int TRAILER_SIZE = 16;
+    private static final int ARENA_CHUNK_SIZE = 1 << 30; // Mapped separately; bodies never cross chunks
+    private static final int LENGTH_BITS = 24; // A body reference packs the arena offset and the length
+    private static final int MAX_BODY_LENGTH = (1 << LENGTH_BITS) - 1;
+    private static final int MAX_SHARED_BODIES = 1 << 20;
+
+    // Sections, in file order
+    private static final int USER_IDS = 0;
+    private static final int GROUP_IDS = 1;
+    private static final int SUBGROUPS = 2;
+    private static final int MEMBERS = 3;
+    private static final int FOLLOWS = 4;
+    private static final int FEEDS = 5;
+    private static final int TWEET_IDS = 6;
+    private static final int TWEET_AUTHORS = 7;
+    private static final int TWEET_TIMES = 8;
+    private static final int TWEET_BODIES = 9;
+    private static final int BODY_ARENA = 10;
+    private static final int SECTIONS = 11;
+
+    private final long lastSeq;
+    private final long maxTweetID;
+
+    private ModelSnapshot(long lastSeq, long maxTweetID) {
+        this.lastSeq = lastSeq;
+        this.maxTweetID = maxTweetID;
+    }
+
+    /**
+     * Gets the sequence number of the last event included in the snapshot.
+     *
+     * @return The last event sequence number.
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Gets the highest tweet ID included in the snapshot.
+     *
+     * @return The highest tweet ID, or 0 if there are no tweets.
+     */
+    public long getMaxTweetID() {
+        return maxTweetID;
+    }
+
+    /**
+     * Writes a snapshot of every user, group, membership, tweet and follow edge in a registry.
+     * Tweets already moved to a FeedArchive are not included; they are read back from the archive.
+     *
+     * @param registry The registry holding the model.
+     * @param lastSeq  The sequence number of the last event reflected in the model.
+     * @param file     The snapshot file to create.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(UserRegistry registry, long lastSeq, Path file) throws IOException {
+        // Restored users keep their numbers, and are read from the mapped file unless materialized
+        SnapshotUsers restored = registry.getRestored() instanceof SnapshotUsers source ? source : null;
+        int restoredCount = restored == null ? 0 : restored.count;
+        List<User> created = new ArrayList<>();
+        for (User user : registry.getCreatedUsers()) {
+            if (restored == null || restored.numberOf(user) < 0) {
+                created.add(user);
+            }
+        }
+        int userCount = restoredCount + created.size();
+        List<UserGroup> groups = new ArrayList<>();
+        groups.add(registry.getRootGroup());
+        groups.addAll(registry.getGroups());
+        Map<User, Integer> userIndex = new HashMap<>(created.size() * 2);
+        Map<UserGroup, Integer> groupIndex = new HashMap<>(groups.size() * 2);
+        for (User user : created) {
+            userIndex.put(user, restoredCount + userIndex.size());
+        }
+        for (UserGroup group : groups) {
+            groupIndex.put(group, groupIndex.size());
+        }
+        UserNumbers numbers = new UserNumbers(restored, userIndex);
+
+        // Read every list once up front, so all sections describe the same model
+        int[][] subGroups = new int[groups.size()][];
+        int[][] members = new int[groups.size()][];
+        for (int i = 0; i < groups.size(); i++) {
+            UserGroup group = groups.get(i);
+            subGroups[i] = indexes(group.getSubGroups(), groupIndex);
+            int[] pending = restored == null ? null : group.getRestoredMembers();
+            members[i] = pending != null ? restored.membersOf(group, pending) : numbers.of(group.getMembers());
+        }
+        List<String> userIDs = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            userIDs.add(i < restoredCount ? restored.getUserID(i) : created.get(i - restoredCount).getUserID());
+        }
+        List<String> groupIDs = new ArrayList<>(groups.size());
+        for (int i = 1; i < groups.size(); i++) {
+            groupIDs.add(groups.get(i).getGroupID());
+        }
+        SocialGraph graph = SocialGraph.getInstance();
+        int[][] followees = new int[userCount][];
+        long[][] feeds = new long[userCount][];
+        long maxTweetID = 0;
+        int tweetCount = 0;
+        for (int i = 0; i < userCount; i++) {
+            User user = i < restoredCount ? restored.users.get(i) : created.get(i - restoredCount);
+            int node = user != null ? user.getNodeID() : restored.nodeBase + i;
+            followees[i] = numbers.ofNodes(graph.copyFollowing(node));
+            feeds[i] = user != null ? user.oldestTweetIDs(Integer.MAX_VALUE) : restored.feed(i);
+            if (feeds[i].length > 0) {
+                maxTweetID = Math.max(maxTweetID, feeds[i][feeds[i].length - 1]);
+            }
+            tweetCount = Math.addExact(tweetCount, feeds[i].length);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Path arenaTemp = file.resolveSibling(file.getFileName() + ".arena.tmp");
+        try (SectionOutput out = new SectionOutput(FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+             SectionOutput arena = new SectionOutput(FileChannel.open(arenaTemp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                     StandardOpenOption.DELETE_ON_CLOSE))) {
+            DataOutputStream data = out.data;
+            byte[] header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(lastSeq)
+                    .putLong(maxTweetID).putInt(SECTIONS).array();
+            data.write(header);
+
+            // String tables; the root group is always group 0 and is not written
+            out.begin(USER_IDS);
+            writeStrings(data, userIDs);
+            out.end();
+            out.begin(GROUP_IDS);
+            writeStrings(data, groupIDs);
+            out.end();
+
+            // Adjacency lists
+            out.begin(SUBGROUPS);
+            writeAdjacency(data, subGroups);
+            out.end();
+            out.begin(MEMBERS);
+            writeAdjacency(data, members);
+            out.end();
+            out.begin(FOLLOWS);
+            writeAdjacency(data, followees);
+            out.end();
+
+            out.begin(FEEDS);
+            writeFeeds(data, feeds);
+            out.end();
+
+            // Tweet columns, in ID order so they can be restored one metadata page after another
+            long[] tweetIDs = new long[tweetCount];
+            int copied = 0;
+            for (long[] feed : feeds) {
+                System.arraycopy(feed, 0, tweetIDs, copied, feed.length);
+                copied += feed.length;
+            }
+            Arrays.sort(tweetIDs);
+            out.begin(TWEET_IDS);
+            for (long tweetID : tweetIDs) {
+                data.writeLong(tweetID);
+            }
+            out.end();
+            // Every tweet in a feed was posted by the feed's user
+            int[] authors = new int[tweetCount];
+            for (int i = 0; i < userCount; i++) {
+                for (long tweetID : feeds[i]) {
+                    authors[Arrays.binarySearch(tweetIDs, tweetID)] = i;
+                }
+            }
+            out.begin(TWEET_AUTHORS);
+            for (int author : authors) {
+                data.writeInt(author);
+            }
+            out.end();
+            TweetStore store = TweetStore.getInstance();
+            SnapshotTweets unfilled = restored == null ? null : restored.tweets;
+            out.begin(TWEET_TIMES);
+            for (long tweetID : tweetIDs) {
+                int index = unfilled != null && store.isUnfilled(tweetID) ? unfilled.indexOf(tweetID) : -1;
+                long timestamp = index >= 0 ? unfilled.getTimestamp(index) : store.getTimestamp(tweetID);
+                if (timestamp == -1) {
+                    // Archived since the feed was read
+                    Tweet tweet = store.get(tweetID);
+                    timestamp = tweet == null ? 0 : tweet.getTimestamp();
+                }
+                data.writeLong(timestamp);
+            }
+            out.end();
+            out.begin(TWEET_BODIES);
+            arena.begin(BODY_ARENA);
+            writeBodies(data, arena, tweetIDs, unfilled);
+            arena.end();
+            out.end();
+            out.append(BODY_ARENA, arena);
+            out.finish(header);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a reference to every tweet body into the bodies column, and the bodies into the arena.
+     * A body shared by several tweets in the TweetStore is written once, as long as the number of
+     * distinct bodies seen stays within MAX_SHARED_BODIES. Bodies of tweets that are still unfilled in
+     * the TweetStore are copied from the mapped arena of the snapshot they were restored from.
+     */
+    private static void writeBodies(DataOutputStream data, SectionOutput arena, long[] tweetIDs,
+                                    SnapshotTweets unfilled) throws IOException {
+        TweetStore store = TweetStore.getInstance();
+        AddressTable written = new AddressTable();
+        byte[] buffer = new byte[256];
+        for (long tweetID : tweetIDs) {
+            // A tweet whose page was never used is read from the snapshot it was restored from
+            int index = unfilled != null && store.isUnfilled(tweetID) ? unfilled.indexOf(tweetID) : -1;
+            long address = index >= 0 ? unfilled.getAddress(index) : store.getBodyAddress(tweetID);
+            int length = index >= 0 ? unfilled.getLength(index) : store.getBodyLength(tweetID);
+            boolean inMemory = address != -1 && length >= 0;
+            long reference = inMemory ? written.get(address) : -1;
+            if (reference == -1) {
+                if (inMemory && length > buffer.length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                byte[] body;
+                if (inMemory && store.readBody(address, buffer, length)) {
+                    body = buffer;
+                } else {
+                    // Archived since the feed was read
+                    inMemory = false;
+                    Tweet tweet = store.get(tweetID);
+                    body = tweet == null ? new byte[0] : tweet.getMessage().getBytes(StandardCharsets.UTF_8);
+                    length = body.length;
+                }
+                if (length > MAX_BODY_LENGTH) {
+                    throw new IOException("Tweet " + tweetID + " is too long for a snapshot");
+                }
+                long offset = arena.sectionPosition();
+                if (offset % ARENA_CHUNK_SIZE + length > ARENA_CHUNK_SIZE) {
+                    // Start the next chunk, so the body can be read from a single mapping
+                    long padding = ARENA_CHUNK_SIZE - offset % ARENA_CHUNK_SIZE;
+                    for (long i = 0; i < padding; i++) {
+                        arena.write(0);
+                    }
+                    offset += padding;
+                }
+                arena.write(body, 0, length);
+                reference = (offset << LENGTH_BITS) | length;
+                if (inMemory) {
+                    written.put(address, reference);
+                }
+            }
+            data.writeLong(reference);
+        }
+    }
+
+    /**
+     * Rebuilds the model stored in a snapshot into an empty registry.
+     * Every checksum is verified before anything is added to the registry. The snapshot file stays
+     * mapped for as long as the restored tweets are in memory, and must not be changed in place.
+     *
+     * @param file     The snapshot file.
+     * @param registry The registry to populate.
+     * @return The snapshot header.
+     * @throws IOException If the file cannot be read or is corrupt.
+     */
+    public static ModelSnapshot read(Path file, UserRegistry registry) throws IOException {
+        ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+        ByteBuffer[] arena;
+        long lastSeq;
+        long maxTweetID;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE, file);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(24) != SECTIONS) {
+                throw new IOException("Not a supported snapshot: " + file);
+            }
+            lastSeq = header.getLong(8);
+            maxTweetID = header.getLong(16);
+            arena = map(channel, header, sections, file);
+        }
+
+        try {
+            LongBuffer feeds = sections[FEEDS].asLongBuffer();
+            SnapshotUsers users = new SnapshotUsers(file, sections[USER_IDS], feeds, registry);
+            String[] groupIDs = readStrings(sections[GROUP_IDS]);
+            int[][] subGroups = readAdjacency(sections[SUBGROUPS], groupIDs.length + 1, groupIDs.length + 1);
+            int[][] members = readAdjacency(sections[MEMBERS], groupIDs.length + 1, users.count);
+            IntBuffer follows = sections[FOLLOWS].asIntBuffer();
+            int[] followEnds = new int[users.count];
+            follows.get(0, followEnds);
+            int[] followees = new int[follows.limit() - users.count];
+            follows.get(users.count, followees);
+            int tweetCount = sections[TWEET_IDS].remaining() / 8;
+            long feedTweets = users.count == 0 ? 0 : feeds.get(users.count - 1);
+            if (feedTweets != feeds.limit() - users.count
+                    || sections[TWEET_AUTHORS].remaining() / 4 != tweetCount
+                    || sections[TWEET_TIMES].remaining() / 8 != tweetCount
+                    || sections[TWEET_BODIES].remaining() / 8 != tweetCount) {
+                throw new IOException("Snapshot is corrupt: " + file);
+            }
+
+            UserGroup[] groups = new UserGroup[groupIDs.length + 1];
+            groups[0] = registry.getRootGroup();
+            for (int i = 1; i < groups.length; i++) {
+                groups[i] = registry.createGroup(groupIDs[i - 1]);
+            }
+            for (int i = 0; i < groups.length; i++) {
+                for (int subGroup : subGroups[i]) {
+                    groups[i].addSubGroup(groups[subGroup]);
+                }
+                if (members[i].length > 0) {
+                    users.placeMembers(groups[i], members[i]);
+                    groups[i].restoreMembers(members[i], users::getUser);
+                }
+            }
+            users.nodeBase = SocialGraph.getInstance().addRestoredNodes(users.count, followEnds, followees,
+                    users::getUser);
+
+            TweetStore store = TweetStore.getInstance();
+            int firstChunk = store.mapChunks(arena);
+            users.tweets = new SnapshotTweets(file, sections, arena, firstChunk, users);
+            store.addRestored(users.tweets);
+            Tweet.reserveID(maxTweetID);
+
+            // Listeners set up before any restored user can be looked up, and so changed
+            RestoredModel model = new RestoredModel(users, users.tweets);
+            ModelEvents.fireModelRestored(model);
+            registry.registerRestored(users);
+            model.startScans();
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Snapshot is corrupt: " + file, e);
+        }
+        return new ModelSnapshot(lastSeq, maxTweetID);
+    }
+
+    /**
+     * Maps every section of a snapshot, verifying the checksums of the header, the section table and
+     * every section. The body arena is mapped in chunks of ARENA_CHUNK_SIZE, which are returned.
+     */
+    private static ByteBuffer[] map(FileChannel channel, ByteBuffer header, ByteBuffer[] sections, Path file)
+            throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + (long) SECTIONS * TABLE_ENTRY_SIZE + TRAILER_SIZE) {
+            throw new IOException("Snapshot is truncated: " + file);
+        }
+        ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE, file);
+        long tableOffset = trailer.getLong(0);
+        if (trailer.getInt(12) != MAGIC || tableOffset != size - TRAILER_SIZE - (long) SECTIONS * TABLE_ENTRY_SIZE) {
+            throw new IOException("Snapshot is truncated: " + file);
+        }
+        ByteBuffer table = readFully(channel, tableOffset, SECTIONS * TABLE_ENTRY_SIZE, file);
+        CRC32C crc = new CRC32C();
+        crc.update(header.duplicate());
+        crc.update(table.duplicate());
+        if ((int) crc.getValue() != trailer.getInt(8)) {
+            throw new IOException("Snapshot checksum mismatch: " + file);
+        }
+
+        ByteBuffer[] arena = new ByteBuffer[0];
+        for (int section = 0; section < SECTIONS; section++) {
+            long offset = table.getLong(section * TABLE_ENTRY_SIZE);
+            long length = table.getLong(section * TABLE_ENTRY_SIZE + 8);
+            if (offset < HEADER_SIZE || length < 0 || offset + length > tableOffset
+                    || (section != BODY_ARENA && length > Integer.MAX_VALUE)) {
+                throw new IOException("Snapshot is corrupt: " + file);
+            }
+            crc.reset();
+            if (section == BODY_ARENA) {
+                arena = new ByteBuffer[(int) ((length + ARENA_CHUNK_SIZE - 1) / ARENA_CHUNK_SIZE)];
+                for (int i = 0; i < arena.length; i++) {
+                    long start = (long) i * ARENA_CHUNK_SIZE;
+                    arena[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                            Math.min(ARENA_CHUNK_SIZE, length - start));
+                    crc.update(arena[i].duplicate());
+                }
+            } else {
+                sections[section] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                crc.update(sections[section].duplicate());
+            }
+            if ((int) crc.getValue() != table.getInt(section * TABLE_ENTRY_SIZE + 16)) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+        }
+        return arena;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes a string table: the count, the end offset of each string, then the UTF-8 bytes.
+     */
+    private static void writeStrings(DataOutputStream data, List<String> strings) throws IOException {
+        byte[][] encoded = new byte[strings.size()][];
+        data.writeInt(strings.size());
+        int end = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            end += encoded[i].length;
+            data.writeInt(end);
+        }
+        for (byte[] bytes : encoded) {
+            data.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer section) {
+        String[] strings = new String[section.getInt(0)];
+        int base = 4 + strings.length * 4;
+        int start = 0;
+        for (int i = 0; i < strings.length; i++) {
+            int end = section.getInt(4 + i * 4);
+            byte[] bytes = new byte[end - start];
+            section.get(base + start, bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            start = end;
+        }
+        return strings;
+    }
+
+    /**
+     * Writes adjacency lists: the end offset of each node's list, then all the targets.
+     */
+    private static void writeAdjacency(DataOutputStream data, int[][] lists) throws IOException {
+        int end = 0;
+        for (int[] list : lists) {
+            end += list.length;
+            data.writeInt(end);
+        }
+        for (int[] list : lists) {
+            for (int target : list) {
+                data.writeInt(target);
+            }
+        }
+    }
+
+    /**
+     * Writes feeds like adjacency lists, with both the offsets and the tweet IDs as longs.
+     */
+    private static void writeFeeds(DataOutputStream data, long[][] feeds) throws IOException {
+        long end = 0;
+        for (long[] feed : feeds) {
+            end += feed.length;
+            data.writeLong(end);
+        }
+        for (long[] feed : feeds) {
+            for (long tweetID : feed) {
+                data.writeLong(tweetID);
+            }
+        }
+    }
+
+    private static int[][] readAdjacency(ByteBuffer section, int nodes, int targetCount) {
+        IntBuffer ints = section.asIntBuffer();
+        int[][] lists = new int[nodes][];
+        int start = 0;
+        for (int i = 0; i < nodes; i++) {
+            int end = ints.get(i);
+            lists[i] = new int[end - start];
+            ints.get(nodes + start, lists[i]);
+            for (int target : lists[i]) {
+                if (target < 0 || target >= targetCount) {
+                    throw new IndexOutOfBoundsException("Adjacency target " + target);
+                }
+            }
+            start = end;
+        }
+        if (ints.limit() != nodes + start) {
+            throw new IllegalArgumentException("Adjacency list has trailing data");
+        }
+        return lists;
+    }
+
+    /**
+     * Looks up the indexes of a list of groups. Groups created after the registry was copied are left
+     * out; the events creating and linking them come after the snapshot in the EventLog.
+     */
+    private static <T> int[] indexes(List<T> items, Map<T, Integer> index) {
+        int[] indexes = new int[items.size()];
+        int count = 0;
+        for (T item : items) {
+            Integer found = index.get(item);
+            if (found != null) {
+                indexes[count++] = found;
+            }
+        }
+        return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
+    }
+
+    private static UncheckedIOException corrupt(Path file) {
+        return new UncheckedIOException(new IOException("Snapshot is corrupt: " + file));
+    }
+
+    /**
+     * The users and tweets of a snapshot that has just been read, given to ModelListeners through
+     * modelRestored so they can catch up without materializing any user. Users are numbered from 0,
+     * and tweets are numbered from 0 in increasing ID order. Listeners that need every restored tweet
+     * register a TweetScan; once every listener has been told, the tweets are read once, on a background
+     * thread, and handed to all the scans in turn.
+     */
+    public static final class RestoredModel {
+        private final SnapshotUsers users;
+        private final SnapshotTweets tweets;
+        private final List<TweetScan> scans = new ArrayList<>();
+        private final CountDownLatch scanned = new CountDownLatch(1);
+        private boolean started; // Guarded by this model
+        private volatile Thread scanThread;
+        private int messageIndex = -1; // The last message decoded by the scan thread
+        private String message;
+
+        private RestoredModel(SnapshotUsers users, SnapshotTweets tweets) {
+            this.users = users;
+            this.tweets = tweets;
+        }
+
+        /**
+         * Gets the number of restored users.
+         *
+         * @return The user count.
+         */
+        public int getUserCount() {
+            return users.count;
+        }
+
+        /**
+         * Gets the ID of a restored user.
+         *
+         * @param user The user number.
+         * @return The user ID.
+         */
+        public String getUserID(int user) {
+            return users.getUserID(user);
+        }
+
+        /**
+         * Gets the group a restored user was in when the snapshot was written.
+         *
+         * @param user The user number.
+         * @return The group, or null if the user was not in a group.
+         */
+        public UserGroup getGroup(int user) {
+            return users.owners[user];
+        }
+
+        /**
+         * Gets the node ID of a restored user in the SocialGraph, which is also what LockStripes uses.
+         *
+         * @param user The user number.
+         * @return The node ID.
+         */
+        public int getNodeID(int user) {
+            return users.nodeBase + user;
+        }
+
+        /**
+         * Gets the number of a restored user.
+         *
+         * @param user The user.
+         * @return The user number, or -1 if the user was not restored from this snapshot.
+         */
+        public int getUserNumber(User user) {
+            return users.numberOf(user);
+        }
+
+        /**
+         * Gets the number of restored tweets.
+         *
+         * @return The tweet count.
+         */
+        public int getTweetCount() {
+            return tweets.size();
+        }
+
+        /**
+         * Gets the ID of a restored tweet.
+         *
+         * @param tweet The tweet number.
+         * @return The tweet ID.
+         */
+        public long getTweetID(int tweet) {
+            return tweets.getTweetID(tweet);
+        }
+
+        /**
+         * Gets the author of a restored tweet.
+         *
+         * @param tweet The tweet number.
+         * @return The author's user number.
+         */
+        public int getAuthor(int tweet) {
+            return tweets.getAuthor(tweet);
+        }
+
+        /**
+         * Gets the posting time of a restored tweet.
+         *
+         * @param tweet The tweet number.
+         * @return The timestamp.
+         */
+        public long getTimestamp(int tweet) {
+            return tweets.getTimestamp(tweet);
+        }
+
+        /**
+         * Gets the message of a restored tweet, decoding it from the mapped file. During a scan, the
+         * message is decoded once however many scans ask for it.
+         *
+         * @param tweet The tweet number.
+         * @return The message.
+         */
+        public String getMessage(int tweet) {
+            if (Thread.currentThread() != scanThread) {
+                return tweets.getMessage(tweet);
+            }
+            if (messageIndex != tweet) {
+                message = tweets.getMessage(tweet);
+                messageIndex = tweet;
+            }
+            return message;
+        }
+
+        /**
+         * Registers a scan of every restored tweet. Must be called from modelRestored.
+         *
+         * @param scan The scan.
+         * @throws IllegalStateException If the scans have already started.
+         */
+        public synchronized void scanTweets(TweetScan scan) {
+            if (started) {
+                throw new IllegalStateException("Restored tweets are already being scanned");
+            }
+            scans.add(scan);
+        }
+
+        /**
+         * Waits until every scan has finished.
+         *
+         * @throws InterruptedException If the thread is interrupted while waiting.
+         */
+        public void awaitScans() throws InterruptedException {
+            scanned.await();
+        }
+
+        /**
+         * Starts the registered scans on a background thread.
+         */
+        private synchronized void startScans() {
+            started = true;
+            if (scans.isEmpty()) {
+                scanned.countDown();
+                return;
+            }
+            scanThread = new Thread(this::runScans, "snapshot-scan");
+            scanThread.setDaemon(true);
+            scanThread.start();
+        }
+
+        /**
+         * Hands every tweet to every scan, in ID order. A scan that throws is dropped, and the others
+         * go on.
+         */
+        private void runScans() {
+            List<TweetScan> running = new ArrayList<>(scans);
+            try {
+                int count = tweets.size();
+                for (int tweet = 0; tweet < count && !running.isEmpty(); tweet++) {
+                    for (int i = 0; i < running.size(); ) {
+                        try {
+                            running.get(i).tweet(tweet);
+                            i++;
+                        } catch (RuntimeException e) {
+                            System.out.println("Could not catch up with the restored tweets: " + e.getMessage());
+                            running.remove(i);
+                        }
+                    }
+                }
+                for (TweetScan scan : running) {
+                    try {
+                        scan.finished();
+                    } catch (RuntimeException e) {
+                        System.out.println("Could not catch up with the restored tweets: " + e.getMessage());
+                    }
+                }
+            } finally {
+                message = null;
+                scanned.countDown();
+            }
+        }
+
+        /**
+         * A pass over every restored tweet, run on the background thread of a RestoredModel.
+         */
+        public interface TweetScan {
+            /**
+             * This method is called for each restored tweet, in increasing ID order.
+             *
+             * @param tweet The tweet number, for the getters of the RestoredModel.
+             */
+            void tweet(int tweet);
+
+            /**
+             * This method is called once every tweet has been scanned.
+             */
+            default void finished() {
+            }
+        }
+    }
+
+    /**
+     * The users of a snapshot that is being read, materialized on first lookup. User IDs are found in the
+     * mapped string table through a hash table of user numbers, so no String is created for a user
+     * until the user is.
+     */
+    private static final class SnapshotUsers implements UserRegistry.UserSource {
+        final int count;
+        int nodeBase; // Node ID of user number 0 in the SocialGraph
+        SnapshotTweets tweets;
+        private final Path file;
+        private final ByteBuffer ids;
+        private final int[] table; // User number + 1 by hash of the UTF-8 ID, or 0 for an empty slot
+        private final LongBuffer feeds;
+        private final UserRegistry registry;
+        private final UserGroup[] owners;
+        private final AtomicReferenceArray<User> users;
+        private volatile int pending;
+
+        SnapshotUsers(Path file, ByteBuffer ids, LongBuffer feeds, UserRegistry registry) {
+            this.file = file;
+            this.ids = ids;
+            this.feeds = feeds;
+            this.registry = registry;
+            this.count = ids.getInt(0);
+            if (count < 0 || 4 + (long) count * 4 > ids.limit()) {
+                throw new IllegalArgumentException("Bad string table size " + count);
+            }
+            this.table = new int[Integer.highestOneBit(Math.max(2, count * 2) - 1) << 1];
+            this.owners = new UserGroup[count];
+            this.users = new AtomicReferenceArray<>(count);
+            this.pending = count;
+            int mask = table.length - 1;
+            int start = 0;
+            for (int number = 0; number < count; number++) {
+                int end = end(number);
+                if (end < start || base() + end > ids.limit()) {
+                    throw new IllegalArgumentException("Bad string table offset " + end);
+                }
+                int i = hash(base() + start, end - start) & mask;
+                while (table[i] != 0) {
+                    if (sameID(table[i] - 1, base() + start, end - start)) {
+                        throw new IllegalArgumentException("Duplicate user ID at " + number);
+                    }
+                    i = (i + 1) & mask;
+                }
+                table[i] = number + 1;
+                start = end;
+            }
+        }
+
+        /**
+         * Records the group each member of a group belongs to, for when the member is materialized.
+         * A user listed in several groups stays in the first.
+         */
+        void placeMembers(UserGroup group, int[] members) {
+            for (int member : members) {
+                if (owners[member] == null) {
+                    owners[member] = group;
+                }
+            }
+        }
+
+        /**
+         * Gets the number of a restored user.
+         *
+         * @return The user number, or -1 if the user was not restored from this snapshot.
+         */
+        int numberOf(User user) {
+            int number = user.getNodeID() - nodeBase;
+            return number >= 0 && number < count ? number : -1;
+        }
+
+        /**
+         * Keeps the restored members of a group that are still in it, without materializing any of them.
+         */
+        int[] membersOf(UserGroup group, int[] members) {
+            GroupMembership membership = GroupMembership.getInstance();
+            int[] kept = new int[members.length];
+            int count = 0;
+            for (int member : members) {
+                User user = users.get(member);
+                if ((user == null ? owners[member] : membership.getGroup(user)) == group) {
+                    kept[count++] = member;
+                }
+            }
+            return Arrays.copyOf(kept, count);
+        }
+
+        /**
+         * Gets a user by number, materializing it on first use.
+         */
+        User getUser(int number) {
+            User user = users.get(number);
+            return user != null ? user : materialize(number);
+        }
+
+        @Override
+        public User getUser(String userID) {
+            int number = find(userID);
+            return number < 0 ? null : getUser(number);
+        }
+
+        @Override
+        public boolean containsUser(String userID) {
+            return find(userID) >= 0;
+        }
+
+        @Override
+        public int getPendingCount() {
+            return pending;
+        }
+
+        @Override
+        public void createAll() {
+            for (int number = 0; number < count; number++) {
+                getUser(number);
+            }
+        }
+
+        /**
+         * Creates a user with its feed, places it in its group and adds it to the registry.
+         */
+        private synchronized User materialize(int number) {
+            User user = users.get(number);
+            if (user != null) {
+                return user;
+            }
+            user = new User(getUserID(number), nodeBase + number);
+            long[] feed = feed(number);
+            if (feed.length > 0) {
+                user.restoreFeed(feed);
+            }
+            if (owners[number] != null) {
+                GroupMembership.getInstance().placeUser(user, owners[number]);
+            }
+            registry.addRestored(user);
+            users.set(number, user); // Publishes the user to getUser
+            pending--;
+            return user;
+        }
+
+        /**
+         * Copies a user's feed out of the mapped feeds, leaving out tweets archived since the snapshot
+         * was written, which are read from the FeedArchive instead.
+         */
+        private long[] feed(int number) {
+            long start = number == 0 ? 0 : feeds.get(number - 1);
+            long end = feeds.get(number);
+            if (start < 0 || end < start || end > feeds.limit() - count) {
+                throw corrupt(file);
+            }
+            long[] feed = new long[(int) (end - start)];
+            feeds.get(count + (int) start, feed);
+            TweetStore store = TweetStore.getInstance();
+            boolean archived = store.getArchivedCount() > 0;
+            int kept = 0;
+            for (long tweetID : feed) {
+                if (kept > 0 && tweetID <= feed[kept - 1]) {
+                    throw corrupt(file);
+                }
+                if (!archived || store.getBodyAddress(tweetID) != -1) {
+                    feed[kept++] = tweetID;
+                }
+            }
+            return kept < feed.length ? Arrays.copyOf(feed, kept) : feed;
+        }
+
+        String getUserID(int number) {
+            int start = number == 0 ? 0 : end(number - 1);
+            byte[] bytes = new byte[end(number) - start];
+            ids.get(base() + start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Finds the number of the user with an ID.
+         */
+        private int find(String userID) {
+            byte[] bytes = userID.getBytes(StandardCharsets.UTF_8);
+            int hash = 1;
+            for (byte b : bytes) {
+                hash = 31 * hash + b;
+            }
+            int mask = table.length - 1;
+            for (int i = mix(hash) & mask; table[i] != 0; i = (i + 1) & mask) {
+                int number = table[i] - 1;
+                int start = number == 0 ? 0 : end(number - 1);
+                if (end(number) - start == bytes.length && matches(base() + start, bytes)) {
+                    return number;
+                }
+            }
+            return -1;
+        }
+
+        private int end(int number) {
+            return ids.getInt(4 + number * 4);
+        }
+
+        private int base() {
+            return 4 + count * 4;
+        }
+
+        private int hash(int offset, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + ids.get(offset + i);
+            }
+            return mix(hash);
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private boolean sameID(int number, int offset, int length) {
+            int start = number == 0 ? 0 : end(number - 1);
+            if (end(number) - start != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (ids.get(base() + start + i) != ids.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matches(int offset, byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                if (ids.get(offset + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The tweet columns of a snapshot that is being read, for the TweetStore to copy a page at a time.
+     */
+    private static final class SnapshotTweets implements TweetStore.TweetSource {
+        private final Path file;
+        private final LongBuffer tweetIDs;
+        private final IntBuffer authors;
+        private final LongBuffer timestamps;
+        private final LongBuffer bodies;
+        private final ByteBuffer[] arena;
+        private final int firstChunk;
+        private final SnapshotUsers users;
+
+        SnapshotTweets(Path file, ByteBuffer[] sections, ByteBuffer[] arena, int firstChunk, SnapshotUsers users) {
+            this.file = file;
+            this.tweetIDs = sections[TWEET_IDS].asLongBuffer();
+            this.authors = sections[TWEET_AUTHORS].asIntBuffer();
+            this.timestamps = sections[TWEET_TIMES].asLongBuffer();
+            this.bodies = sections[TWEET_BODIES].asLongBuffer();
+            this.arena = arena;
+            this.firstChunk = firstChunk;
+            this.users = users;
+        }
+
+        @Override
+        public int size() {
+            return tweetIDs.limit();
+        }
+
+        @Override
+        public long getTweetID(int index) {
+            return tweetIDs.get(index);
+        }
+
+        @Override
+        public int getAuthorCount() {
+            return users.count;
+        }
+
+        @Override
+        public String getAuthorID(int author) {
+            return users.getUserID(author);
+        }
+
+        @Override
+        public void read(int from, int to, long[] ids, int[] tweetAuthors, long[] times, long[] addresses,
+                         int[] lengths) {
+            int count = to - from;
+            tweetIDs.get(from, ids, 0, count);
+            authors.get(from, tweetAuthors, 0, count);
+            timestamps.get(from, times, 0, count);
+            bodies.get(from, addresses, 0, count);
+            for (int i = 0; i < count; i++) {
+                if ((i > 0 && ids[i] <= ids[i - 1]) || tweetAuthors[i] < 0 || tweetAuthors[i] >= users.count) {
+                    throw corrupt(file);
+                }
+                lengths[i] = (int) (addresses[i] & MAX_BODY_LENGTH);
+                addresses[i] = address(addresses[i]);
+            }
+        }
+
+        /**
+         * Finds a tweet by ID.
+         *
+         * @return The tweet's position, or -1 if the snapshot does not have it.
+         */
+        int indexOf(long tweetID) {
+            int low = 0;
+            int high = tweetIDs.limit() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long found = tweetIDs.get(middle);
+                if (found < tweetID) {
+                    low = middle + 1;
+                } else if (found > tweetID) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        int getAuthor(int index) {
+            int author = authors.get(index);
+            if (author < 0 || author >= users.count) {
+                throw corrupt(file);
+            }
+            return author;
+        }
+
+        long getTimestamp(int index) {
+            return timestamps.get(index);
+        }
+
+        /**
+         * Gets the TweetStore address of a tweet's body, in the mapped arena.
+         */
+        long getAddress(int index) {
+            return address(bodies.get(index));
+        }
+
+        int getLength(int index) {
+            return (int) (bodies.get(index) & MAX_BODY_LENGTH);
+        }
+
+        String getMessage(int index) {
+            long reference = bodies.get(index);
+            address(reference); // Checks that the body is inside the arena
+            long offset = reference >>> LENGTH_BITS;
+            byte[] body = new byte[(int) (reference & MAX_BODY_LENGTH)];
+            arena[(int) (offset / ARENA_CHUNK_SIZE)].get((int) (offset % ARENA_CHUNK_SIZE), body);
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Turns a body reference into a TweetStore address, checking that the body is inside the arena.
+         */
+        private long address(long reference) {
+            long offset = reference >>> LENGTH_BITS;
+            int length = (int) (reference & MAX_BODY_LENGTH);
+            int chunk = (int) (offset / ARENA_CHUNK_SIZE);
+            int chunkOffset = (int) (offset % ARENA_CHUNK_SIZE);
+            if (chunk >= arena.length || chunkOffset + length > arena[chunk].capacity()) {
+                throw corrupt(file);
+            }
+            return TweetStore.mappedAddress(firstChunk + chunk, chunkOffset);
+        }
+    }
+
+    /**
+     * Numbers the users of a snapshot being written: users restored from a snapshot keep their numbers
+     * in it, whether or not they were materialized, and users created since come after them.
+     */
+    private static final class UserNumbers {
+        private final SnapshotUsers restored;
+        private final Map<User, Integer> created;
+
+        UserNumbers(SnapshotUsers restored, Map<User, Integer> created) {
+            this.restored = restored;
+            this.created = created;
+        }
+
+        int of(User user) {
+            int number = restored == null ? -1 : restored.numberOf(user);
+            if (number >= 0) {
+                return number;
+            }
+            Integer index = created.get(user);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * Looks up the numbers of a list of users. Users created after the registry was copied are left
+         * out; the events creating and linking them come after the snapshot in the EventLog.
+         */
+        int[] of(List<User> users) {
+            int[] numbers = new int[users.size()];
+            int count = 0;
+            for (User user : users) {
+                int number = of(user);
+                if (number >= 0) {
+                    numbers[count++] = number;
+                }
+            }
+            return count == numbers.length ? numbers : Arrays.copyOf(numbers, count);
+        }
+
+        /**
+         * Looks up the numbers of users by node ID, without materializing restored users.
+         */
+        int[] ofNodes(int[] nodes) {
+            SocialGraph graph = SocialGraph.getInstance();
+            int count = 0;
+            for (int node : nodes) {
+                int number = restored == null ? -1 : node - restored.nodeBase;
+                if (number < 0 || number >= restored.count) {
+                    number = of(graph.getUser(node));
+                }
+                if (number >= 0) {
+                    nodes[count++] = number;
+                }
+            }
+            return count == nodes.length ? nodes : Arrays.copyOf(nodes, count);
+        }
+    }
+
+    /**
+     * The file being written, tracking the position, length and CRC32C checksum of each section.
+     * Writes are buffered, and the checksum is updated a buffer at a time. Sections are padded to a
+     * multiple of 8 bytes so columns are aligned when mapped.
+     */
+    private static final class SectionOutput extends FilterOutputStream {
+        final DataOutputStream data = new DataOutputStream(this);
+        private final FileChannel channel;
+        private final CRC32C crc = new CRC32C();
+        private final byte[] buffer = new byte[1 << 16];
+        private final long[] offsets = new long[SECTIONS];
+        private final long[] lengths = new long[SECTIONS];
+        private final int[] checksums = new int[SECTIONS];
+        private int buffered;
+        private long position;
+        private int section = -1;
+
+        SectionOutput(FileChannel channel) {
+            super(Channels.newOutputStream(channel));
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (buffered == buffer.length) {
+                flushBuffer();
+            }
+            buffer[buffered++] = (byte) b;
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.length - buffered) {
+                flushBuffer();
+                if (len > buffer.length) {
+                    crc.update(b, off, len);
+                    out.write(b, off, len);
+                    position += len;
+                    return;
+                }
+            }
+            System.arraycopy(b, off, buffer, buffered, len);
+            buffered += len;
+            position += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            if (buffered > 0) {
+                crc.update(buffer, 0, buffered);
+                out.write(buffer, 0, buffered);
+                buffered = 0;
+            }
+        }
+
+        void begin(int section) throws IOException {
+            flushBuffer();
+            this.section = section;
+            offsets[section] = position;
+            crc.reset();
+        }
+
+        long sectionPosition() {
+            return position - offsets[section];
+        }
+
+        void end() throws IOException {
+            flushBuffer();
+            lengths[section] = position - offsets[section];
+            checksums[section] = (int) crc.getValue();
+            while (position % 8 != 0) {
+                write(0);
+            }
+            section = -1;
+        }
+
+        /**
+         * Copies a section written to another file to the end of this one.
+         */
+        void append(int section, SectionOutput other) throws IOException {
+            other.flush();
+            flush();
+            offsets[section] = position;
+            lengths[section] = other.lengths[section];
+            checksums[section] = other.checksums[section];
+            long start = other.offsets[section];
+            for (long copied = 0; copied < lengths[section]; ) {
+                copied += other.channel.transferTo(start + copied, lengths[section] - copied, channel);
+            }
+            position += lengths[section];
+            while (position % 8 != 0) {
+                write(0);
+            }
+        }
+
+        /**
+         * Writes the section table and the trailer that locates it. The table's checksum also covers
+         * the header.
+         */
+        void finish(byte[] header) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(SECTIONS * TABLE_ENTRY_SIZE);
+            DataOutputStream table = new DataOutputStream(bytes);
+            for (int i = 0; i < SECTIONS; i++) {
+                table.writeLong(offsets[i]);
+                table.writeLong(lengths[i]);
+                table.writeInt(checksums[i]);
+                table.writeInt(0);
+            }
+            long tableOffset = position;
+            crc.reset();
+            crc.update(header);
+            crc.update(bytes.toByteArray());
+            int tableChecksum = (int) crc.getValue();
+            bytes.writeTo(data);
+            data.writeLong(tableOffset);
+            data.writeInt(tableChecksum);
+            data.writeInt(MAGIC);
+            flush();
+        }
+    }
+
+    /**
+     * A bounded open-addressing map from TweetStore body addresses to body references already written.
+     */
+    private static final class AddressTable {
+        private long[] keys = new long[1 << 10];
+        private long[] values = new long[1 << 10];
+        private int size;
+
+        AddressTable() {
+            Arrays.fill(keys, -1);
+        }
+
+        long get(long address) {
+            int mask = keys.length - 1;
+            for (int i = slot(address, mask); keys[i] != -1; i = (i + 1) & mask) {
+                if (keys[i] == address) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long address, long reference) {
+            if (size == MAX_SHARED_BODIES) {
+                return;
+            }
+            if (++size * 2 > keys.length) {
+                long[] oldKeys = keys;
+                long[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new long[oldValues.length * 2];
+                Arrays.fill(keys, -1);
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != -1) {
+                        insert(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            insert(address, reference);
+        }
+
+        private void insert(long address, long reference) {
+            int mask = keys.length - 1;
+            int i = slot(address, mask);
+            while (keys[i] != -1) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = address;
+            values[i] = reference;
+        }
+
+        private static int slot(long address, int mask) {
+            long hash = address * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 40) & mask;
+        }
+    }
+}
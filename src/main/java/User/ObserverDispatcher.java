@@ -0,0 +1,27 @@
+package User;
+
+/**
+ * The ObserverDispatcher interface defines how a user's tweets are handed to their observers.
+ * Implementations decide on which thread, and in what batches, UserObserver.update is called.
+ */
+public interface ObserverDispatcher {
+
+    /**
+     * A dispatcher that calls the observer directly on the posting thread.
+     */
+    ObserverDispatcher DIRECT = (observer, tweet) -> {
+        long start = System.nanoTime();
+        observer.update(tweet);
+        Metrics metrics = Metrics.getInstance();
+        metrics.getObserverDispatch().recordSince(start);
+        metrics.getObserverUpdates().increment();
+    };
+
+    /**
+     * Hands a new tweet to an observer.
+     *
+     * @param observer The observer to be notified.
+     * @param tweet    The new tweet message.
+     */
+    void dispatch(UserObserver observer, String tweet);
+}
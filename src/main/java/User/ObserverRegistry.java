@@ -0,0 +1,86 @@
+package User;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The ObserverRegistry class holds the observers of one user. Each registration returns a
+ * Subscription that removes it again. An observer can be held strongly, staying registered until it
+ * unsubscribes, or weakly, so that an observer nobody else references, such as a closed window that
+ * forgot to unsubscribe, is dropped the next time the registry is walked instead of being notified
+ * and kept in memory forever.
+ *
+ * <p>The registry is copy-on-write: notifying never blocks and sees a consistent snapshot, and
+ * registering or unsubscribing is rare compared to posting.
+ */
+public class ObserverRegistry {
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers an observer.
+     *
+     * @param observer The observer to be added.
+     * @param weak     True to hold the observer through a weak reference.
+     * @return The handle that removes this registration.
+     */
+    public Subscription add(UserObserver observer, boolean weak) {
+        Entry entry = new Entry(observer, weak);
+        entries.add(entry);
+        return new Subscription(() -> entries.remove(entry));
+    }
+
+    /**
+     * Removes every registration of an observer.
+     *
+     * @param observer The observer to be removed.
+     * @return True if the observer was registered.
+     */
+    public boolean remove(UserObserver observer) {
+        return entries.removeIf(entry -> entry.get() == observer);
+    }
+
+    /**
+     * Calls an action for every registered observer, dropping weak registrations whose observer
+     * has been collected.
+     *
+     * @param action The action to call.
+     */
+    public void forEach(Consumer<UserObserver> action) {
+        boolean cleared = false;
+        for (Entry entry : entries) {
+            UserObserver observer = entry.get();
+            if (observer == null) {
+                cleared = true;
+            } else {
+                action.accept(observer);
+            }
+        }
+        if (cleared) {
+            entries.removeIf(entry -> entry.get() == null);
+        }
+    }
+
+    /**
+     * Gets the number of registrations, including weak ones not yet found to be cleared.
+     *
+     * @return The registration count.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * One registration. A strong registration also keeps the observer in a field.
+     */
+    private static final class Entry extends WeakReference<UserObserver> {
+        @SuppressWarnings("unused")
+        private final UserObserver strong; // Keeps strong registrations reachable
+
+        Entry(UserObserver observer, boolean weak) {
+            super(observer);
+            this.strong = weak ? null : observer;
+        }
+    }
+}
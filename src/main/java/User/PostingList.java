@@ -0,0 +1,166 @@
+package User;
+
+import java.util.Arrays;
+
+/**
+ * The PostingList class holds the IDs of the tweets containing one search term, in ascending order,
+ * compressed. IDs are grouped in blocks of BLOCK_SIZE: the first ID of each block is kept as a long,
+ * and the rest as variable-length gaps from the previous ID, so a frequent term costs about one byte
+ * per tweet. The block index lets a reader jump to the block holding any ID and decode only that block.
+ *
+ * <p>Tweets posted concurrently can be indexed slightly out of order. Such an ID is inserted by
+ * re-encoding the blocks from the one it belongs in, which is almost always just the last block.
+ * All methods are synchronized; readers decode one block per call.
+ */
+public class PostingList {
+    public static final int BLOCK_SIZE = 128;
+
+    private long[] blockFirst = new long[1];
+    private int[] blockStart = new int[1]; // Offset of each block's gaps in bytes
+    private int blockCount;
+    private byte[] bytes = new byte[8];
+    private int byteLength;
+    private int count;
+    private long last = Long.MIN_VALUE;
+
+    /**
+     * Adds a tweet ID. Adding an ID that is already in the list does nothing.
+     *
+     * @param tweetID The tweet ID.
+     */
+    public synchronized void add(long tweetID) {
+        if (tweetID > last) {
+            append(tweetID);
+        } else if (tweetID < last) {
+            insert(tweetID);
+        }
+    }
+
+    /**
+     * Gets the number of IDs in the list.
+     *
+     * @return The ID count.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Gets the number of bytes used by the compressed IDs and the block index.
+     *
+     * @return The size in bytes.
+     */
+    public synchronized long getBytes() {
+        return byteLength + blockCount * 12L;
+    }
+
+    /**
+     * Finds the last block whose first ID is no greater than an ID.
+     *
+     * @param tweetID The ID to look for.
+     * @return The block number, or -1 if every ID in the list is greater.
+     */
+    public synchronized int blockAtOrBefore(long tweetID) {
+        int low = 0;
+        int high = blockCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockFirst[mid] <= tweetID) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Decodes one block.
+     *
+     * @param block The block number.
+     * @param out   An array of at least BLOCK_SIZE elements receiving the block's IDs in ascending order.
+     * @return The number of IDs decoded, or 0 if there is no such block.
+     */
+    public synchronized int decodeBlock(int block, long[] out) {
+        if (block < 0 || block >= blockCount) {
+            return 0;
+        }
+        long id = blockFirst[block];
+        out[0] = id;
+        int n = 1;
+        int end = block + 1 < blockCount ? blockStart[block + 1] : byteLength;
+        int pos = blockStart[block];
+        while (pos < end) {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                gap |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += gap;
+            out[n++] = id;
+        }
+        return n;
+    }
+
+    private void append(long tweetID) {
+        if (count % BLOCK_SIZE == 0) {
+            if (blockCount == blockFirst.length) {
+                blockFirst = Arrays.copyOf(blockFirst, blockCount * 2);
+                blockStart = Arrays.copyOf(blockStart, blockCount * 2);
+            }
+            blockFirst[blockCount] = tweetID;
+            blockStart[blockCount] = byteLength;
+            blockCount++;
+        } else {
+            writeGap(tweetID - last);
+        }
+        last = tweetID;
+        count++;
+    }
+
+    /**
+     * Inserts an ID older than the newest one by re-encoding every block from the one it belongs in.
+     */
+    private void insert(long tweetID) {
+        int block = Math.max(0, blockAtOrBefore(tweetID));
+        long[] tail = new long[count - block * BLOCK_SIZE + 1];
+        long[] decoded = new long[BLOCK_SIZE];
+        int n = 0;
+        for (int b = block; b < blockCount; b++) {
+            int length = decodeBlock(b, decoded);
+            System.arraycopy(decoded, 0, tail, n, length);
+            n += length;
+        }
+        int position = Arrays.binarySearch(tail, 0, n, tweetID);
+        if (position >= 0) {
+            return; // Already indexed
+        }
+        position = -position - 1;
+        System.arraycopy(tail, position, tail, position + 1, n - position);
+        tail[position] = tweetID;
+
+        byteLength = blockStart[block];
+        blockCount = block;
+        count = block * BLOCK_SIZE;
+        last = Long.MIN_VALUE;
+        for (long id : tail) {
+            append(id);
+        }
+    }
+
+    private void writeGap(long gap) {
+        if (byteLength + 10 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteLength + 10));
+        }
+        while ((gap & ~0x7FL) != 0) {
+            bytes[byteLength++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        bytes[byteLength++] = (byte) gap;
+    }
+}
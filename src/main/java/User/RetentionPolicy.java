@@ -0,0 +1,78 @@
+package User;
+
+/**
+ * The RetentionPolicy class sets how many tweets are kept in memory, per user, in total and by age.
+ * Tweets beyond any of the limits are moved to the FeedArchive by FeedRetention, and can still be
+ * read through {@link User#getFeedPage(long, int)}. A limit of UNLIMITED turns that limit off.
+ */
+public final class RetentionPolicy {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final RetentionPolicy UNBOUNDED = new RetentionPolicy(UNLIMITED, UNLIMITED, UNLIMITED);
+
+    private final long maxTweetsPerUser;
+    private final long maxTotalTweets;
+    private final long maxAgeMillis;
+
+    /**
+     * Constructor for the RetentionPolicy class.
+     *
+     * @param maxTweetsPerUser The number of each user's newest tweets kept in memory, or UNLIMITED.
+     * @param maxTotalTweets   The number of tweets kept in memory over all users, or UNLIMITED.
+     * @param maxAgeMillis     The age in milliseconds after which tweets are archived, or UNLIMITED.
+     * @throws IllegalArgumentException If a limit is not positive.
+     */
+    public RetentionPolicy(long maxTweetsPerUser, long maxTotalTweets, long maxAgeMillis) {
+        if (maxTweetsPerUser <= 0 || maxTotalTweets <= 0 || maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("Retention limits must be positive");
+        }
+        this.maxTweetsPerUser = maxTweetsPerUser;
+        this.maxTotalTweets = maxTotalTweets;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Gets the number of each user's newest tweets kept in memory.
+     *
+     * @return The per-user limit, or UNLIMITED.
+     */
+    public long getMaxTweetsPerUser() {
+        return maxTweetsPerUser;
+    }
+
+    /**
+     * Gets the number of tweets kept in memory over all users.
+     *
+     * @return The global limit, or UNLIMITED.
+     */
+    public long getMaxTotalTweets() {
+        return maxTotalTweets;
+    }
+
+    /**
+     * Gets the age after which tweets are archived.
+     *
+     * @return The age in milliseconds, or UNLIMITED.
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Checks whether any limit is set.
+     *
+     * @return True if some tweets may be archived.
+     */
+    public boolean isBounded() {
+        return maxTweetsPerUser != UNLIMITED || maxTotalTweets != UNLIMITED || maxAgeMillis != UNLIMITED;
+    }
+
+    @Override
+    public String toString() {
+        return "per user " + limit(maxTweetsPerUser) + ", total " + limit(maxTotalTweets)
+                + ", age " + (maxAgeMillis == UNLIMITED ? "unlimited" : maxAgeMillis + " ms");
+    }
+
+    private static String limit(long value) {
+        return value == UNLIMITED ? "unlimited" : Long.toString(value);
+    }
+}
@@ -0,0 +1,416 @@
+package User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The SearchIndex class is an in-memory inverted index over tweet text. It is a ModelListener, so
+ * every posted tweet is indexed as it is posted, and tweets restored from a ModelSnapshot are indexed by
+ * a scan on a background thread, so searches only find them once the scan reaches them. Each distinct
+ * term maps to a compressed PostingList of the tweets containing it.
+ *
+ * <p>Queries are a list of clauses that must all match:
+ * <pre>
+ * coffee                 tweets containing the term
+ * caf*                   tweets containing a term starting with "caf"
+ * "good morning"         tweets containing the phrase
+ * from:alice             tweets posted by alice
+ * group:Students         tweets posted by members of Students or its subgroups
+ * </pre>
+ * Terms are runs of letters and digits, compared case-insensitively. Results are returned newest
+ * first, a page at a time. The posting lists are intersected from the newest ID down, skipping whole
+ * blocks that cannot match, and the search stops as soon as the page is full, so a query's cost
+ * depends on the page size and the rarest term rather than on the number of tweets.
+ * Phrases are matched as terms first and then checked against the tweet text.
+ */
+public class SearchIndex implements ModelListener {
+    public static final int MAX_TERM_LENGTH = 64;
+    public static final int MIN_PREFIX_LENGTH = 2;
+    public static final int MAX_PREFIX_TERMS = 1024;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final UserRegistry registry;
+    private final ConcurrentSkipListMap<String, PostingList> postings = new ConcurrentSkipListMap<>();
+
+    /**
+     * Constructor for the SearchIndex class.
+     *
+     * @param registry The registry used to resolve the from: and group: filters.
+     */
+    public SearchIndex(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Indexes a newly posted tweet.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    @Override
+    public void tweetPosted(User author, Tweet tweet) {
+        index(tweet.getTweetID(), tweet.getMessage());
+    }
+
+    /**
+     * Indexes the tweets of a restored model as they are scanned.
+     *
+     * @param model The restored model.
+     */
+    @Override
+    public void modelRestored(ModelSnapshot.RestoredModel model) {
+        model.scanTweets(tweet -> index(model.getTweetID(tweet), model.getMessage(tweet)));
+    }
+
+    private void index(long tweetID, String message) {
+        for (String term : new HashSet<>(terms(message))) {
+            postings.computeIfAbsent(term, t -> new PostingList()).add(tweetID);
+        }
+    }
+
+    /**
+     * Finds the newest tweets matching a query.
+     *
+     * @param query The query.
+     * @param limit The maximum number of tweets to return.
+     * @return The first page of matching tweets, newest first.
+     * @throws IllegalArgumentException If the query is malformed or has no terms and no from: filter.
+     */
+    public FeedPage search(String query, int limit) {
+        return search(query, FeedPage.FIRST_PAGE, limit);
+    }
+
+    /**
+     * Finds a page of tweets matching a query, newest first.
+     *
+     * @param query  The query.
+     * @param cursor FeedPage.FIRST_PAGE, or the next cursor of the previous page.
+     * @param limit  The maximum number of tweets to return.
+     * @return The page of matching tweets.
+     * @throws IllegalArgumentException If the query is malformed or has no terms and no from: filter.
+     */
+    public FeedPage search(String query, long cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        Query parsed = parse(query);
+        long[] found = new long[Math.min(limit, 1024)];
+        int count = 0;
+        boolean hasMore = false;
+        long candidate = cursor == FeedPage.FIRST_PAGE ? Long.MAX_VALUE : cursor - 1;
+        while (candidate >= 0) {
+            candidate = intersect(parsed.cursors, candidate);
+            if (candidate == NONE) {
+                break;
+            }
+            if (parsed.accepts(candidate)) {
+                if (count == limit) {
+                    hasMore = true;
+                    break;
+                }
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, Math.min(limit, found.length * 2));
+                }
+                found[count++] = candidate;
+            }
+            candidate--;
+        }
+        return new FeedPage(Arrays.copyOf(found, count), hasMore);
+    }
+
+    /**
+     * Gets the number of distinct terms in the index.
+     *
+     * @return The term count.
+     */
+    public int getTermCount() {
+        return postings.size();
+    }
+
+    /**
+     * Gets the memory used by the compressed posting lists, not counting the term dictionary.
+     *
+     * @return The size in bytes.
+     */
+    public long getPostingBytes() {
+        long bytes = 0;
+        for (PostingList list : postings.values()) {
+            bytes += list.getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Splits text into lower-case terms: maximal runs of letters and digits, in order.
+     *
+     * @param text The text.
+     * @return The terms, including repeats; terms longer than MAX_TERM_LENGTH are left out.
+     */
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+            i += i < text.length() ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+
+    /**
+     * Finds the newest ID, no greater than a candidate, that every cursor contains.
+     */
+    private static long intersect(List<IdCursor> cursors, long candidate) {
+        while (true) {
+            boolean agreed = true;
+            for (IdCursor cursor : cursors) {
+                long id = cursor.floor(candidate);
+                if (id == NONE) {
+                    return NONE;
+                }
+                if (id < candidate) {
+                    candidate = id;
+                    agreed = false;
+                }
+            }
+            if (agreed) {
+                return candidate;
+            }
+        }
+    }
+
+    private Query parse(String text) {
+        Query query = new Query();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '"') {
+                int close = text.indexOf('"', i + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unterminated phrase in query");
+                }
+                List<String> phrase = terms(text.substring(i + 1, close));
+                for (String term : phrase) {
+                    query.cursors.add(termCursor(term));
+                }
+                if (phrase.size() > 1) {
+                    query.phrases.add(phrase);
+                }
+                i = close + 1;
+                continue;
+            }
+            int end = i;
+            while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+            String word = text.substring(i, end);
+            i = end;
+            if (word.startsWith("from:")) {
+                String authorID = word.substring("from:".length());
+                query.author = registry.getUser(authorID);
+                if (query.author == null) {
+                    throw new IllegalArgumentException("User " + authorID + " does not exist");
+                }
+            } else if (word.startsWith("group:")) {
+                String groupID = word.substring("group:".length());
+                query.group = registry.getGroup(groupID);
+                if (query.group == null) {
+                    throw new IllegalArgumentException("Group " + groupID + " does not exist");
+                }
+            } else if (word.endsWith("*")) {
+                query.cursors.add(prefixCursor(word.substring(0, word.length() - 1)));
+            } else {
+                for (String term : terms(word)) {
+                    query.cursors.add(termCursor(term));
+                }
+            }
+        }
+        if (query.author != null) {
+            query.cursors.add(new FeedCursor(query.author));
+        }
+        if (query.cursors.isEmpty()) {
+            throw new IllegalArgumentException("Query has no search terms");
+        }
+        return query;
+    }
+
+    private IdCursor termCursor(String term) {
+        PostingList list = postings.get(term);
+        return list == null ? EMPTY : new ListCursor(list);
+    }
+
+    private IdCursor prefixCursor(String prefix) {
+        List<String> terms = terms(prefix);
+        if (terms.size() != 1 || terms.get(0).length() < MIN_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("A prefix needs at least " + MIN_PREFIX_LENGTH + " letters or digits");
+        }
+        String start = terms.get(0);
+        ConcurrentNavigableMap<String, PostingList> matches = postings.subMap(start, start + Character.MAX_VALUE);
+        Collection<PostingList> lists = matches.values();
+        if (lists.isEmpty()) {
+            return EMPTY;
+        }
+        List<IdCursor> cursors = new ArrayList<>();
+        for (PostingList list : lists) {
+            if (cursors.size() == MAX_PREFIX_TERMS) {
+                throw new IllegalArgumentException("Prefix " + start + "* matches more than "
+                        + MAX_PREFIX_TERMS + " terms");
+            }
+            cursors.add(new ListCursor(list));
+        }
+        return cursors.size() == 1 ? cursors.get(0) : new UnionCursor(cursors);
+    }
+
+    /**
+     * Walks a sorted set of tweet IDs from the newest down. Calls must pass non-increasing candidates.
+     */
+    private interface IdCursor {
+
+        /**
+         * Gets the largest ID in the set that is no greater than a candidate.
+         *
+         * @return The ID, or NONE if there is none.
+         */
+        long floor(long candidate);
+    }
+
+    private static final IdCursor EMPTY = candidate -> NONE;
+
+    /**
+     * A cursor over a posting list that decodes one block at a time.
+     */
+    private static final class ListCursor implements IdCursor {
+        private final PostingList list;
+        private final long[] block = new long[PostingList.BLOCK_SIZE];
+        private int blockIndex = -1;
+        private int blockLength;
+
+        ListCursor(PostingList list) {
+            this.list = list;
+        }
+
+        @Override
+        public long floor(long candidate) {
+            if (blockIndex >= 0 && blockLength > 0 && block[0] <= candidate) {
+                long found = floorInBlock(candidate);
+                if (found != NONE) {
+                    return found;
+                }
+            }
+            for (int b = list.blockAtOrBefore(candidate); b >= 0; b--) {
+                blockIndex = b;
+                blockLength = list.decodeBlock(b, block);
+                long found = floorInBlock(candidate);
+                if (found != NONE) {
+                    return found;
+                }
+            }
+            return NONE;
+        }
+
+        private long floorInBlock(long candidate) {
+            int position = Arrays.binarySearch(block, 0, blockLength, candidate);
+            if (position >= 0) {
+                return block[position];
+            }
+            position = -position - 2;
+            return position >= 0 ? block[position] : NONE;
+        }
+    }
+
+    /**
+     * A cursor over the union of several cursors, used for prefix queries.
+     */
+    private static final class UnionCursor implements IdCursor {
+        private final List<IdCursor> cursors;
+
+        UnionCursor(List<IdCursor> cursors) {
+            this.cursors = cursors;
+        }
+
+        @Override
+        public long floor(long candidate) {
+            long best = NONE;
+            for (IdCursor cursor : cursors) {
+                best = Math.max(best, cursor.floor(candidate));
+            }
+            return best;
+        }
+    }
+
+    /**
+     * A cursor over a user's own tweets, used for the from: filter.
+     */
+    private static final class FeedCursor implements IdCursor {
+        private final User author;
+
+        FeedCursor(User author) {
+            this.author = author;
+        }
+
+        @Override
+        public long floor(long candidate) {
+            long[] page = author.getFeedPage(candidate == Long.MAX_VALUE ? candidate : candidate + 1, 1)
+                    .getTweetIDs();
+            return page.length == 0 ? NONE : page[0];
+        }
+    }
+
+    /**
+     * A parsed query: cursors that must all contain a tweet, then checks on the tweet itself.
+     */
+    private final class Query {
+        final List<IdCursor> cursors = new ArrayList<>();
+        final List<List<String>> phrases = new ArrayList<>();
+        User author;
+        UserGroup group;
+
+        boolean accepts(long tweetID) {
+            if (group != null) {
+                User tweetAuthor = author;
+                if (tweetAuthor == null) {
+                    String authorID = TweetStore.getInstance().getAuthorID(tweetID);
+                    tweetAuthor = authorID == null ? null : registry.getUser(authorID);
+                }
+                if (tweetAuthor == null || !GroupMembership.getInstance().isInSubtree(tweetAuthor, group)) {
+                    return false;
+                }
+            }
+            if (phrases.isEmpty()) {
+                return true;
+            }
+            String message = TweetStore.getInstance().getMessage(tweetID);
+            if (message == null) {
+                return false;
+            }
+            List<String> terms = terms(message);
+            for (List<String> phrase : phrases) {
+                if (Collections.indexOfSubList(terms, phrase) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package User;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * The SentimentAutomaton class is an Aho-Corasick automaton over a positive and a negative lexicon.
+ * It scans a tweet's characters exactly once, splitting words on whitespace and matching every lexicon
+ * term inside each word at the same time. Matching is case-insensitive and a term matches anywhere in a
+ * word, so "good" also matches "Goodness". Scanning does not allocate.
+ */
+public class SentimentAutomaton {
+    static final int POSITIVE = 1;
+    static final int NEGATIVE = 2;
+
+    // Per state: sorted transition characters, their target states, failure link, and matched lexicons
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failure;
+    private final int[] matches;
+
+    /**
+     * Constructor for the SentimentAutomaton class.
+     *
+     * @param positiveWords The terms counted as positive.
+     * @param negativeWords The terms counted as negative.
+     */
+    public SentimentAutomaton(Collection<String> positiveWords, Collection<String> negativeWords) {
+        List<StringBuilder> chars = new ArrayList<>();
+        List<List<Integer>> targets = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        newState(chars, targets, outputs);
+
+        for (String word : positiveWords) {
+            insert(word, POSITIVE, chars, targets, outputs);
+        }
+        for (String word : negativeWords) {
+            insert(word, NEGATIVE, chars, targets, outputs);
+        }
+
+        int stateCount = chars.size();
+        edgeChars = new char[stateCount][];
+        edgeTargets = new int[stateCount][];
+        failure = new int[stateCount];
+        matches = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            sortEdges(state, chars.get(state), targets.get(state));
+            matches[state] = outputs.get(state);
+        }
+        buildFailureLinks();
+    }
+
+    /**
+     * Scans a tweet and adds its word count and sentiment hits to a score.
+     *
+     * @param text  The tweet text.
+     * @param score The score to add the results to.
+     */
+    public void scan(CharSequence text, SentimentScore score) {
+        int state = 0;
+        int wordMatches = 0;
+        boolean inWord = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (inWord) {
+                    score.countWord(wordMatches);
+                    inWord = false;
+                }
+                state = 0;
+                wordMatches = 0;
+                continue;
+            }
+            inWord = true;
+            state = advance(state, c);
+            wordMatches |= matches[state];
+        }
+        if (inWord) {
+            score.countWord(wordMatches);
+        }
+    }
+
+    /**
+     * Scans a UTF-8 encoded tweet in place and adds its word count and sentiment hits to a score.
+     * Characters are decoded as they are scanned, so no String is created.
+     *
+     * @param buffer The buffer holding the tweet body.
+     * @param offset The offset of the body in the buffer.
+     * @param length The length of the body in bytes.
+     * @param score  The score to add the results to.
+     */
+    public void scanUtf8(ByteBuffer buffer, int offset, int length, SentimentScore score) {
+        int state = 0;
+        int wordMatches = 0;
+        boolean inWord = false;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int b = buffer.get(i++) & 0xFF;
+            int codePoint;
+            if (b < 0x80) {
+                codePoint = b;
+            } else if (b < 0xE0) {
+                codePoint = ((b & 0x1F) << 6) | (buffer.get(i++) & 0x3F);
+            } else if (b < 0xF0) {
+                codePoint = ((b & 0x0F) << 12) | ((buffer.get(i++) & 0x3F) << 6) | (buffer.get(i++) & 0x3F);
+            } else {
+                codePoint = ((b & 0x07) << 18) | ((buffer.get(i++) & 0x3F) << 12)
+                        | ((buffer.get(i++) & 0x3F) << 6) | (buffer.get(i++) & 0x3F);
+            }
+            if (Character.isWhitespace(codePoint)) {
+                if (inWord) {
+                    score.countWord(wordMatches);
+                    inWord = false;
+                }
+                state = 0;
+                wordMatches = 0;
+                continue;
+            }
+            inWord = true;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                state = advance(state, (char) codePoint);
+            } else {
+                state = advance(advance(state, Character.highSurrogate(codePoint)), Character.lowSurrogate(codePoint));
+            }
+            wordMatches |= matches[state];
+        }
+        if (inWord) {
+            score.countWord(wordMatches);
+        }
+    }
+
+    /**
+     * Moves the automaton from a state on one character, following failure links as needed.
+     */
+    private int advance(int state, char c) {
+        c = Character.toLowerCase(c);
+        int next = transition(state, c);
+        while (next < 0 && state != 0) {
+            state = failure[state];
+            next = transition(state, c);
+        }
+        return next < 0 ? 0 : next;
+    }
+
+    private int transition(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index < 0 ? -1 : edgeTargets[state][index];
+    }
+
+    private static void insert(String word, int lexicon, List<StringBuilder> chars,
+                               List<List<Integer>> targets, List<Integer> outputs) {
+        if (word.isEmpty()) {
+            return;
+        }
+        int state = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            int index = chars.get(state).indexOf(String.valueOf(c));
+            if (index < 0) {
+                int next = newState(chars, targets, outputs);
+                chars.get(state).append(c);
+                targets.get(state).add(next);
+                state = next;
+            } else {
+                state = targets.get(state).get(index);
+            }
+        }
+        outputs.set(state, outputs.get(state) | lexicon);
+    }
+
+    private static int newState(List<StringBuilder> chars, List<List<Integer>> targets, List<Integer> outputs) {
+        chars.add(new StringBuilder());
+        targets.add(new ArrayList<>());
+        outputs.add(0);
+        return chars.size() - 1;
+    }
+
+    private void sortEdges(int state, StringBuilder chars, List<Integer> targets) {
+        Integer[] order = new Integer[chars.length()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Character.compare(chars.charAt(a), chars.charAt(b)));
+        edgeChars[state] = new char[order.length];
+        edgeTargets[state] = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            edgeChars[state][i] = chars.charAt(order[i]);
+            edgeTargets[state][i] = targets.get(order[i]);
+        }
+    }
+
+    /**
+     * Computes failure links breadth-first and merges each state's matches with those of its failure state.
+     */
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int fallback = failure[state];
+                int next = transition(fallback, c);
+                while (next < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                    next = transition(fallback, c);
+                }
+                failure[child] = next < 0 ? 0 : next;
+                matches[child] |= matches[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+}
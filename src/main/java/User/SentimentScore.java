@@ -0,0 +1,84 @@
+package User;
+
+/**
+ * The SentimentScore class holds the result of scanning one or more tweets: the number of words,
+ * and how many of those words matched the positive and negative lexicons.
+ * Instances are mutable so a single score can be reused across tweets without allocating.
+ */
+public class SentimentScore {
+    private long words;
+    private long positiveHits;
+    private long negativeHits;
+
+    /**
+     * Clears all counts back to zero.
+     */
+    public void reset() {
+        words = 0;
+        positiveHits = 0;
+        negativeHits = 0;
+    }
+
+    /**
+     * Adds the counts of another score to this one.
+     *
+     * @param other The score to be added.
+     */
+    public void add(SentimentScore other) {
+        words += other.words;
+        positiveHits += other.positiveHits;
+        negativeHits += other.negativeHits;
+    }
+
+    void add(long words, long positiveHits, long negativeHits) {
+        this.words += words;
+        this.positiveHits += positiveHits;
+        this.negativeHits += negativeHits;
+    }
+
+    void countWord(int matches) {
+        words++;
+        if ((matches & SentimentAutomaton.POSITIVE) != 0) {
+            positiveHits++;
+        }
+        if ((matches & SentimentAutomaton.NEGATIVE) != 0) {
+            negativeHits++;
+        }
+    }
+
+    /**
+     * Gets the number of words scanned.
+     *
+     * @return The word count.
+     */
+    public long getWords() {
+        return words;
+    }
+
+    /**
+     * Gets the number of words that matched the positive lexicon.
+     *
+     * @return The positive hit count.
+     */
+    public long getPositiveHits() {
+        return positiveHits;
+    }
+
+    /**
+     * Gets the number of words that matched the negative lexicon.
+     *
+     * @return The negative hit count.
+     */
+    public long getNegativeHits() {
+        return negativeHits;
+    }
+
+    /**
+     * Gets the percentage of positive words relative to all words.
+     *
+     * @return The positive percentage, or 0 if no words were scanned.
+     */
+    public double getPositivePercentage() {
+        return words == 0 ? 0.0 : (double) positiveHits / (double) words * 100.0;
+    }
+}
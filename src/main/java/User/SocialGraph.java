@@ -0,0 +1,558 @@
+package User;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+/**
+ * The SocialGraph class stores who follows whom for every user.
+ * Each user is given a dense int node ID when it is registered, and each user's followers and followees
+ * are kept in primitive IntHashSets indexed by that node ID. "Does A follow B" is a single hash lookup,
+ * follower counts are a field read, and the graph holds no object reference per edge, so the garbage
+ * collector only sees two int arrays per user. Each edge is stored once on each side, costing between
+ * 11 and 22 bytes in total.
+ *
+ * <p>Users restored from a ModelSnapshot are given a block of node IDs at once, with their edges as
+ * compressed adjacency lists. A node's sets are only built from those lists the first time the node is
+ * used, and its User is only looked up when the graph has to hand it out.
+ */
+public class SocialGraph {
+    private static final int INITIAL_NODES = 64;
+
+    private static final SocialGraph instance = new SocialGraph();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private User[] users = new User[INITIAL_NODES];
+    private IntHashSet[] followers = new IntHashSet[INITIAL_NODES];
+    private IntHashSet[] following = new IntHashSet[INITIAL_NODES];
+    private int nodeCount;
+    private long edgeCount;
+    private RestoredNodes[] restored = new RestoredNodes[0];
+    private volatile int unloadedNodes; // Restored nodes whose sets have not been built yet
+
+    /**
+     * Gets the social graph shared by all users.
+     *
+     * @return The shared SocialGraph instance.
+     */
+    public static SocialGraph getInstance() {
+        return instance;
+    }
+
+    /**
+     * Adds a user to the graph and assigns it the next node ID.
+     *
+     * @param user The user to be added.
+     * @return The user's node ID.
+     */
+    public int addNode(User user) {
+        lock.writeLock().lock();
+        try {
+            if (nodeCount == users.length) {
+                int newLength = users.length * 2;
+                users = Arrays.copyOf(users, newLength);
+                followers = Arrays.copyOf(followers, newLength);
+                following = Arrays.copyOf(following, newLength);
+            }
+            users[nodeCount] = user;
+            followers[nodeCount] = new IntHashSet();
+            following[nodeCount] = new IntHashSet();
+            return nodeCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a block of restored users to the graph, with their follow edges. The users are looked up
+     * when first needed, and each user's sets are built when the user is first used.
+     *
+     * @param count     The number of users.
+     * @param ends      The end offset in targets of each user's followees, by user number.
+     * @param followees The followees of every user, as user numbers, one user after another.
+     * @param resolver  Gets the user with a number.
+     * @return The node ID of user number 0; the others follow in order.
+     * @throws IllegalArgumentException If the lists do not describe edges between the count users.
+     */
+    int addRestoredNodes(int count, int[] ends, int[] followees, IntFunction<User> resolver) {
+        RestoredNodes nodes = new RestoredNodes(count, ends, followees, resolver);
+        lock.writeLock().lock();
+        try {
+            nodes.base = nodeCount;
+            if (nodeCount + count > users.length) {
+                int newLength = Math.max(users.length * 2, nodeCount + count);
+                users = Arrays.copyOf(users, newLength);
+                followers = Arrays.copyOf(followers, newLength);
+                following = Arrays.copyOf(following, newLength);
+            }
+            restored = Arrays.copyOf(restored, restored.length + 1);
+            restored[restored.length - 1] = nodes;
+            nodeCount += count;
+            edgeCount += followees.length;
+            unloadedNodes += count;
+            return nodes.base;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the user with a node ID.
+     *
+     * @param node The node ID.
+     * @return The user.
+     */
+    public User getUser(int node) {
+        lock.readLock().lock();
+        try {
+            return user(checkNode(node));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a follow edge.
+     *
+     * @param follower The node ID of the user who follows.
+     * @param followee The node ID of the user being followed.
+     * @return True if the edge was added, false if it already existed or both IDs are the same.
+     */
+    public boolean follow(int follower, int followee) {
+        lock.writeLock().lock();
+        try {
+            load(checkNode(follower));
+            load(checkNode(followee));
+            if (follower == followee || !following[follower].add(followee)) {
+                return false;
+            }
+            followers[followee].add(follower);
+            edgeCount++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a follow edge.
+     *
+     * @param follower The node ID of the user who follows.
+     * @param followee The node ID of the user being followed.
+     * @return True if the edge existed.
+     */
+    public boolean unfollow(int follower, int followee) {
+        lock.writeLock().lock();
+        try {
+            load(checkNode(follower));
+            load(checkNode(followee));
+            if (!following[follower].remove(followee)) {
+                return false;
+            }
+            followers[followee].remove(follower);
+            edgeCount--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether one user follows another.
+     *
+     * @param follower The node ID of the possible follower.
+     * @param followee The node ID of the possible followee.
+     * @return True if the follower follows the followee.
+     */
+    public boolean isFollowing(int follower, int followee) {
+        ensureLoaded(follower);
+        lock.readLock().lock();
+        try {
+            return following[checkNode(follower)].contains(followee);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether two users follow each other.
+     *
+     * @param a The node ID of one user.
+     * @param b The node ID of the other user.
+     * @return True if each user follows the other.
+     */
+    public boolean isMutual(int a, int b) {
+        ensureLoaded(a);
+        ensureLoaded(b);
+        lock.readLock().lock();
+        try {
+            return following[checkNode(a)].contains(b) && following[checkNode(b)].contains(a);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the users that a user follows and that follow them back.
+     *
+     * @param node The node ID of the user.
+     * @return The node IDs of the mutual follows, in no particular order.
+     */
+    public int[] getMutuals(int node) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            IntHashSet out = following[checkNode(node)];
+            IntHashSet in = followers[node];
+            // Probe the larger set with the members of the smaller one
+            IntHashSet smaller = out.size() <= in.size() ? out : in;
+            IntHashSet larger = smaller == out ? in : out;
+            int[] candidates = smaller.toArray();
+            int count = 0;
+            for (int candidate : candidates) {
+                if (larger.contains(candidate)) {
+                    candidates[count++] = candidate;
+                }
+            }
+            return Arrays.copyOf(candidates, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of followers of a user.
+     *
+     * @param node The node ID of the user.
+     * @return The follower count.
+     */
+    public int getFollowerCount(int node) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            return followers[checkNode(node)].size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of users a user follows.
+     *
+     * @param node The node ID of the user.
+     * @return The followee count.
+     */
+    public int getFollowingCount(int node) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            return following[checkNode(node)].size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the followers of a user.
+     *
+     * @param node The node ID of the user.
+     * @return The node IDs of the followers, in no particular order.
+     */
+    public int[] getFollowers(int node) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            return followers[checkNode(node)].toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the users a user follows.
+     *
+     * @param node The node ID of the user.
+     * @return The node IDs of the followees, in no particular order.
+     */
+    public int[] getFollowing(int node) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            return following[checkNode(node)].toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the users a user follows without building the sets of a restored node that has not been
+     * used yet, for writing a ModelSnapshot.
+     *
+     * @param node The node ID of the user.
+     * @return The node IDs of the followees, in no particular order.
+     */
+    int[] copyFollowing(int node) {
+        lock.readLock().lock();
+        try {
+            IntHashSet set = following[checkNode(node)];
+            if (set != null) {
+                return set.toArray();
+            }
+            RestoredNodes nodes = restoredNodes(node);
+            int index = node - nodes.base;
+            int start = index == 0 ? 0 : nodes.ends[index - 1];
+            int[] followees = new int[nodes.ends[index] - start];
+            for (int i = 0; i < followees.length; i++) {
+                followees[i] = nodes.base + nodes.followees[start + i];
+            }
+            return followees;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the followers of a user if there are at most a given number of them. The follower count is
+     * checked and the set copied under a single read lock, so a caller fanning out to the followers
+     * does so without holding the lock.
+     *
+     * @param node The node ID of the user.
+     * @param max  The largest number of followers to return.
+     * @return The node IDs of the followers, in no particular order, or null if there are more than max.
+     */
+    public int[] getFollowersUpTo(int node, int max) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            IntHashSet nodeFollowers = followers[checkNode(node)];
+            return nodeFollowers.size() > max ? null : nodeFollowers.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the users a user follows who have more than a given number of followers. Restored followees
+     * that have not been used yet are counted from their adjacency lists without being loaded.
+     *
+     * @param node The node ID of the user.
+     * @param max  The follower count a followee has to exceed.
+     * @return The node IDs of those followees, in no particular order.
+     */
+    public int[] getFollowingAbove(int node, int max) {
+        ensureLoaded(node);
+        lock.readLock().lock();
+        try {
+            int[] followees = following[checkNode(node)].toArray();
+            int count = 0;
+            for (int followee : followees) {
+                if (followerCount(followee) > max) {
+                    followees[count++] = followee;
+                }
+            }
+            return Arrays.copyOf(followees, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of users in the graph.
+     *
+     * @return The node count.
+     */
+    public int getNodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of follow edges in the graph.
+     *
+     * @return The edge count.
+     */
+    public long getEdgeCount() {
+        lock.readLock().lock();
+        try {
+            return edgeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes used by the adjacency tables of every user.
+     *
+     * @return The adjacency size in bytes.
+     */
+    public long getAdjacencyBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                if (following[i] != null) {
+                    bytes += followers[i].getTableBytes() + following[i].getTableBytes();
+                }
+            }
+            for (RestoredNodes nodes : restored) {
+                bytes += nodes.getBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int checkNode(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("Unknown node: " + node);
+        }
+        return node;
+    }
+
+    /**
+     * Gets the user with a node ID, looking up a restored user that has not been handed out yet.
+     * The caller holds the lock.
+     */
+    private User user(int node) {
+        User user = users[node];
+        if (user == null) {
+            RestoredNodes nodes = restoredNodes(node);
+            user = nodes.resolver.apply(node - nodes.base);
+        }
+        return user;
+    }
+
+    /**
+     * Counts a node's followers, reading a restored node's adjacency lists if its sets are not built.
+     * The caller holds the lock.
+     */
+    private int followerCount(int node) {
+        IntHashSet set = followers[node];
+        if (set != null) {
+            return set.size();
+        }
+        RestoredNodes nodes = restoredNodes(node);
+        int index = node - nodes.base;
+        return nodes.followerEnds[index] - (index == 0 ? 0 : nodes.followerEnds[index - 1]);
+    }
+
+    /**
+     * Builds the sets of a node before a read, taking the write lock only if the node is restored
+     * and has not been used yet.
+     */
+    private void ensureLoaded(int node) {
+        if (unloadedNodes == 0) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (node < 0 || node >= nodeCount || following[node] != null) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            load(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the sets of a restored node from its adjacency lists, if not done yet. The caller holds
+     * the write lock.
+     */
+    private void load(int node) {
+        if (following[node] != null) {
+            return;
+        }
+        RestoredNodes nodes = restoredNodes(node);
+        int index = node - nodes.base;
+        following[node] = nodes.set(nodes.ends, nodes.followees, index);
+        followers[node] = nodes.set(nodes.followerEnds, nodes.followers, index);
+        unloadedNodes--;
+    }
+
+    private RestoredNodes restoredNodes(int node) {
+        for (int i = restored.length - 1; ; i--) {
+            if (restored[i].base <= node) {
+                return restored[i];
+            }
+        }
+    }
+
+    /**
+     * A block of restored nodes, with their edges in compressed sparse row form in both directions.
+     */
+    private static final class RestoredNodes {
+        final int[] ends;
+        final int[] followees;
+        final int[] followerEnds;
+        final int[] followers;
+        final IntFunction<User> resolver;
+        int base;
+
+        RestoredNodes(int count, int[] ends, int[] followees, IntFunction<User> resolver) {
+            if (ends.length != count || (count == 0 ? followees.length != 0 : ends[count - 1] != followees.length)) {
+                throw new IllegalArgumentException("Adjacency lists do not match the node count");
+            }
+            this.ends = ends;
+            this.followees = followees;
+            this.resolver = resolver;
+            // Count each node's followers, then place them, so both directions can be read per node
+            followerEnds = new int[count];
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                if (ends[i] < start) {
+                    throw new IllegalArgumentException("Adjacency offsets decrease at node " + i);
+                }
+                for (int j = start; j < ends[i]; j++) {
+                    int followee = followees[j];
+                    if (followee < 0 || followee >= count || followee == i) {
+                        throw new IllegalArgumentException("Bad follow edge from node " + i);
+                    }
+                    followerEnds[followee]++;
+                }
+                start = ends[i];
+            }
+            for (int i = 1; i < count; i++) {
+                followerEnds[i] += followerEnds[i - 1];
+            }
+            followers = new int[followees.length];
+            int[] next = new int[count];
+            for (int i = 0; i < count; i++) {
+                next[i] = i == 0 ? 0 : followerEnds[i - 1];
+            }
+            start = 0;
+            for (int i = 0; i < count; i++) {
+                for (int j = start; j < ends[i]; j++) {
+                    followers[next[followees[j]]++] = i;
+                }
+                start = ends[i];
+            }
+        }
+
+        /**
+         * Builds the set of node IDs in one node's list.
+         */
+        IntHashSet set(int[] listEnds, int[] targets, int index) {
+            IntHashSet set = new IntHashSet();
+            for (int j = index == 0 ? 0 : listEnds[index - 1]; j < listEnds[index]; j++) {
+                set.add(base + targets[j]);
+            }
+            return set;
+        }
+
+        long getBytes() {
+            return 4L * (ends.length + followees.length + followerEnds.length + followers.length);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package User;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Statistics class keeps running totals for the admin control panel.
+ * Counters are updated as users, groups and tweets are created, so reading any total takes constant
+ * time regardless of how much data there is. LongAdder counters keep concurrent updates cheap.
+ * A model restored from a ModelSnapshot is counted at once, except for its tweets, which are added by a
+ * scan on a background thread.
+ */
+public class Statistics implements ModelListener {
+    private final TweetAnalyzer tweetAnalyzer;
+    private final LongAdder users;
+    private final LongAdder groups;
+    private final LongAdder tweets;
+    private final LongAdder words;
+    private final LongAdder positiveHits;
+    private final LongAdder negativeHits;
+    private final ThreadLocal<SentimentScore> scratch;
+
+    /**
+     * Constructor for the Statistics class.
+     *
+     * @param tweetAnalyzer The analyzer used to count the words and positive hits of each tweet.
+     */
+    public Statistics(TweetAnalyzer tweetAnalyzer) {
+        this.tweetAnalyzer = tweetAnalyzer;
+        this.users = new LongAdder();
+        this.groups = new LongAdder();
+        this.tweets = new LongAdder();
+        this.words = new LongAdder();
+        this.positiveHits = new LongAdder();
+        this.negativeHits = new LongAdder();
+        this.scratch = ThreadLocal.withInitial(SentimentScore::new);
+    }
+
+    /**
+     * Counts a newly created user.
+     *
+     * @param user The new user.
+     */
+    @Override
+    public void userCreated(User user) {
+        users.increment();
+    }
+
+    /**
+     * Counts a newly created group.
+     *
+     * @param group The new group.
+     */
+    @Override
+    public void groupCreated(UserGroup group) {
+        groups.increment();
+    }
+
+    /**
+     * Counts a newly posted tweet along with its words and positive hits.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    @Override
+    public void tweetPosted(User author, Tweet tweet) {
+        addTweet(tweet.getMessage());
+    }
+
+    /**
+     * Counts the users of a restored model, and its tweets as they are scanned.
+     *
+     * @param model The restored model.
+     */
+    @Override
+    public void modelRestored(ModelSnapshot.RestoredModel model) {
+        users.add(model.getUserCount());
+        model.scanTweets(tweet -> addTweet(model.getMessage(tweet)));
+    }
+
+    private void addTweet(String message) {
+        SentimentScore score = scratch.get();
+        score.reset();
+        tweetAnalyzer.score(message, score);
+        tweets.increment();
+        words.add(score.getWords());
+        positiveHits.add(score.getPositiveHits());
+        negativeHits.add(score.getNegativeHits());
+    }
+
+    /**
+     * Gets the total number of users.
+     *
+     * @return The number of users created.
+     */
+    public long getTotalUsers() {
+        return users.sum();
+    }
+
+    /**
+     * Gets the total number of groups.
+     *
+     * @return The number of groups created.
+     */
+    public long getTotalGroups() {
+        return groups.sum();
+    }
+
+    /**
+     * Gets the total number of tweets.
+     *
+     * @return The number of tweets posted.
+     */
+    public long getTotalTweets() {
+        return tweets.sum();
+    }
+
+    /**
+     * Gets the total number of words over all tweets.
+     *
+     * @return The number of words posted.
+     */
+    public long getTotalWords() {
+        return words.sum();
+    }
+
+    /**
+     * Gets the total number of positive hits over all tweets.
+     *
+     * @return The number of positive hits.
+     */
+    public long getTotalPositiveHits() {
+        return positiveHits.sum();
+    }
+
+    /**
+     * Gets the total number of negative hits over all tweets.
+     *
+     * @return The number of negative hits.
+     */
+    public long getTotalNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    /**
+     * Gets the percentage of positive hits relative to the total number of words.
+     *
+     * @return The positive percentage, or 0 if nothing has been posted.
+     */
+    public double getPositivePercentage() {
+        long totalWords = words.sum();
+        return totalWords == 0 ? 0.0 : (double) positiveHits.sum() / (double) totalWords * 100.0;
+    }
+}
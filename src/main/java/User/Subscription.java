@@ -0,0 +1,47 @@
+package User;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The Subscription class is the handle returned when an observer is registered.
+ * Unsubscribing removes exactly that registration, and does nothing if it was already removed.
+ */
+public final class Subscription implements AutoCloseable {
+    private final Runnable cancel;
+    private final AtomicBoolean active = new AtomicBoolean(true);
+
+    /**
+     * Constructor for the Subscription class.
+     *
+     * @param cancel The action that removes the registration; run at most once.
+     */
+    Subscription(Runnable cancel) {
+        this.cancel = cancel;
+    }
+
+    /**
+     * Removes the registration.
+     */
+    public void unsubscribe() {
+        if (active.compareAndSet(true, false)) {
+            cancel.run();
+        }
+    }
+
+    /**
+     * Checks whether the registration is still in place.
+     *
+     * @return True if unsubscribe has not been called.
+     */
+    public boolean isActive() {
+        return active.get();
+    }
+
+    /**
+     * Removes the registration, so a subscription can be used in try-with-resources.
+     */
+    @Override
+    public void close() {
+        unsubscribe();
+    }
+}
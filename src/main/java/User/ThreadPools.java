@@ -0,0 +1,36 @@
+package User;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ThreadPools class creates the executors used for background work in the MiniTwitter application.
+ * Virtual threads are used when the running JDK supports them; otherwise a cached pool of daemon
+ * platform threads is used.
+ */
+public final class ThreadPools {
+
+    private ThreadPools() {
+    }
+
+    /**
+     * Creates an executor that runs each task on its own virtual thread, falling back to a cached
+     * pool of daemon threads on JDKs where virtual threads are unavailable or still a preview feature.
+     *
+     * @param name The name prefix for fallback platform threads.
+     * @return A new executor.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
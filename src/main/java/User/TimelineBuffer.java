@@ -0,0 +1,180 @@
+package User;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * The TimelineBuffer class is a bounded ring buffer holding the IDs of the most recent tweets of a timeline.
+ * Once the buffer is full, each new tweet overwrites the oldest one. The backing array starts small
+ * and only grows up to the capacity, so idle followers cost very little memory.
+ * Tweets themselves are kept in the TweetStore, so each entry costs 8 bytes.
+ */
+public class TimelineBuffer {
+    private static final int INITIAL_SIZE = 8;
+
+    private final int capacity;
+    private long[] tweets;
+    private int head; // Index of the next slot to write
+    private int size;
+    private volatile long version; // Bumped on every change, written under the lock
+
+    /**
+     * Constructor for the TimelineBuffer class.
+     *
+     * @param capacity The maximum number of tweets kept in the buffer.
+     */
+    public TimelineBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.tweets = new long[Math.min(INITIAL_SIZE, capacity)];
+    }
+
+    /**
+     * Appends a tweet to the buffer, evicting the oldest tweet if the buffer is full.
+     *
+     * @param tweetID The ID of the tweet to be added.
+     */
+    public synchronized void add(long tweetID) {
+        if (size == tweets.length && tweets.length < capacity) {
+            grow();
+        }
+        tweets[head] = tweetID;
+        if (++head == tweets.length) {
+            head = 0;
+        }
+        if (size < tweets.length) {
+            size++;
+        }
+        version++;
+    }
+
+    /**
+     * Merges older tweets into the buffer, keeping it ordered by tweet ID and dropping duplicates.
+     * Used to backfill a timeline when a new followee is added.
+     *
+     * @param others The IDs of the tweets to be merged in, in any order.
+     */
+    public synchronized void merge(long[] others) {
+        if (others.length == 0) {
+            return;
+        }
+        long[] all = Arrays.copyOf(newest(size), size + others.length);
+        System.arraycopy(others, 0, all, size, others.length);
+        Arrays.sort(all);
+
+        tweets = new long[Math.min(Math.max(INITIAL_SIZE, all.length), capacity)];
+        head = 0;
+        size = 0;
+        long lastID = Long.MIN_VALUE;
+        for (long tweetID : all) {
+            if (tweetID != lastID) {
+                add(tweetID);
+                lastID = tweetID;
+            }
+        }
+    }
+
+    /**
+     * Removes every tweet matching a condition, keeping the others in order.
+     * Used to take the tweets of an unfollowed user out of a timeline.
+     *
+     * @param filter The condition, given each tweet ID.
+     * @return The number of tweets removed.
+     */
+    public synchronized int removeIf(LongPredicate filter) {
+        long[] kept = newest(size);
+        int count = 0;
+        for (long tweetID : kept) {
+            if (!filter.test(tweetID)) {
+                kept[count++] = tweetID;
+            }
+        }
+        int removed = size - count;
+        if (removed > 0) {
+            tweets = new long[Math.min(Math.max(INITIAL_SIZE, count), capacity)];
+            head = 0;
+            size = 0;
+            for (int i = count - 1; i >= 0; i--) {
+                add(kept[i]);
+            }
+            version++; // Even if nothing is left to add
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the most recent tweets in the buffer, newest first.
+     *
+     * @param limit The maximum number of tweets to return.
+     * @return The IDs of the newest tweets, at most limit of them.
+     */
+    public synchronized long[] newest(int limit) {
+        int count = Math.min(limit, size);
+        long[] result = new long[count];
+        for (int i = 1; i <= count; i++) {
+            result[i - 1] = tweets[(head - i + tweets.length) % tweets.length];
+        }
+        return result;
+    }
+
+    /**
+     * Gets the most recent tweets in the buffer that are older than a cursor, newest first.
+     *
+     * @param before Only tweets with a smaller ID are returned.
+     * @param limit  The maximum number of tweets to return.
+     * @return The IDs of the tweets, at most limit of them.
+     */
+    public synchronized long[] newestBefore(long before, int limit) {
+        long[] result = new long[Math.min(limit, size)];
+        int count = 0;
+        for (int i = 1; i <= size && count < result.length; i++) {
+            long tweetID = tweets[(head - i + tweets.length) % tweets.length];
+            if (tweetID < before) {
+                result[count++] = tweetID;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Gets the number of tweets currently held in the buffer.
+     *
+     * @return The buffer size.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets a number that changes whenever a tweet is added, merged into or removed from the buffer, so a reader can
+     * tell whether anything it derived from the buffer is out of date without locking it.
+     *
+     * @return The buffer version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the maximum number of tweets the buffer can hold.
+     *
+     * @return The buffer capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Doubles the backing array (up to the capacity), unrolling the ring so the oldest tweet is at index 0.
+     */
+    private void grow() {
+        long[] larger = new long[Math.min(tweets.length * 2, capacity)];
+        // The buffer is full, so head points at the oldest tweet
+        System.arraycopy(tweets, head, larger, 0, tweets.length - head);
+        System.arraycopy(tweets, 0, larger, tweets.length - head, head);
+        head = tweets.length;
+        tweets = larger;
+    }
+}
@@ -0,0 +1,486 @@
+package User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The TimelineEngine class delivers tweets to the timelines of the users who follow their author.
+ * When a tweet is posted it is pushed into a bounded buffer for each follower (fan-out on write),
+ * so reading a timeline does not have to scan every followee's feed. Authors with more followers than
+ * the fan-out threshold are skipped at write time; their recent tweets are merged in when a follower
+ * reads their timeline instead.
+ * The engine is safe for concurrent use: timelines live in arrays indexed by the user's social graph
+ * node, which only grow, and each buffer has its own lock. A post copies its author's followers under
+ * the SocialGraph's read lock and delivers to them after releasing it, so a large fan-out never holds
+ * up follows, unfollows or other posts; posts by different authors contend on that lock only for the
+ * copy, and otherwise only when they deliver to the same follower.
+ *
+ * <p>Pages are read by k-way merging their sources through a heap, newest first, stopping as soon as
+ * the page is full. A page the pushed timeline covers merges the pushed tweets with the feeds of high
+ * fan-out followees, which are only looked for once such an author has posted. Unfollowing someone
+ * takes their tweets out of the pushed timeline, so the page matches what pulling it would give. A
+ * page older than the pushed timeline reaches is pulled from the feeds of the user and their followees.
+ * Each feed's newest tweet bounds what it can add, so the feeds are opened in that order, and only while
+ * the next one could still beat the tweets merged so far; each is then read a few tweets at a time.
+ * Finding the order reads one ID per followee, but only the feeds that reach the page, plus those with
+ * tweets newer than the cursor, are read at all. Merged pages are kept in a small per-user LRU cache. A cached page is dropped when the user's pushed timeline
+ * changes, which every followee post does, when a high fan-out author posts, when the user unfollows
+ * someone, and after CACHE_TTL_MILLIS.
+ *
+ * <p>Tweets and follow edges restored from a ModelSnapshot are not pushed. Every restored tweet is older
+ * than any tweet posted afterwards, so the pushed timelines stay correct: pages are pulled from the feeds
+ * until enough new tweets have been pushed to cover them.
+ */
+public class TimelineEngine {
+    public static final int DEFAULT_CAPACITY = 200;
+    public static final int DEFAULT_FANOUT_THRESHOLD = 10_000;
+    public static final int CACHED_PAGES = 4;
+    public static final long CACHE_TTL_MILLIS = 10_000;
+
+    private static final int FIRST_CHUNK = 4; // Tweets read from each feed before it is known to be needed
+
+    private static final TimelineEngine instance = new TimelineEngine(DEFAULT_CAPACITY, DEFAULT_FANOUT_THRESHOLD);
+
+    private final int capacity;
+    private final int fanoutThreshold;
+    private final NodeTable<TimelineBuffer> homeTimelines;
+    private final NodeTable<TimelineBuffer> authoredTimelines;
+    private final NodeTable<PageCache> pageCaches;
+    private final AtomicLong highFanoutPosts; // Invalidates every cached page when bumped
+
+    /**
+     * Constructor for the TimelineEngine class.
+     *
+     * @param capacity        The number of tweets kept in each timeline buffer.
+     * @param fanoutThreshold The follower count above which an author's tweets are merged at read time.
+     */
+    public TimelineEngine(int capacity, int fanoutThreshold) {
+        this.capacity = capacity;
+        this.fanoutThreshold = fanoutThreshold;
+        this.homeTimelines = new NodeTable<>(() -> new TimelineBuffer(capacity));
+        this.authoredTimelines = new NodeTable<>(() -> new TimelineBuffer(capacity));
+        this.pageCaches = new NodeTable<>(PageCache::new);
+        this.highFanoutPosts = new AtomicLong();
+    }
+
+    /**
+     * Gets the timeline engine shared by all users.
+     *
+     * @return The shared TimelineEngine instance.
+     */
+    public static TimelineEngine getInstance() {
+        return instance;
+    }
+
+    /**
+     * Delivers a newly posted tweet to its author's timeline and, unless the author has too many
+     * followers, to the timeline of every follower.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    public void publish(User author, Tweet tweet) {
+        long tweetID = tweet.getTweetID();
+        authoredTimeline(author).add(tweetID);
+        homeTimeline(author).add(tweetID);
+        Metrics metrics = Metrics.getInstance();
+        // One look at the graph both decides the fan-out and copies the followers, so delivering to
+        // them never holds the graph's lock against follows or other posts
+        int[] followers = SocialGraph.getInstance().getFollowersUpTo(author.getNodeID(), fanoutThreshold);
+        if (followers == null) {
+            highFanoutPosts.incrementAndGet();
+            metrics.getFanout().record(0);
+            return;
+        }
+        for (int follower : followers) {
+            homeTimelines.getOrCreate(follower).add(tweetID);
+        }
+        metrics.getFanout().record(followers.length);
+        metrics.getTimelineDeliveries().add(followers.length);
+    }
+
+    /**
+     * Backfills a follower's timeline with the recent tweets of a user they just started following.
+     *
+     * @param follower The user who started following.
+     * @param followee The user being followed.
+     */
+    public void backfill(User follower, User followee) {
+        invalidate(follower);
+        if (isHighFanout(followee)) {
+            return; // Merged at read time
+        }
+        TimelineBuffer authored = authoredTimelines.get(followee);
+        if (authored != null) {
+            homeTimeline(follower).merge(authored.newest(capacity));
+        }
+    }
+
+    /**
+     * Takes the tweets of a user someone stopped following out of their pushed timeline. A tweet being
+     * fanned out while they unfollow may still arrive afterwards, as for a tweet posted just before.
+     *
+     * @param follower The user who stopped following.
+     * @param followee The user no longer followed.
+     */
+    public void unfollowed(User follower, User followee) {
+        invalidate(follower);
+        TimelineBuffer home = homeTimelines.get(follower);
+        if (home != null) {
+            String author = followee.getUserID();
+            TweetStore store = TweetStore.getInstance();
+            home.removeIf(tweetID -> author.equals(store.getAuthorID(tweetID)));
+        }
+    }
+
+    /**
+     * Drops every cached page of a user's timeline, for changes the cache cannot see by itself.
+     *
+     * @param user The user whose timeline changed.
+     */
+    public void invalidate(User user) {
+        PageCache cache = pageCaches.get(user);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Reads the newest tweets of a user's timeline: their own tweets plus those of the users they follow.
+     *
+     * @param user  The user whose timeline is read.
+     * @param limit The maximum number of tweets to return.
+     * @return The newest timeline tweets, newest first.
+     */
+    public List<Tweet> readTimeline(User user, int limit) {
+        return readTimelinePage(user, FeedPage.FIRST_PAGE, limit).getTweets();
+    }
+
+    /**
+     * Reads one page of a user's timeline, newest first.
+     *
+     * @param user   The user whose timeline is read.
+     * @param cursor FeedPage.FIRST_PAGE, or the next cursor of the previous page.
+     * @param limit  The maximum number of tweets to return.
+     * @return The page of timeline tweets.
+     */
+    public FeedPage readTimelinePage(User user, long cursor, int limit) {
+        long start = System.nanoTime();
+        Metrics metrics = Metrics.getInstance();
+        // Read the versions before merging, so a change made during the merge invalidates the result
+        TimelineBuffer home = homeTimelines.get(user);
+        long version = home == null ? 0 : home.getVersion();
+        long highFanout = highFanoutPosts.get();
+        long now = System.currentTimeMillis();
+        PageCache cache = pageCaches.getOrCreate(user);
+        FeedPage page = cache.get(cursor, limit, version, highFanout, now);
+        if (page != null) {
+            metrics.getTimelineCacheHits().increment();
+        } else {
+            page = merge(user, home, cursor, limit);
+            cache.put(cursor, limit, version, highFanout, now, page);
+            metrics.getTimelineCacheMisses().increment();
+        }
+        metrics.getTimelineRead().recordSince(start);
+        return page;
+    }
+
+    /**
+     * Merges one page of a user's timeline from the pushed timeline or, past its end, from the feeds.
+     */
+    private FeedPage merge(User user, TimelineBuffer home, long cursor, int limit) {
+        // One tweet past the page shows whether the pushed timeline covers it, and that more follow
+        long[] pushed = home == null || limit <= 0 ? new long[0] : home.newestBefore(cursor, limit + 1);
+        if (pushed.length <= limit) {
+            return pull(user, cursor, limit);
+        }
+        // Only high fan-out followees were not pushed. Their authored buffers may cover less time than
+        // the home timeline, so read their feeds instead.
+        List<MergeSource> sources = new ArrayList<>();
+        sources.add(new MergeSource(pushed));
+        if (highFanoutPosts.get() > 0) {
+            SocialGraph graph = SocialGraph.getInstance();
+            for (int followee : graph.getFollowingAbove(user.getNodeID(), fanoutThreshold)) {
+                sources.add(new MergeSource(graph.getUser(followee), cursor, limit));
+            }
+        }
+        long[] merged = mergeNewest(sources, limit);
+        return new FeedPage(merged, hasMore(sources));
+    }
+
+    /**
+     * Pulls one page of a user's timeline from their feed and those of the users they follow, opening
+     * each feed only once its newest tweet could still make the page.
+     */
+    private static FeedPage pull(User user, long cursor, int limit) {
+        List<User> followings = user.getFollowings();
+        List<MergeSource> feeds = new ArrayList<>(followings.size() + 1);
+        addFeed(feeds, user, cursor, limit);
+        for (User followee : followings) {
+            addFeed(feeds, followee, cursor, limit);
+        }
+        feeds.sort((a, b) -> Long.compare(b.bound, a.bound));
+
+        PriorityQueue<MergeSource> heap = new PriorityQueue<>(Math.max(1, feeds.size()),
+                (a, b) -> Long.compare(b.peek(), a.peek()));
+        long[] merged = new long[Math.max(0, limit)];
+        int count = 0;
+        int opened = 0;
+        while (count < merged.length) {
+            if (opened < feeds.size() && (heap.isEmpty() || feeds.get(opened).bound > heap.peek().peek())) {
+                MergeSource feed = feeds.get(opened++);
+                feed.open();
+                if (!feed.isEmpty()) {
+                    heap.add(feed);
+                }
+                continue;
+            }
+            if (heap.isEmpty()) {
+                break;
+            }
+            MergeSource source = heap.poll();
+            merged[count++] = source.take();
+            if (!source.isEmpty()) {
+                heap.add(source);
+            }
+        }
+        // A feed left unopened has a tweet older than the cursor, as its bound is below it
+        boolean hasMore = !heap.isEmpty() || opened < feeds.size();
+        return new FeedPage(count == merged.length ? merged : Arrays.copyOf(merged, count), hasMore);
+    }
+
+    /**
+     * Adds a feed to pull from, bounded by its newest tweet older than the cursor if that is known
+     * without reading the feed, and by the cursor otherwise. Feeds without tweets are left out.
+     */
+    private static void addFeed(List<MergeSource> feeds, User owner, long cursor, int limit) {
+        long newest = owner.getNewestTweetID();
+        if (newest >= 0) {
+            feeds.add(new MergeSource(owner, Math.min(newest, cursor - 1), cursor, limit));
+        }
+    }
+
+    private static boolean hasMore(List<MergeSource> sources) {
+        for (MergeSource source : sources) {
+            if (!source.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether an author has too many followers to fan out to at write time.
+     *
+     * @param author The author to check.
+     * @return True if the author's tweets are merged at read time instead.
+     */
+    private boolean isHighFanout(User author) {
+        return author.getFollowerCount() > fanoutThreshold;
+    }
+
+    private TimelineBuffer homeTimeline(User user) {
+        return homeTimelines.getOrCreate(user);
+    }
+
+    private TimelineBuffer authoredTimeline(User user) {
+        return authoredTimelines.getOrCreate(user);
+    }
+
+    /**
+     * Takes the newest IDs from several newest-first sources through a heap, stopping at the limit.
+     */
+    private static long[] mergeNewest(List<MergeSource> sources, int limit) {
+        PriorityQueue<MergeSource> heap = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> Long.compare(b.peek(), a.peek()));
+        for (MergeSource source : sources) {
+            if (!source.isEmpty()) {
+                heap.add(source);
+            }
+        }
+        long[] merged = new long[limit];
+        int count = 0;
+        while (count < limit && !heap.isEmpty()) {
+            MergeSource source = heap.poll();
+            long next = source.take();
+            // A tweet may be in two sources if its author crossed the fan-out threshold
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
+            }
+            if (!source.isEmpty()) {
+                heap.add(source);
+            }
+        }
+        return count == limit ? merged : Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * Per-user state indexed by social graph node. Fan-out touches one buffer per follower, so a
+     * plain array lookup keeps the per-follower cost to a single load instead of a hash map probe.
+     */
+    private static final class NodeTable<T> {
+        private final Supplier<T> factory;
+        private volatile Object[] entries = new Object[0];
+
+        NodeTable(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(User user) {
+            int node = user.getNodeID();
+            Object[] current = entries;
+            return node < current.length ? (T) current[node] : null;
+        }
+
+        T getOrCreate(User user) {
+            return getOrCreate(user.getNodeID());
+        }
+
+        @SuppressWarnings("unchecked")
+        T getOrCreate(int node) {
+            Object[] current = entries;
+            if (node < current.length && current[node] != null) {
+                return (T) current[node];
+            }
+            synchronized (this) {
+                current = entries;
+                if (node >= current.length) {
+                    current = Arrays.copyOf(current, Math.max(node + 1, current.length * 2));
+                }
+                if (current[node] == null) {
+                    current[node] = factory.get();
+                }
+                entries = current; // Volatile write publishes the new entry
+                return (T) current[node];
+            }
+        }
+    }
+
+    /**
+     * A newest-first run of tweet IDs taking part in a merge: either a fixed array, or a user's feed
+     * read in chunks that start small and double up to the page size, so a followee whose tweets are
+     * too old for the page costs a single short read.
+     */
+    private static final class MergeSource {
+        final long bound; // No tweet in the source is newer
+        private final User feedOwner; // Null for a fixed array
+        private final int limit;
+        private final long cursor;
+        private long[] chunk;
+        private int position;
+        private int nextChunk;
+        private boolean hasMore;
+
+        MergeSource(long[] tweetIDs) {
+            this.bound = tweetIDs.length == 0 ? -1 : tweetIDs[0];
+            this.feedOwner = null;
+            this.limit = tweetIDs.length;
+            this.cursor = FeedPage.FIRST_PAGE;
+            this.chunk = tweetIDs;
+        }
+
+        MergeSource(User feedOwner, long cursor, int limit) {
+            this(feedOwner, cursor - 1, cursor, limit);
+            open();
+        }
+
+        /**
+         * Creates a feed source that is not read until it is opened.
+         */
+        MergeSource(User feedOwner, long bound, long cursor, int limit) {
+            this.bound = bound;
+            this.feedOwner = feedOwner;
+            this.limit = limit;
+            this.cursor = cursor;
+            this.chunk = new long[0];
+            this.nextChunk = Math.min(FIRST_CHUNK, limit);
+        }
+
+        void open() {
+            read(cursor);
+        }
+
+        boolean isEmpty() {
+            return position == chunk.length;
+        }
+
+        long peek() {
+            return chunk[position];
+        }
+
+        long take() {
+            long tweetID = chunk[position++];
+            if (position == chunk.length && hasMore) {
+                read(tweetID);
+            }
+            return tweetID;
+        }
+
+        private void read(long cursor) {
+            FeedPage page = feedOwner.getFeedPage(cursor, nextChunk);
+            chunk = page.getTweetIDs();
+            position = 0;
+            hasMore = page.hasMore();
+            nextChunk = Math.min(nextChunk * 2, limit);
+        }
+    }
+
+    /**
+     * The most recently read pages of one user's timeline, keyed by cursor.
+     */
+    private static final class PageCache {
+        private final Map<Long, CachedPage> pages = new LinkedHashMap<Long, CachedPage>(8, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedPage> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+
+        synchronized FeedPage get(long cursor, int limit, long version, long highFanout, long now) {
+            CachedPage cached = pages.get(cursor);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.limit != limit || cached.version != version || cached.highFanout != highFanout
+                    || now - cached.created > CACHE_TTL_MILLIS) {
+                pages.remove(cursor);
+                return null;
+            }
+            return cached.page;
+        }
+
+        synchronized void put(long cursor, int limit, long version, long highFanout, long now, FeedPage page) {
+            pages.put(cursor, new CachedPage(page, limit, version, highFanout, now));
+        }
+
+        synchronized void clear() {
+            pages.clear();
+        }
+    }
+
+    /**
+     * A merged page and the state of the timeline it was merged from.
+     */
+    private static final class CachedPage {
+        final FeedPage page;
+        final int limit;
+        final long version;
+        final long highFanout;
+        final long created;
+
+        CachedPage(FeedPage page, int limit, long version, long highFanout, long created) {
+            this.page = page;
+            this.limit = limit;
+            this.version = version;
+            this.highFanout = highFanout;
+            this.created = created;
+        }
+    }
+}
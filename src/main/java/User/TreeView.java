@@ -1,26 +1,46 @@
 package User;
 
 import java.awt.BorderLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 
 /**
  * A JPanel class representing a tree view for managing users and user groups.
+ * The tree reads directly from the UserGroup hierarchy through a UserGroupTreeModel.
+ *
+ * <p>The view follows hierarchy changes made on any thread, such as a bulk import, through
+ * ModelEvents. Changed groups are collected as they happen and reported to the tree once per
+ * UiUpdatePipeline frame, keeping the expanded groups and the selection; when too many groups changed
+ * in one frame, the whole tree is reloaded once instead.
  */
 public class TreeView extends JPanel {
+    public static final int MAX_GROUP_EVENTS = 64;
 
-    private DefaultMutableTreeNode rootNode; // The root node of the tree
+    private UserGroup rootGroup; // The top-level group of the hierarchy
+    private UserGroupTreeModel treeModel; // The model exposing the hierarchy to the tree
     private JTree tree; // The JTree component to display the hierarchy
+    private UserRegistry registry; // Source of the users and groups shown in the tree
+    private final Set<UserGroup> changedGroups = ConcurrentHashMap.newKeySet(); // Not yet shown in the tree
+    private final Runnable flushChanges = this::flushChanges;
 
     /**
      * Constructs a new TreeView with an initial root node.
+     *
+     * @param registry The registry used to look up users and groups added to the tree.
      */
-    public TreeView() {
-        rootNode = new DefaultMutableTreeNode(new UserGroup("Root"));
-        tree = new JTree(rootNode);
+    public TreeView(UserRegistry registry) {
+        this.registry = registry;
+        rootGroup = registry.getRootGroup();
+        treeModel = new UserGroupTreeModel(rootGroup);
+        tree = new JTree(treeModel);
+        tree.setLargeModel(true); // Avoid caching row heights for every node
 
         JScrollPane scrollPane = new JScrollPane(tree);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
@@ -29,7 +49,9 @@ public class TreeView extends JPanel {
         add(scrollPane, BorderLayout.CENTER);
 
         // Set the selection path to the root node initially
-        tree.setSelectionPath(new TreePath(rootNode));
+        tree.setSelectionPath(new TreePath(rootGroup));
+
+        ModelEvents.addListener(new HierarchyListener());
     }
 
     /**
@@ -42,37 +64,57 @@ public class TreeView extends JPanel {
     }
 
     /**
-     * Adds a user to the selected node in the tree.
+     * Gets the top-level group shown at the root of the tree.
      *
-     * @param userID The ID of the user to be added.
+     * @return The root group.
      */
-    public void addUserToTree(String userID) {
-        DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+    public UserGroup getRootGroup() {
+        return rootGroup;
+    }
 
-        if (selectedNode != null) {
-            Object userObject = selectedNode.getUserObject();
+    /**
+     * Gets the user or group currently selected in the tree.
+     *
+     * @return The selected User or UserGroup, or null if nothing is selected.
+     */
+    public Object getSelectedObject() {
+        return tree.getLastSelectedPathComponent();
+    }
 
-            if (userObject instanceof UserGroup) {
-                // If the selected node is a UserGroup, add a new user to it
-                UserGroup selectedGroup = (UserGroup) userObject;
-                User newUser = new User(userID);
+    /**
+     * Redraws the whole tree from the UserGroup hierarchy.
+     * Use after the hierarchy was changed in bulk without going through this view.
+     */
+    public void refresh() {
+        treeModel.hierarchyChanged();
+        tree.setSelectionPath(new TreePath(rootGroup));
+    }
 
-                selectedGroup.addUserToGroup(newUser);
-                DefaultMutableTreeNode userNode = new DefaultMutableTreeNode(newUser);
-                selectedNode.add(userNode);
+    /**
+     * Adds a user to the selected node in the tree.
+     *
+     * @param userID The ID of the user to be added.
+     */
+    public void addUserToTree(String userID) {
+        Object selectedObject = tree.getLastSelectedPathComponent();
 
-                // Reload the model to reflect changes
-                ((DefaultTreeModel) tree.getModel()).reload(selectedNode);
+        if (selectedObject != null) {
+            if (selectedObject instanceof UserGroup) {
+                // If the selected node is a UserGroup, add the user to it
+                UserGroup selectedGroup = (UserGroup) selectedObject;
+                User newUser = registry.getUser(userID);
+                if (newUser == null) {
+                    System.out.println("User " + userID + " is not registered.");
+                    return;
+                }
 
-                // Set the selection path to the added user
-                tree.setSelectionPath(new TreePath(selectedNode.getPath()));
+                if (!selectedGroup.addUserToGroup(newUser)) {
+                    return;
+                }
                 System.out.println("Added user " + userID + " to " + selectedGroup.getGroupID());
 
-                // Check if the group was initially empty and expand the group node
-                if (selectedNode.getChildCount() == 1) {
-                    TreePath path = new TreePath(((DefaultTreeModel) tree.getModel()).getPathToRoot(selectedNode));
-                    tree.expandPath(path);
-                }
+                // Expand the group node so the new user is visible
+                expandGroup(selectedGroup);
             } else {
                 System.out.println("You can only add a user to a group, not to another user or root.");
             }
@@ -87,31 +129,25 @@ public class TreeView extends JPanel {
      * @param groupID The ID of the user group to be added.
      */
     public void addUserGroupToTree(String groupID) {
-        DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
-
-        if (selectedNode != null) {
-            Object userObject = selectedNode.getUserObject();
-
-            if (userObject instanceof UserGroup) {
-                // If the selected node is a UserGroup, add a new group to it
-                UserGroup selectedGroup = (UserGroup) userObject;
-                UserGroup newGroup = new UserGroup(groupID);
+        Object selectedObject = tree.getLastSelectedPathComponent();
 
-                DefaultMutableTreeNode groupNode = new DefaultMutableTreeNode(newGroup.getGroupID());
-                selectedGroup.addSubGroup(newGroup);
-                groupNode.setUserObject(newGroup);
-
-                selectedNode.add(groupNode);
+        if (selectedObject != null) {
+            if (selectedObject instanceof UserGroup) {
+                // If the selected node is a UserGroup, add the group to it
+                UserGroup selectedGroup = (UserGroup) selectedObject;
+                UserGroup newGroup = registry.getGroup(groupID);
+                if (newGroup == null) {
+                    System.out.println("Group " + groupID + " is not registered.");
+                    return;
+                }
 
-                // Reload the model to reflect changes
-                ((DefaultTreeModel) tree.getModel()).reload(selectedNode);
+                if (!selectedGroup.addSubGroup(newGroup)) {
+                    return;
+                }
                 System.out.println("Added group " + groupID + " to " + selectedGroup.getGroupID());
 
-                // Check if the group was initially empty and expand the group node
-                if (selectedNode.getChildCount() == 1) {
-                    TreePath path = new TreePath(((DefaultTreeModel) tree.getModel()).getPathToRoot(selectedNode));
-                    tree.expandPath(path);
-                }
+                // Expand the group node so the new group is visible
+                expandGroup(selectedGroup);
             } else {
                 System.out.println("You can only add a group to another group, not a user.");
             }
@@ -119,4 +155,114 @@ public class TreeView extends JPanel {
             System.out.println("Please select a node to add the group.");
         }
     }
+
+    /**
+     * Records that a group's children changed and asks for the tree to be updated in the next frame.
+     * May be called from any thread.
+     *
+     * @param group The group whose children changed.
+     */
+    private void groupChanged(UserGroup group) {
+        changedGroups.add(group);
+        UiUpdatePipeline.getInstance().request(flushChanges);
+    }
+
+    /**
+     * Reports every group changed since the last frame to the tree. Runs on the event dispatch thread.
+     */
+    private void flushChanges() {
+        List<UserGroup> groups = new ArrayList<>(changedGroups);
+        changedGroups.removeAll(groups);
+        if (groups.isEmpty()) {
+            return;
+        }
+        TreePath selection = tree.getSelectionPath();
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(new TreePath(rootGroup));
+        List<TreePath> expandedPaths = expanded == null ? List.of() : Collections.list(expanded);
+
+        if (groups.size() > MAX_GROUP_EVENTS) {
+            treeModel.hierarchyChanged();
+        } else {
+            for (UserGroup group : groups) {
+                if (treeModel.getPathToGroup(group).getPathComponent(0) == rootGroup) {
+                    treeModel.groupChanged(group);
+                }
+            }
+        }
+
+        // Reporting a change collapses the groups below it; open them again if they are still in place
+        for (TreePath path : expandedPaths) {
+            if (isCurrent(path) && !tree.isExpanded(path)) {
+                tree.expandPath(path);
+            }
+        }
+        if (selection != null && isCurrent(selection) && !selection.equals(tree.getSelectionPath())) {
+            tree.setSelectionPath(selection);
+        }
+    }
+
+    /**
+     * Checks whether a path from an earlier frame still leads from the root to its last node.
+     *
+     * @param path The path to check.
+     * @return True if each node in the path is still a child of the one before it.
+     */
+    private boolean isCurrent(TreePath path) {
+        if (path.getPathComponent(0) != rootGroup) {
+            return false;
+        }
+        GroupMembership membership = GroupMembership.getInstance();
+        for (int i = 1; i < path.getPathCount(); i++) {
+            Object node = path.getPathComponent(i);
+            Object parent = node instanceof User ? membership.getGroup((User) node) : membership.getParent((UserGroup) node);
+            if (parent != path.getPathComponent(i - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expands a group's node if it is not expanded yet.
+     *
+     * @param group The group to expand.
+     */
+    private void expandGroup(UserGroup group) {
+        TreePath path = treeModel.getPathToGroup(group);
+        if (!tree.isExpanded(path)) {
+            tree.expandPath(path);
+        }
+    }
+
+    /**
+     * Collects the groups whose children change, on whichever thread changes them.
+     */
+    private final class HierarchyListener implements ModelListener {
+
+        @Override
+        public void userAddedToGroup(UserGroup group, User user) {
+            groupChanged(group);
+        }
+
+        @Override
+        public void userRemovedFromGroup(UserGroup group, User user) {
+            groupChanged(group);
+        }
+
+        @Override
+        public void userMoved(User user, UserGroup from, UserGroup to) {
+            groupChanged(from);
+            groupChanged(to);
+        }
+
+        @Override
+        public void subGroupAdded(UserGroup parent, UserGroup subGroup) {
+            groupChanged(parent);
+        }
+
+        @Override
+        public void subGroupRemoved(UserGroup parent, UserGroup subGroup) {
+            groupChanged(parent);
+        }
+    }
 }
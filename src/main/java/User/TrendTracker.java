@@ -0,0 +1,383 @@
+package User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * The TrendTracker class keeps live statistics over the tweets posted in the last minute, five
+ * minutes and hour: how many tweets there were, their sentiment, and which terms were used most.
+ * It is a ModelListener, so it sees every tweet as it is posted and never rescans history.
+ *
+ * <p>Each window is split into time slots. A slot holds the counts for its tweets and a
+ * CountMinSketch of its terms, and the window keeps the running sum of its slots; when the window
+ * slides past a slot, the slot is subtracted from the sum and reused. The most used terms are found
+ * by keeping a bounded set of candidate terms whose estimated counts are highest. Memory use is
+ * therefore fixed, about 600KB in all, however many tweets or distinct terms there are. Counts of
+ * terms are estimates that may be slightly high, never low.
+ *
+ * <p>Tweets are placed by their own timestamps; tweets older than a window are left out of it. Of the
+ * tweets restored from a ModelSnapshot, only those posted within the longest window are analyzed, by a
+ * scan on a background thread. Each window has its own lock, held for a few hundred nanoseconds per tweet.
+ */
+public class TrendTracker implements ModelListener {
+    public static final int MAX_TRENDS = 100;
+    public static final int MIN_TERM_LENGTH = 3;
+
+    private static final int SKETCH_WIDTH = 1024;
+    private static final int CANDIDATES = 4 * MAX_TRENDS;
+    private static final Set<String> STOP_WORDS = Set.of("the", "and", "for", "with", "about", "just",
+            "that", "this", "you", "are", "was", "have", "from", "not", "but", "all", "its", "our");
+
+    /**
+     * The time windows trends are kept for.
+     */
+    public enum Window {
+        ONE_MINUTE("1m", 60_000, 12),
+        FIVE_MINUTES("5m", 300_000, 10),
+        ONE_HOUR("1h", 3_600_000, 12);
+
+        private final String label;
+        private final long millis;
+        private final int slots;
+
+        Window(String label, long millis, int slots) {
+            this.label = label;
+            this.millis = millis;
+            this.slots = slots;
+        }
+
+        /**
+         * Gets the short name of the window, such as "5m".
+         *
+         * @return The label.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Gets the length of the window.
+         *
+         * @return The length in milliseconds.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Finds a window by its label.
+         *
+         * @param label The label, such as "1m", "5m" or "1h".
+         * @return The window.
+         * @throws IllegalArgumentException If no window has that label.
+         */
+        public static Window fromLabel(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Unknown window: " + label);
+        }
+    }
+
+    private final TweetAnalyzer tweetAnalyzer;
+    private final LongSupplier clock;
+    private final SlidingWindow[] windows;
+    private final ThreadLocal<SentimentScore> scratch;
+
+    /**
+     * Constructor for the TrendTracker class.
+     *
+     * @param tweetAnalyzer The analyzer used to score the sentiment of each tweet.
+     */
+    public TrendTracker(TweetAnalyzer tweetAnalyzer) {
+        this(tweetAnalyzer, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for the TrendTracker class with a custom clock.
+     *
+     * @param tweetAnalyzer The analyzer used to score the sentiment of each tweet.
+     * @param clock         The source of the current time in milliseconds since the epoch.
+     */
+    public TrendTracker(TweetAnalyzer tweetAnalyzer, LongSupplier clock) {
+        this.tweetAnalyzer = tweetAnalyzer;
+        this.clock = clock;
+        this.windows = new SlidingWindow[Window.values().length];
+        long now = clock.getAsLong();
+        for (Window window : Window.values()) {
+            windows[window.ordinal()] = new SlidingWindow(window, now);
+        }
+        this.scratch = ThreadLocal.withInitial(SentimentScore::new);
+    }
+
+    /**
+     * Adds a newly posted tweet to every window.
+     *
+     * @param author The user who posted the tweet.
+     * @param tweet  The new tweet.
+     */
+    @Override
+    public void tweetPosted(User author, Tweet tweet) {
+        add(tweet.getMessage(), tweet.getTimestamp());
+    }
+
+    /**
+     * Adds the restored tweets posted within the longest window, as they are scanned.
+     *
+     * @param model The restored model.
+     */
+    @Override
+    public void modelRestored(ModelSnapshot.RestoredModel model) {
+        long longest = 0;
+        for (Window window : Window.values()) {
+            longest = Math.max(longest, window.millis);
+        }
+        long cutoff = clock.getAsLong() - longest;
+        model.scanTweets(tweet -> {
+            long timestamp = model.getTimestamp(tweet);
+            if (timestamp > cutoff) {
+                add(model.getMessage(tweet), timestamp);
+            }
+        });
+    }
+
+    private void add(String message, long timestamp) {
+        SentimentScore score = scratch.get();
+        score.reset();
+        tweetAnalyzer.score(message, score);
+        List<String> terms = trendTerms(message);
+        long[] hashes = new long[terms.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = CountMinSketch.hash(terms.get(i));
+        }
+        for (SlidingWindow window : windows) {
+            window.add(timestamp, terms, hashes, score);
+        }
+    }
+
+    /**
+     * Gets the most used terms in a window, most used first.
+     *
+     * @param window The window.
+     * @param limit  The maximum number of terms, at most MAX_TRENDS.
+     * @return The terms with their estimated counts.
+     */
+    public List<Trend> getTrends(Window window, int limit) {
+        return windows[window.ordinal()].trends(clock.getAsLong(), Math.min(limit, MAX_TRENDS));
+    }
+
+    /**
+     * Gets the number of tweets posted in a window.
+     *
+     * @param window The window.
+     * @return The tweet count.
+     */
+    public long getTweetCount(Window window) {
+        return windows[window.ordinal()].tweetCount(clock.getAsLong());
+    }
+
+    /**
+     * Gets the sentiment of the tweets posted in a window.
+     *
+     * @param window The window.
+     * @return A new score holding the window's word and hit counts.
+     */
+    public SentimentScore getSentiment(Window window) {
+        return windows[window.ordinal()].sentiment(clock.getAsLong());
+    }
+
+    /**
+     * Splits a tweet into the distinct terms worth trending: no stop words or very short terms.
+     */
+    private static List<String> trendTerms(String message) {
+        List<String> terms = SearchIndex.terms(message);
+        List<String> kept = new ArrayList<>(terms.size());
+        Set<String> seen = new HashSet<>();
+        for (String term : terms) {
+            if (term.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(term) && seen.add(term)) {
+                kept.add(term);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * A term and its estimated count in a window.
+     */
+    public static final class Trend {
+        private final String term;
+        private final long count;
+
+        Trend(String term, long count) {
+            this.term = term;
+            this.count = count;
+        }
+
+        /**
+         * Gets the term.
+         *
+         * @return The term, in lower case.
+         */
+        public String getTerm() {
+            return term;
+        }
+
+        /**
+         * Gets the estimated number of tweets in the window that used the term.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return term + " (" + count + ")";
+        }
+    }
+
+    /**
+     * One window: a ring of time slots, their running sum, and the candidate top terms.
+     */
+    private static final class SlidingWindow {
+        private final int slots;
+        private final long slotMillis;
+        private final CountMinSketch[] slotTerms;
+        private final long[][] slotCounts; // Tweets, words, positive and negative hits per slot
+        private final CountMinSketch totalTerms = new CountMinSketch(SKETCH_WIDTH);
+        private final long[] totalCounts = new long[4];
+        private final Map<String, Long> candidates = new HashMap<>();
+        private long candidateMin;
+        private long currentSlot;
+
+        SlidingWindow(Window window, long now) {
+            this.slots = window.slots;
+            this.slotMillis = window.millis / window.slots;
+            this.slotTerms = new CountMinSketch[slots];
+            this.slotCounts = new long[slots][4];
+            for (int i = 0; i < slots; i++) {
+                slotTerms[i] = new CountMinSketch(SKETCH_WIDTH);
+            }
+            this.currentSlot = now / slotMillis;
+        }
+
+        synchronized void add(long timestamp, List<String> terms, long[] hashes, SentimentScore score) {
+            long slot = timestamp / slotMillis;
+            advance(slot);
+            if (slot <= currentSlot - slots) {
+                return; // Older than the window
+            }
+            int ring = (int) (slot % slots);
+            long[] counts = slotCounts[ring];
+            counts[0]++;
+            counts[1] += score.getWords();
+            counts[2] += score.getPositiveHits();
+            counts[3] += score.getNegativeHits();
+            totalCounts[0]++;
+            totalCounts[1] += score.getWords();
+            totalCounts[2] += score.getPositiveHits();
+            totalCounts[3] += score.getNegativeHits();
+            for (int i = 0; i < hashes.length; i++) {
+                slotTerms[ring].add(hashes[i], 1);
+                offer(terms.get(i), totalTerms.add(hashes[i], 1));
+            }
+        }
+
+        synchronized List<Trend> trends(long now, int limit) {
+            advance(now / slotMillis);
+            List<Trend> trends = new ArrayList<>(candidates.size());
+            for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+                trends.add(new Trend(candidate.getKey(), candidate.getValue()));
+            }
+            trends.sort((a, b) -> Long.compare(b.count, a.count));
+            return new ArrayList<>(trends.subList(0, Math.min(limit, trends.size())));
+        }
+
+        synchronized long tweetCount(long now) {
+            advance(now / slotMillis);
+            return totalCounts[0];
+        }
+
+        synchronized SentimentScore sentiment(long now) {
+            advance(now / slotMillis);
+            SentimentScore score = new SentimentScore();
+            score.add(totalCounts[1], totalCounts[2], totalCounts[3]);
+            return score;
+        }
+
+        /**
+         * Keeps a term among the candidates if its count is among the highest seen.
+         */
+        private void offer(String term, long estimate) {
+            if (candidates.containsKey(term) || candidates.size() < CANDIDATES) {
+                candidates.put(term, estimate);
+                candidateMin = Math.min(candidateMin, estimate);
+                return;
+            }
+            if (estimate <= candidateMin) {
+                return;
+            }
+            // The cached minimum can be stale after counts rose, so find the real one
+            String weakest = null;
+            long weakestCount = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+                if (candidate.getValue() < weakestCount) {
+                    weakest = candidate.getKey();
+                    weakestCount = candidate.getValue();
+                }
+            }
+            if (estimate > weakestCount) {
+                candidates.remove(weakest);
+                candidates.put(term, estimate);
+                weakestCount = estimate;
+                for (long count : candidates.values()) {
+                    weakestCount = Math.min(weakestCount, count);
+                }
+            }
+            candidateMin = weakestCount;
+        }
+
+        /**
+         * Expires the slots that have slid out of the window, then re-estimates the candidates.
+         */
+        private void advance(long slot) {
+            if (slot <= currentSlot) {
+                return;
+            }
+            long expired = Math.min(slot - currentSlot, slots);
+            for (long s = slot - expired + 1; s <= slot; s++) {
+                int ring = (int) (s % slots);
+                totalTerms.subtract(slotTerms[ring]);
+                slotTerms[ring].clear();
+                for (int i = 0; i < totalCounts.length; i++) {
+                    totalCounts[i] -= slotCounts[ring][i];
+                    slotCounts[ring][i] = 0;
+                }
+            }
+            currentSlot = slot;
+            candidateMin = Long.MAX_VALUE;
+            for (Iterator<Map.Entry<String, Long>> it = candidates.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> candidate = it.next();
+                long estimate = totalTerms.estimate(CountMinSketch.hash(candidate.getKey()));
+                if (estimate == 0) {
+                    it.remove();
+                } else {
+                    candidate.setValue(estimate);
+                    candidateMin = Math.min(candidateMin, estimate);
+                }
+            }
+            if (candidates.isEmpty()) {
+                candidateMin = 0;
+            }
+        }
+    }
+}
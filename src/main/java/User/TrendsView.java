@@ -0,0 +1,112 @@
+package User;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.BorderLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+/**
+ * The TrendsView class shows the most used terms and the sentiment of the last minute, five minutes
+ * and hour, read from a TrendTracker once a second while the window is open.
+ */
+public class TrendsView {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final int ROWS = 20;
+
+    private final TrendTracker trendTracker;
+
+    /**
+     * Constructor for the TrendsView class.
+     *
+     * @param trendTracker The tracker to read the trends from.
+     */
+    public TrendsView(TrendTracker trendTracker) {
+        this.trendTracker = trendTracker;
+    }
+
+    /**
+     * Creates and displays the trends window.
+     */
+    public void createAndShowTrendsView() {
+        JFrame frame = new JFrame("Trends");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.setLocation(600, 250);
+
+        TrendsTableModel model = new TrendsTableModel();
+        JTable table = new JTable(model);
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        Timer timer = new Timer(REFRESH_MILLIS, e -> model.refresh());
+        timer.start();
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+
+        frame.pack();
+        frame.setSize(600, 420);
+        frame.setVisible(true);
+    }
+
+    /**
+     * A column per window: tweet count and sentiment on top, then the top terms.
+     */
+    private final class TrendsTableModel extends AbstractTableModel {
+        private static final int HEADER_ROWS = 3;
+
+        private final TrendTracker.Window[] windows = TrendTracker.Window.values();
+        private Object[][] rows = new Object[0][];
+
+        TrendsTableModel() {
+            refresh();
+        }
+
+        void refresh() {
+            Object[][] next = new Object[HEADER_ROWS + ROWS][windows.length + 1];
+            next[0][0] = "Tweets";
+            next[1][0] = "Positive %";
+            next[2][0] = "Negative %";
+            for (int row = 0; row < ROWS; row++) {
+                next[HEADER_ROWS + row][0] = "#" + (row + 1);
+            }
+            for (int column = 0; column < windows.length; column++) {
+                TrendTracker.Window window = windows[column];
+                SentimentScore score = trendTracker.getSentiment(window);
+                next[0][column + 1] = trendTracker.getTweetCount(window);
+                next[1][column + 1] = String.format("%.1f", score.getPositivePercentage());
+                next[2][column + 1] = String.format("%.1f", score.getWords() == 0
+                        ? 0.0 : (double) score.getNegativeHits() / (double) score.getWords() * 100.0);
+                List<TrendTracker.Trend> trends = trendTracker.getTrends(window, ROWS);
+                for (int row = 0; row < ROWS; row++) {
+                    next[HEADER_ROWS + row][column + 1] = row < trends.size() ? trends.get(row).toString() : "";
+                }
+            }
+            rows = next;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return windows.length + 1;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "" : "Last " + windows[column - 1].getLabel();
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows[row][column];
+        }
+    }
+}
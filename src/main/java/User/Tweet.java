@@ -0,0 +1,121 @@
+package User;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Tweet class represents a single message posted by a user in the MiniTwitter application.
+ * Each tweet has a unique, increasing ID, so tweets from different users can be ordered by ID alone.
+ */
+public class Tweet {
+    private static final AtomicLong nextID = new AtomicLong();
+
+    private final long tweetID;
+    private final String authorID;
+    private final String message;
+    private final long timestamp;
+
+    /**
+     * Constructor for the Tweet class.
+     * Assigns the next tweet ID and stamps the tweet with the current time.
+     *
+     * @param authorID The ID of the user who posted the tweet.
+     * @param message  The tweet message.
+     */
+    public Tweet(String authorID, String message) {
+        this(nextID.incrementAndGet(), authorID, message, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor for a tweet whose ID has already been assigned.
+     *
+     * @param tweetID   The tweet ID.
+     * @param authorID  The ID of the user who posted the tweet.
+     * @param message   The tweet message.
+     * @param timestamp The posting time in milliseconds since the epoch.
+     */
+    Tweet(long tweetID, String authorID, String message, long timestamp) {
+        this.tweetID = tweetID;
+        this.authorID = authorID;
+        this.message = message;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Creates a tweet restored from persistent storage.
+     * Tweets posted afterwards are guaranteed to get a larger ID than the restored one.
+     *
+     * @param tweetID   The original tweet ID.
+     * @param authorID  The ID of the user who posted the tweet.
+     * @param message   The tweet message.
+     * @param timestamp The original posting time in milliseconds since the epoch.
+     * @return The restored tweet.
+     */
+    static Tweet restored(long tweetID, String authorID, String message, long timestamp) {
+        reserveID(tweetID);
+        return new Tweet(tweetID, authorID, message, timestamp);
+    }
+
+    /**
+     * Makes sure tweets posted afterwards get a larger ID than one already in use.
+     *
+     * @param tweetID The tweet ID in use.
+     */
+    static void reserveID(long tweetID) {
+        nextID.accumulateAndGet(tweetID, Math::max);
+    }
+
+    /**
+     * Gets the ID of the most recently posted or restored tweet.
+     *
+     * @return The largest tweet ID assigned so far, or 0 if there is none.
+     */
+    static long lastID() {
+        return nextID.get();
+    }
+
+    /**
+     * Gets the unique ID of the tweet.
+     *
+     * @return The tweet ID.
+     */
+    public long getTweetID() {
+        return tweetID;
+    }
+
+    /**
+     * Gets the ID of the user who posted the tweet.
+     *
+     * @return The author's user ID.
+     */
+    public String getAuthorID() {
+        return authorID;
+    }
+
+    /**
+     * Gets the tweet message.
+     *
+     * @return The message text.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the time the tweet was posted.
+     *
+     * @return The posting time in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the string representation of the tweet.
+     *
+     * @return The tweet message as the string representation.
+     */
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -1,59 +1,201 @@
 package User;
 
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * The TweetAnalyzer class counts words and sentiment in tweets using a configurable lexicon.
+ * Each tweet is scanned once by a SentimentAutomaton, which counts its words and the words that
+ * match a positive or negative term in the same pass.
+ */
 public class TweetAnalyzer {
+    public static final List<String> DEFAULT_POSITIVE_WORDS = List.of("good", "great", "excellent");
+    public static final List<String> DEFAULT_NEGATIVE_WORDS = List.of("bad", "terrible", "awful");
+
+    // Below this many users, a parallel task scores its slice sequentially
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    // Reused per thread so scoring a single tweet does not allocate
+    private final ThreadLocal<SentimentScore> scratch = ThreadLocal.withInitial(SentimentScore::new);
+    private final SentimentAutomaton automaton;
+
+    /**
+     * Constructor for the TweetAnalyzer class using the default positive and negative lexicons.
+     */
     public TweetAnalyzer() {
+        this(DEFAULT_POSITIVE_WORDS, DEFAULT_NEGATIVE_WORDS);
     }
 
-    public int getTotalPositiveWords(List<User> userList) {
-        int totalPositiveWords = 0;
-        Iterator var3 = userList.iterator();
+    /**
+     * Constructor for the TweetAnalyzer class using custom lexicons.
+     *
+     * @param positiveWords The terms counted as positive.
+     * @param negativeWords The terms counted as negative.
+     */
+    public TweetAnalyzer(Collection<String> positiveWords, Collection<String> negativeWords) {
+        this.automaton = new SentimentAutomaton(positiveWords, negativeWords);
+    }
 
-        while (var3.hasNext()) {
-            User user = (User) var3.next();
-            Iterator var5 = user.getNewsFeed().iterator();
+    /**
+     * Scans a tweet and adds its word count and sentiment hits to a score.
+     *
+     * @param tweet The tweet message.
+     * @param score The score to add the results to.
+     */
+    public void score(String tweet, SentimentScore score) {
+        automaton.scan(tweet, score);
+    }
 
-            while (var5.hasNext()) {
-                String tweet = (String) var5.next();
-                if (this.containsPositiveWords(tweet)) {
-                    ++totalPositiveWords;
-                }
-            }
+    /**
+     * Scores every tweet of every user in a single pass.
+     *
+     * @param userList The users whose news feeds are analyzed.
+     * @return The combined score.
+     */
+    public SentimentScore score(Collection<User> userList) {
+        long start = System.nanoTime();
+        SentimentScore score = new SentimentScore();
+        for (User user : userList) {
+            scoreFeed(user, score);
         }
+        Metrics.getInstance().getAnalyzerRun().recordSince(start);
+        return score;
+    }
 
-        return totalPositiveWords;
+    /**
+     * Scores every tweet of every user in parallel, splitting the users across the common ForkJoinPool
+     * and adding up the partial scores.
+     *
+     * @param userList The users whose news feeds are analyzed.
+     * @return The combined score.
+     */
+    public SentimentScore scoreParallel(Collection<User> userList) {
+        long start = System.nanoTime();
+        User[] users = userList.toArray(new User[0]);
+        SentimentScore score = ForkJoinPool.commonPool().invoke(new ScoreTask(users, 0, users.length));
+        Metrics.getInstance().getAnalyzerRun().recordSince(start);
+        return score;
     }
 
-    private boolean containsPositiveWords(String tweet) {
-        return tweet.toLowerCase().contains("good") || tweet.toLowerCase().contains("great") || tweet.toLowerCase().contains("Excellent") ;
+    /**
+     * Scores every tweet of every user in parallel on a background thread.
+     * Use this from the Swing event dispatch thread so the UI stays responsive.
+     *
+     * @param userList The users whose news feeds are analyzed.
+     * @return A future completed with the combined score.
+     */
+    public CompletableFuture<SentimentScore> scoreAsync(Collection<User> userList) {
+        return CompletableFuture.supplyAsync(() -> scoreParallel(userList), ForkJoinPool.commonPool());
     }
 
-    public int getTotalWords(List<User> userList) {
-        int totalWords = 0;
-        Iterator var3 = userList.iterator();
+    /**
+     * Gets the total number of positive words over all tweets.
+     *
+     * @param userList The users whose news feeds are analyzed.
+     * @return The number of words that matched the positive lexicon.
+     */
+    public int getTotalPositiveWords(Collection<User> userList) {
+        return (int) score(userList).getPositiveHits();
+    }
 
-        while (var3.hasNext()) {
-            User user = (User) var3.next();
+    /**
+     * Checks whether a tweet contains at least one positive word.
+     *
+     * @param tweet The tweet message.
+     * @return True if a word matched the positive lexicon.
+     */
+    public boolean containsPositiveWords(String tweet) {
+        return countPositiveWords(tweet) > 0;
+    }
 
-            String tweet;
-            for (Iterator var5 = user.getNewsFeed().iterator(); var5.hasNext(); totalWords += this.countWords(tweet)) {
-                tweet = (String) var5.next();
-            }
-        }
+    /**
+     * Counts the positive words in a tweet.
+     *
+     * @param tweet The tweet message.
+     * @return The number of words that matched the positive lexicon.
+     */
+    public int countPositiveWords(String tweet) {
+        SentimentScore score = scratch.get();
+        score.reset();
+        automaton.scan(tweet, score);
+        return (int) score.getPositiveHits();
+    }
+
+    /**
+     * Gets the total number of words over all tweets.
+     *
+     * @param userList The users whose news feeds are analyzed.
+     * @return The number of words.
+     */
+    public int getTotalWords(Collection<User> userList) {
+        return (int) score(userList).getWords();
+    }
 
-        return totalWords;
+    /**
+     * Counts the whitespace-separated words in a text.
+     *
+     * @param text The text to count.
+     * @return The number of words.
+     */
+    public int countWords(String text) {
+        SentimentScore score = scratch.get();
+        score.reset();
+        automaton.scan(text, score);
+        return (int) score.getWords();
     }
 
-    private int countWords(String text) {
-        String[] words = text.split("\\s+");
-        return words.length;
+    /**
+     * Calculates the percentage of positive words over all tweets.
+     *
+     * @param userList The users whose news feeds are analyzed.
+     * @return The positive percentage, or 0 if there are no words.
+     */
+    public double calculatePositivePercentage(Collection<User> userList) {
+        return score(userList).getPositivePercentage();
+    }
+
+    /**
+     * Scans a user's tweets straight from the TweetStore, without creating a String per tweet.
+     */
+    private void scoreFeed(User user, SentimentScore score) {
+        TweetStore store = TweetStore.getInstance();
+        for (int i = 0, count = user.getTweetCount(); i < count; i++) {
+            store.scan(user.getTweetID(i), automaton, score);
+        }
     }
 
-    public double calculatePositivePercentage(List<User> userList) {
-        int totalPositiveWords = this.getTotalPositiveWords(userList);
-        int totalWords = this.getTotalWords(userList);
-        return totalWords == 0 ? 0.0 : (double) totalPositiveWords / (double) totalWords * 100.0;
+    /**
+     * Scores a slice of the user array, splitting it in half until it is small enough to score directly.
+     */
+    private final class ScoreTask extends RecursiveTask<SentimentScore> {
+        private final User[] users;
+        private final int from;
+        private final int to;
+
+        ScoreTask(User[] users, int from, int to) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SentimentScore compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                SentimentScore score = new SentimentScore();
+                for (int i = from; i < to; i++) {
+                    scoreFeed(users[i], score);
+                }
+                return score;
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(users, from, middle);
+            left.fork();
+            SentimentScore score = new ScoreTask(users, middle, to).compute();
+            score.add(left.join());
+            return score;
+        }
     }
-}
\ No newline at end of file
+}
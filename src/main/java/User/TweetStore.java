@@ -0,0 +1,952 @@
+package User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TweetStore class keeps every tweet exactly once, outside the Java heap.
+ * Message bodies are stored as UTF-8 in direct-memory arena chunks, and identical bodies are interned
+ * so they share storage. Per-tweet metadata (body address, length, timestamp and author) lives in
+ * primitive arrays indexed by tweet ID, so feeds and timelines only need to hold long tweet IDs and
+ * the garbage collector never has to trace individual tweets. Tweet objects are created on demand.
+ *
+ * <p>The store is safe for concurrent use. Bodies are spread over independently locked stripes by
+ * hash, so threads posting different messages rarely contend, and each tweet ID owns its own metadata
+ * slot. Everything written by {@link #put} happens-before any read of the same tweet ID by a thread
+ * that learned the ID through a feed or timeline, since those publish the ID after it is stored.
+ *
+ * <p>Tweets moved to a FeedArchive by retention keep only their author in memory, and are read back
+ * from the archive on demand. Once every tweet of a metadata page is archived, the page drops its
+ * other arrays, so an archived tweet costs 4 bytes of heap instead of 24. Interned bodies are counted
+ * by the tweets that share them: a body no longer used by any tweet in memory leaves the intern table,
+ * and an arena chunk left without live bodies is dropped so its direct memory can be freed. Addresses
+ * are never handed out twice, so a reader holding the address of a dropped body finds no chunk and
+ * reads the tweet back from the archive instead.
+ *
+ * <p>Tweets restored from a ModelSnapshot keep their bodies in the memory-mapped snapshot file, which
+ * is read through the same addresses as the arena, so loading a snapshot never copies message bodies.
+ * Their metadata stays in the snapshot's columns too, until a page of tweet IDs is first used and is
+ * filled in from them.
+ */
+public class TweetStore {
+    private static final int ARENA_CHUNK_SIZE = 4 << 20;
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int MAPPED = STRIPES; // Stripe number of addresses in mapped chunks
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final long NO_ADDRESS = -1L;
+    private static final int NO_AUTHOR = -1;
+
+    private static final TweetStore instance = new TweetStore();
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Metadata pages, indexed by tweet ID; pages are created under pageLock and never replaced
+    private final Object pageLock = new Object();
+    private volatile Page[] pages = new Page[0];
+    private IntHashSet archivedPages = new IntHashSet(); // Pages to check for compaction, guarded by pageLock
+    private volatile int compactedBelow; // Pages below this index may have dropped their slots
+
+    private volatile FeedArchive archive;
+
+    // Restored tweets not stored in their pages yet, guarded by pageLock
+    private RestoredTweets[] restored = new RestoredTweets[0];
+    private volatile AtomicLongArray unfilledPages; // Bit per page still to be filled from restored, or null
+    private int unfilledCount; // Guarded by pageLock
+
+    private final Object mapLock = new Object();
+    private volatile ByteBuffer[] mappedChunks = new ByteBuffer[0];
+
+    // Interned author IDs
+    private final ConcurrentMap<String, Integer> authorIndex = new ConcurrentHashMap<>();
+    private volatile String[] authorIDs = new String[16];
+    private int authorCount; // Guarded by authorIndex
+
+    private final LongAdder tweetCount = new LongAdder();
+    private final LongAdder archivedCount = new LongAdder();
+    private final LongAdder bodyBytes = new LongAdder();
+
+    /**
+     * Constructor for the TweetStore class.
+     */
+    public TweetStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    /**
+     * Gets the tweet store shared by all users.
+     *
+     * @return The shared TweetStore instance.
+     */
+    public static TweetStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Stores a tweet under its ID.
+     *
+     * @param tweet The tweet to be stored.
+     */
+    public void put(Tweet tweet) {
+        byte[] body = tweet.getMessage().getBytes(StandardCharsets.UTF_8);
+        long id = tweet.getTweetID();
+        int hash = hash(body);
+        long address = stripes[hash & (STRIPES - 1)].intern(body, hash);
+        Page page = page(id, true);
+        int slot = (int) (id & (PAGE_SIZE - 1));
+        int author = authorIndex(tweet.getAuthorID());
+        long replaced;
+        if ((id >>> PAGE_BITS) < compactedBelow) {
+            // Only restored tweets reach old pages; take the lock so compaction cannot drop the slot
+            synchronized (pageLock) {
+                replaced = store(page, slot, address, body.length, tweet.getTimestamp(), author);
+            }
+        } else {
+            replaced = store(page, slot, address, body.length, tweet.getTimestamp(), author);
+        }
+        release(replaced);
+    }
+
+    /**
+     * Stores a tweet's metadata in its slot.
+     *
+     * @return The body address the slot held before, or -1 if it was empty.
+     */
+    private long store(Page page, int slot, long address, int length, long timestamp, int author) {
+        Slots slots = page.slots;
+        if (slots == null) {
+            slots = new Slots();
+            page.slots = slots;
+        }
+        long replaced = slots.addresses[slot];
+        if (replaced == NO_ADDRESS) {
+            tweetCount.increment();
+            if (page.authors[slot] != NO_AUTHOR) {
+                archivedCount.decrement(); // Restored again after being archived
+            }
+        }
+        slots.lengths[slot] = length;
+        slots.timestamps[slot] = timestamp;
+        page.authors[slot] = author;
+        slots.addresses[slot] = address;
+        return replaced;
+    }
+
+    /**
+     * Materializes a stored tweet.
+     *
+     * @param tweetID The tweet ID.
+     * @return The tweet, or null if no tweet has that ID.
+     */
+    public Tweet get(long tweetID) {
+        Page page = page(tweetID, false);
+        if (page == null) {
+            return null;
+        }
+        int slot = (int) (tweetID & (PAGE_SIZE - 1));
+        Slots slots = page.slots;
+        long address = slots == null ? NO_ADDRESS : slots.addresses[slot];
+        ByteBuffer chunk = address == NO_ADDRESS ? null : chunk(address);
+        if (chunk == null) {
+            return archived(page, slot, tweetID);
+        }
+        byte[] body = new byte[slots.lengths[slot]];
+        chunk.get(offset(address), body);
+        return new Tweet(tweetID, authorIDs[page.authors[slot]],
+                new String(body, StandardCharsets.UTF_8), slots.timestamps[slot]);
+    }
+
+    /**
+     * Checks whether a tweet is stored, in memory or in the archive.
+     *
+     * @param tweetID The tweet ID.
+     * @return True if a tweet with that ID is stored.
+     */
+    public boolean contains(long tweetID) {
+        Page page = page(tweetID, false);
+        return page != null && page.authors[(int) (tweetID & (PAGE_SIZE - 1))] != NO_AUTHOR;
+    }
+
+    /**
+     * Gets the message of a stored tweet.
+     *
+     * @param tweetID The tweet ID.
+     * @return The message, or null if no tweet has that ID.
+     */
+    public String getMessage(long tweetID) {
+        Tweet tweet = get(tweetID);
+        return tweet == null ? null : tweet.getMessage();
+    }
+
+    /**
+     * Gets the author of a stored tweet without decoding its message.
+     *
+     * @param tweetID The tweet ID.
+     * @return The author's user ID, or null if no tweet has that ID.
+     */
+    public String getAuthorID(long tweetID) {
+        Page page = page(tweetID, false);
+        if (page == null) {
+            return null;
+        }
+        int author = page.authors[(int) (tweetID & (PAGE_SIZE - 1))];
+        return author == NO_AUTHOR ? null : authorIDs[author];
+    }
+
+    /**
+     * Scans a stored tweet's body in place, without decoding it into a String.
+     *
+     * @param tweetID   The tweet ID.
+     * @param automaton The automaton to scan with.
+     * @param score     The score to add the results to.
+     */
+    public void scan(long tweetID, SentimentAutomaton automaton, SentimentScore score) {
+        Page page = page(tweetID, false);
+        if (page == null) {
+            return;
+        }
+        int slot = (int) (tweetID & (PAGE_SIZE - 1));
+        Slots slots = page.slots;
+        long address = slots == null ? NO_ADDRESS : slots.addresses[slot];
+        ByteBuffer chunk = address == NO_ADDRESS ? null : chunk(address);
+        if (chunk != null) {
+            automaton.scanUtf8(chunk, offset(address), slots.lengths[slot], score);
+            return;
+        }
+        Tweet tweet = archived(page, slot, tweetID);
+        if (tweet != null) {
+            byte[] body = tweet.getMessage().getBytes(StandardCharsets.UTF_8);
+            automaton.scanUtf8(ByteBuffer.wrap(body), 0, body.length, score);
+        }
+    }
+
+    /**
+     * Gets the number of tweets held in memory.
+     *
+     * @return The tweet count, not counting archived tweets.
+     */
+    public long getTweetCount() {
+        return tweetCount.sum();
+    }
+
+    /**
+     * Gets the number of tweets moved to the archive.
+     *
+     * @return The archived tweet count.
+     */
+    public long getArchivedCount() {
+        return archivedCount.sum();
+    }
+
+    /**
+     * Gets the number of off-heap bytes used by distinct message bodies, including bodies of archived
+     * tweets that share an arena chunk with bodies still in use.
+     *
+     * @return The arena usage in bytes.
+     */
+    public long getBodyBytes() {
+        return bodyBytes.sum();
+    }
+
+    /**
+     * Gets the archive that tweets dropped from memory are read back from.
+     *
+     * @return The archive, or null if none is attached.
+     */
+    FeedArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Attaches the archive that archived tweets are read back from.
+     *
+     * @param archive The archive.
+     */
+    void attachArchive(FeedArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Gets the posting time of a tweet held in memory.
+     *
+     * @param tweetID The tweet ID.
+     * @return The timestamp, or -1 if the tweet is not held in memory.
+     */
+    long getTimestamp(long tweetID) {
+        Page page = page(tweetID, false);
+        if (page == null) {
+            return -1;
+        }
+        int slot = (int) (tweetID & (PAGE_SIZE - 1));
+        Slots slots = page.slots;
+        return slots == null || slots.addresses[slot] == NO_ADDRESS ? -1 : slots.timestamps[slot];
+    }
+
+    /**
+     * Gets the address of the body of a tweet held in memory, for copying it without decoding.
+     *
+     * @param tweetID The tweet ID.
+     * @return The body address, or -1 if the tweet is not held in memory.
+     */
+    long getBodyAddress(long tweetID) {
+        Page page = page(tweetID, false);
+        Slots slots = page == null ? null : page.slots;
+        return slots == null ? NO_ADDRESS : slots.addresses[(int) (tweetID & (PAGE_SIZE - 1))];
+    }
+
+    /**
+     * Gets the length in bytes of the UTF-8 body of a tweet held in memory.
+     *
+     * @param tweetID The tweet ID.
+     * @return The body length, or -1 if the tweet is not held in memory.
+     */
+    int getBodyLength(long tweetID) {
+        Page page = page(tweetID, false);
+        Slots slots = page == null ? null : page.slots;
+        int slot = (int) (tweetID & (PAGE_SIZE - 1));
+        return slots == null || slots.addresses[slot] == NO_ADDRESS ? -1 : slots.lengths[slot];
+    }
+
+    /**
+     * Copies a body out of the arena. Arena space is never reused, so an address read before its
+     * tweet was archived either still holds the same body or no longer resolves at all.
+     *
+     * @param address     The body address.
+     * @param destination The array to copy the body into.
+     * @param length      The body length in bytes.
+     * @return True if the body was copied, false if its chunk has been dropped.
+     */
+    boolean readBody(long address, byte[] destination, int length) {
+        ByteBuffer chunk = chunk(address);
+        if (chunk == null) {
+            return false;
+        }
+        chunk.get(offset(address), destination, 0, length);
+        return true;
+    }
+
+    /**
+     * Makes chunks of a memory-mapped file addressable, so tweets can keep their bodies there.
+     * The chunks are kept for the life of the store.
+     *
+     * @param chunks The mapped chunks.
+     * @return The chunk number of the first chunk, for {@link #mappedAddress}.
+     */
+    int mapChunks(ByteBuffer[] chunks) {
+        synchronized (mapLock) {
+            ByteBuffer[] current = mappedChunks;
+            ByteBuffer[] mapped = Arrays.copyOf(current, current.length + chunks.length);
+            for (int i = 0; i < chunks.length; i++) {
+                mapped[current.length + i] = chunks[i].asReadOnlyBuffer();
+            }
+            mappedChunks = mapped; // Volatile write publishes the new chunks
+            return current.length;
+        }
+    }
+
+    /**
+     * Gets the address of a body in a mapped chunk.
+     *
+     * @param chunk  The chunk number.
+     * @param offset The offset of the body within the chunk.
+     * @return The body address.
+     */
+    static long mappedAddress(int chunk, int offset) {
+        return ((long) MAPPED << 56) | ((long) chunk << 32) | offset;
+    }
+
+    /**
+     * Checks whether a tweet's page is still to be filled from a TweetSource, without filling it.
+     * The metadata of such a tweet is only in its source, and has not changed since it was restored.
+     *
+     * @param tweetID The tweet ID.
+     * @return True if the tweet's page has not been used since its tweets were restored.
+     */
+    boolean isUnfilled(long tweetID) {
+        AtomicLongArray unfilled = unfilledPages;
+        return unfilled != null && isSet(unfilled, (int) (tweetID >>> PAGE_BITS));
+    }
+
+    /**
+     * Adds tweets restored from a snapshot without storing them yet. Each page of tweet IDs the source
+     * covers is filled in from it the first time the page is used; tweets the store already holds, in
+     * memory or in the archive, are kept. The restored tweets are counted in getTweetCount right away.
+     *
+     * @param source The restored tweets.
+     */
+    void addRestored(TweetSource source) {
+        int size = source.size();
+        if (size == 0) {
+            return;
+        }
+        int first = (int) (source.getTweetID(0) >>> PAGE_BITS);
+        int last = (int) (source.getTweetID(size - 1) >>> PAGE_BITS);
+        synchronized (pageLock) {
+            restored = Arrays.copyOf(restored, restored.length + 1);
+            restored[restored.length - 1] = new RestoredTweets(source);
+            AtomicLongArray current = unfilledPages;
+            int words = Math.max((last >>> 6) + 1, current == null ? 0 : current.length());
+            AtomicLongArray unfilled = new AtomicLongArray(words);
+            for (int i = 0; current != null && i < current.length(); i++) {
+                unfilled.set(i, current.get(i));
+            }
+            for (int index = first; index <= last; index++) {
+                if (!isSet(unfilled, index)) {
+                    unfilled.set(index >>> 6, unfilled.get(index >>> 6) | (1L << index));
+                    unfilledCount++;
+                }
+            }
+            tweetCount.add(size);
+            unfilledPages = unfilled; // Volatile write publishes the source
+        }
+    }
+
+    /**
+     * Drops the bodies of tweets that have been written to the archive, keeping only their authors.
+     * Bodies no longer shared with a tweet in memory leave the intern table, and arena chunks left
+     * without live bodies are dropped. Readers that still hold an old address either read the body
+     * from its chunk or find the chunk gone and fall back to the archive.
+     *
+     * @param tweetIDs The IDs of the archived tweets.
+     */
+    void archive(long[] tweetIDs) {
+        synchronized (pageLock) {
+            for (long tweetID : tweetIDs) {
+                Page page = page(tweetID, false);
+                Slots slots = page == null ? null : page.slots;
+                int slot = (int) (tweetID & (PAGE_SIZE - 1));
+                if (slots != null && slots.addresses[slot] != NO_ADDRESS) {
+                    long address = slots.addresses[slot];
+                    slots.addresses[slot] = NO_ADDRESS;
+                    release(address);
+                    tweetCount.decrement();
+                    archivedCount.increment();
+                    archivedPages.add((int) (tweetID >>> PAGE_BITS));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a tweet found in the archive when it is opened, so it can be read back by ID.
+     *
+     * @param tweetID  The tweet ID.
+     * @param authorID The author's user ID.
+     */
+    void restoreArchived(long tweetID, String authorID) {
+        int author = authorIndex(authorID);
+        synchronized (pageLock) {
+            Page page = page(tweetID, true);
+            int slot = (int) (tweetID & (PAGE_SIZE - 1));
+            if (page.authors[slot] == NO_AUTHOR) {
+                page.authors[slot] = author;
+                archivedCount.increment();
+                archivedPages.add((int) (tweetID >>> PAGE_BITS));
+            }
+        }
+    }
+
+    /**
+     * Drops the slot arrays of pages whose tweets have all been archived. The two newest pages are
+     * left alone, since tweets being posted may still be stored there without the page lock.
+     *
+     * @return The number of pages compacted.
+     */
+    int compact() {
+        int compacted = 0;
+        synchronized (pageLock) {
+            int limit = (int) (Tweet.lastID() >>> PAGE_BITS) - 1;
+            compactedBelow = Math.max(compactedBelow, limit);
+            Page[] current = pages;
+            int[] candidates = archivedPages.toArray();
+            archivedPages = new IntHashSet();
+            for (int index : candidates) {
+                if (index >= compactedBelow) {
+                    archivedPages.add(index); // Checked again once newer pages exist
+                    continue;
+                }
+                Page page = current[index];
+                if (page.slots != null && page.slots.isEmpty()) {
+                    page.slots = null;
+                    compacted++;
+                }
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Reads a tweet that is no longer held in memory back from the archive.
+     */
+    private Tweet archived(Page page, int slot, long tweetID) {
+        int author = page.authors[slot];
+        FeedArchive current = archive;
+        if (author == NO_AUTHOR || current == null) {
+            return null;
+        }
+        return current.get(authorIDs[author], tweetID);
+    }
+
+    /**
+     * Gets the metadata page holding a tweet ID, optionally creating it.
+     */
+    private Page page(long tweetID, boolean create) {
+        if (tweetID < 0) {
+            return null;
+        }
+        int index = (int) (tweetID >>> PAGE_BITS);
+        AtomicLongArray unfilled = unfilledPages;
+        if (unfilled != null && isSet(unfilled, index)) {
+            fill(index);
+        }
+        Page[] current = pages;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        if (!create) {
+            return null;
+        }
+        synchronized (pageLock) {
+            return createPage(index);
+        }
+    }
+
+    /**
+     * Gets the metadata page with an index, creating it if needed. The caller holds pageLock.
+     */
+    private Page createPage(int index) {
+        Page[] current = pages;
+        if (index >= current.length) {
+            current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+        }
+        if (current[index] == null) {
+            current[index] = new Page();
+        }
+        pages = current; // Volatile write publishes the new page
+        return current[index];
+    }
+
+    /**
+     * Stores the restored tweets of a page, unless another thread already has.
+     */
+    private void fill(int index) {
+        synchronized (pageLock) {
+            AtomicLongArray unfilled = unfilledPages;
+            if (unfilled == null || !isSet(unfilled, index)) {
+                return;
+            }
+            for (RestoredTweets tweets : restored) {
+                tweets.storeInto(index);
+            }
+            // Clearing the bit is a volatile write, so a reader that sees it cleared also sees the page
+            unfilled.getAndUpdate(index >>> 6, bits -> bits & ~(1L << index));
+            if (--unfilledCount == 0) {
+                unfilledPages = null;
+                restored = new RestoredTweets[0];
+            }
+        }
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int index) {
+        return (index >>> 6) < bits.length() && (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private int authorIndex(String authorID) {
+        Integer index = authorIndex.get(authorID);
+        if (index != null) {
+            return index;
+        }
+        synchronized (authorIndex) {
+            return authorIndex.computeIfAbsent(authorID, a -> {
+                String[] ids = authorIDs;
+                if (authorCount == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                ids[authorCount] = a;
+                authorIDs = ids; // Volatile write publishes the new entry
+                return authorCount++;
+            });
+        }
+    }
+
+    /**
+     * Drops one tweet's reference to an interned body. Bodies in mapped chunks are not counted,
+     * since the mapped file backs them.
+     */
+    private void release(long address) {
+        int stripe = (int) (address >>> 56);
+        if (address != NO_ADDRESS && stripe != MAPPED) {
+            stripes[stripe].release(address);
+        }
+    }
+
+    /**
+     * Gets the chunk holding a body, or null if the arena chunk has been dropped.
+     */
+    private ByteBuffer chunk(long address) {
+        int stripe = (int) (address >>> 56);
+        int chunk = chunkIndex(address);
+        return stripe == MAPPED ? mappedChunks[chunk] : stripes[stripe].chunks[chunk];
+    }
+
+    private static int chunkIndex(long address) {
+        return (int) (address >>> 32) & 0xFFFFFF;
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int hash(byte[] body) {
+        int hash = 1;
+        for (byte b : body) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Tweets restored from a snapshot, in increasing ID order, with their bodies in chunks made
+     * addressable by mapChunks. The store reads them a page of tweet IDs at a time.
+     */
+    interface TweetSource {
+        /**
+         * Gets the number of tweets.
+         *
+         * @return The tweet count.
+         */
+        int size();
+
+        /**
+         * Gets the ID of a tweet.
+         *
+         * @param index The position of the tweet, in increasing ID order.
+         * @return The tweet ID.
+         */
+        long getTweetID(int index);
+
+        /**
+         * Gets the number of authors the tweets are numbered by.
+         *
+         * @return The author count.
+         */
+        int getAuthorCount();
+
+        /**
+         * Gets the user ID of an author.
+         *
+         * @param author The author number.
+         * @return The author's user ID.
+         */
+        String getAuthorID(int author);
+
+        /**
+         * Copies a run of tweets into arrays, starting at index 0 of each.
+         *
+         * @param from       The position of the first tweet.
+         * @param to         The position after the last tweet.
+         * @param tweetIDs   The tweet IDs.
+         * @param authors    The author numbers.
+         * @param timestamps The posting times.
+         * @param addresses  The body addresses, from {@link #mappedAddress}.
+         * @param lengths    The body lengths.
+         */
+        void read(int from, int to, long[] tweetIDs, int[] authors, long[] timestamps, long[] addresses,
+                  int[] lengths);
+    }
+
+    /**
+     * A TweetSource, with the store's numbers for its authors as they are needed.
+     */
+    private final class RestoredTweets {
+        private final TweetSource source;
+        private final int[] authors;
+
+        RestoredTweets(TweetSource source) {
+            this.source = source;
+            this.authors = new int[source.getAuthorCount()];
+            Arrays.fill(authors, NO_AUTHOR);
+        }
+
+        /**
+         * Stores the source's tweets that belong on a page, skipping any the store already holds.
+         * The caller holds pageLock.
+         */
+        void storeInto(int index) {
+            long first = (long) index << PAGE_BITS;
+            int from = search(first);
+            int to = search(first + PAGE_SIZE);
+            int count = to - from;
+            if (count <= 0) {
+                return;
+            }
+            long[] tweetIDs = new long[count];
+            int[] tweetAuthors = new int[count];
+            long[] timestamps = new long[count];
+            long[] addresses = new long[count];
+            int[] lengths = new int[count];
+            source.read(from, to, tweetIDs, tweetAuthors, timestamps, addresses, lengths);
+            Page page = createPage(index);
+            Slots slots = page.slots;
+            if (slots == null) {
+                slots = new Slots();
+                page.slots = slots;
+            }
+            int held = 0;
+            for (int i = 0; i < count; i++) {
+                if ((tweetIDs[i] >>> PAGE_BITS) != index) {
+                    throw new IllegalStateException("Restored tweets are not in ID order at " + tweetIDs[i]);
+                }
+                int slot = (int) (tweetIDs[i] & (PAGE_SIZE - 1));
+                if (page.authors[slot] != NO_AUTHOR) {
+                    held++; // Archived or stored again since the snapshot was written
+                    continue;
+                }
+                slots.lengths[slot] = lengths[i];
+                slots.timestamps[slot] = timestamps[i];
+                page.authors[slot] = author(tweetAuthors[i]);
+                slots.addresses[slot] = addresses[i];
+            }
+            tweetCount.add(-held);
+        }
+
+        private int author(int author) {
+            int number = authors[author];
+            if (number == NO_AUTHOR) {
+                number = authorIndex(source.getAuthorID(author));
+                authors[author] = number;
+            }
+            return number;
+        }
+
+        /**
+         * Finds the position of the first tweet with an ID no lower than a given one.
+         */
+        private int search(long tweetID) {
+            int low = 0;
+            int high = source.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (source.getTweetID(middle) < tweetID) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Metadata for a page of consecutive tweet IDs. Authors are kept for as long as the tweets exist;
+     * the slots holding the bodies are dropped once every tweet on the page is archived.
+     */
+    private static final class Page {
+        final int[] authors = new int[PAGE_SIZE];
+        volatile Slots slots = new Slots();
+
+        Page() {
+            Arrays.fill(authors, NO_AUTHOR);
+        }
+    }
+
+    /**
+     * Body address, length and timestamp of each tweet on a page held in memory.
+     */
+    private static final class Slots {
+        final long[] addresses = new long[PAGE_SIZE];
+        final int[] lengths = new int[PAGE_SIZE];
+        final long[] timestamps = new long[PAGE_SIZE];
+
+        Slots() {
+            Arrays.fill(addresses, NO_ADDRESS);
+        }
+
+        boolean isEmpty() {
+            for (long address : addresses) {
+                if (address != NO_ADDRESS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One lock stripe: an arena of body chunks and the intern table for the bodies hashed to it.
+     * An address packs the stripe number, the chunk number and the body offset within the chunk.
+     * Chunk numbers are never reused, so a dropped chunk leaves a null entry behind.
+     */
+    private final class Stripe {
+        private final long stripeBits;
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        private int chunkOffset;
+        private int[] chunkLive = new int[0]; // Interned bodies per chunk
+        private int[] chunkBytes = new int[0]; // Body bytes per chunk, as counted in bodyBytes
+
+        // Open-addressing table of body addresses, keyed by body hash, with the tweets using each body
+        private long[] internAddresses = new long[1 << 8];
+        private int[] internHashes = new int[1 << 8];
+        private int[] internRefs = new int[1 << 8];
+        private int internCount;
+
+        Stripe(int number) {
+            this.stripeBits = (long) number << 56;
+            Arrays.fill(internAddresses, NO_ADDRESS);
+        }
+
+        /**
+         * Returns the address of an identical stored body, or copies the body into the arena.
+         */
+        synchronized long intern(byte[] body, int hash) {
+            int mask = internAddresses.length - 1;
+            for (int i = (hash >>> STRIPE_BITS) & mask; ; i = (i + 1) & mask) {
+                long address = internAddresses[i];
+                if (address == NO_ADDRESS) {
+                    address = allocate(body);
+                    internAddresses[i] = address;
+                    internHashes[i] = hash;
+                    internRefs[i] = 1;
+                    chunkLive[chunkIndex(address)]++;
+                    if (++internCount * 2 > internAddresses.length) {
+                        growInternTable();
+                    }
+                    return address;
+                }
+                if (internHashes[i] == hash && bodyEquals(address, body)) {
+                    internRefs[i]++;
+                    return address;
+                }
+            }
+        }
+
+        /**
+         * Drops one reference to an interned body, removing the body from the intern table once no
+         * tweet uses it and dropping its chunk once no body in the chunk is used.
+         */
+        synchronized void release(long address) {
+            ByteBuffer chunk = chunk(address);
+            int offset = offset(address);
+            byte[] body = new byte[chunk.getInt(offset - 4)];
+            chunk.get(offset, body);
+            int mask = internAddresses.length - 1;
+            int i = (hash(body) >>> STRIPE_BITS) & mask;
+            while (internAddresses[i] != address) {
+                if (internAddresses[i] == NO_ADDRESS) {
+                    return; // Not interned here
+                }
+                i = (i + 1) & mask;
+            }
+            if (--internRefs[i] > 0) {
+                return;
+            }
+            removeIntern(i);
+            int index = chunkIndex(address);
+            if (--chunkLive[index] == 0 && index < chunks.length - 1) {
+                dropChunk(index);
+            }
+        }
+
+        /**
+         * Removes an intern table entry, moving later entries of the same probe run back into the gap.
+         */
+        private void removeIntern(int gap) {
+            int mask = internAddresses.length - 1;
+            for (int i = (gap + 1) & mask; internAddresses[i] != NO_ADDRESS; i = (i + 1) & mask) {
+                int home = (internHashes[i] >>> STRIPE_BITS) & mask;
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    internAddresses[gap] = internAddresses[i];
+                    internHashes[gap] = internHashes[i];
+                    internRefs[gap] = internRefs[i];
+                    gap = i;
+                }
+            }
+            internAddresses[gap] = NO_ADDRESS;
+            internCount--;
+        }
+
+        /**
+         * Forgets a chunk that is no longer being filled and holds no live bodies, so its direct
+         * memory is freed once no reader still holds it.
+         */
+        private void dropChunk(int index) {
+            ByteBuffer[] current = chunks.clone();
+            current[index] = null;
+            chunks = current; // Volatile write publishes the dropped chunk
+            bodyBytes.add(-chunkBytes[index]);
+            chunkBytes[index] = 0;
+        }
+
+        private boolean bodyEquals(long address, byte[] body) {
+            ByteBuffer chunk = chunk(address);
+            int offset = offset(address);
+            // Bodies are prefixed with their length so the comparison can stop early
+            if (chunk.getInt(offset - 4) != body.length) {
+                return false;
+            }
+            for (int i = 0; i < body.length; i++) {
+                if (chunk.get(offset + i) != body[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long allocate(byte[] body) {
+            int needed = body.length + 4;
+            ByteBuffer[] current = chunks;
+            ByteBuffer chunk = current.length == 0 ? null : current[current.length - 1];
+            if (chunk == null || chunkOffset + needed > chunk.capacity()) {
+                chunk = ByteBuffer.allocateDirect(Math.max(ARENA_CHUNK_SIZE, needed));
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = chunk;
+                chunks = current;
+                chunkOffset = 0;
+                chunkLive = Arrays.copyOf(chunkLive, current.length);
+                chunkBytes = Arrays.copyOf(chunkBytes, current.length);
+                int previous = current.length - 2;
+                if (previous >= 0 && current[previous] != null && chunkLive[previous] == 0) {
+                    dropChunk(previous); // Every body was released while the chunk was still being filled
+                }
+            }
+            chunk.putInt(chunkOffset, body.length);
+            chunk.put(chunkOffset + 4, body);
+            int index = current.length - 1;
+            long address = stripeBits | ((long) index << 32) | (chunkOffset + 4);
+            chunkOffset += needed;
+            chunkBytes[index] += body.length;
+            bodyBytes.add(body.length);
+            return address;
+        }
+
+        private void growInternTable() {
+            long[] oldAddresses = internAddresses;
+            int[] oldHashes = internHashes;
+            int[] oldRefs = internRefs;
+            internAddresses = new long[oldAddresses.length * 2];
+            internHashes = new int[oldHashes.length * 2];
+            internRefs = new int[oldRefs.length * 2];
+            Arrays.fill(internAddresses, NO_ADDRESS);
+            int mask = internAddresses.length - 1;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != NO_ADDRESS) {
+                    int j = (oldHashes[i] >>> STRIPE_BITS) & mask;
+                    while (internAddresses[j] != NO_ADDRESS) {
+                        j = (j + 1) & mask;
+                    }
+                    internAddresses[j] = oldAddresses[i];
+                    internHashes[j] = oldHashes[i];
+                    internRefs[j] = oldRefs[i];
+                }
+            }
+        }
+    }
+}
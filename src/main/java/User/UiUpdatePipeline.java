@@ -0,0 +1,93 @@
+package User;
+
+import javax.swing.SwingUtilities;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The UiUpdatePipeline class carries model changes made on any thread to Swing components in
+ * batches, at most FRAMES_PER_SECOND times a second. A component collects its pending changes itself,
+ * off the event dispatch thread, and calls {@link #request(Runnable)} with a flush action that applies
+ * them. Requests for the same flush action made before the next frame are merged, and each frame posts
+ * a single task to the event queue that runs every requested flush, so the event thread does a bounded
+ * amount of work per frame however fast tweets and hierarchy changes arrive.
+ */
+public final class UiUpdatePipeline {
+    public static final int FRAMES_PER_SECOND = 60;
+
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / FRAMES_PER_SECOND;
+    private static final UiUpdatePipeline instance = new UiUpdatePipeline();
+
+    private final Queue<Runnable> requested = new ConcurrentLinkedQueue<>();
+    private final Set<Runnable> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService timer;
+    private volatile long lastFrame = System.nanoTime() - FRAME_NANOS;
+
+    private UiUpdatePipeline() {
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ui-update-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the pipeline shared by all Swing components.
+     *
+     * @return The shared UiUpdatePipeline instance.
+     */
+    public static UiUpdatePipeline getInstance() {
+        return instance;
+    }
+
+    /**
+     * Asks for a flush action to run on the event dispatch thread in the next frame. Requesting an
+     * action that is already waiting for the next frame does nothing. An action requested while it is
+     * running runs again in the following frame, so it never misses changes made while it ran.
+     * May be called from any thread.
+     *
+     * @param flush The action that applies the caller's pending changes; compared by identity.
+     */
+    public void request(Runnable flush) {
+        if (pending.add(flush)) {
+            requested.add(flush);
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Schedules the next frame, no sooner than one frame after the last one, if none is scheduled.
+     */
+    private void scheduleFrame() {
+        if (!frameScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = Math.max(0, lastFrame + FRAME_NANOS - System.nanoTime());
+        timer.schedule(() -> SwingUtilities.invokeLater(this::runFrame), delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs every flush requested so far. Called on the event dispatch thread.
+     */
+    private void runFrame() {
+        lastFrame = System.nanoTime();
+        frameScheduled.set(false); // Requests from here on schedule another frame
+        // Only the flushes requested before this frame; any requested while it runs wait for the next
+        for (int count = requested.size(); count > 0; count--) {
+            Runnable flush = requested.poll();
+            pending.remove(flush);
+            try {
+                flush.run();
+            } catch (RuntimeException e) {
+                System.out.println("UI update failed: " + e);
+            }
+        }
+    }
+}
@@ -1,19 +1,40 @@
 package User;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * The User class represents a user in the MiniTwitter application.
  * Each user has a unique user ID, followers, a list of users they are following,
  * a news feed, and a list of tweet observers.
+ * The news feed only holds tweet IDs; the tweets themselves are kept once in the TweetStore.
+ * Follow relationships are kept in the SocialGraph under the user's node ID.
+ *
+ * <p>A user may be used from several threads at once. Posts by the same user are appended to the feed
+ * under the user's feed lock, while posts by different users only meet on the short-lived stripes of
+ * the TweetStore and on the follower timeline buffers. Reading the feed never blocks. Posting a tweet
+ * happens in this order, each step happening-before the next: the tweet is stored in the TweetStore,
+ * its ID is appended to the feed, it is delivered to follower timelines, ModelListeners are called,
+ * and observers are notified. So any thread that sees a tweet ID in a feed or timeline can read the
+ * tweet from the store, and a listener or observer always finds the tweet in the author's feed.
+ *
+ * <p>When a RetentionPolicy is in force, FeedRetention moves the oldest tweets of the feed to the
+ * FeedArchive. The index-based views (getTweetCount, getTweetID, getTweets and getNewsFeed) then only
+ * cover the tweets still held in memory, while getFeedPage pages through both. Trimming the feed, or
+ * inserting a tweet that arrived out of order, replaces the array, so readers retry if that happened
+ * while they read it.
  */
 public class User {
     private String userID;
-    private List<User> followers;
-    private List<User> following;
-    private List<String> newsFeed;
-    private List<UserObserver> Observers;
+    private volatile int nodeID = -1; // Dense ID of the user in the SocialGraph, assigned on first use
+    private final Object nodeLock = new Object(); // Guards assigning the node ID
+    private final Object feedLock = new Object(); // Serializes posts by this user
+    private volatile long[] newsFeed; // IDs of the user's tweets, oldest first
+    private volatile int newsFeedSize; // Written after the ID it covers, so readers never see a gap
+    private volatile int feedTrims; // Odd while the feed array is being replaced; appends leave it alone
+    private final ObserverRegistry Observers;
+    private volatile ObserverDispatcher dispatcher;
 
     /**
      * Constructor for the User class.
@@ -22,10 +43,20 @@ public class User {
      */
     public User(String userID) {
         this.userID = userID;
-        this.followers = new ArrayList<>();
-        this.following = new ArrayList<>();
-        this.newsFeed = new ArrayList<>();
-        this.Observers = new ArrayList<>();
+        this.newsFeed = new long[0];
+        this.Observers = new ObserverRegistry();
+        this.dispatcher = AsyncObserverDispatcher.getInstance();
+    }
+
+    /**
+     * Constructor for a user restored from a ModelSnapshot, whose node the SocialGraph already holds.
+     *
+     * @param userID The unique identifier for the user.
+     * @param nodeID The ID of the user's node in the SocialGraph.
+     */
+    User(String userID, int nodeID) {
+        this(userID);
+        this.nodeID = nodeID;
     }
 
     /**
@@ -37,62 +68,556 @@ public class User {
         return userID;
     }
 
+    /**
+     * Gets the ID of the user's node in the SocialGraph, adding the user to the graph on first use.
+     * Registering the user with a UserRegistry does this, so users turned away as duplicates never
+     * take up a node.
+     *
+     * @return The node ID.
+     */
+    int getNodeID() {
+        int node = nodeID;
+        if (node < 0) {
+            synchronized (nodeLock) {
+                node = nodeID;
+                if (node < 0) {
+                    node = SocialGraph.getInstance().addNode(this);
+                    nodeID = node;
+                }
+            }
+        }
+        return node;
+    }
+
     /**
      * Gets the list of followers for the user.
      *
-     * @return The list of followers.
+     * @return A read-only snapshot of the followers, in no particular order.
      */
     public List<User> getFollowers() {
-        return followers;
+        return nodes(SocialGraph.getInstance().getFollowers(getNodeID()));
     }
 
     /**
      * Gets the list of users that the user is following.
      *
-     * @return The list of users being followed.
+     * @return A read-only snapshot of the users being followed, in no particular order.
      */
     public List<User> getFollowings() {
-        return following;
+        return nodes(SocialGraph.getInstance().getFollowing(getNodeID()));
+    }
+
+    /**
+     * Gets the number of followers of the user.
+     *
+     * @return The follower count.
+     */
+    public int getFollowerCount() {
+        return SocialGraph.getInstance().getFollowerCount(getNodeID());
     }
 
     /**
-     * Gets the news feed of the user.
+     * Gets the number of users that the user is following.
+     *
+     * @return The followee count.
+     */
+    public int getFollowingCount() {
+        return SocialGraph.getInstance().getFollowingCount(getNodeID());
+    }
+
+    /**
+     * Checks whether the user follows another user.
+     *
+     * @param user The other user.
+     * @return True if this user follows the other user.
+     */
+    public boolean isFollowing(User user) {
+        return user != null && SocialGraph.getInstance().isFollowing(getNodeID(), user.getNodeID());
+    }
+
+    /**
+     * Checks whether the user and another user follow each other.
+     *
+     * @param user The other user.
+     * @return True if each of the two users follows the other.
+     */
+    public boolean isMutualFollow(User user) {
+        return user != null && SocialGraph.getInstance().isMutual(getNodeID(), user.getNodeID());
+    }
+
+    /**
+     * Gets the users that this user follows and that follow this user back.
+     *
+     * @return A read-only snapshot of the mutual follows, in no particular order.
+     */
+    public List<User> getMutualFollows() {
+        return nodes(SocialGraph.getInstance().getMutuals(getNodeID()));
+    }
+
+    /**
+     * Gets the news feed of the user as a read-only list of tweet messages.
+     * Only tweets held in memory are listed; use getFeedPage to reach archived tweets too.
      *
      * @return The news feed.
      */
     public List<String> getNewsFeed() {
-        return newsFeed;
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return TweetStore.getInstance().getMessage(getTweetID(index));
+            }
+
+            @Override
+            public int size() {
+                return newsFeedSize;
+            }
+        };
     }
 
     /**
-     * Posts a new tweet to the user's news feed.
+     * Gets the tweets posted by the user that are held in memory, oldest first.
+     * Tweets are read from the TweetStore as the list is accessed.
+     *
+     * @return A read-only list of the user's tweets.
+     */
+    public List<Tweet> getTweets() {
+        return new AbstractList<Tweet>() {
+            @Override
+            public Tweet get(int index) {
+                return TweetStore.getInstance().get(getTweetID(index));
+            }
+
+            @Override
+            public int size() {
+                return newsFeedSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of tweets posted by the user that are held in memory.
+     *
+     * @return The tweet count, not counting tweets moved to the FeedArchive.
+     */
+    public int getTweetCount() {
+        return newsFeedSize;
+    }
+
+    /**
+     * Gets the ID of one of the user's tweets.
+     *
+     * @param index The position of the tweet in the news feed, 0 being the oldest.
+     * @return The tweet ID.
+     */
+    public long getTweetID(int index) {
+        while (true) {
+            int trims = feedTrims;
+            int size = newsFeedSize; // Read the size before the array, see publish
+            long[] feed = newsFeed;
+            long tweetID = index >= 0 && index < Math.min(size, feed.length) ? feed[index] : -1;
+            if ((trims & 1) == 0 && feedTrims == trims) {
+                if (tweetID < 0) {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+                }
+                return tweetID;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Follows another user, adding this user to their list of followers.
+     *
+     * @param user The user to follow.
+     * @return True if the user was followed, false if it is this user or is already followed.
+     */
+    public boolean follow(User user) {
+        if (user == null) {
+            return false;
+        }
+        synchronized (LockStripes.forUser(this)) {
+            if (!SocialGraph.getInstance().follow(getNodeID(), user.getNodeID())) {
+                return false;
+            }
+            TimelineEngine.getInstance().backfill(this, user);
+            ModelEvents.fireFollowed(this, user);
+        }
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
+
+    /**
+     * Stops following another user, removing this user from their list of followers.
+     * Their tweets no longer show in this user's timeline, including those already delivered to it.
+     *
+     * @param user The user to unfollow.
+     * @return True if the user was unfollowed, false if they were not being followed.
+     */
+    public boolean unfollow(User user) {
+        if (user == null) {
+            return false;
+        }
+        synchronized (LockStripes.forUser(this)) {
+            if (!SocialGraph.getInstance().unfollow(getNodeID(), user.getNodeID())) {
+                return false;
+            }
+            TimelineEngine.getInstance().unfollowed(this, user);
+            ModelEvents.fireUnfollowed(this, user);
+        }
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
+
+    /**
+     * Gets one page of the tweets posted by the user, newest first.
+     *
+     * @param cursor FeedPage.FIRST_PAGE, or the next cursor of the previous page.
+     * @param limit  The maximum number of tweets to return.
+     * @return The page of tweets.
+     */
+    public FeedPage getFeedPage(long cursor, int limit) {
+        long[] page;
+        boolean hasMore;
+        while (true) {
+            int trims = feedTrims;
+            int size = newsFeedSize; // Read the size before the array, see publish
+            long[] feed = newsFeed;
+            if ((trims & 1) == 0 && size <= feed.length) {
+                // The feed is sorted by ID, so find the newest tweet older than the cursor
+                int end = Arrays.binarySearch(feed, 0, size, cursor);
+                if (end < 0) {
+                    end = -end - 1;
+                }
+                int count = Math.min(limit, end);
+                page = new long[count];
+                for (int i = 0; i < count; i++) {
+                    page[i] = feed[end - 1 - i];
+                }
+                hasMore = end > count;
+                if (feedTrims == trims) {
+                    break;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        FeedArchive archive = TweetStore.getInstance().getArchive();
+        if (archive == null || archive.getMaxTweetID(userID) < 0) {
+            return new FeedPage(page, hasMore);
+        }
+        if (page.length == limit && archive.getMaxTweetID(userID) < page[page.length - 1]) {
+            return new FeedPage(page, true); // Archived tweets are all older than this page
+        }
+        // The page reaches into the archive
+        FeedPage archived = archive.getFeedPage(userID, cursor, limit);
+        long[] older = archived.getTweetIDs();
+        long[] merged = new long[Math.min(limit, page.length + older.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (count < merged.length && (i < page.length || j < older.length)) {
+            long next = j == older.length || (i < page.length && page[i] > older[j]) ? page[i++] : older[j++];
+            // A tweet restored while it was being archived can be in both
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
+            }
+        }
+        hasMore |= archived.hasMore() || i < page.length || j < older.length;
+        return new FeedPage(count == merged.length ? merged : Arrays.copyOf(merged, count), hasMore);
+    }
+
+    /**
+     * Gets the ID of the user's newest tweet, in memory or in the FeedArchive, without copying a page.
+     *
+     * @return The tweet ID, or -1 if the user has no tweets.
+     */
+    long getNewestTweetID() {
+        long newest;
+        while (true) {
+            int trims = feedTrims;
+            int size = newsFeedSize; // Read the size before the array, see publish
+            long[] feed = newsFeed;
+            newest = size > 0 && size <= feed.length ? feed[size - 1] : -1;
+            if ((trims & 1) == 0 && feedTrims == trims) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        FeedArchive archive = TweetStore.getInstance().getArchive();
+        return archive == null ? newest : Math.max(newest, archive.getMaxTweetID(userID));
+    }
+
+    /**
+     * Gets the oldest of the user's tweets held in memory, for FeedRetention to archive.
+     *
+     * @param count The maximum number of tweet IDs.
+     * @return The IDs, oldest first.
+     */
+    long[] oldestTweetIDs(int count) {
+        while (true) {
+            int trims = feedTrims;
+            int size = newsFeedSize; // Read the size before the array, see publish
+            long[] feed = newsFeed;
+            long[] oldest = Arrays.copyOf(feed, Math.min(count, Math.min(size, feed.length)));
+            if ((trims & 1) == 0 && feedTrims == trims) {
+                return oldest;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Counts the user's tweets held in memory that are older than a tweet ID.
+     *
+     * @param tweetID The tweet ID.
+     * @return The number of tweets with a smaller ID.
+     */
+    int countTweetsBefore(long tweetID) {
+        while (true) {
+            int trims = feedTrims;
+            int size = newsFeedSize; // Read the size before the array, see publish
+            long[] feed = newsFeed;
+            int end = Arrays.binarySearch(feed, 0, Math.min(size, feed.length), tweetID);
+            if ((trims & 1) == 0 && feedTrims == trims) {
+                return end < 0 ? -end - 1 : end;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Drops tweets that FeedRetention has written to the archive from the feed.
+     *
+     * @param tweetIDs The IDs of the archived tweets, in increasing order.
+     */
+    void dropArchived(long[] tweetIDs) {
+        synchronized (feedLock) {
+            int size = newsFeedSize;
+            long[] feed = newsFeed;
+            long[] kept = new long[Math.max(4, size - tweetIDs.length + (size - tweetIDs.length) / 2)];
+            int count = 0;
+            int j = 0;
+            // Both arrays are sorted, so one pass finds the archived IDs
+            for (int i = 0; i < size; i++) {
+                while (j < tweetIDs.length && tweetIDs[j] < feed[i]) {
+                    j++;
+                }
+                if (j < tweetIDs.length && tweetIDs[j] == feed[i]) {
+                    continue;
+                }
+                if (count == kept.length) {
+                    kept = Arrays.copyOf(kept, count * 2);
+                }
+                kept[count++] = feed[i];
+            }
+            feedTrims++; // Readers retry from here until the next increment
+            newsFeed = kept;
+            newsFeedSize = count;
+            feedTrims++;
+        }
+    }
+
+    /**
+     * Gets one page of the user's timeline, newest first.
+     *
+     * @param cursor FeedPage.FIRST_PAGE, or the next cursor of the previous page.
+     * @param limit  The maximum number of tweets to return.
+     * @return The page of timeline tweets.
+     */
+    public FeedPage getTimelinePage(long cursor, int limit) {
+        return TimelineEngine.getInstance().readTimelinePage(this, cursor, limit);
+    }
+
+    /**
+     * Gets the newest tweets of the user's timeline: their own tweets and those of the users they follow.
+     *
+     * @param limit The maximum number of tweets to return.
+     * @return The timeline tweets, newest first.
+     */
+    public List<Tweet> getTimeline(int limit) {
+        return TimelineEngine.getInstance().readTimeline(this, limit);
+    }
+
+    /**
+     * Posts a new tweet to the user's news feed and delivers it to the timelines of their followers.
      *
      * @param tweet The tweet message to be posted.
+     * @return The posted tweet.
+     */
+    public Tweet postTweet(String tweet) {
+        long start = System.nanoTime();
+        Tweet posted = new Tweet(userID, tweet);
+        publish(posted);
+        Metrics metrics = Metrics.getInstance();
+        metrics.getPostLatency().recordSince(start);
+        metrics.getTweetsPosted().increment();
+        return posted;
+    }
+
+    /**
+     * Restores a previously posted tweet, keeping its original ID and timestamp.
+     * Used when the model is rebuilt from persistent storage.
+     *
+     * @param tweet The tweet to be restored.
+     */
+    void restoreTweet(Tweet tweet) {
+        publish(tweet);
+    }
+
+    /**
+     * Restores a batch of previously posted tweets that are already in the TweetStore. The tweets are
+     * not pushed to timelines, which pull them from the feed instead, and listeners and observers are
+     * not notified; the caller does that if needed.
+     *
+     * @param tweetIDs The IDs of the tweets, in increasing order.
+     */
+    void restoreFeed(long[] tweetIDs) {
+        synchronized (feedLock) {
+            int size = newsFeedSize;
+            long[] feed = newsFeed;
+            long[] restored;
+            if (size == 0) {
+                restored = tweetIDs;
+            } else {
+                restored = Arrays.copyOf(feed, size + tweetIDs.length);
+                System.arraycopy(tweetIDs, 0, restored, size, tweetIDs.length);
+                Arrays.sort(restored);
+            }
+            feedTrims++; // Readers retry from here until the next increment
+            newsFeed = restored;
+            newsFeedSize = restored.length;
+            feedTrims++;
+        }
+    }
+
+    /**
+     * Restores a follow edge without backfilling this user's timeline, which pulls the followee's
+     * restored tweets from their feed instead. Listeners are notified as for follow.
+     *
+     * @param user The user to follow.
+     */
+    void restoreFollow(User user) {
+        synchronized (LockStripes.forUser(this)) {
+            if (SocialGraph.getInstance().follow(getNodeID(), user.getNodeID())) {
+                ModelEvents.fireFollowed(this, user);
+            }
+        }
+        ModelEvents.fireChangeCompleted();
+    }
+
+    /**
+     * Adds a tweet to the news feed, delivers it to followers and notifies listeners and observers.
+     *
+     * @param tweet The tweet being posted.
      */
-    public void postTweet(String tweet) {
-        newsFeed.add(tweet);
+    private void publish(Tweet tweet) {
+        TweetStore.getInstance().put(tweet);
+        synchronized (feedLock) {
+            int size = newsFeedSize;
+            long[] feed = newsFeed;
+            // Keep the feed sorted by ID; a concurrent post by the same user can arrive out of order
+            int position = size;
+            while (position > 0 && feed[position - 1] > tweet.getTweetID()) {
+                position--;
+            }
+            if (position == size) {
+                if (size == feed.length) {
+                    feed = Arrays.copyOf(feed, Math.max(4, size * 2));
+                    newsFeed = feed;
+                }
+                feed[size] = tweet.getTweetID();
+                newsFeedSize = size + 1;
+            } else {
+                // Readers may be looking at the slots that move, so insert into a copy
+                long[] inserted = new long[Math.max(4, size == feed.length ? size * 2 : feed.length)];
+                System.arraycopy(feed, 0, inserted, 0, position);
+                inserted[position] = tweet.getTweetID();
+                System.arraycopy(feed, position, inserted, position + 1, size - position);
+                feedTrims++; // Readers retry from here until the next increment
+                newsFeed = inserted;
+                newsFeedSize = size + 1;
+                feedTrims++;
+            }
+        }
+        TimelineEngine.getInstance().publish(this, tweet);
+        ModelEvents.fireTweetPosted(this, tweet);
+        ModelEvents.fireChangeCompleted();
         // Notify observers about the new tweet
-        notifyObservers(tweet);
+        notifyObservers(tweet.getMessage());
     }
 
     /**
      * Adds a tweet observer to the user's list of observers.
+     * The user keeps the observer until it unsubscribes.
+     *
+     * @param observer The observer to be added.
+     * @return The handle that removes the observer again.
+     */
+    public Subscription addObserver(UserObserver observer) {
+        return Observers.add(observer, false);
+    }
+
+    /**
+     * Adds a tweet observer that the user holds only weakly. If the observer becomes unreachable
+     * without unsubscribing, it is dropped instead of being notified forever.
      *
      * @param observer The observer to be added.
+     * @return The handle that removes the observer again.
      */
-    public void addObserver(UserObserver observer) {
-        Observers.add(observer);
+    public Subscription addWeakObserver(UserObserver observer) {
+        return Observers.add(observer, true);
     }
 
     /**
-     * Notifies all tweet observers about a new tweet.
+     * Removes a tweet observer, however many times it was added.
+     *
+     * @param observer The observer to be removed.
+     * @return True if the observer was registered.
+     */
+    public boolean removeObserver(UserObserver observer) {
+        return Observers.remove(observer);
+    }
+
+    /**
+     * Gets the number of observers registered with the user.
+     *
+     * @return The observer count.
+     */
+    public int getObserverCount() {
+        return Observers.size();
+    }
+
+    /**
+     * Sets the dispatcher used to deliver this user's tweets to their observers.
+     *
+     * @param dispatcher The dispatcher, for example ObserverDispatcher.DIRECT to notify on the posting thread.
+     */
+    public void setDispatcher(ObserverDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Notifies all tweet observers about a new tweet through the user's dispatcher.
      *
      * @param tweet The new tweet message.
      */
     private void notifyObservers(String tweet) {
-        for (UserObserver observer : Observers) {
-            observer.update(tweet);
+        ObserverDispatcher current = dispatcher;
+        Observers.forEach(observer -> current.dispatch(observer, tweet));
+    }
+
+    /**
+     * Resolves SocialGraph node IDs to a read-only list of users.
+     *
+     * @param nodeIDs The node IDs.
+     * @return The users.
+     */
+    private static List<User> nodes(int[] nodeIDs) {
+        SocialGraph graph = SocialGraph.getInstance();
+        User[] users = new User[nodeIDs.length];
+        for (int i = 0; i < nodeIDs.length; i++) {
+            users[i] = graph.getUser(nodeIDs[i]);
         }
+        return List.of(users);
     }
 
     /**
@@ -2,15 +2,35 @@ package User;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
 
 /**
  * The UserGroup class represents a group of users in the MiniTwitter application.
  * Each group has a unique group ID, a list of members, and a list of subgroups.
+ *
+ * <p>Groups may be changed from several threads. Membership changes lock the user's LockStripes stripe
+ * and hierarchy changes hold the write side of a single hierarchy lock, so the GroupMembership index, the member and
+ * subgroup lists, and the ModelEvents fired for a change are all updated together and in the same order.
+ * Listeners finish their slower work, such as waiting for the EventLog, after the lock is released.
+ * The lists are copy-on-write: reading or iterating them never blocks and always sees a consistent
+ * snapshot, and a change happens-before any read that observes it. Code that walks the ancestors of a
+ * group and needs the hierarchy to stay put meanwhile can hold {@link #hierarchyReadLock()}.
+ *
+ * <p>A group restored from a ModelSnapshot keeps its members as user numbers until the member list is
+ * first used, and only then looks the users up.
  */
 public class UserGroup {
+    private static final ReadWriteLock hierarchyLock = new ReentrantReadWriteLock();
+
     private String groupID;
     private List<User> members;
     private List<UserGroup> subGroups;
+    private volatile int[] restoredMembers; // Members not looked up yet, guarded by this group
+    private IntFunction<User> memberResolver;
 
     /**
      * Constructor for the UserGroup class.
@@ -19,8 +39,8 @@ public class UserGroup {
      */
     public UserGroup(String groupID) {
         this.groupID = groupID;
-        this.members = new ArrayList<>();
-        this.subGroups = new ArrayList<>();
+        this.members = new CopyOnWriteArrayList<>();
+        this.subGroups = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -38,7 +58,7 @@ public class UserGroup {
      * @return The list of members.
      */
     public List<User> getMembers() {
-        return members;
+        return members();
     }
 
     /**
@@ -50,61 +70,212 @@ public class UserGroup {
         return subGroups;
     }
 
+    /**
+     * Gets the group this group is nested in.
+     *
+     * @return The parent group, or null for a top-level group.
+     */
+    public UserGroup getParent() {
+        return GroupMembership.getInstance().getParent(this);
+    }
+
     /**
      * Adds a user to the user group.
      *
      * @param user The user to be added to the group.
+     * @return True if the user was added, false if the user is already in a group.
+     */
+    public boolean addUserToGroup(User user) {
+        synchronized (LockStripes.forUser(user)) {
+            if (!GroupMembership.getInstance().placeUser(user, this)) {
+                System.out.println("User " + user.getUserID() + " is already in another group");
+                return false;
+            }
+            members().add(user);
+            ModelEvents.fireUserAddedToGroup(this, user);
+        }
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
+
+    /**
+     * Adds a batch of newly created users to the user group with a single copy of the member list,
+     * rather than one copy per user. Users already in a group are skipped without a message.
+     * Meant for bulk loading users that no other thread is moving between groups yet.
+     *
+     * @param users The users to be added.
+     * @return The number of users added.
+     */
+    int addUsersToGroup(List<User> users) {
+        List<User> placed = new ArrayList<>(users.size());
+        for (User user : users) {
+            synchronized (LockStripes.forUser(user)) {
+                if (GroupMembership.getInstance().placeUser(user, this)) {
+                    placed.add(user);
+                }
+            }
+        }
+        members().addAll(placed);
+        for (User user : placed) {
+            ModelEvents.fireUserAddedToGroup(this, user);
+        }
+        ModelEvents.fireChangeCompleted();
+        return placed.size();
+    }
+
+    /**
+     * Removes a user from the user group.
+     *
+     * @param user The user to be removed.
+     * @return True if the user was a member of this group.
      */
-    public void addUserToGroup(User user) {
-        members.add(user);
+    public boolean removeUserFromGroup(User user) {
+        synchronized (LockStripes.forUser(user)) {
+            if (!GroupMembership.getInstance().removeUser(user, this)) {
+                return false;
+            }
+            members().remove(user);
+            ModelEvents.fireUserRemovedFromGroup(this, user);
+        }
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
+
+    /**
+     * Moves a member of this group into another group.
+     *
+     * @param user   The user to be moved.
+     * @param target The group the user moves to.
+     * @return True if the user was a member of this group and has been moved.
+     */
+    public boolean moveUserTo(User user, UserGroup target) {
+        if (target == this) {
+            return false;
+        }
+        synchronized (LockStripes.forUser(user)) {
+            if (!GroupMembership.getInstance().moveUser(user, this, target)) {
+                return false;
+            }
+            members().remove(user);
+            target.members().add(user);
+            ModelEvents.fireUserMoved(user, this, target);
+        }
+        ModelEvents.fireChangeCompleted();
+        return true;
     }
 
     /**
      * Adds a subgroup to the user group.
      *
      * @param subGroup The subgroup to be added.
+     * @return True if the subgroup was added.
      */
-    public void addSubGroup(UserGroup subGroup) {
-        // Check if the user is already in another group
-        for (User user : subGroup.getMembers()) {
-            if (isUserInAnotherGroup(user)) {
-                // Handle the scenario where the user is in another group
-                // You might want to remove the user from the other group or handle it according to your requirements
-                // Here's an example of just printing a message
-                System.out.println("User " + user.getUserID() + " is already in another group");
-                return;
+    public boolean addSubGroup(UserGroup subGroup) {
+        hierarchyLock.writeLock().lock();
+        try {
+            GroupMembership membership = GroupMembership.getInstance();
+            if (!membership.placeGroup(subGroup, this)) {
+                if (subGroup == this || membership.isAncestor(subGroup, this)) {
+                    System.out.println("Group " + subGroup.getGroupID() + " cannot be nested inside itself");
+                } else {
+                    System.out.println("Group " + subGroup.getGroupID() + " is already in another group");
+                }
+                return false;
             }
+            subGroups.add(subGroup);
+            ModelEvents.fireSubGroupAdded(this, subGroup);
+        } finally {
+            hierarchyLock.writeLock().unlock();
         }
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
 
-        subGroups.add(subGroup);
+    /**
+     * Removes a subgroup, along with everything nested in it, from the user group.
+     *
+     * @param subGroup The subgroup to be removed.
+     * @return True if the subgroup was nested directly in this group.
+     */
+    public boolean removeSubGroup(UserGroup subGroup) {
+        hierarchyLock.writeLock().lock();
+        try {
+            if (!GroupMembership.getInstance().removeGroup(subGroup, this)) {
+                return false;
+            }
+            subGroups.remove(subGroup);
+            ModelEvents.fireSubGroupRemoved(this, subGroup);
+        } finally {
+            hierarchyLock.writeLock().unlock();
+        }
+        ModelEvents.fireChangeCompleted();
+        return true;
     }
 
     /**
-     * Returns the string representation of the user group.
+     * Gives the group members restored from a ModelSnapshot, to be looked up when the member list is
+     * first used. The restored users must already be placed in this group in GroupMembership when they
+     * are looked up. Listeners are not told about them.
      *
-     * @return The group ID as the string representation.
+     * @param memberNumbers The members, as user numbers for the resolver.
+     * @param resolver      Gets the user with a number.
      */
-    @Override
-    public String toString() {
-        return groupID;
+    synchronized void restoreMembers(int[] memberNumbers, IntFunction<User> resolver) {
+        memberResolver = resolver;
+        restoredMembers = memberNumbers;
     }
 
     /**
-     * Checks if the user is in another group.
+     * Gets the restored members that have not been looked up yet, without looking them up.
      *
-     * @param user The user to check.
-     * @return True if the user is in another group, false otherwise.
-     */
-    private boolean isUserInAnotherGroup(User user) {
-        // Search through existing subgroups to see if the user is present in any other group
-        for (UserGroup group : subGroups) {
-            if (group.getMembers().contains(user)) {
-                return true; // User is already in another group
-            }
-            if (group.getSubGroups().size() > 0 && group.isUserInAnotherGroup(user)) {
-                return true; // User is found in a subgroup
+     * @return The members, as user numbers for the resolver, or null once the member list is in use.
+     */
+    synchronized int[] getRestoredMembers() {
+        return restoredMembers;
+    }
+
+    /**
+     * Gets the member list, first adding the restored members that still belong to this group.
+     */
+    private List<User> members() {
+        if (restoredMembers != null) {
+            synchronized (this) {
+                int[] pending = restoredMembers;
+                if (pending != null) {
+                    GroupMembership membership = GroupMembership.getInstance();
+                    List<User> restored = new ArrayList<>(pending.length);
+                    for (int number : pending) {
+                        User user = memberResolver.apply(number);
+                        if (membership.getGroup(user) == this) {
+                            restored.add(user);
+                        }
+                    }
+                    members.addAll(restored);
+                    memberResolver = null;
+                    restoredMembers = null;
+                }
             }
         }
-        return false; // User is not in another group
+        return members;
+    }
+
+    /**
+     * Gets the lock that keeps the group hierarchy from changing while it is held.
+     * Holders must not add or remove subgroups themselves.
+     *
+     * @return The read side of the hierarchy lock.
+     */
+    static Lock hierarchyReadLock() {
+        return hierarchyLock.readLock();
+    }
+
+    /**
+     * Returns the string representation of the user group.
+     *
+     * @return The group ID as the string representation.
+     */
+    @Override
+    public String toString() {
+        return groupID;
     }
 }
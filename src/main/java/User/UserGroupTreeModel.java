@@ -0,0 +1,152 @@
+package User;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.List;
+
+/**
+ * The UserGroupTreeModel class exposes a UserGroup hierarchy to a JTree without copying it into tree nodes.
+ * Each group's children are its subgroups followed by its members, read straight from the group, so a
+ * JTree only touches the groups that are actually expanded. Inserts are reported as fine-grained
+ * insertion events rather than reloading the whole subtree.
+ */
+public class UserGroupTreeModel implements TreeModel {
+    private final UserGroup root;
+    private final EventListenerList listeners;
+
+    /**
+     * Constructor for the UserGroupTreeModel class.
+     *
+     * @param root The top-level group shown as the root of the tree.
+     */
+    public UserGroupTreeModel(UserGroup root) {
+        this.root = root;
+        this.listeners = new EventListenerList();
+    }
+
+    @Override
+    public Object getRoot() {
+        return root;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        UserGroup group = (UserGroup) parent;
+        List<UserGroup> subGroups = group.getSubGroups();
+        if (index < subGroups.size()) {
+            return subGroups.get(index);
+        }
+        return group.getMembers().get(index - subGroups.size());
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        if (parent instanceof UserGroup) {
+            UserGroup group = (UserGroup) parent;
+            return group.getSubGroups().size() + group.getMembers().size();
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return node instanceof User;
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!(parent instanceof UserGroup) || child == null) {
+            return -1;
+        }
+        UserGroup group = (UserGroup) parent;
+        if (child instanceof UserGroup) {
+            return group.getSubGroups().indexOf(child);
+        }
+        int index = group.getMembers().indexOf(child);
+        return index < 0 ? -1 : group.getSubGroups().size() + index;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // The tree is not editable
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        listeners.add(TreeModelListener.class, listener);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+        listeners.remove(TreeModelListener.class, listener);
+    }
+
+    /**
+     * Gets the path from the root of the tree to a group, using the membership index.
+     *
+     * @param group The group to locate.
+     * @return The tree path ending at the group.
+     */
+    public TreePath getPathToGroup(UserGroup group) {
+        List<UserGroup> ancestors = GroupMembership.getInstance().getAncestors(group);
+        Object[] path = new Object[ancestors.size() + 1];
+        for (int i = 0; i < ancestors.size(); i++) {
+            path[ancestors.size() - 1 - i] = ancestors.get(i);
+        }
+        path[ancestors.size()] = group;
+        return new TreePath(path);
+    }
+
+    /**
+     * Reports that the whole hierarchy may have changed, for example after it was loaded from disk.
+     */
+    public void hierarchyChanged() {
+        TreeModelEvent event = new TreeModelEvent(this, new Object[]{root});
+        for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+            listener.treeStructureChanged(event);
+        }
+    }
+
+    /**
+     * Reports that any of a group's children may have been added, removed or reordered, so the tree
+     * reads them again. Nodes below the group are collapsed by the tree.
+     *
+     * @param group The group whose children changed.
+     */
+    public void groupChanged(UserGroup group) {
+        TreeModelEvent event = new TreeModelEvent(this, getPathToGroup(group));
+        for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+            listener.treeStructureChanged(event);
+        }
+    }
+
+    /**
+     * Reports that a subgroup was just appended to a group.
+     *
+     * @param parent   The group that received the subgroup.
+     * @param subGroup The new subgroup.
+     */
+    public void groupInserted(UserGroup parent, UserGroup subGroup) {
+        fireNodeInserted(parent, parent.getSubGroups().size() - 1, subGroup);
+    }
+
+    /**
+     * Reports that a user was just appended to a group.
+     *
+     * @param parent The group that received the user.
+     * @param user   The new member.
+     */
+    public void userInserted(UserGroup parent, User user) {
+        fireNodeInserted(parent, getChildCount(parent) - 1, user);
+    }
+
+    private void fireNodeInserted(UserGroup parent, int index, Object child) {
+        TreeModelEvent event = new TreeModelEvent(this, getPathToGroup(parent), new int[]{index}, new Object[]{child});
+        for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+            listener.treeNodesInserted(event);
+        }
+    }
+}
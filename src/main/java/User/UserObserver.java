@@ -1,5 +1,7 @@
 package User;
 
+import java.util.List;
+
 /**
  * The UserObserver interface defines a contract for classes that want to observe or listen for updates
  * related to a user in the MiniTwitter application.
@@ -12,4 +14,16 @@ public interface UserObserver {
      * @param tweet The update information, typically a tweet message.
      */
     void update(String tweet);
+
+    /**
+     * This method is called with several updates at once when they arrive in a burst.
+     * By default, each update is passed to update(String) in order.
+     *
+     * @param tweets The update information, oldest first.
+     */
+    default void update(List<String> tweets) {
+        for (String tweet : tweets) {
+            update(tweet);
+        }
+    }
 }
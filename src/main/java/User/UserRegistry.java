@@ -0,0 +1,276 @@
+package User;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The UserRegistry class owns every User and UserGroup in the MiniTwitter application.
+ * Users and groups are indexed by their IDs, so lookups and duplicate checks take constant time
+ * and inserts are safe to perform from more than one thread.
+ *
+ * <p>Users restored from a ModelSnapshot are registered without being created: the registry asks the
+ * snapshot's UserSource for a user the first time it is looked up, and creates the rest when every user
+ * is listed.
+ */
+public class UserRegistry {
+    public static final String ROOT_GROUP_ID = "Root";
+
+    private final UserGroup rootGroup;
+    private final ConcurrentMap<String, User> users;
+    private final ConcurrentMap<String, UserGroup> groups;
+    private volatile UserSource restored; // Registered users not created yet, or null
+
+    /**
+     * Constructor for the UserRegistry class.
+     * Initializes empty user and group indexes and the root group.
+     */
+    public UserRegistry() {
+        this.rootGroup = new UserGroup(ROOT_GROUP_ID);
+        this.users = new ConcurrentHashMap<>();
+        this.groups = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the top-level group that every other group is nested under.
+     * The root group is not counted as a registered group.
+     *
+     * @return The root group.
+     */
+    public UserGroup getRootGroup() {
+        return rootGroup;
+    }
+
+    /**
+     * Creates and registers a new user, unless a user with the same ID already exists.
+     *
+     * @param userID The ID of the new user.
+     * @return The newly created user, or null if the ID is already taken.
+     */
+    public User createUser(String userID) {
+        if (containsUser(userID)) {
+            return null;
+        }
+        User newUser = new User(userID);
+        return registerUser(newUser) ? newUser : null;
+    }
+
+    /**
+     * Registers an existing user and adds it to the SocialGraph.
+     *
+     * @param user The user to be registered.
+     * @return True if the user was added, false if a user with the same ID already exists.
+     */
+    public boolean registerUser(User user) {
+        UserSource source = restored;
+        if ((source != null && source.containsUser(user.getUserID()))
+                || users.putIfAbsent(user.getUserID(), user) != null) {
+            return false;
+        }
+        user.getNodeID(); // Join the SocialGraph only once the ID is known to be free
+        ModelEvents.fireUserCreated(user);
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
+
+    /**
+     * Creates and registers a new user group, unless a group with the same ID already exists.
+     *
+     * @param groupID The ID of the new group.
+     * @return The newly created group, or null if the ID is already taken.
+     */
+    public UserGroup createGroup(String groupID) {
+        UserGroup newGroup = new UserGroup(groupID);
+        return registerGroup(newGroup) ? newGroup : null;
+    }
+
+    /**
+     * Registers an existing user group.
+     *
+     * @param group The group to be registered.
+     * @return True if the group was added, false if a group with the same ID already exists.
+     */
+    public boolean registerGroup(UserGroup group) {
+        if (ROOT_GROUP_ID.equals(group.getGroupID()) || groups.putIfAbsent(group.getGroupID(), group) != null) {
+            return false;
+        }
+        ModelEvents.fireGroupCreated(group);
+        ModelEvents.fireChangeCompleted();
+        return true;
+    }
+
+    /**
+     * Looks up a user by ID.
+     *
+     * @param userID The ID of the user.
+     * @return The user, or null if no user has that ID.
+     */
+    public User getUser(String userID) {
+        if (userID == null) {
+            return null;
+        }
+        User user = users.get(userID);
+        UserSource source = restored;
+        return user != null || source == null ? user : source.getUser(userID);
+    }
+
+    /**
+     * Looks up a user group by ID.
+     *
+     * @param groupID The ID of the group.
+     * @return The group, or null if no group has that ID.
+     */
+    public UserGroup getGroup(String groupID) {
+        if (ROOT_GROUP_ID.equals(groupID)) {
+            return rootGroup;
+        }
+        return groupID == null ? null : groups.get(groupID);
+    }
+
+    /**
+     * Checks whether a user with the given ID is registered.
+     *
+     * @param userID The ID to check.
+     * @return True if the user exists, false otherwise.
+     */
+    public boolean containsUser(String userID) {
+        if (userID == null) {
+            return false;
+        }
+        UserSource source = restored;
+        return users.containsKey(userID) || (source != null && source.containsUser(userID));
+    }
+
+    /**
+     * Checks whether a group with the given ID is registered.
+     *
+     * @param groupID The ID to check.
+     * @return True if the group exists, false otherwise.
+     */
+    public boolean containsGroup(String groupID) {
+        return ROOT_GROUP_ID.equals(groupID) || (groupID != null && groups.containsKey(groupID));
+    }
+
+    /**
+     * Gets a read-only view of all registered users. Restored users not looked up yet are created first.
+     *
+     * @return The registered users.
+     */
+    public Collection<User> getUsers() {
+        UserSource source = restored;
+        if (source != null) {
+            source.createAll();
+            restored = null;
+        }
+        return Collections.unmodifiableCollection(users.values());
+    }
+
+    /**
+     * Gets a read-only view of all registered groups.
+     *
+     * @return The registered groups.
+     */
+    public Collection<UserGroup> getGroups() {
+        return Collections.unmodifiableCollection(groups.values());
+    }
+
+    /**
+     * Gets the number of registered users.
+     *
+     * @return The total number of users.
+     */
+    public int getUserCount() {
+        return users.size() + getPendingCount();
+    }
+
+    /**
+     * Gets the number of registered groups.
+     *
+     * @return The total number of groups.
+     */
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Registers users that are created later, on first lookup. Listeners are not told about them.
+     *
+     * @param source The source creating the users.
+     */
+    void registerRestored(UserSource source) {
+        restored = source;
+    }
+
+    /**
+     * Gets the source of the registered users that have not been created yet.
+     *
+     * @return The source, or null once every user has been created.
+     */
+    UserSource getRestored() {
+        return restored;
+    }
+
+    /**
+     * Gets a read-only view of the users created so far, leaving restored users that have not been
+     * looked up uncreated.
+     *
+     * @return The created users.
+     */
+    Collection<User> getCreatedUsers() {
+        return Collections.unmodifiableCollection(users.values());
+    }
+
+    /**
+     * Gets the number of registered users that have not been created yet.
+     *
+     * @return The pending user count.
+     */
+    int getPendingCount() {
+        UserSource source = restored;
+        return source == null ? 0 : source.getPendingCount();
+    }
+
+    /**
+     * Adds a user that a UserSource has just created.
+     *
+     * @param user The user.
+     */
+    void addRestored(User user) {
+        users.putIfAbsent(user.getUserID(), user);
+    }
+
+    /**
+     * Users that are registered but not created yet. A source creates a user the first time it is
+     * looked up, hands it to addRestored, and returns the same user from then on.
+     */
+    interface UserSource {
+        /**
+         * Gets a user, creating it on first lookup.
+         *
+         * @param userID The ID of the user.
+         * @return The user, or null if the source has no user with that ID.
+         */
+        User getUser(String userID);
+
+        /**
+         * Checks whether the source has a user, without creating it.
+         *
+         * @param userID The ID to check.
+         * @return True if the source has a user with that ID.
+         */
+        boolean containsUser(String userID);
+
+        /**
+         * Gets the number of users not created yet.
+         *
+         * @return The pending user count.
+         */
+        int getPendingCount();
+
+        /**
+         * Creates every user not created yet.
+         */
+        void createAll();
+    }
+}
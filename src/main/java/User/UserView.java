@@ -4,18 +4,45 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The UserView class represents the graphical user interface for individual users in a MiniTwitter application.
  * It displays the user's information, such as followers, following users, and their news feed.
  * Implements the TweetObserver interface to receive updates when the user posts a new tweet.
+ *
+ * <p>Tweets are counted as they arrive, on whatever thread delivers them, and added to the news feed
+ * in one batch per UiUpdatePipeline frame, so a busy timeline costs the event thread one update per
+ * frame rather than one per tweet.
+ *
+ * <p>The view observes its user and their followees through weak subscriptions, and cancels them
+ * when its window is closed, so a closed view is no longer notified and can be garbage collected.
  */
 public class UserView implements UserObserver {
 
+    private static final String TWEET_PROTOTYPE = "m".repeat(60); // Sizes news feed rows
+
     private User new_user;
-    private DefaultListModel<String> newsFeedModel;
+    private UserRegistry registry;
+    private FeedListModel newsFeedModel;
     private JList<String> newsFeedList;
+    private final List<Subscription> subscriptions = new ArrayList<>(); // Touched only on the EDT
+    private volatile boolean closed;
+    private final AtomicInteger unseenTweets = new AtomicInteger(); // Delivered but not yet in the feed
+    private final Runnable flushFeed = this::flushFeed;
+
+    /**
+     * Constructor for the UserView class.
+     *
+     * @param registry The registry used to look up users to follow.
+     */
+    public UserView(UserRegistry registry) {
+        this.registry = registry;
+    }
 
     /**
      * Creates and displays the graphical user interface for a specific user.
@@ -24,12 +51,18 @@ public class UserView implements UserObserver {
      */
     public void createAndShowUserView(User user) {
         this.new_user = user;
-        new_user.addObserver(this);
+        subscribe(new_user);
 
         // Header Title
         JFrame frame = new JFrame("MiniTwitter");
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         frame.setLocation(800, 200);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                unsubscribeAll();
+            }
+        });
 
         // Grid for the Panel
         JPanel userPanel = new JPanel(new GridBagLayout());
@@ -46,11 +79,23 @@ public class UserView implements UserObserver {
         DefaultListModel<String> followingListModel = new DefaultListModel<>();
         for (User following : followingUsers) {
             followingListModel.addElement(following.getUserID());
+            subscribe(following); // Receive the followee's new tweets in this news feed
         }
         JList<String> followingList = new JList<>(followingListModel);
 
         JScrollPane scrollPane = new JScrollPane(followingList);
 
+        b1.addActionListener(e -> {
+            String userID = t1.getText();
+            User followee = registry.getUser(userID);
+            if (followee == null) {
+                System.out.println("User " + userID + " does not exist!");
+            } else if (new_user.follow(followee)) {
+                followingListModel.addElement(followee.getUserID());
+                subscribe(followee);
+            }
+        });
+
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weightx = 1.0;
         userPanel.add(topPanel, gbc);
@@ -61,12 +106,11 @@ public class UserView implements UserObserver {
         userPanel.add(scrollPane, gbc);
 
         // Bottom panel with news feed, tweet input, and Post Tweet button
-        List<String> newsFeed = new_user.getNewsFeed();
-        newsFeedModel = new DefaultListModel<>();
-        for (String tweet : newsFeed) {
-            newsFeedModel.addElement(tweet);
-        }
+        // The feed is read a page at a time, newest first, as the list scrolls
+        newsFeedModel = new FeedListModel(new_user);
         newsFeedList = new JList<>(newsFeedModel);
+        // Fixed cell sizes stop the list from reading every row to measure it
+        newsFeedList.setPrototypeCellValue(TWEET_PROTOTYPE);
 
         JScrollPane scrollPane2 = new JScrollPane(newsFeedList);
 
@@ -108,14 +152,81 @@ public class UserView implements UserObserver {
     }
 
     /**
-     * Updates the news feed view when a new tweet is posted by the observed user.
+     * Updates the news feed view when a new tweet is posted by the observed user or one of their followees.
      *
      * @param tweet The new tweet posted by the user.
      */
     @Override
     public void update(String tweet) {
-        SwingUtilities.invokeLater(() -> newsFeedModel.addElement(tweet));
-        newsFeedList.setModel(newsFeedModel); // Refreshes the view
+        if (closed) {
+            discardLateUpdate();
+            return;
+        }
+        tweetsArrived(1);
+    }
+
+    /**
+     * Updates the news feed view with a burst of new tweets in a single pass on the event dispatch thread.
+     *
+     * @param tweets The new tweets, oldest first.
+     */
+    @Override
+    public void update(List<String> tweets) {
+        if (closed) {
+            discardLateUpdate();
+            return;
+        }
+        tweetsArrived(tweets.size());
+    }
+
+    /**
+     * Counts delivered tweets and asks for the news feed to be updated in the next frame.
+     *
+     * @param count The number of tweets delivered.
+     */
+    private void tweetsArrived(int count) {
+        if (unseenTweets.getAndAdd(count) == 0) {
+            UiUpdatePipeline.getInstance().request(flushFeed);
+        }
+    }
+
+    /**
+     * Adds every tweet delivered since the last frame to the news feed. Runs on the event dispatch thread.
+     */
+    private void flushFeed() {
+        // The count only says that something arrived; the model reads whatever is new itself
+        if (unseenTweets.getAndSet(0) > 0 && !closed) {
+            newsFeedModel.tweetsPosted();
+        }
+    }
+
+    /**
+     * Starts observing a user's tweets until the window is closed.
+     *
+     * @param user The user to observe.
+     */
+    private void subscribe(User user) {
+        subscriptions.add(user.addWeakObserver(this));
+    }
+
+    /**
+     * Stops observing every user, and drops any tweets still queued for this view.
+     */
+    private void unsubscribeAll() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.unsubscribe();
+        }
+        subscriptions.clear();
+        AsyncObserverDispatcher.getInstance().forget(this);
+    }
+
+    /**
+     * Drops a tweet that was already on its way when the window closed. Such a tweet can recreate
+     * this view's mailbox in the dispatcher after it was forgotten, so forget it again.
+     */
+    private void discardLateUpdate() {
+        AsyncObserverDispatcher.getInstance().forget(this);
     }
 
     /**
@@ -0,0 +1,59 @@
+package User;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the AsyncObserverDispatcher: delivery order, and letting go of weakly registered observers.
+ */
+class AsyncObserverDispatcherTest {
+    @Test
+    void deliversInOrderAndLetsWeakObserversBeCollected() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AsyncObserverDispatcher dispatcher = new AsyncObserverDispatcher(executor, 16, 4,
+                    AsyncObserverDispatcher.OverflowPolicy.BLOCK);
+            User user = new User("dispatcher-test");
+            user.setDispatcher(dispatcher);
+            List<String> seen = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch delivered = new CountDownLatch(100);
+            UserObserver observer = new UserObserver() {
+                @Override
+                public void update(String tweet) {
+                    seen.add(tweet);
+                    delivered.countDown();
+                }
+            };
+            user.addWeakObserver(observer);
+            List<String> posted = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                posted.add("tweet " + i);
+                user.postTweet("tweet " + i);
+            }
+            assertTrue(delivered.await(10, TimeUnit.SECONDS));
+            assertEquals(posted, seen);
+
+            WeakReference<UserObserver> reference = new WeakReference<>(observer);
+            observer = null;
+            for (int i = 0; i < 50 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertNull(reference.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package User;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for changing one shared model from several threads: no tweet, follow edge or membership is lost.
+ */
+class ConcurrentModelTest {
+    private static final int THREADS = 4;
+    private static final int USERS = 200;
+    private static final int GROUPS = 4;
+    private static final int STEPS = 3000;
+
+    @Test
+    void keepsEveryTweetFollowAndMembershipUnderConcurrentChanges() throws Exception {
+        GroupStatistics groupStatistics = new GroupStatistics(new TweetAnalyzer());
+        ModelEvents.addListener(groupStatistics);
+        try {
+            check(groupStatistics);
+        } finally {
+            ModelEvents.removeListener(groupStatistics);
+        }
+    }
+
+    private static void check(GroupStatistics groupStatistics) throws Exception {
+        UserRegistry registry = new UserRegistry();
+        UserGroup[] groups = new UserGroup[GROUPS];
+        for (int g = 0; g < GROUPS; g++) {
+            groups[g] = registry.createGroup("concurrent-group" + g);
+            registry.getRootGroup().addSubGroup(groups[g]);
+        }
+        User[] users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = registry.createUser("concurrent" + i);
+            groups[i % GROUPS].addUserToGroup(users[i]);
+        }
+
+        // Any thread may post as any user, but each thread alone follows and moves the users it owns,
+        // so their final edges and groups are known
+        AtomicIntegerArray posted = new AtomicIntegerArray(USERS);
+        List<Set<Integer>> expectedFollowing = new ArrayList<>();
+        int[] expectedGroup = new int[USERS];
+        for (int i = 0; i < USERS; i++) {
+            expectedFollowing.add(new HashSet<>());
+            expectedGroup[i] = i % GROUPS;
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int owner = t;
+            threads.add(new Thread(() -> {
+                try {
+                    Random random = new Random(owner);
+                    start.await();
+                    for (int step = 0; step < STEPS; step++) {
+                        int author = random.nextInt(USERS);
+                        users[author].postTweet("step " + step + " of thread " + owner);
+                        posted.incrementAndGet(author);
+
+                        int user = random.nextInt(USERS / THREADS) * THREADS + owner;
+                        int other = random.nextInt(USERS);
+                        if (other != user) {
+                            if (random.nextBoolean()) {
+                                users[user].follow(users[other]);
+                                expectedFollowing.get(user).add(other);
+                            } else {
+                                users[user].unfollow(users[other]);
+                                expectedFollowing.get(user).remove(other);
+                            }
+                        }
+                        if (step % 4 == 0) {
+                            int target = random.nextInt(GROUPS);
+                            groups[expectedGroup[user]].moveUserTo(users[user], groups[target]);
+                            expectedGroup[user] = target;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        Set<Long> tweetIDs = new HashSet<>();
+        long tweets = 0;
+        for (int i = 0; i < USERS; i++) {
+            User user = users[i];
+            assertEquals(posted.get(i), user.getTweetCount());
+            for (Tweet tweet : user.getTweets()) {
+                assertEquals(user.getUserID(), tweet.getAuthorID());
+                assertTrue(tweetIDs.add(tweet.getTweetID()));
+            }
+            tweets += user.getTweetCount();
+
+            Set<String> following = new TreeSet<>();
+            for (int other : expectedFollowing.get(i)) {
+                following.add(users[other].getUserID());
+                assertTrue(users[other].getFollowers().contains(user));
+            }
+            assertEquals(following, ids(user.getFollowings()));
+            assertSame(groups[expectedGroup[i]], GroupMembership.getInstance().getGroup(user));
+        }
+        assertEquals((long) THREADS * STEPS, tweets);
+
+        long members = 0;
+        for (int g = 0; g < GROUPS; g++) {
+            Set<String> expectedMembers = new TreeSet<>();
+            long groupTweets = 0;
+            for (int i = 0; i < USERS; i++) {
+                if (expectedGroup[i] == g) {
+                    expectedMembers.add(users[i].getUserID());
+                    groupTweets += users[i].getTweetCount();
+                }
+            }
+            assertEquals(expectedMembers, ids(groups[g].getMembers()));
+            assertEquals(expectedMembers.size(), groupStatistics.getUserCount(groups[g]));
+            assertEquals(groupTweets, groupStatistics.getTweetCount(groups[g]));
+            members += expectedMembers.size();
+        }
+        assertEquals(USERS, members);
+    }
+
+    private static Set<String> ids(List<User> users) {
+        Set<String> ids = new TreeSet<>();
+        for (User user : users) {
+            ids.add(user.getUserID());
+        }
+        return ids;
+    }
+}
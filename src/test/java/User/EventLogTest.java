@@ -0,0 +1,189 @@
+package User;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the EventLog: recording the model while it changes, and rebuilding it on open.
+ */
+class EventLogTest {
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-log-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void recoversModelChangedWhileSnapshotsAreWritten() throws Exception {
+        UserRegistry registry = new UserRegistry();
+        EventLog log = EventLog.open(directory, registry, false, 100);
+        ModelEvents.addListener(log);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicReferenceArray<User> created = new AtomicReferenceArray<>(4000);
+        AtomicInteger count = new AtomicInteger();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            int seed = w;
+            writers.add(new Thread(() -> {
+                try {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < created.length() / 2; i++) {
+                        User user = registry.createUser("user" + seed + "-" + i);
+                        created.set(count.getAndIncrement(), user);
+                        registry.getRootGroup().addUserToGroup(user);
+                        for (int j = 0; j < 3; j++) {
+                            User other = created.get(random.nextInt(count.get()));
+                            if (other != null) {
+                                user.follow(other);
+                                other.follow(user);
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        try {
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                while (writer.isAlive()) {
+                    log.snapshot();
+                }
+                writer.join();
+            }
+        } finally {
+            ModelEvents.removeListener(log);
+            log.close();
+        }
+        assertNull(failure.get());
+
+        UserRegistry recovered = new UserRegistry();
+        EventLog reopened = EventLog.open(directory, recovered, false, 100);
+        reopened.close();
+        assertEquals(registry.getUserCount(), recovered.getUserCount());
+        for (User user : registry.getUsers()) {
+            User copy = recovered.getUser(user.getUserID());
+            assertNotNull(copy);
+            assertEquals(ids(user.getFollowings()), ids(copy.getFollowings()));
+        }
+        assertEquals(registry.getRootGroup().getMembers().size(), recovered.getRootGroup().getMembers().size());
+    }
+
+    @Test
+    void recordsTweetsLongerThanModifiedUtf8Allows() throws Exception {
+        UserRegistry registry = new UserRegistry();
+        EventLog log = EventLog.open(directory, registry, true, EventLog.DEFAULT_SNAPSHOT_INTERVAL);
+        AtomicInteger seen = new AtomicInteger();
+        ModelListener counter = new ModelListener() {
+            @Override
+            public void tweetPosted(User author, Tweet tweet) {
+                seen.incrementAndGet();
+            }
+        };
+        ModelEvents.addListener(log);
+        ModelEvents.addListener(counter);
+        String message = "a".repeat(70000) + "😀".repeat(20000);
+        try {
+            registry.createUser("long").postTweet(message);
+        } finally {
+            ModelEvents.removeListener(counter);
+            ModelEvents.removeListener(log);
+            log.close();
+        }
+        assertEquals(1, seen.get());
+
+        UserRegistry recovered = new UserRegistry();
+        EventLog.open(directory, recovered, false, EventLog.DEFAULT_SNAPSHOT_INTERVAL).close();
+        assertNotNull(recovered.getUser("long"));
+    }
+
+    @Test
+    void rewritesTornSegmentHeaderAndRejectsForeignSegments() throws Exception {
+        Path torn = directory.resolve(String.format("events-%020d.log", 1));
+        Files.write(torn, new byte[] {(byte) 0x8E, 0x4C});
+        UserRegistry registry = new UserRegistry();
+        EventLog log = EventLog.open(directory, registry, true, EventLog.DEFAULT_SNAPSHOT_INTERVAL);
+        ModelEvents.addListener(log);
+        try {
+            registry.createUser("after-torn-header");
+        } finally {
+            ModelEvents.removeListener(log);
+            log.close();
+        }
+        UserRegistry recovered = new UserRegistry();
+        EventLog.open(directory, recovered, false, EventLog.DEFAULT_SNAPSHOT_INTERVAL).close();
+        assertNotNull(recovered.getUser("after-torn-header"));
+
+        Files.write(directory.resolve(String.format("events-%020d.log", 0)), new byte[] {0, 0, 0, 12, 1, 2, 3, 4});
+        assertThrows(IOException.class,
+                () -> EventLog.open(directory, new UserRegistry(), false, EventLog.DEFAULT_SNAPSHOT_INTERVAL));
+    }
+
+    @Test
+    void callsEveryListenerWhenOneThrows() {
+        AtomicInteger seen = new AtomicInteger();
+        ModelListener failing = new ModelListener() {
+            @Override
+            public void userCreated(User user) {
+                throw new IllegalStateException("failing listener");
+            }
+        };
+        ModelListener counter = new ModelListener() {
+            @Override
+            public void userCreated(User user) {
+                seen.incrementAndGet();
+            }
+        };
+        ModelEvents.addListener(failing);
+        ModelEvents.addListener(counter);
+        try {
+            UserRegistry registry = new UserRegistry();
+            assertThrows(IllegalStateException.class, () -> registry.createUser("listener-test"));
+            assertTrue(registry.containsUser("listener-test"));
+        } finally {
+            ModelEvents.removeListener(counter);
+            ModelEvents.removeListener(failing);
+        }
+        assertEquals(1, seen.get());
+    }
+
+    private static Set<String> ids(List<User> users) {
+        Set<String> ids = new TreeSet<>();
+        for (User user : users) {
+            ids.add(user.getUserID());
+        }
+        return ids;
+    }
+}
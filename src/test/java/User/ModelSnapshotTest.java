@@ -0,0 +1,213 @@
+package User;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the ModelSnapshot: reading a model back with its users materialized on first use.
+ */
+class ModelSnapshotTest {
+    private static final int USERS = 300;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("model-snapshot-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void readsUsersOnFirstLookup() throws IOException {
+        UserRegistry registry = model("lazy");
+        Path file = directory.resolve("model.snap");
+        ModelSnapshot.write(registry, 0, file);
+
+        UserRegistry restored = new UserRegistry();
+        ModelSnapshot.read(file, restored);
+        assertEquals(USERS, restored.getUserCount());
+        assertTrue(restored.containsUser("lazy7"));
+        assertNull(restored.createUser("lazy7"));
+
+        // One user, reached before any of its followers or fellow members
+        User original = registry.getUser("lazy7");
+        User copy = restored.getUser("lazy7");
+        assertSame(copy, restored.getUser("lazy7"));
+        assertEquals(original.getTweetCount(), copy.getTweetCount());
+        assertEquals(original.getTweets().get(0).getMessage(), copy.getTweets().get(0).getMessage());
+        assertEquals(ids(original.getFollowings()), ids(copy.getFollowings()));
+        assertEquals(ids(original.getFollowers()), ids(copy.getFollowers()));
+        UserGroup group = GroupMembership.getInstance().getGroup(copy);
+        assertEquals(GroupMembership.getInstance().getGroup(original).getGroupID(), group.getGroupID());
+        assertTrue(group.getMembers().contains(copy));
+
+        // Every user, and the groups holding them
+        assertEquals(USERS, restored.getUsers().size());
+        for (User user : registry.getUsers()) {
+            User other = restored.getUser(user.getUserID());
+            assertEquals(user.getTweetCount(), other.getTweetCount());
+            assertEquals(ids(user.getFollowings()), ids(other.getFollowings()));
+            assertEquals(ids(user.getFollowers()), ids(other.getFollowers()));
+        }
+        for (UserGroup original2 : registry.getGroups()) {
+            assertEquals(ids(original2.getMembers()), ids(restored.getGroup(original2.getGroupID()).getMembers()));
+        }
+    }
+
+    @Test
+    void materializesEachUserOnceWhenLookedUpConcurrently() throws Exception {
+        UserRegistry registry = model("shared");
+        Path file = directory.resolve("model.snap");
+        ModelSnapshot.write(registry, 0, file);
+        UserRegistry restored = new UserRegistry();
+        ModelSnapshot.read(file, restored);
+
+        AtomicReferenceArray<User> seen = new AtomicReferenceArray<>(USERS);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 37;
+            readers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < USERS; i++) {
+                        int number = (i + offset) % USERS;
+                        User user = restored.getUser("shared" + number);
+                        // Following an edge reaches users through the SocialGraph instead of the registry
+                        user.getFollowings().forEach(User::getTweetCount);
+                        if (!seen.compareAndSet(number, null, user) && seen.get(number) != user) {
+                            throw new AssertionError("Two users for shared" + number);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        for (User user : restored.getUsers()) {
+            for (User followee : user.getFollowings()) {
+                assertSame(followee, restored.getUser(followee.getUserID()));
+            }
+        }
+        assertFalse(restored.getUsers().isEmpty());
+    }
+
+    @Test
+    void keepsUsersPendingWithListenersRegistered() throws Exception {
+        UserRegistry registry = model("listened");
+        Path file = directory.resolve("model.snap");
+        ModelSnapshot.write(registry, 0, file);
+
+        TweetAnalyzer analyzer = new TweetAnalyzer();
+        Statistics statistics = new Statistics(analyzer);
+        GroupStatistics groupStatistics = new GroupStatistics(analyzer);
+        TrendTracker trendTracker = new TrendTracker(analyzer);
+        UserRegistry restored = new UserRegistry();
+        SearchIndex searchIndex = new SearchIndex(restored);
+        AtomicReference<ModelSnapshot.RestoredModel> model = new AtomicReference<>();
+        ModelListener capture = new ModelListener() {
+            @Override
+            public void modelRestored(ModelSnapshot.RestoredModel restoredModel) {
+                model.set(restoredModel);
+            }
+        };
+        List<ModelListener> listeners = List.of(statistics, groupStatistics, trendTracker, searchIndex, capture);
+        listeners.forEach(ModelEvents::addListener);
+        try {
+            ModelSnapshot.read(file, restored);
+            assertEquals(USERS, restored.getPendingCount());
+            model.get().awaitScans();
+            assertEquals(USERS, restored.getPendingCount());
+        } finally {
+            listeners.forEach(ModelEvents::removeListener);
+        }
+
+        assertEquals(USERS, statistics.getTotalUsers());
+        assertEquals(2L * USERS, statistics.getTotalTweets());
+        assertEquals(USERS, searchIndex.search("another", 2 * USERS).getTweetIDs().length);
+        for (UserGroup group : registry.getGroups()) {
+            UserGroup copy = restored.getGroup(group.getGroupID());
+            long members = group.getMembers().size();
+            assertEquals(members, groupStatistics.getUserCount(copy));
+            assertEquals(2 * members, groupStatistics.getTweetCount(copy));
+        }
+
+        // Writing the restored model copies the pending users without materializing them
+        Path again = directory.resolve("again.snap");
+        ModelSnapshot.write(restored, 0, again);
+        assertEquals(USERS, restored.getPendingCount());
+        UserRegistry reread = new UserRegistry();
+        ModelSnapshot.read(again, reread);
+        for (User user : registry.getUsers()) {
+            User copy = reread.getUser(user.getUserID());
+            assertEquals(user.getTweetCount(), copy.getTweetCount());
+            assertEquals(user.getTweets().get(0).getMessage(), copy.getTweets().get(0).getMessage());
+            assertEquals(ids(user.getFollowings()), ids(copy.getFollowings()));
+            assertEquals(ids(user.getFollowers()), ids(copy.getFollowers()));
+        }
+        for (UserGroup group : registry.getGroups()) {
+            assertEquals(ids(group.getMembers()), ids(reread.getGroup(group.getGroupID()).getMembers()));
+        }
+    }
+
+    private static UserRegistry model(String prefix) {
+        UserRegistry registry = new UserRegistry();
+        List<UserGroup> groups = new ArrayList<>();
+        for (int g = 0; g < 3; g++) {
+            UserGroup group = registry.createGroup(prefix + "-group" + g);
+            registry.getRootGroup().addSubGroup(group);
+            groups.add(group);
+        }
+        User[] users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = registry.createUser(prefix + i);
+            groups.get(i % groups.size()).addUserToGroup(users[i]);
+        }
+        for (int i = 0; i < USERS; i++) {
+            users[i].follow(users[(i * 7 + 1) % USERS]);
+            users[i].follow(users[(i * 13 + 5) % USERS]);
+            users[i].postTweet("tweet from " + prefix + i);
+            users[i].postTweet("another tweet");
+        }
+        return registry;
+    }
+
+    private static Set<String> ids(List<User> users) {
+        Set<String> ids = new TreeSet<>();
+        for (User user : users) {
+            ids.add(user.getUserID());
+        }
+        return ids;
+    }
+}
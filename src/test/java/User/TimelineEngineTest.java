@@ -0,0 +1,69 @@
+package User;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests for the TimelineEngine: paged timelines match the feeds of the users followed.
+ */
+class TimelineEngineTest {
+    @Test
+    void pagesMatchTheFeedsOfFolloweesAfterAnUnfollow() {
+        UserRegistry registry = new UserRegistry();
+        User reader = registry.createUser("timeline-reader");
+        User kept = registry.createUser("timeline-kept");
+        User dropped = registry.createUser("timeline-dropped");
+        User quiet = registry.createUser("timeline-quiet");
+        reader.follow(kept);
+        reader.follow(dropped);
+        reader.follow(quiet);
+        // More tweets than a pushed timeline holds, so the last pages are pulled from the feeds
+        for (int i = 0; i < 300; i++) {
+            kept.postTweet("kept " + i);
+            dropped.postTweet("dropped " + i);
+            if (i % 50 == 0) {
+                reader.postTweet("own " + i);
+            }
+        }
+        reader.unfollow(dropped);
+
+        for (int limit : new int[] {1, 7, 20, 1000}) {
+            assertEquals(feeds(reader, kept, quiet), walk(reader, limit));
+        }
+        FeedPage whole = reader.getTimelinePage(FeedPage.FIRST_PAGE, 306);
+        assertEquals(306, whole.getTweetIDs().length);
+        assertFalse(whole.hasMore());
+    }
+
+    private static List<Long> walk(User user, int limit) {
+        List<Long> tweetIDs = new ArrayList<>();
+        long cursor = FeedPage.FIRST_PAGE;
+        while (true) {
+            FeedPage page = user.getTimelinePage(cursor, limit);
+            for (long tweetID : page.getTweetIDs()) {
+                tweetIDs.add(tweetID);
+            }
+            if (!page.hasMore()) {
+                return tweetIDs;
+            }
+            cursor = page.getNextCursor();
+        }
+    }
+
+    private static List<Long> feeds(User... users) {
+        List<Long> tweetIDs = new ArrayList<>();
+        for (User user : users) {
+            for (long tweetID : user.getFeedPage(FeedPage.FIRST_PAGE, Integer.MAX_VALUE).getTweetIDs()) {
+                tweetIDs.add(tweetID);
+            }
+        }
+        tweetIDs.sort(Comparator.reverseOrder());
+        return tweetIDs;
+    }
+}
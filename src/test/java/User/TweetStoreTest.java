@@ -0,0 +1,51 @@
+package User;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the TweetStore: reclaiming arena memory once tweets are archived.
+ */
+class TweetStoreTest {
+
+    @Test
+    void dropsArenaChunksOnceEveryBodyIsArchived() {
+        TweetStore store = new TweetStore();
+        String padding = "x".repeat(1000);
+        int count = 200_000; // Enough distinct bodies to fill several chunks in every stripe
+        long[] tweetIDs = new long[count];
+        for (int i = 0; i < count; i++) {
+            tweetIDs[i] = i + 1;
+            store.put(new Tweet(tweetIDs[i], "author", i + padding, i));
+        }
+        long filled = store.getBodyBytes();
+        assertTrue(filled > (long) count * 1000);
+
+        store.archive(tweetIDs);
+        // Only the chunk each stripe is still filling is kept
+        assertTrue(store.getBodyBytes() < filled / 4, "arena still holds " + store.getBodyBytes());
+        assertEquals(0, store.getTweetCount());
+        assertNull(store.get(tweetIDs[0]));
+    }
+
+    @Test
+    void keepsSharedBodyUntilItsLastTweetIsArchived() {
+        TweetStore store = new TweetStore();
+        store.put(new Tweet(1, "a", "same message", 1));
+        store.put(new Tweet(2, "b", "same message", 2));
+        long bytes = store.getBodyBytes();
+
+        store.archive(new long[]{1});
+        assertEquals("same message", store.getMessage(2));
+        store.put(new Tweet(3, "c", "same message", 3));
+        assertEquals(bytes, store.getBodyBytes()); // Still interned, so not stored again
+
+        store.archive(new long[]{2, 3});
+        store.put(new Tweet(4, "d", "same message", 4));
+        assertEquals(2 * bytes, store.getBodyBytes()); // Released, so stored again
+        assertEquals("same message", store.getMessage(4));
+    }
+}